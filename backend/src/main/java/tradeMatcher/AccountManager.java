@@ -61,18 +61,119 @@ public final class AccountManager {
         accountsByToken.put(account.getApiKey(), account);
     }
 
-    public void ensureSufficientBuyingPower(UserAccount account, String ticker, double price, long quantity) {
+    /**
+     * Checks buying power (buys) or inventory (sells) for {@code order} against what the account
+     * has not already reserved, and holds it until the order fills or leaves the book. The engine
+     * prices market buys at the worst ask first; one still unpriced has nothing to trade against,
+     * is dropped by the book and holds nothing.
+     *
+     * @throws IllegalArgumentException {@code INSUFFICIENT_FUNDS} or {@code INSUFFICIENT_INVENTORY}
+     */
+    public void reserve(UserAccount account, Order order, double displayPrice) {
         Objects.requireNonNull(account, "account");
-        double requiredCash = price * quantity;
-        if (!account.hasSufficientCash(requiredCash)) {
-            throw new IllegalArgumentException("INSUFFICIENT_FUNDS");
+        if (order.GetSide() == OrderSide.BUY) {
+            if (order.GetOrderType() == OrderType.MARKET) {
+                return;
+            }
+            long perUnit = UserAccount.toCashUnits(displayPrice);
+            if (!account.tryReserveCash(cashUnits(perUnit, order.GetInitialQuantity()))) {
+                throw new IllegalArgumentException("INSUFFICIENT_FUNDS");
+            }
+            order.setReservation(perUnit, false);
+        } else {
+            if (!account.tryReserveInventory(order.getTicker(), order.GetInitialQuantity())) {
+                throw new IllegalArgumentException("INSUFFICIENT_INVENTORY");
+            }
+            order.setReservation(0L, true);
         }
     }
 
-    public void ensureSufficientInventory(UserAccount account, String ticker, long quantity) {
+    /**
+     * Moves the reservation of a resting order onto its modified replacement, checking only the
+     * difference when the side is unchanged. On success {@code existing} holds nothing, so removing
+     * it from the book releases nothing.
+     *
+     * @throws IllegalArgumentException when the account cannot cover the replacement; both
+     *                                  reservations are then left as they were
+     */
+    public void reserveReplacing(UserAccount account, Order existing, Order replacement, double displayPrice) {
         Objects.requireNonNull(account, "account");
-        if (!account.hasInventory(ticker, quantity)) {
-            throw new IllegalArgumentException("INSUFFICIENT_INVENTORY");
+        if (existing.GetSide() != replacement.GetSide()) {
+            reserve(account, replacement, displayPrice);
+            releaseOpen(existing);
+            return;
+        }
+        if (replacement.GetSide() == OrderSide.BUY) {
+            long perUnit = UserAccount.toCashUnits(displayPrice);
+            long delta = cashUnits(perUnit, replacement.GetInitialQuantity())
+                    - cashUnits(existing.getReservedCashPerUnit(), existing.GetRemainingQuantity());
+            if (!account.tryAdjustReservedCash(delta)) {
+                throw new IllegalArgumentException("INSUFFICIENT_FUNDS");
+            }
+            replacement.setReservation(perUnit, false);
+        } else {
+            long held = existing.isInventoryReserved() ? existing.GetRemainingQuantity() : 0L;
+            if (!account.tryReserveInventory(replacement.getTicker(), replacement.GetInitialQuantity() - held)) {
+                throw new IllegalArgumentException("INSUFFICIENT_INVENTORY");
+            }
+            replacement.setReservation(0L, true);
+        }
+        existing.setReservation(0L, false);
+    }
+
+    /**
+     * Re-establishes the reservation of an order restored into the book without checking it.
+     */
+    public void restoreReservation(Order order, double displayPrice) {
+        UserAccount account = accountsById.get(order.getUserId());
+        if (account == null) {
+            return;
+        }
+        if (order.GetSide() == OrderSide.BUY) {
+            long perUnit = UserAccount.toCashUnits(displayPrice);
+            account.restoreReservation(cashUnits(perUnit, order.GetRemainingQuantity()), null, 0L);
+            order.setReservation(perUnit, false);
+        } else {
+            account.restoreReservation(0L, order.getTicker(), order.GetRemainingQuantity());
+            order.setReservation(0L, true);
+        }
+    }
+
+    /**
+     * Releases the reservation for {@code quantity} of {@code order} that just traded.
+     */
+    public void releaseFilled(Order order, long quantity) {
+        release(order, quantity);
+    }
+
+    /**
+     * Releases whatever {@code order} still holds for its open quantity.
+     */
+    public void releaseOpen(Order order) {
+        release(order, order.GetRemainingQuantity());
+        order.setReservation(0L, false);
+    }
+
+    private void release(Order order, long quantity) {
+        if (order.getReservedCashPerUnit() == 0L && !order.isInventoryReserved()) {
+            return;
+        }
+        UserAccount account = accountsById.get(order.getUserId());
+        if (account == null) {
+            return;
+        }
+        if (order.getReservedCashPerUnit() != 0L) {
+            account.releaseCash(cashUnits(order.getReservedCashPerUnit(), quantity));
+        } else {
+            account.releaseInventory(order.getTicker(), quantity);
+        }
+    }
+
+    private static long cashUnits(long perUnit, long quantity) {
+        try {
+            return Math.multiplyExact(perUnit, quantity);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("INSUFFICIENT_FUNDS");
         }
     }
 }
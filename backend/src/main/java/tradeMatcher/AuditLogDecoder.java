@@ -0,0 +1,79 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Prints an {@link OrderAuditLog} directory as one line per record, optionally filtered to a user
+ * or an order.
+ *
+ * <pre>
+ * java -cp target/trade-matcher.jar tradeMatcher.AuditLogDecoder audit [--user=trader1] [--order=42]
+ * </pre>
+ */
+public final class AuditLogDecoder {
+    private static final String USER_FLAG = "--user=";
+    private static final String ORDER_FLAG = "--order=";
+
+    private AuditLogDecoder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String directory = null;
+        String user = null;
+        long order = -1L;
+        for (String arg : args) {
+            if (arg.startsWith(USER_FLAG)) {
+                user = arg.substring(USER_FLAG.length());
+            } else if (arg.startsWith(ORDER_FLAG)) {
+                order = Long.parseLong(arg.substring(ORDER_FLAG.length()));
+            } else if (directory == null) {
+                directory = arg;
+            } else {
+                System.err.println("Unexpected argument: " + arg);
+                return;
+            }
+        }
+        if (directory == null) {
+            System.err.println("Usage: AuditLogDecoder <audit-dir> [--user=<userId>] [--order=<orderId>]");
+            return;
+        }
+
+        String userFilter = user;
+        long orderFilter = order;
+        StringBuilder line = new StringBuilder(160);
+        OrderAuditLog.read(Path.of(directory), entry -> {
+            if ((userFilter != null && !userFilter.equals(entry.userId()))
+                    || (orderFilter >= 0L && orderFilter != entry.orderId())) {
+                return;
+            }
+            line.setLength(0);
+            line.append(entry.sequence()).append(' ')
+                    .append(Instant.ofEpochMilli(entry.timestampMillis())).append(' ')
+                    .append(entry.type())
+                    .append(" order=").append(entry.orderId())
+                    .append(" user=").append(entry.userId());
+            if (entry.ticker() != null) {
+                line.append(" ticker=").append(entry.ticker());
+            }
+            if (entry.side() != null) {
+                line.append(" side=").append(entry.side());
+            }
+            if (entry.orderType() != null) {
+                line.append(" type=").append(entry.orderType()).append(" tif=").append(entry.timeInForce());
+            }
+            if (entry.type() != OrderAuditLog.Type.CANCELED) {
+                line.append(" price=").append(entry.price());
+            }
+            line.append(" qty=").append(entry.quantity());
+            if (entry.type() != OrderAuditLog.Type.FILLED) {
+                line.append(" remaining=").append(entry.remaining());
+            }
+            if (entry.reason() != null) {
+                line.append(" reason=").append(entry.reason());
+            }
+            System.out.println(line);
+        });
+    }
+}
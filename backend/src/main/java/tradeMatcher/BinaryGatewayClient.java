@@ -0,0 +1,180 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Minimal blocking client for {@link BinaryOrderGateway} that measures order-to-ack and
+ * cancel-to-ack round trips. Each iteration rests a small passive buy and cancels it, so the book
+ * is left unchanged.
+ *
+ * <pre>
+ * java -cp trade-matcher.jar tradeMatcher.BinaryGatewayClient &lt;host&gt; &lt;port&gt; &lt;apiKey&gt; [iterations] [warmup] [ticker] [priceTicks]
+ * </pre>
+ */
+public final class BinaryGatewayClient implements AutoCloseable {
+    private static final int DEFAULT_ITERATIONS = 100_000;
+    private static final int DEFAULT_WARMUP = 20_000;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BinaryProtocol.MAX_FRAME_BYTES);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+    private long lastOrderId;
+    private byte lastExecType;
+    private String lastReason;
+
+    public BinaryGatewayClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BinaryGatewayClient <host> <port> <apiKey> [iterations] [warmup] [ticker] [priceTicks]");
+            return;
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        String apiKey = args[2];
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ITERATIONS;
+        int warmup = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_WARMUP;
+        long ticker = BinaryProtocol.encodeTicker(args.length > 5 ? args[5] : "TEST");
+        int priceTicks = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+
+        LatencyHistogram newOrderLatency = new LatencyHistogram();
+        LatencyHistogram cancelLatency = new LatencyHistogram();
+
+        try (BinaryGatewayClient client = new BinaryGatewayClient(host, port)) {
+            if (!client.logon(apiKey)) {
+                System.err.println("Logon rejected");
+                return;
+            }
+            for (int i = 0; i < warmup + iterations; i++) {
+                boolean measured = i >= warmup;
+                long clientOrderId = i + 1L;
+
+                long start = System.nanoTime();
+                client.newOrder(clientOrderId, ticker, priceTicks);
+                if (client.awaitReport(clientOrderId) != BinaryProtocol.EXEC_ACK) {
+                    System.err.println("Order rejected: " + client.lastReason);
+                    return;
+                }
+                long acked = System.nanoTime();
+
+                client.cancel(clientOrderId, client.lastOrderId);
+                client.awaitReport(clientOrderId);
+                long canceled = System.nanoTime();
+
+                if (measured) {
+                    newOrderLatency.record(acked - start);
+                    cancelLatency.record(canceled - acked);
+                }
+            }
+        }
+
+        printLatency("new order -> ack", newOrderLatency);
+        printLatency("cancel -> ack", cancelLatency);
+    }
+
+    private static void printLatency(String label, LatencyHistogram histogram) {
+        System.out.printf("%-18s n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                label,
+                histogram.count(),
+                histogram.mean() / 1_000.0d,
+                histogram.valueAtPercentile(50.0d) / 1_000.0d,
+                histogram.valueAtPercentile(90.0d) / 1_000.0d,
+                histogram.valueAtPercentile(99.0d) / 1_000.0d,
+                histogram.valueAtPercentile(99.9d) / 1_000.0d,
+                histogram.max() / 1_000.0d);
+    }
+
+    public boolean logon(String apiKey) throws IOException {
+        out.clear();
+        BinaryProtocol.writeLogon(out, apiKey);
+        write();
+        ByteBuffer frame = nextFrame();
+        return frame.get() == BinaryProtocol.MSG_LOGON_REPLY && frame.get() == BinaryProtocol.LOGON_ACCEPTED;
+    }
+
+    public void newOrder(long clientOrderId, long ticker, int priceTicks) throws IOException {
+        out.clear();
+        BinaryProtocol.writeNewOrder(out, clientOrderId, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                true, priceTicks, 0, 1L, 1L, ticker);
+        write();
+    }
+
+    public void cancel(long clientOrderId, long orderId) throws IOException {
+        out.clear();
+        BinaryProtocol.writeCancel(out, clientOrderId, orderId);
+        write();
+    }
+
+    /**
+     * Reads execution reports until one for {@code clientOrderId} arrives, skipping unrelated fills.
+     */
+    public byte awaitReport(long clientOrderId) throws IOException {
+        while (true) {
+            ByteBuffer frame = nextFrame();
+            if (frame.get() != BinaryProtocol.MSG_EXEC_REPORT) {
+                continue;
+            }
+            byte execType = frame.get();
+            long reportClientOrderId = frame.getLong();
+            long orderId = frame.getLong();
+            if (reportClientOrderId != clientOrderId) {
+                continue;
+            }
+            frame.getInt();
+            frame.getLong();
+            frame.getLong();
+            int reasonLength = frame.getShort();
+            StringBuilder reason = new StringBuilder(reasonLength);
+            for (int i = 0; i < reasonLength; i++) {
+                reason.append((char) frame.get());
+            }
+            lastOrderId = orderId;
+            lastExecType = execType;
+            lastReason = reason.toString();
+            return lastExecType;
+        }
+    }
+
+    private void write() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    /**
+     * Returns a view positioned at the message type of the next complete frame.
+     */
+    private ByteBuffer nextFrame() throws IOException {
+        while (true) {
+            if (in.remaining() >= BinaryProtocol.LENGTH_PREFIX_BYTES) {
+                int length = in.getInt(in.position());
+                if (in.remaining() >= BinaryProtocol.LENGTH_PREFIX_BYTES + length) {
+                    int start = in.position() + BinaryProtocol.LENGTH_PREFIX_BYTES;
+                    ByteBuffer frame = in.duplicate();
+                    frame.position(start).limit(start + length);
+                    in.position(start + length);
+                    return frame;
+                }
+            }
+            in.compact();
+            if (channel.read(in) < 0) {
+                throw new IOException("Gateway closed the connection");
+            }
+            in.flip();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
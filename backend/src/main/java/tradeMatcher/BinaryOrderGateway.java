@@ -0,0 +1,469 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Length-prefixed binary order-entry gateway for co-located clients. A single selector thread owns
+ * every connection and decodes frames straight into engine commands, skipping the JSON and
+ * {@code OrderPayload} parsing done by the HTTP and WebSocket entry points. See
+ * {@link BinaryProtocol} for the wire layout.
+ */
+public final class BinaryOrderGateway implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryOrderGateway.class);
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+    private static final int MAX_TICKERS = 64;
+    // Client order ids remembered per connection so fills can echo them; the oldest are forgotten.
+    private static final int MAX_TRACKED_ORDERS = 65_536;
+
+    private final MatchingEngine engine;
+    private final AccountManager accountManager;
+    private final OrderIdGenerator orderIdGenerator;
+    private final PriceScaleRegistry priceScales;
+    private final ConcurrentHashMap<String, Set<Connection>> connectionsByUser = new ConcurrentHashMap<>();
+    private final long[] tickerCodes = new long[MAX_TICKERS];
+    private final String[] tickerNames = new String[MAX_TICKERS];
+    private int tickerCount;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread ioThread;
+    private volatile boolean running;
+
+    public BinaryOrderGateway(MatchingEngine engine, AccountManager accountManager, OrderIdGenerator orderIdGenerator) {
+        this.engine = engine;
+        this.accountManager = accountManager;
+        this.orderIdGenerator = orderIdGenerator;
+        this.priceScales = PriceScaleProvider.getRegistry();
+    }
+
+    public void start(String host, int port) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(host, port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        ioThread = new Thread(this::runLoop, "binary-order-gateway");
+        ioThread.setDaemon(true);
+        ioThread.start();
+        LOG.info("Binary order gateway listening on {}:{}", host, getPort());
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Pushes a fill execution report to every gateway connection owned by the fill's user, echoing
+     * the client order id when the order was entered on that connection.
+     */
+    public void onFill(FillRecord fill) {
+        Set<Connection> connections = connectionsByUser.get(fill.userId());
+        if (connections == null || connections.isEmpty()) {
+            return;
+        }
+        int price = priceScales.getScale(fill.ticker()).toBookPrice(fill.price());
+        long orderId = Long.parseLong(fill.orderId());
+        for (Connection connection : connections) {
+            connection.sendFill(orderId, price, fill.quantity());
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException | RuntimeException ex) {
+                        LOG.warn("Closing gateway connection for user {}: {}", connection.userId, ex.toString());
+                        connection.close();
+                    }
+                }
+            } catch (ClosedSelectorException ex) {
+                return;
+            } catch (IOException ex) {
+                LOG.warn("Binary gateway selector failure", ex);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void dispatch(Connection connection, byte type, ByteBuffer in, int bodyLength) {
+        if (type == BinaryProtocol.MSG_LOGON) {
+            if (bodyLength < Short.BYTES) {
+                requireBody(type, bodyLength, Short.BYTES);
+            }
+            handleLogon(connection, in, bodyLength);
+            return;
+        }
+        if (connection.userId == null) {
+            throw new IllegalStateException("Command received before logon");
+        }
+        switch (type) {
+            case BinaryProtocol.MSG_NEW_ORDER -> {
+                requireBody(type, bodyLength, BinaryProtocol.NEW_ORDER_BODY_BYTES);
+                handleNewOrder(connection, in);
+            }
+            case BinaryProtocol.MSG_CANCEL -> {
+                requireBody(type, bodyLength, BinaryProtocol.CANCEL_BODY_BYTES);
+                handleCancel(connection, in);
+            }
+            case BinaryProtocol.MSG_MODIFY -> {
+                requireBody(type, bodyLength, BinaryProtocol.MODIFY_BODY_BYTES);
+                handleModify(connection, in);
+            }
+            default -> throw new IllegalStateException("Unknown message type " + type);
+        }
+    }
+
+    private static void requireBody(byte type, int bodyLength, int expected) {
+        if (bodyLength != expected) {
+            throw new IllegalStateException("Message type " + type + " expects " + expected + " body bytes but got " + bodyLength);
+        }
+    }
+
+    private void handleLogon(Connection connection, ByteBuffer in, int bodyLength) {
+        int keyLength = in.getShort();
+        requireBody(BinaryProtocol.MSG_LOGON, bodyLength, Short.BYTES + keyLength);
+        byte[] key = new byte[keyLength];
+        in.get(key);
+        UserAccount account = accountManager.findByToken(new String(key, StandardCharsets.US_ASCII)).orElse(null);
+        if (account == null || connection.userId != null) {
+            connection.sendLogonReply(BinaryProtocol.LOGON_REJECTED);
+            return;
+        }
+        connection.userId = account.getUserId();
+        connectionsByUser.computeIfAbsent(connection.userId, __ -> new CopyOnWriteArraySet<>()).add(connection);
+        connection.sendLogonReply(BinaryProtocol.LOGON_ACCEPTED);
+    }
+
+    private void handleNewOrder(Connection connection, ByteBuffer in) {
+        long clientOrderId = in.getLong();
+        byte sideCode = in.get();
+        byte orderTypeCode = in.get();
+        byte timeInForceCode = in.get();
+        byte flags = in.get();
+        int price = in.getInt();
+        int triggerPrice = in.getInt();
+        long quantity = in.getLong();
+        long displayQuantity = in.getLong();
+        long tickerCode = in.getLong();
+
+        String orderId = orderIdGenerator.nextId();
+        try {
+            OrderType orderType = BinaryProtocol.orderTypeOf(orderTypeCode);
+            if ((orderType == OrderType.LIMIT || orderType == OrderType.STOP_LIMIT) && price <= 0) {
+                throw new IllegalArgumentException("Limit orders require a positive price");
+            }
+            if ((orderType == OrderType.STOP_MARKET || orderType == OrderType.STOP_LIMIT) && triggerPrice <= 0) {
+                throw new IllegalArgumentException("Stop orders require a positive trigger price");
+            }
+            int bookPrice = orderType == OrderType.MARKET ? 0 : price;
+            Order order = new Order(
+                    orderId,
+                    connection.userId,
+                    tickerFor(tickerCode),
+                    BinaryProtocol.sideOf(sideCode),
+                    orderType,
+                    BinaryProtocol.timeInForceOf(timeInForceCode),
+                    quantity,
+                    bookPrice,
+                    triggerPrice > 0 ? triggerPrice : bookPrice,
+                    (flags & BinaryProtocol.FLAG_POST_ONLY) != 0,
+                    displayQuantity > 0 ? displayQuantity : quantity);
+            connection.beginCommand(order.getNumericOrderId(), clientOrderId);
+            try {
+                engine.processOrder(order);
+                connection.sendExecReport(BinaryProtocol.EXEC_ACK, clientOrderId, order.getNumericOrderId(), bookPrice, quantity, null);
+            } finally {
+                connection.endCommand();
+            }
+        } catch (IllegalArgumentException ex) {
+            connection.sendExecReport(BinaryProtocol.EXEC_REJECT, clientOrderId, Long.parseLong(orderId), price, quantity, ex.getMessage());
+        }
+    }
+
+    private void handleCancel(Connection connection, ByteBuffer in) {
+        long clientOrderId = in.getLong();
+        long orderId = in.getLong();
+        if (engine.cancelOrder(connection.userId, orderId)) {
+            connection.sendExecReport(BinaryProtocol.EXEC_CANCELED, clientOrderId, orderId, 0, 0L, null);
+        } else {
+            connection.sendExecReport(BinaryProtocol.EXEC_REJECT, clientOrderId, orderId, 0, 0L, "ORDER_NOT_FOUND");
+        }
+    }
+
+    private void handleModify(Connection connection, ByteBuffer in) {
+        long clientOrderId = in.getLong();
+        long orderId = in.getLong();
+        OrderSide side = BinaryProtocol.sideOf(in.get());
+        int price = in.getInt();
+        int quantity = in.getInt();
+        connection.beginCommand(orderId, clientOrderId);
+        try {
+            engine.modifyOrder(connection.userId, orderId, side, price, quantity);
+            connection.sendExecReport(BinaryProtocol.EXEC_MODIFIED, clientOrderId, orderId, price, quantity, null);
+        } catch (IllegalArgumentException ex) {
+            connection.sendExecReport(BinaryProtocol.EXEC_REJECT, clientOrderId, orderId, price, quantity, ex.getMessage());
+        } finally {
+            connection.endCommand();
+        }
+    }
+
+    /**
+     * Resolves a packed ticker to a canonical string, caching it so steady-state decoding does not
+     * allocate. Only touched from the selector thread.
+     */
+    private String tickerFor(long tickerCode) {
+        for (int i = 0; i < tickerCount; i++) {
+            if (tickerCodes[i] == tickerCode) {
+                return tickerNames[i];
+            }
+        }
+        String ticker = BinaryProtocol.decodeTicker(tickerCode).toUpperCase();
+        if (ticker.isEmpty()) {
+            throw new IllegalArgumentException("Ticker is required");
+        }
+        if (tickerCount < MAX_TICKERS) {
+            tickerCodes[tickerCount] = tickerCode;
+            tickerNames[tickerCount] = ticker;
+            tickerCount++;
+        }
+        return ticker;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (selector != null) {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    connection.close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                LOG.warn("Failed to close gateway selector", ex);
+            }
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException ex) {
+                LOG.warn("Failed to close gateway socket", ex);
+            }
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        private final ReentrantLock writeLock = new ReentrantLock();
+        // Guarded by writeLock.
+        private final Map<Long, Long> clientOrderIds = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > MAX_TRACKED_ORDERS;
+            }
+        };
+        // The order of the command in progress; its fills wait for the command's reply.
+        private long commandOrderId;
+        private final List<long[]> heldFills = new ArrayList<>();
+        private SelectionKey key;
+        private volatile String userId;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void onReadable() throws IOException {
+            int read = channel.read(in);
+            if (read < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            while (in.remaining() >= BinaryProtocol.LENGTH_PREFIX_BYTES) {
+                int frameStart = in.position();
+                int length = in.getInt(frameStart);
+                if (length <= 0 || length > BinaryProtocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if (in.remaining() < BinaryProtocol.LENGTH_PREFIX_BYTES + length) {
+                    break;
+                }
+                int frameEnd = frameStart + BinaryProtocol.LENGTH_PREFIX_BYTES + length;
+                in.position(frameStart + BinaryProtocol.LENGTH_PREFIX_BYTES);
+                byte type = in.get();
+                dispatch(this, type, in, length - 1);
+                in.position(frameEnd);
+            }
+            in.compact();
+        }
+
+        void sendLogonReply(byte status) {
+            writeLock.lock();
+            try {
+                BinaryProtocol.writeLogonReply(out, status);
+                flush();
+            } catch (BufferOverflowException | IOException ex) {
+                close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * Starts a command on {@code orderId}: fills it produces are held until {@link #endCommand},
+         * so the client sees the ack before them.
+         */
+        void beginCommand(long orderId, long clientOrderId) {
+            writeLock.lock();
+            try {
+                clientOrderIds.put(orderId, clientOrderId);
+                commandOrderId = orderId;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void endCommand() {
+            writeLock.lock();
+            try {
+                long orderId = commandOrderId;
+                commandOrderId = 0L;
+                Long clientOrderId = clientOrderIds.get(orderId);
+                for (long[] fill : heldFills) {
+                    sendExecReport(BinaryProtocol.EXEC_FILL, clientOrderId == null ? 0L : clientOrderId, orderId,
+                            (int) fill[0], fill[1], null);
+                }
+                heldFills.clear();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void sendFill(long orderId, int price, long quantity) {
+            writeLock.lock();
+            try {
+                if (orderId == commandOrderId) {
+                    heldFills.add(new long[] {price, quantity});
+                    return;
+                }
+                Long clientOrderId = clientOrderIds.get(orderId);
+                sendExecReport(BinaryProtocol.EXEC_FILL, clientOrderId == null ? 0L : clientOrderId, orderId, price,
+                        quantity, null);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void sendExecReport(byte execType, long clientOrderId, long orderId, int price, long quantity, String reason) {
+            writeLock.lock();
+            try {
+                BinaryProtocol.writeExecReport(out, execType, clientOrderId, orderId, price, quantity,
+                        System.currentTimeMillis(), reason);
+                flush();
+            } catch (BufferOverflowException ex) {
+                LOG.warn("Gateway client {} is not draining execution reports; disconnecting", userId);
+                close();
+            } catch (IOException ex) {
+                close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void flush() throws IOException {
+            writeLock.lock();
+            try {
+                out.flip();
+                channel.write(out);
+                boolean pending = out.hasRemaining();
+                out.compact();
+                if (key != null && key.isValid()) {
+                    int interest = pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+                    if (key.interestOps() != interest) {
+                        key.interestOps(interest);
+                        selector.wakeup();
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void close() {
+            String owner = userId;
+            if (owner != null) {
+                connectionsByUser.computeIfPresent(owner, (__, set) -> {
+                    set.remove(this);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOG.debug("Failed to close gateway channel", ex);
+            }
+        }
+    }
+}
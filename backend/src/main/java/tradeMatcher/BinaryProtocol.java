@@ -0,0 +1,182 @@
+package tradeMatcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format for the binary order-entry gateway. Every frame is a big-endian {@code int} length
+ * (covering the bytes that follow it), a one byte message type and a fixed-layout body. Prices are
+ * carried as integer book ticks so no decimal parsing happens on either side.
+ *
+ * <pre>
+ * LOGON        keyLength:short key:byte[keyLength]
+ * NEW_ORDER    clientOrderId:long side:byte orderType:byte timeInForce:byte flags:byte
+ *              price:int triggerPrice:int quantity:long displayQuantity:long ticker:byte[8]
+ * CANCEL       clientOrderId:long orderId:long
+ * MODIFY       clientOrderId:long orderId:long side:byte price:int quantity:int
+ *
+ * LOGON_REPLY  status:byte
+ * EXEC_REPORT  execType:byte clientOrderId:long orderId:long price:int quantity:long
+ *              transactTimeMillis:long reasonLength:short reason:byte[reasonLength]
+ * </pre>
+ *
+ * <p>A command's own fills follow its ack or modified report. Fill reports echo the client order id
+ * of the connection's latest command on the order.
+ */
+public final class BinaryProtocol {
+    public static final int LENGTH_PREFIX_BYTES = Integer.BYTES;
+    public static final int MAX_FRAME_BYTES = 1024;
+    public static final int TICKER_BYTES = 8;
+
+    public static final byte MSG_LOGON = 1;
+    public static final byte MSG_NEW_ORDER = 2;
+    public static final byte MSG_CANCEL = 3;
+    public static final byte MSG_MODIFY = 4;
+    public static final byte MSG_LOGON_REPLY = 101;
+    public static final byte MSG_EXEC_REPORT = 102;
+
+    public static final byte LOGON_ACCEPTED = 0;
+    public static final byte LOGON_REJECTED = 1;
+
+    public static final byte EXEC_ACK = 0;
+    public static final byte EXEC_REJECT = 1;
+    public static final byte EXEC_CANCELED = 2;
+    public static final byte EXEC_MODIFIED = 3;
+    public static final byte EXEC_FILL = 4;
+
+    public static final byte FLAG_POST_ONLY = 1;
+
+    public static final int NEW_ORDER_BODY_BYTES = Long.BYTES + 4 + Integer.BYTES * 2 + Long.BYTES * 2 + TICKER_BYTES;
+    public static final int CANCEL_BODY_BYTES = Long.BYTES * 2;
+    public static final int MODIFY_BODY_BYTES = Long.BYTES * 2 + 1 + Integer.BYTES * 2;
+    public static final int EXEC_REPORT_FIXED_BYTES = 1 + Long.BYTES * 2 + Integer.BYTES + Long.BYTES * 2 + Short.BYTES;
+
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final TimeInForce[] TIME_IN_FORCE = TimeInForce.values();
+
+    private BinaryProtocol() {
+    }
+
+    public static void writeLogon(ByteBuffer out, String apiKey) {
+        byte[] key = apiKey.getBytes(StandardCharsets.US_ASCII);
+        out.putInt(1 + Short.BYTES + key.length);
+        out.put(MSG_LOGON);
+        out.putShort((short) key.length);
+        out.put(key);
+    }
+
+    public static void writeNewOrder(
+            ByteBuffer out,
+            long clientOrderId,
+            OrderSide side,
+            OrderType orderType,
+            TimeInForce timeInForce,
+            boolean postOnly,
+            int price,
+            int triggerPrice,
+            long quantity,
+            long displayQuantity,
+            long tickerCode) {
+        out.putInt(1 + NEW_ORDER_BODY_BYTES);
+        out.put(MSG_NEW_ORDER);
+        out.putLong(clientOrderId);
+        out.put((byte) side.ordinal());
+        out.put((byte) orderType.ordinal());
+        out.put((byte) timeInForce.ordinal());
+        out.put(postOnly ? FLAG_POST_ONLY : 0);
+        out.putInt(price);
+        out.putInt(triggerPrice);
+        out.putLong(quantity);
+        out.putLong(displayQuantity);
+        out.putLong(tickerCode);
+    }
+
+    public static void writeCancel(ByteBuffer out, long clientOrderId, long orderId) {
+        out.putInt(1 + CANCEL_BODY_BYTES);
+        out.put(MSG_CANCEL);
+        out.putLong(clientOrderId);
+        out.putLong(orderId);
+    }
+
+    public static void writeModify(ByteBuffer out, long clientOrderId, long orderId, OrderSide side, int price, int quantity) {
+        out.putInt(1 + MODIFY_BODY_BYTES);
+        out.put(MSG_MODIFY);
+        out.putLong(clientOrderId);
+        out.putLong(orderId);
+        out.put((byte) side.ordinal());
+        out.putInt(price);
+        out.putInt(quantity);
+    }
+
+    public static void writeLogonReply(ByteBuffer out, byte status) {
+        out.putInt(2);
+        out.put(MSG_LOGON_REPLY);
+        out.put(status);
+    }
+
+    public static void writeExecReport(
+            ByteBuffer out,
+            byte execType,
+            long clientOrderId,
+            long orderId,
+            int price,
+            long quantity,
+            long transactTimeMillis,
+            String reason) {
+        int reasonLength = reason == null ? 0 : reason.length();
+        out.putInt(1 + EXEC_REPORT_FIXED_BYTES + reasonLength);
+        out.put(MSG_EXEC_REPORT);
+        out.put(execType);
+        out.putLong(clientOrderId);
+        out.putLong(orderId);
+        out.putInt(price);
+        out.putLong(quantity);
+        out.putLong(transactTimeMillis);
+        out.putShort((short) reasonLength);
+        for (int i = 0; i < reasonLength; i++) {
+            out.put((byte) reason.charAt(i));
+        }
+    }
+
+    /**
+     * Packs up to eight ASCII characters of a ticker into a {@code long}, left aligned and zero padded.
+     */
+    public static long encodeTicker(String ticker) {
+        long code = 0L;
+        for (int i = 0; i < TICKER_BYTES; i++) {
+            byte b = i < ticker.length() ? (byte) ticker.charAt(i) : 0;
+            code = (code << 8) | (b & 0xFFL);
+        }
+        return code;
+    }
+
+    public static String decodeTicker(long code) {
+        StringBuilder builder = new StringBuilder(TICKER_BYTES);
+        for (int shift = (TICKER_BYTES - 1) * 8; shift >= 0; shift -= 8) {
+            char c = (char) ((code >>> shift) & 0xFF);
+            if (c == 0) {
+                break;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    public static OrderSide sideOf(byte value) {
+        return value == 0 ? OrderSide.BUY : OrderSide.SELL;
+    }
+
+    public static OrderType orderTypeOf(byte value) {
+        if (value < 0 || value >= ORDER_TYPES.length) {
+            throw new IllegalArgumentException("Unknown order type code " + value);
+        }
+        return ORDER_TYPES[value];
+    }
+
+    public static TimeInForce timeInForceOf(byte value) {
+        if (value < 0 || value >= TIME_IN_FORCE.length) {
+            throw new IllegalArgumentException("Unknown time-in-force code " + value);
+        }
+        return TIME_IN_FORCE[value];
+    }
+}
@@ -0,0 +1,284 @@
+package tradeMatcher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * OHLCV bars per ticker at fixed intervals, folded in as trades execute so charting clients need
+ * neither the raw trade feed nor a recomputation. Each (ticker, interval) series is a preallocated
+ * ring of primitive columns indexed by bar number, holding the last {@link Interval#capacity()}
+ * bars; a trade updates one slot per interval, in constant time and without allocation. Intervals
+ * with no trades have no bar.
+ *
+ * <p>Prices are book ticks and each trade counts once, at the resting order's price, as on the
+ * {@link TradeTape}. Concurrency follows the tape: the engine writes a match cycle under one write
+ * stamp per ticker, and readers copy under an optimistic stamp and retry.
+ */
+public final class CandleAggregator {
+    private static final Interval[] INTERVALS = Interval.values();
+
+    private final Map<String, Ticker> tickers = new ConcurrentHashMap<>();
+
+    /**
+     * Bar intervals and how many bars of each are kept.
+     */
+    public enum Interval {
+        S1("1s", Duration.ofSeconds(1), 3_600),
+        M1("1m", Duration.ofMinutes(1), 1_440),
+        M5("5m", Duration.ofMinutes(5), 2_016),
+        H1("1h", Duration.ofHours(1), 720);
+
+        private final String label;
+        private final long nanos;
+        private final int capacity;
+
+        Interval(String label, Duration length, int capacity) {
+            this.label = label;
+            this.nanos = length.toNanos();
+            this.capacity = capacity;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        public int capacity() {
+            return capacity;
+        }
+
+        /**
+         * @return the interval labelled {@code label} ({@code 1s}, {@code 1m}, {@code 5m},
+         *         {@code 1h}), or {@code null}
+         */
+        public static Interval parse(String label) {
+            if (label == null) {
+                return null;
+            }
+            String normalized = label.trim().toLowerCase(Locale.ROOT);
+            for (Interval interval : INTERVALS) {
+                if (interval.label.equals(normalized)) {
+                    return interval;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One bar; prices are book ticks and {@code notionalTicks} is the sum of price ticks times
+     * quantity.
+     */
+    public record Candle(Interval interval, long startNanos, int open, int high, int low, int close, long volume,
+            long notionalTicks, int trades) {
+        public double vwapTicks() {
+            return volume == 0L ? 0d : (double) notionalTicks / volume;
+        }
+    }
+
+    /**
+     * Folds one match cycle's trades into every interval; see {@link TradeTape#record} for how the
+     * aggressor, and so the resting price, is chosen.
+     */
+    void record(String ticker, long timestampNanos, List<Trade> trades, long aggressorOrderId) {
+        Ticker series = tickers.get(ticker);
+        if (series == null) {
+            series = tickers.computeIfAbsent(ticker, __ -> new Ticker());
+        }
+        long stamp = series.lock.writeLock();
+        try {
+            for (int i = 0; i < trades.size(); i++) {
+                TradeInfo bid = trades.get(i).getBidTrade();
+                TradeInfo ask = trades.get(i).getAskTrade();
+                if (bid == null || ask == null) {
+                    continue;
+                }
+                int price = (TradeTape.buyerAggressed(bid, ask, aggressorOrderId) ? ask : bid).getPriceTicks();
+                for (Bars bars : series.bars) {
+                    bars.add(timestampNanos, price, bid.getQuantity());
+                }
+            }
+        } finally {
+            series.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drops every bar, as after an engine reset.
+     */
+    void clear() {
+        for (Ticker series : tickers.values()) {
+            long stamp = series.lock.writeLock();
+            try {
+                for (Bars bars : series.bars) {
+                    bars.clear();
+                }
+            } finally {
+                series.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * @return up to {@code limit} of the newest bars starting in {@code [fromNanos, toNanos)},
+     *         oldest first
+     */
+    public List<Candle> read(String ticker, Interval interval, long fromNanos, long toNanos, int limit) {
+        Ticker series = tickers.get(ticker);
+        if (series == null || limit <= 0 || fromNanos >= toNanos) {
+            return List.of();
+        }
+        Bars bars = series.bars[interval.ordinal()];
+        int wanted = Math.min(limit, interval.capacity);
+        long[] numbers = new long[wanted];
+        int[] slots = new int[wanted];
+        Candle[] copied = new Candle[wanted];
+        while (true) {
+            long stamp = series.lock.tryOptimisticRead();
+            if (stamp == 0L) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long newest = bars.newest;
+            if (newest == Long.MIN_VALUE && series.lock.validate(stamp)) {
+                return List.of();
+            }
+            long last = Math.min(newest, Math.floorDiv(toNanos - 1L, interval.nanos));
+            long firstStarting = Math.floorDiv(fromNanos, interval.nanos)
+                    + (Math.floorMod(fromNanos, interval.nanos) == 0L ? 0L : 1L);
+            long first = Math.max(newest - interval.capacity + 1L, firstStarting);
+            int count = 0;
+            for (long number = last; number >= first && count < wanted; number--) {
+                int slot = (int) Math.floorMod(number, (long) interval.capacity);
+                if (bars.numbers[slot] == number) {
+                    numbers[count] = number;
+                    slots[count++] = slot;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                copied[i] = bars.copy(slots[i], numbers[i]);
+            }
+            if (!series.lock.validate(stamp)) {
+                continue;
+            }
+            List<Candle> candles = new ArrayList<>(count);
+            for (int i = count - 1; i >= 0; i--) {
+                candles.add(copied[i]);
+            }
+            return candles;
+        }
+    }
+
+    /**
+     * @return the newest bar of each interval for {@code ticker}, in {@link Interval} order; empty
+     *         before its first trade
+     */
+    public List<Candle> latest(String ticker) {
+        Ticker series = tickers.get(ticker);
+        if (series == null) {
+            return List.of();
+        }
+        Candle[] copied = new Candle[INTERVALS.length];
+        while (true) {
+            long stamp = series.lock.tryOptimisticRead();
+            if (stamp == 0L) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int count = 0;
+            for (Bars bars : series.bars) {
+                if (bars.newest != Long.MIN_VALUE) {
+                    copied[count++] = bars.copy((int) Math.floorMod(bars.newest, (long) bars.interval.capacity),
+                            bars.newest);
+                }
+            }
+            if (series.lock.validate(stamp)) {
+                return List.of(Arrays.copyOf(copied, count));
+            }
+        }
+    }
+
+    private static final class Ticker {
+        final StampedLock lock = new StampedLock();
+        final Bars[] bars = new Bars[INTERVALS.length];
+
+        Ticker() {
+            for (Interval interval : INTERVALS) {
+                bars[interval.ordinal()] = new Bars(interval);
+            }
+        }
+    }
+
+    private static final class Bars {
+        final Interval interval;
+        // Bar number (start time / interval) held in each slot; Long.MIN_VALUE when empty.
+        final long[] numbers;
+        final int[] open;
+        final int[] high;
+        final int[] low;
+        final int[] close;
+        final long[] volume;
+        final long[] notional;
+        final int[] trades;
+        long newest = Long.MIN_VALUE;
+
+        Bars(Interval interval) {
+            this.interval = interval;
+            int capacity = interval.capacity;
+            numbers = new long[capacity];
+            open = new int[capacity];
+            high = new int[capacity];
+            low = new int[capacity];
+            close = new int[capacity];
+            volume = new long[capacity];
+            notional = new long[capacity];
+            trades = new int[capacity];
+            clear();
+        }
+
+        void add(long timestampNanos, int price, int quantity) {
+            long number = Math.floorDiv(timestampNanos, interval.nanos);
+            if (newest != Long.MIN_VALUE && number <= newest - interval.capacity) {
+                return; // older than the ring (a clock step back)
+            }
+            int slot = (int) Math.floorMod(number, (long) interval.capacity);
+            if (numbers[slot] != number) {
+                numbers[slot] = number;
+                open[slot] = price;
+                high[slot] = price;
+                low[slot] = price;
+                close[slot] = price;
+                volume[slot] = quantity;
+                notional[slot] = (long) price * quantity;
+                trades[slot] = 1;
+            } else {
+                high[slot] = Math.max(high[slot], price);
+                low[slot] = Math.min(low[slot], price);
+                close[slot] = price;
+                volume[slot] += quantity;
+                notional[slot] += (long) price * quantity;
+                trades[slot]++;
+            }
+            newest = Math.max(newest, number);
+        }
+
+        Candle copy(int slot, long number) {
+            return new Candle(interval, number * interval.nanos, open[slot], high[slot], low[slot], close[slot],
+                    volume[slot], notional[slot], trades[slot]);
+        }
+
+        void clear() {
+            Arrays.fill(numbers, Long.MIN_VALUE);
+            newest = Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only write-ahead journal of sequenced inbound engine commands. Records are encoded into a
+ * reusable scratch buffer, checksummed with CRC32C and copied into a pre-allocated, memory-mapped
+ * segment file, so the cost on the matching thread is a memory copy rather than a system call.
+ *
+ * <pre>
+ * record  length:int crc:int sequence:long timestampMillis:long type:byte payload...
+ * </pre>
+ *
+ * The CRC covers everything after the {@code crc} field. A zero {@code length} marks the end of the
+ * written data in a segment; replay also stops at the first record whose CRC does not match, which
+ * is how a torn write at crash time is detected. Segments are named after the first sequence they
+ * hold and rolled when the next record does not fit.
+ */
+public final class CommandJournal implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(CommandJournal.class);
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES * 2 + 1;
+    private static final int CRC_OFFSET = Integer.BYTES;
+    private static final int CHECKED_OFFSET = Integer.BYTES * 2;
+    private static final int MAX_RECORD_BYTES = 4 * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    static final byte TYPE_ADD = 1;
+    static final byte TYPE_CANCEL = 2;
+    static final byte TYPE_MODIFY = 3;
+    static final byte TYPE_RESET = 4;
+    static final byte TYPE_ACCOUNT = 5;
+    static final byte TYPE_MASS_CANCEL = 6;
+    static final byte TYPE_BATCH = 7;
+
+    private static final OrderSide[] SIDES = OrderSide.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final TimeInForce[] TIME_IN_FORCE = TimeInForce.values();
+
+    /**
+     * When appended records are forced to stable storage.
+     */
+    public enum SyncMode {
+        /** {@code msync} after every command; slowest, nothing acknowledged is ever lost. */
+        PER_COMMAND,
+        /** A background thread forces dirty segments every configured interval (group commit). */
+        INTERVAL,
+        /** Never forced explicitly; durability is left to the OS page cache until roll or close. */
+        ASYNC
+    }
+
+    /**
+     * Receives decoded records during {@link #replay(Path, long, Visitor)}.
+     */
+    public interface Visitor {
+        default void onAdd(long sequence, Order order) {
+        }
+
+        default void onBatch(long sequence, List<Order> orders) {
+        }
+
+        default void onCancel(long sequence, String userId, long orderId) {
+        }
+
+        default void onModify(long sequence, String userId, long orderId, OrderSide side, int price, int quantity) {
+        }
+
+        default void onMassCancel(long sequence, String userId) {
+        }
+
+        default void onReset(long sequence) {
+        }
+
+        default void onAccount(long sequence, String userId, String apiKey, double cash, Map<String, Long> positions, boolean admin) {
+        }
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final SyncMode syncMode;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledExecutorService syncScheduler;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence;
+    private volatile boolean dirty;
+
+    public CommandJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, SyncMode.INTERVAL, 1_000L);
+    }
+
+    /**
+     * Opens the journal in {@code directory}, continuing after the last valid record if segments
+     * already exist.
+     *
+     * @param syncIntervalMicros group-commit interval for {@link SyncMode#INTERVAL}; ignored otherwise
+     */
+    public CommandJournal(Path directory, long segmentBytes, SyncMode syncMode, long syncIntervalMicros) throws IOException {
+        if (segmentBytes < HEADER_BYTES * 2L || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentBytes must fit a record and a mapped buffer");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncMode = syncMode;
+        Files.createDirectories(directory);
+        openForAppend();
+        if (syncMode == SyncMode.INTERVAL) {
+            syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1L, syncIntervalMicros);
+            syncScheduler.scheduleAtFixedRate(this::syncIfDirty, interval, interval, TimeUnit.MICROSECONDS);
+        } else {
+            syncScheduler = null;
+        }
+    }
+
+    /**
+     * @return the sequence the next appended record will receive
+     */
+    public long nextSequence() {
+        appendLock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendAdd(Order order) {
+        appendLock.lock();
+        try {
+            begin(TYPE_ADD);
+            putOrder(order);
+            return commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendBatch(List<Order> orders) {
+        appendLock.lock();
+        try {
+            begin(TYPE_BATCH);
+            scratch.putInt(orders.size());
+            for (Order order : orders) {
+                putOrder(order);
+            }
+            return commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendCancel(String userId, long orderId) {
+        appendLock.lock();
+        try {
+            begin(TYPE_CANCEL);
+            putString(userId);
+            scratch.putLong(orderId);
+            return commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendModify(String userId, long orderId, OrderSide side, int price, int quantity) {
+        appendLock.lock();
+        try {
+            begin(TYPE_MODIFY);
+            putString(userId);
+            scratch.putLong(orderId);
+            scratch.put((byte) side.ordinal());
+            scratch.putInt(price);
+            scratch.putInt(quantity);
+            return commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendMassCancel(String userId) {
+        appendLock.lock();
+        try {
+            begin(TYPE_MASS_CANCEL);
+            putString(userId);
+            return commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendReset() {
+        appendLock.lock();
+        try {
+            begin(TYPE_RESET);
+            return commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendAccount(UserAccount account) {
+        appendLock.lock();
+        try {
+            begin(TYPE_ACCOUNT);
+            putString(account.getUserId());
+            putString(account.getApiKey());
+            scratch.putDouble(account.getCashBalance());
+            scratch.put(account.isAdmin() ? (byte) 1 : 0);
+            Map<String, Long> positions = account.snapshotPositions();
+            scratch.putInt(positions.size());
+            for (Map.Entry<String, Long> entry : positions.entrySet()) {
+                putString(entry.getKey());
+                scratch.putLong(entry.getValue());
+            }
+            return commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces all appended records to stable storage. Only the segment lookup holds the append lock;
+     * the msync runs after it is released, so appends never wait for it. Earlier segments were
+     * already forced when they rolled.
+     */
+    public void sync() {
+        MappedByteBuffer current;
+        appendLock.lock();
+        try {
+            current = segment;
+            dirty = false;
+        } finally {
+            appendLock.unlock();
+        }
+        current.force();
+    }
+
+    private void syncIfDirty() {
+        if (dirty) {
+            try {
+                sync();
+            } catch (RuntimeException ex) {
+                LOG.warn("Journal group commit failed", ex);
+            }
+        }
+    }
+
+    private void begin(byte type) {
+        scratch.clear();
+        scratch.position(CHECKED_OFFSET);
+        scratch.putLong(nextSequence);
+        scratch.putLong(System.currentTimeMillis());
+        scratch.put(type);
+    }
+
+    private long commit() {
+        int length = scratch.position();
+        scratch.putInt(0, length);
+        crc.reset();
+        crc.update(scratch.array(), CHECKED_OFFSET, length - CHECKED_OFFSET);
+        scratch.putInt(CRC_OFFSET, (int) crc.getValue());
+
+        // Keep room for the zero length that terminates the segment.
+        if (segment.remaining() < length + Integer.BYTES) {
+            roll();
+            if (segment.remaining() < length + Integer.BYTES) {
+                throw new IllegalStateException("Journal record of " + length + " bytes exceeds segment size");
+            }
+        }
+        segment.put(scratch.array(), 0, length);
+        long sequence = nextSequence++;
+        if (syncMode == SyncMode.PER_COMMAND) {
+            segment.force();
+        } else {
+            dirty = true;
+        }
+        return sequence;
+    }
+
+    private void putOrder(Order order) {
+        scratch.putLong(order.GetOrderId());
+        putString(order.getUserId());
+        putString(order.getTicker());
+        scratch.put((byte) order.GetSide().ordinal());
+        scratch.put((byte) order.GetOrderType().ordinal());
+        scratch.put((byte) order.GetTimeInForce().ordinal());
+        scratch.put(order.isPostOnly() ? (byte) 1 : 0);
+        scratch.putInt((int) Math.round(order.GetPrice()));
+        scratch.putInt((int) Math.round(order.getTriggerPrice()));
+        scratch.putLong(order.GetInitialQuantity());
+        scratch.putLong(order.getDisplayQuantity());
+    }
+
+    private void putString(String value) {
+        int length = value.length();
+        scratch.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            scratch.putChar(value.charAt(i));
+        }
+    }
+
+    private void roll() {
+        segment.force();
+        try {
+            channel.close();
+            mapSegment(segmentPath(directory, nextSequence), 0);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to roll journal segment", ex);
+        }
+    }
+
+    private void openForAppend() throws IOException {
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            nextSequence = 1L;
+            mapSegment(segmentPath(directory, nextSequence), 0);
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        ScanResult scan = scanSegment(last, null, Long.MAX_VALUE);
+        nextSequence = scan.lastSequence() > 0 ? scan.lastSequence() + 1 : firstSequenceOf(last);
+        mapSegment(last, scan.endOffset());
+    }
+
+    private void mapSegment(Path path, int position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < segmentBytes) {
+                file.setLength(segmentBytes);
+            }
+        }
+        channel = FileChannel.open(path, java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        segment.position(position);
+        // Clear any torn tail left behind by a crash so the next reader stops at our data.
+        if (segment.remaining() >= Integer.BYTES) {
+            segment.putInt(position, 0);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (syncScheduler != null) {
+            syncScheduler.shutdownNow();
+        }
+        appendLock.lock();
+        try {
+            segment.force();
+            channel.close();
+        } catch (IOException ex) {
+            LOG.warn("Failed to close journal", ex);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Replays every valid record with a sequence greater than {@code afterSequence}.
+     *
+     * @return the last sequence seen, or {@code afterSequence} when nothing newer exists
+     */
+    public static long replay(Path directory, long afterSequence, Visitor visitor) throws IOException {
+        long last = afterSequence;
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            // Skip whole segments that end before the requested sequence.
+            if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            ScanResult scan = scanSegment(segments.get(i), visitor, afterSequence);
+            last = Math.max(last, scan.lastSequence());
+            if (scan.torn()) {
+                break;
+            }
+        }
+        return last;
+    }
+
+    private record ScanResult(long lastSequence, int endOffset, boolean torn) {
+    }
+
+    private static ScanResult scanSegment(Path path, Visitor visitor, long afterSequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, java.nio.file.StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32C checksum = new CRC32C();
+            long lastSequence = 0L;
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt(start);
+                if (length == 0) {
+                    return new ScanResult(lastSequence, start, false);
+                }
+                if (length < HEADER_BYTES || length > buffer.remaining()) {
+                    return new ScanResult(lastSequence, start, true);
+                }
+                int expectedCrc = buffer.getInt(start + CRC_OFFSET);
+                checksum.reset();
+                checksum.update(buffer.slice(start + CHECKED_OFFSET, length - CHECKED_OFFSET));
+                if ((int) checksum.getValue() != expectedCrc) {
+                    LOG.warn("Journal CRC mismatch in {} at offset {}; treating as end of journal", path.getFileName(), start);
+                    return new ScanResult(lastSequence, start, true);
+                }
+                buffer.position(start + CHECKED_OFFSET);
+                long sequence = buffer.getLong();
+                buffer.getLong();
+                byte type = buffer.get();
+                if (visitor != null && sequence > afterSequence) {
+                    dispatch(buffer, sequence, type, visitor);
+                }
+                lastSequence = sequence;
+                buffer.position(start + length);
+            }
+            return new ScanResult(lastSequence, buffer.position(), false);
+        }
+    }
+
+    private static void dispatch(ByteBuffer buffer, long sequence, byte type, Visitor visitor) {
+        switch (type) {
+            case TYPE_ADD -> visitor.onAdd(sequence, readOrder(buffer));
+            case TYPE_BATCH -> {
+                int count = buffer.getInt();
+                List<Order> orders = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    orders.add(readOrder(buffer));
+                }
+                visitor.onBatch(sequence, orders);
+            }
+            case TYPE_CANCEL -> visitor.onCancel(sequence, readString(buffer), buffer.getLong());
+            case TYPE_MODIFY -> visitor.onModify(sequence, readString(buffer), buffer.getLong(),
+                    SIDES[buffer.get()], buffer.getInt(), buffer.getInt());
+            case TYPE_MASS_CANCEL -> visitor.onMassCancel(sequence, readString(buffer));
+            case TYPE_RESET -> visitor.onReset(sequence);
+            case TYPE_ACCOUNT -> {
+                String userId = readString(buffer);
+                String apiKey = readString(buffer);
+                double cash = buffer.getDouble();
+                boolean admin = buffer.get() != 0;
+                int count = buffer.getInt();
+                Map<String, Long> positions = new HashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    positions.put(readString(buffer), buffer.getLong());
+                }
+                visitor.onAccount(sequence, userId, apiKey, cash, positions, admin);
+            }
+            default -> throw new IllegalStateException("Unknown journal record type " + type + " at sequence " + sequence);
+        }
+    }
+
+    private static Order readOrder(ByteBuffer buffer) {
+        long orderId = buffer.getLong();
+        String userId = readString(buffer);
+        String ticker = readString(buffer);
+        OrderSide side = SIDES[buffer.get()];
+        OrderType orderType = ORDER_TYPES[buffer.get()];
+        TimeInForce timeInForce = TIME_IN_FORCE[buffer.get()];
+        boolean postOnly = buffer.get() != 0;
+        int price = buffer.getInt();
+        int triggerPrice = buffer.getInt();
+        long quantity = buffer.getLong();
+        long displayQuantity = buffer.getLong();
+        return new Order(Long.toString(orderId), userId, ticker, side, orderType, timeInForce,
+                quantity, price, triggerPrice, postOnly, displayQuantity);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format(Locale.ROOT, "%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+}
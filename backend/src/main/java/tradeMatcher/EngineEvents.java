@@ -0,0 +1,143 @@
+package tradeMatcher;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for the matching path. Each call site creates the event, calls
+ * {@code begin()}, and fills fields only inside {@code shouldCommit()}, so with the event disabled or
+ * under its threshold the JIT reduces it to a flag check and no allocation escapes. Defaults keep
+ * per-command events to the slow tail ({@value #SLOW} and above) and per-match events off; the
+ * bundled {@code jfr/trade-matcher.jfc} profile tightens both for investigations.
+ */
+final class EngineEvents {
+    static final String SLOW = "1 ms";
+    private static final String CATEGORY = "Trade Matcher";
+
+    private EngineEvents() {
+    }
+
+    @Name("tradeMatcher.AddOrder")
+    @Label("Add Order")
+    @Description("Orderbook.AddOrder including lock wait and matching, with the book state it left behind")
+    @Category({CATEGORY, "Order Book"})
+    @Threshold(SLOW)
+    @StackTrace(false)
+    static final class AddOrder extends Event {
+        @Label("Order Id")
+        long orderId;
+        @Label("User")
+        String userId;
+        @Label("Ticker")
+        String ticker;
+        @Label("Side")
+        String side;
+        @Label("Type")
+        String orderType;
+        @Label("Time In Force")
+        String timeInForce;
+        @Label("Price (ticks)")
+        int price;
+        @Label("Quantity")
+        long quantity;
+        @Label("Trades")
+        int trades;
+        @Label("Levels Walked")
+        @Description("Opposite price levels emptied or touched while matching")
+        int levelsWalked;
+        @Label("Resting Orders")
+        int restingOrders;
+        @Label("Bid Levels")
+        int bidLevels;
+        @Label("Ask Levels")
+        int askLevels;
+    }
+
+    @Name("tradeMatcher.CancelOrder")
+    @Label("Cancel Order")
+    @Description("Removal of a resting order; queue length is the level's size before removal")
+    @Category({CATEGORY, "Order Book"})
+    @Threshold(SLOW)
+    @StackTrace(false)
+    static final class CancelOrder extends Event {
+        @Label("Order Id")
+        long orderId;
+        @Label("Side")
+        String side;
+        @Label("Price (ticks)")
+        int price;
+        @Label("Remaining Quantity")
+        long remainingQuantity;
+        @Label("Queue Length")
+        int queueLength;
+        @Label("Resting Orders")
+        int restingOrders;
+    }
+
+    @Name("tradeMatcher.Match")
+    @Label("Match")
+    @Description("One bid/ask pairing inside Orderbook.MatchOrders")
+    @Category({CATEGORY, "Order Book"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Match extends Event {
+        @Label("Bid Order Id")
+        long bidOrderId;
+        @Label("Ask Order Id")
+        long askOrderId;
+        @Label("Bid Price (ticks)")
+        int bidPrice;
+        @Label("Ask Price (ticks)")
+        int askPrice;
+        @Label("Quantity")
+        int quantity;
+        @Label("Level Depth")
+        @Description("Price levels already walked in this matching pass, counting the current one")
+        int levelDepth;
+        @Label("Bid Queue Length")
+        int bidQueueLength;
+        @Label("Ask Queue Length")
+        int askQueueLength;
+    }
+
+    @Name("tradeMatcher.Settle")
+    @Label("Settle Fills")
+    @Description("MatchingEngine.handleTrades: netted account updates, fill history and fill listeners for one match cycle")
+    @Category({CATEGORY, "Engine"})
+    @Threshold(SLOW)
+    @StackTrace(false)
+    static final class Settle extends Event {
+        @Label("Ticker")
+        String ticker;
+        @Label("Fills")
+        int fills;
+        @Label("Accounts")
+        @Description("Distinct accounts whose ledger was updated")
+        int accounts;
+        @Label("Listeners")
+        int listeners;
+    }
+
+    @Name("tradeMatcher.FeedPublish")
+    @Label("Feed Publish")
+    @Description("PublicFeedService.sendToAll: JSON encoding and hand-off to every session")
+    @Category({CATEGORY, "Market Data"})
+    @Threshold(SLOW)
+    @StackTrace(false)
+    static final class FeedPublish extends Event {
+        @Label("Message Type")
+        String messageType;
+        @Label("Sessions")
+        int sessions;
+        @Label("Payload Size")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,206 @@
+package tradeMatcher;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and distributions for the metrics endpoint. Counters are striped
+ * {@link LongAdder}s and distributions are {@link LatencyHistogram}s, so recording from the matching
+ * path adds no lock and no shared hot counter. Per-second rates are derived by a daemon sampler from
+ * the cumulative totals, which keeps arithmetic and clocks off the recording side entirely.
+ */
+public final class EngineMetrics {
+    /** Time from asking for {@code Orderbook.ordersLock} to holding it. */
+    public static final LatencyHistogram LOCK_WAIT = new LatencyHistogram();
+    /** Time {@code Orderbook.ordersLock} is held per outermost acquisition. */
+    public static final LatencyHistogram LOCK_HOLD = new LatencyHistogram();
+    /** Time spent in {@code Gson.toJson} for outbound WebSocket frames. */
+    public static final LatencyHistogram GSON_ENCODE = new LatencyHistogram();
+
+    private static final Map<String, TickerCounters> TICKERS = new ConcurrentHashMap<>();
+    private static volatile double allocationBytesPerSecond;
+    private static ScheduledExecutorService sampler;
+
+    private EngineMetrics() {
+    }
+
+    private static final class TickerCounters {
+        final LongAdder orders = new LongAdder();
+        final LongAdder trades = new LongAdder();
+        final LongAdder cancels = new LongAdder();
+        long lastOrders;
+        long lastTrades;
+        long lastCancels;
+        volatile double ordersPerSecond;
+        volatile double tradesPerSecond;
+        volatile double cancelsPerSecond;
+    }
+
+    public static void recordOrders(String ticker, int count) {
+        counters(ticker).orders.add(count);
+    }
+
+    public static void recordTrades(String ticker, int count) {
+        counters(ticker).trades.add(count);
+    }
+
+    public static void recordCancels(String ticker, int count) {
+        counters(ticker).cancels.add(count);
+    }
+
+    private static TickerCounters counters(String ticker) {
+        TickerCounters counters = TICKERS.get(ticker);
+        return counters != null ? counters : TICKERS.computeIfAbsent(ticker, __ -> new TickerCounters());
+    }
+
+    /**
+     * Starts the once-a-second sampler that turns cumulative counters and thread allocation totals
+     * into rates. Idempotent.
+     */
+    public static synchronized void startSampler() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] lastSample = {System.nanoTime(), totalAllocatedBytes()};
+        sampler.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            double seconds = (now - lastSample[0]) / 1e9d;
+            for (TickerCounters counters : TICKERS.values()) {
+                long orders = counters.orders.sum();
+                long trades = counters.trades.sum();
+                long cancels = counters.cancels.sum();
+                counters.ordersPerSecond = (orders - counters.lastOrders) / seconds;
+                counters.tradesPerSecond = (trades - counters.lastTrades) / seconds;
+                counters.cancelsPerSecond = (cancels - counters.lastCancels) / seconds;
+                counters.lastOrders = orders;
+                counters.lastTrades = trades;
+                counters.lastCancels = cancels;
+            }
+            long allocated = totalAllocatedBytes();
+            // Threads that exited take their totals with them; never report a negative rate.
+            allocationBytesPerSecond = Math.max(0L, allocated - lastSample[1]) / seconds;
+            lastSample[0] = now;
+            lastSample[1] = allocated;
+        }, 1L, 1L, TimeUnit.SECONDS);
+    }
+
+    private static long totalAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            long total = 0L;
+            for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                total += Math.max(0L, allocated);
+            }
+            return total;
+        }
+        return 0L;
+    }
+
+    /**
+     * @return per-ticker totals and rates, lock and encode distributions, and JVM figures
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> tickers = new TreeMap<>();
+        TICKERS.forEach((ticker, counters) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("ordersTotal", counters.orders.sum());
+            entry.put("tradesTotal", counters.trades.sum());
+            entry.put("cancelsTotal", counters.cancels.sum());
+            entry.put("ordersPerSecond", counters.ordersPerSecond);
+            entry.put("tradesPerSecond", counters.tradesPerSecond);
+            entry.put("cancelsPerSecond", counters.cancelsPerSecond);
+            tickers.put(ticker, entry);
+        });
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        jvm.put("allocationBytesPerSecond", allocationBytesPerSecond);
+        jvm.put("heapUsedBytes", heap.getUsed());
+        jvm.put("heapCommittedBytes", heap.getCommitted());
+        jvm.put("heapMaxBytes", heap.getMax());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("tickers", tickers);
+        snapshot.put("ordersLockWaitMicros", distribution(LOCK_WAIT));
+        snapshot.put("ordersLockHoldMicros", distribution(LOCK_HOLD));
+        snapshot.put("gsonEncodeMicros", distribution(GSON_ENCODE));
+        snapshot.put("jvm", jvm);
+        return snapshot;
+    }
+
+    static Map<String, Object> distribution(LatencyHistogram histogram) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("count", histogram.count());
+        entry.put("mean", histogram.mean() / 1e3d);
+        entry.put("p50", histogram.valueAtPercentile(50.0d) / 1e3d);
+        entry.put("p99", histogram.valueAtPercentile(99.0d) / 1e3d);
+        entry.put("p999", histogram.valueAtPercentile(99.9d) / 1e3d);
+        entry.put("max", histogram.max() / 1e3d);
+        return entry;
+    }
+
+    /**
+     * Renders a metrics map in the Prometheus text exposition format: nested maps become
+     * underscore-joined names, and maps keyed by ticker or feed become labels. Lists (per-session
+     * detail) are JSON-only.
+     */
+    public static String toText(Map<String, Object> metrics) {
+        StringBuilder out = new StringBuilder();
+        appendText(out, "trade_matcher", "", false, metrics);
+        return out.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendText(StringBuilder out, String name, String labels, boolean labelled, Object value) {
+        if (value instanceof Map<?, ?> map) {
+            String labelName = labelled ? null : switch (name) {
+                case "trade_matcher_tickers" -> "ticker";
+                case "trade_matcher_sessions" -> "feed";
+                default -> null;
+            };
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) map).entrySet()) {
+                if (labelName != null) {
+                    String label = labelName + "=\"" + entry.getKey() + "\"";
+                    appendText(out, name, labels.isEmpty() ? label : labels + "," + label, true, entry.getValue());
+                } else {
+                    appendText(out, name + "_" + snakeCase(entry.getKey()), labels, false, entry.getValue());
+                }
+            }
+        } else if (value instanceof Number number) {
+            out.append(name);
+            if (!labels.isEmpty()) {
+                out.append('{').append(labels).append('}');
+            }
+            out.append(' ').append(number instanceof Double || number instanceof Float
+                    ? String.format(Locale.ROOT, "%.3f", number.doubleValue())
+                    : number.toString()).append('\n');
+        }
+    }
+
+    private static String snakeCase(String key) {
+        StringBuilder out = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                out.append('_').append(Character.toLowerCase(c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
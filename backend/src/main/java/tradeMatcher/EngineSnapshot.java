@@ -0,0 +1,423 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact binary image of the engine: resting orders in priority order, account balances and
+ * positions, fills, and the order/fill counters, tagged with the last journal sequence it covers.
+ * Recovery loads the newest valid snapshot and replays only the journal records after it.
+ *
+ * <pre>
+ * file     length:int crc32c:int payload
+ * payload  magic:int version:int journalSequence:long nextOrderId:long nextFillId:long
+ *          accounts:int (userId apiKey admin:byte cashUnits:long positions:int (ticker qty:long)*)*
+ *          (1:byte order)* 0:byte
+ *          fillUsers:int (userId fills:int fill*)*
+ * fill     fillId:long orderId:long ticker side:byte priceTicks:int quantity:int epochNanos:long
+ * </pre>
+ *
+ * User and ticker strings inside orders and fills are interned in a per-snapshot table and
+ * written as an index after their first occurrence.
+ */
+public final class EngineSnapshot {
+    private static final Logger LOG = LoggerFactory.getLogger(EngineSnapshot.class);
+
+    private static final int MAGIC = 0x544D5331;
+    private static final int VERSION = 3;
+    private static final int FILE_HEADER_BYTES = Integer.BYTES * 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int RETAINED_SNAPSHOTS = 2;
+
+    private static final OrderSide[] SIDES = OrderSide.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final TimeInForce[] TIME_IN_FORCE = TimeInForce.values();
+
+    /**
+     * Counters restored from a snapshot.
+     *
+     * @param journalSequence last journal sequence reflected in the snapshot
+     * @param nextOrderId     next identifier the order id generator would have handed out
+     * @param nextFillId      next fill identifier
+     * @param orders          resting orders restored
+     */
+    public record Header(long journalSequence, long nextOrderId, long nextFillId, long orders) {
+    }
+
+    private record AccountImage(String userId, String apiKey, boolean admin, long cashUnits, Map<String, Long> positions) {
+    }
+
+    /**
+     * Point-in-time copy of the engine taken between two commands. Only references and the mutable
+     * remaining quantities are copied while matching is paused; {@link #encode()} then runs
+     * concurrently with matching. Resting orders never change price, type or time in force, so the
+     * referenced orders need no further copying.
+     */
+    public static final class Capture {
+        private final long journalSequence;
+        private final long nextOrderId;
+        private final long nextFillId;
+        private final List<AccountImage> accounts;
+        private final Order[] orders;
+        private final long[] remaining;
+        private final FillStore fills;
+        private final Map<String, FillStore.Pin> fillMarks;
+
+        private Capture(long journalSequence, long nextOrderId, long nextFillId, List<AccountImage> accounts,
+                Order[] orders, long[] remaining, FillStore fills, Map<String, FillStore.Pin> fillMarks) {
+            this.journalSequence = journalSequence;
+            this.nextOrderId = nextOrderId;
+            this.nextFillId = nextFillId;
+            this.accounts = accounts;
+            this.orders = orders;
+            this.remaining = remaining;
+            this.fills = fills;
+            this.fillMarks = fillMarks;
+        }
+
+        public long journalSequence() {
+            return journalSequence;
+        }
+
+        /**
+         * @return the file image: length, CRC32C and payload
+         */
+        public ByteBuffer encode() {
+            EngineSnapshot snapshot = new EngineSnapshot(FILE_HEADER_BYTES + 1024 + orders.length * 64);
+            snapshot.buffer.position(FILE_HEADER_BYTES);
+            snapshot.putInt(MAGIC);
+            snapshot.putInt(VERSION);
+            snapshot.putLong(journalSequence);
+            snapshot.putLong(nextOrderId);
+            snapshot.putLong(nextFillId);
+
+            snapshot.putInt(accounts.size());
+            for (AccountImage account : accounts) {
+                snapshot.putString(account.userId());
+                snapshot.putString(account.apiKey());
+                snapshot.putByte(account.admin() ? (byte) 1 : 0);
+                snapshot.putLong(account.cashUnits());
+                snapshot.putInt(account.positions().size());
+                for (Map.Entry<String, Long> position : account.positions().entrySet()) {
+                    snapshot.putString(position.getKey());
+                    snapshot.putLong(position.getValue());
+                }
+            }
+
+            for (int i = 0; i < orders.length; i++) {
+                snapshot.putOrder(orders[i], remaining[i]);
+            }
+            snapshot.putByte((byte) 0);
+
+            // The marks taken during the pause pin each user's chunks, so their rows can be read now,
+            // while matching continues and retention drops or spills chunks.
+            PriceScaleRegistry registry = PriceScaleProvider.getRegistry();
+            FillStore.RowVisitor putFill = (fillId, orderId, instrumentId, side, priceTicks, quantity, timestampNanos) -> {
+                snapshot.putLong(fillId);
+                snapshot.putLong(orderId);
+                snapshot.putRef(registry.tickerOf(instrumentId));
+                snapshot.putByte((byte) side.ordinal());
+                snapshot.putInt(priceTicks);
+                snapshot.putInt(quantity);
+                snapshot.putLong(timestampNanos);
+            };
+            snapshot.putInt(fillMarks.size());
+            for (Map.Entry<String, FillStore.Pin> mark : fillMarks.entrySet()) {
+                snapshot.putRef(mark.getKey());
+                int countAt = snapshot.buffer.position();
+                snapshot.putInt(0);
+                snapshot.buffer.putInt(countAt, fills.forEachRow(mark.getValue(), putFill));
+            }
+
+            ByteBuffer out = snapshot.buffer;
+            int length = out.position();
+            CRC32C crc = new CRC32C();
+            crc.update(out.array(), FILE_HEADER_BYTES, length - FILE_HEADER_BYTES);
+            out.putInt(0, length - FILE_HEADER_BYTES);
+            out.putInt(Integer.BYTES, (int) crc.getValue());
+            out.flip();
+            return out;
+        }
+    }
+
+    private ByteBuffer buffer;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    private EngineSnapshot(int initialCapacity) {
+        buffer = ByteBuffer.allocate(Math.max(1024, initialCapacity));
+    }
+
+    /**
+     * Copies the engine state. The caller must keep commands from running while this executes.
+     */
+    static Capture capture(long journalSequence, long nextOrderId, long nextFillId, Orderbook orderbook,
+            AccountManager accountManager, FillStore fills) {
+        List<AccountImage> accounts = new ArrayList<>();
+        for (UserAccount account : accountManager.getAllAccounts()) {
+            UserAccount.Snapshot ledger = account.snapshot();
+            accounts.add(new AccountImage(account.getUserId(), account.getApiKey(), account.isAdmin(),
+                    ledger.cashUnits(), ledger.positions()));
+        }
+
+        int size = orderbook.Size();
+        Order[] walked = new Order[size];
+        long[] walkedRemaining = new long[size];
+        int[] count = new int[1];
+        orderbook.forEachRestingOrder(order -> {
+            walked[count[0]] = order;
+            walkedRemaining[count[0]] = order.GetRemainingQuantity();
+            count[0]++;
+        });
+        // The prune thread may have expired DAY orders between Size() and the walk.
+        Order[] orders = count[0] < size ? Arrays.copyOf(walked, count[0]) : walked;
+        long[] remaining = count[0] < size ? Arrays.copyOf(walkedRemaining, count[0]) : walkedRemaining;
+
+        return new Capture(journalSequence, nextOrderId, nextFillId, accounts, orders, remaining, fills, fills.mark());
+    }
+
+    /**
+     * Durably writes an encoded snapshot next to the journal and deletes all but the newest few.
+     */
+    public static Path write(Path directory, long journalSequence, ByteBuffer image) throws IOException {
+        Path target = directory.resolve(String.format(Locale.ROOT, "%s%020d%s", PREFIX, journalSequence, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (image.hasRemaining()) {
+                channel.write(image);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<Path> snapshots = list(directory);
+        for (int i = 0; i < snapshots.size() - RETAINED_SNAPSHOTS; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        return target;
+    }
+
+    /**
+     * Restores the newest snapshot that passes its checksum into empty engine structures.
+     *
+     * @return the restored counters, or {@code null} when no usable snapshot exists
+     */
+    static Header restoreLatest(Path directory, Orderbook orderbook, AccountManager accountManager,
+            FillStore fills) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.remaining() < FILE_HEADER_BYTES) {
+                    continue;
+                }
+                int length = mapped.getInt(0);
+                int expectedCrc = mapped.getInt(Integer.BYTES);
+                if (length < 0 || length > mapped.remaining() - FILE_HEADER_BYTES) {
+                    LOG.warn("Ignoring truncated snapshot {}", path.getFileName());
+                    continue;
+                }
+                ByteBuffer payload = mapped.slice(FILE_HEADER_BYTES, length);
+                CRC32C crc = new CRC32C();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != expectedCrc || payload.getInt() != MAGIC || payload.getInt() != VERSION) {
+                    LOG.warn("Ignoring corrupt snapshot {}", path.getFileName());
+                    continue;
+                }
+                Header header = decode(payload, orderbook, accountManager, fills);
+                LOG.info("Restored snapshot {}: {} orders", path.getFileName(), header.orders());
+                return header;
+            }
+        }
+        return null;
+    }
+
+    private static Header decode(ByteBuffer in, Orderbook orderbook, AccountManager accountManager,
+            FillStore fills) {
+        long journalSequence = in.getLong();
+        long nextOrderId = in.getLong();
+        long nextFillId = in.getLong();
+        List<String> table = new ArrayList<>();
+
+        int accounts = in.getInt();
+        for (int i = 0; i < accounts; i++) {
+            String userId = getString(in);
+            String apiKey = getString(in);
+            boolean admin = in.get() != 0;
+            long cashUnits = in.getLong();
+            int positionCount = in.getInt();
+            Map<String, Long> positions = new HashMap<>(positionCount * 2);
+            for (int p = 0; p < positionCount; p++) {
+                positions.put(getString(in), in.getLong());
+            }
+            accountManager.registerAccountWithApiKey(userId, apiKey, 0d, positions, admin).restoreCashUnits(cashUnits);
+        }
+
+        long orders = 0L;
+        while (in.get() != 0) {
+            long orderId = in.getLong();
+            String userId = getRef(in, table);
+            String ticker = getRef(in, table);
+            OrderSide side = SIDES[in.get()];
+            OrderType orderType = ORDER_TYPES[in.get()];
+            TimeInForce timeInForce = TIME_IN_FORCE[in.get()];
+            boolean postOnly = in.get() != 0;
+            double price = in.getDouble();
+            double triggerPrice = in.getDouble();
+            long quantity = in.getLong();
+            long remaining = in.getLong();
+            long displayQuantity = in.getLong();
+            Order order = new Order(Long.toString(orderId), userId, ticker, side, orderType, timeInForce,
+                    quantity, price, triggerPrice, postOnly, displayQuantity);
+            if (remaining < quantity) {
+                order.fill(quantity - remaining);
+            }
+            orderbook.RestoreOrder(order);
+            orders++;
+        }
+
+        PriceScaleRegistry registry = PriceScaleProvider.getRegistry();
+        int fillUsers = in.getInt();
+        for (int u = 0; u < fillUsers; u++) {
+            String userId = getRef(in, table);
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                long fillId = in.getLong();
+                long orderId = in.getLong();
+                int instrumentId = registry.instrumentId(getRef(in, table));
+                OrderSide side = SIDES[in.get()];
+                int priceTicks = in.getInt();
+                int quantity = in.getInt();
+                fills.append(userId, fillId, orderId, instrumentId, side, priceTicks, quantity, in.getLong());
+            }
+        }
+        return new Header(journalSequence, nextOrderId, nextFillId, orders);
+    }
+
+    private void putOrder(Order order, long remaining) {
+        putByte((byte) 1);
+        putLong(order.GetOrderId());
+        putRef(order.getUserId());
+        putRef(order.getTicker());
+        ensure(4);
+        buffer.put((byte) order.GetSide().ordinal());
+        buffer.put((byte) order.GetOrderType().ordinal());
+        buffer.put((byte) order.GetTimeInForce().ordinal());
+        buffer.put(order.isPostOnly() ? (byte) 1 : 0);
+        putDouble(order.GetPrice());
+        putDouble(order.getTriggerPrice());
+        putLong(order.GetInitialQuantity());
+        putLong(remaining);
+        putLong(order.getDisplayQuantity());
+    }
+
+    private void putRef(String value) {
+        Integer index = strings.get(value);
+        if (index != null) {
+            putInt(index);
+            return;
+        }
+        strings.put(value, strings.size());
+        putInt(-1);
+        putString(value);
+    }
+
+    private static String getRef(ByteBuffer in, List<String> table) {
+        int index = in.getInt();
+        if (index >= 0) {
+            return table.get(index);
+        }
+        String value = getString(in);
+        table.add(value);
+        return value;
+    }
+
+    private void putString(String value) {
+        int length = value.length();
+        ensure(Short.BYTES + length * Character.BYTES);
+        buffer.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.getChar();
+        }
+        return new String(chars);
+    }
+
+    private void putByte(byte value) {
+        ensure(1);
+        buffer.put(value);
+    }
+
+    private void putInt(int value) {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    private void putLong(long value) {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    private void putDouble(double value) {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        long required = (long) buffer.position() + bytes;
+        long capacity = Math.max(required, (long) buffer.capacity() * 2);
+        if (capacity > Integer.MAX_VALUE - 8) {
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Snapshot exceeds 2 GiB");
+            }
+            capacity = Integer.MAX_VALUE - 8;
+        }
+        ByteBuffer grown = ByteBuffer.allocate((int) capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+}
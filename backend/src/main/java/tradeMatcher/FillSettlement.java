@@ -0,0 +1,117 @@
+package tradeMatcher;
+
+import java.util.Arrays;
+
+/**
+ * Nets the account effect of one match cycle's fills (one command, or one ticker group of a
+ * batch) per user and instrument, so a sweep through 200 resting orders costs one account lookup
+ * and one ledger update per counterparty instead of one per fill. Individual fills are recorded
+ * separately, in {@link FillStore}.
+ *
+ * <p>Deltas are exact fixed-point {@code long}s, so the netted total equals applying each fill in
+ * turn. Scratch arrays are reused across cycles; an instance is confined to the engine's command
+ * lock and is not thread-safe.
+ */
+final class FillSettlement {
+    private static final int INITIAL_ENTRIES = 16;
+
+    private final AccountManager accountManager;
+    // Open-addressed (userId, instrumentId) -> entry index + 1; 0 marks an empty slot.
+    private int[] table = new int[INITIAL_ENTRIES * 2];
+    private String[] userIds = new String[INITIAL_ENTRIES];
+    private int[] instrumentIds = new int[INITIAL_ENTRIES];
+    private UserAccount[] accounts = new UserAccount[INITIAL_ENTRIES];
+    private long[] quantityDeltas = new long[INITIAL_ENTRIES];
+    private long[] cashDeltas = new long[INITIAL_ENTRIES];
+    private int size;
+
+    FillSettlement(AccountManager accountManager) {
+        this.accountManager = accountManager;
+    }
+
+    /**
+     * Adds one fill's signed position and cash deltas, in {@link UserAccount#CASH_SCALE} units, to
+     * the user's net for the instrument.
+     */
+    void add(String userId, int instrumentId, long quantityDelta, long cashDelta) {
+        int entry = entryFor(userId, instrumentId);
+        quantityDeltas[entry] = Math.addExact(quantityDeltas[entry], quantityDelta);
+        cashDeltas[entry] = Math.addExact(cashDeltas[entry], cashDelta);
+    }
+
+    /**
+     * Number of distinct (user, instrument) nets collected since the last {@link #settle}.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Applies each net delta with one {@link UserAccount#applyFill}, then clears the cycle. Fills of
+     * unknown users move no balances, as before netting.
+     */
+    void settle() {
+        for (int i = 0; i < size; i++) {
+            UserAccount account = accounts[i];
+            if (account != null && (quantityDeltas[i] != 0L || cashDeltas[i] != 0L)) {
+                account.applyFill(instrumentIds[i], quantityDeltas[i], cashDeltas[i]);
+            }
+            userIds[i] = null;
+            accounts[i] = null;
+            quantityDeltas[i] = 0L;
+            cashDeltas[i] = 0L;
+        }
+        if (size > 0) {
+            Arrays.fill(table, 0);
+            size = 0;
+        }
+    }
+
+    private int entryFor(String userId, int instrumentId) {
+        int mask = table.length - 1;
+        int slot = hash(userId, instrumentId) & mask;
+        while (true) {
+            int entry = table[slot] - 1;
+            if (entry < 0) {
+                break;
+            }
+            if (instrumentIds[entry] == instrumentId && userIds[entry].equals(userId)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == userIds.length) {
+            grow();
+            return entryFor(userId, instrumentId);
+        }
+        int entry = size++;
+        userIds[entry] = userId;
+        instrumentIds[entry] = instrumentId;
+        accounts[entry] = accountManager.findById(userId).orElse(null);
+        table[slot] = entry + 1;
+        return entry;
+    }
+
+    private void grow() {
+        int capacity = userIds.length * 2;
+        userIds = Arrays.copyOf(userIds, capacity);
+        instrumentIds = Arrays.copyOf(instrumentIds, capacity);
+        accounts = Arrays.copyOf(accounts, capacity);
+        quantityDeltas = Arrays.copyOf(quantityDeltas, capacity);
+        cashDeltas = Arrays.copyOf(cashDeltas, capacity);
+        table = new int[capacity * 2];
+        int mask = table.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hash(userIds[entry], instrumentIds[entry]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+    }
+
+    private static int hash(String userId, int instrumentId) {
+        int h = userId.hashCode() * 31 + instrumentId;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,458 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-user fill history in fixed-size chunks of primitive columns: fill id, order id, instrument,
+ * side, price in ticks, quantity and execution time. Appending a fill writes one row into the
+ * user's tail chunk, so the fill path costs the same for a user's first fill as for their
+ * millionth.
+ *
+ * <p>There is a single writer, the engine under its command lock. Each user's row count is
+ * volatile and published after the row is written, and the chunk list is an immutable
+ * {@link View} swapped under a per-user lock, so readers page through history without locking.
+ *
+ * <p>With {@link #startRetention} running, sealed chunks whose newest fill is older than the
+ * window leave the heap: they are copied into a memory-mapped spill file and read from there, or
+ * dropped when no spill directory is given. The spill file holds only this process's history and
+ * is recreated on start; snapshots carry the fills across restarts.
+ */
+public final class FillStore implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(FillStore.class);
+
+    public static final int CHUNK_ROWS = 256;
+
+    // Column offsets within a chunk; each column holds CHUNK_ROWS values.
+    private static final int FILL_IDS = 0;
+    private static final int ORDER_IDS = FILL_IDS + CHUNK_ROWS * Long.BYTES;
+    private static final int TIMESTAMPS = ORDER_IDS + CHUNK_ROWS * Long.BYTES;
+    private static final int INSTRUMENTS = TIMESTAMPS + CHUNK_ROWS * Long.BYTES;
+    private static final int PRICES = INSTRUMENTS + CHUNK_ROWS * Integer.BYTES;
+    private static final int QUANTITIES = PRICES + CHUNK_ROWS * Integer.BYTES;
+    private static final int SIDES = QUANTITIES + CHUNK_ROWS * Integer.BYTES;
+    static final int CHUNK_BYTES = SIDES + CHUNK_ROWS;
+
+    private static final long SPILL_SEGMENT_BYTES = 64L << 20;
+    private static final String SPILL_FILE = "fills.spill";
+    private static final OrderSide[] SIDE_VALUES = OrderSide.values();
+
+    private final Map<String, UserFills> users = new ConcurrentHashMap<>();
+    private volatile Thread retentionThread;
+    private volatile SpillFile spill;
+    private volatile long spilledChunks;
+
+    /**
+     * One page of a user's fills, newest first.
+     *
+     * @param nextCursor fill id to pass as {@code before} for the next page, or 0 if this page
+     *                   reached the start of the requested range
+     */
+    public record Page(List<FillRecord> fills, long nextCursor) {
+        public boolean hasMore() {
+            return nextCursor > 0L;
+        }
+    }
+
+    /**
+     * A user's rows as of {@link #mark}: the row count then and the chunks holding them. Holding the
+     * chunks keeps them readable after retention drops or spills them, so a pinned read sees
+     * exactly the rows that existed when it was taken.
+     */
+    record Pin(long count, View view) {
+    }
+
+    /**
+     * Receives rows from {@link #forEachRow} without allocating a {@link FillRecord} per row.
+     */
+    interface RowVisitor {
+        void row(long fillId, long orderId, int instrumentId, OrderSide side, int priceTicks, int quantity,
+                long timestampNanos);
+    }
+
+    /**
+     * Appends a fill to {@code userId}'s history. Must only be called by the single writer.
+     */
+    void append(String userId, long fillId, long orderId, int instrumentId, OrderSide side, int priceTicks,
+            int quantity, long timestampNanos) {
+        UserFills fills = users.get(userId);
+        if (fills == null) {
+            fills = users.computeIfAbsent(userId, __ -> new UserFills());
+        }
+        fills.append(fillId, orderId, instrumentId, side, priceTicks, quantity, timestampNanos);
+    }
+
+    /**
+     * Returns up to {@code limit} of {@code userId}'s fills, newest first, with a fill id below
+     * {@code before} and executed in {@code [fromNanos, toNanos)}. Times are epoch nanoseconds; pass
+     * {@link Long#MAX_VALUE} and {@link Long#MIN_VALUE}/{@link Long#MAX_VALUE} for no bound.
+     */
+    public Page query(String userId, long before, long fromNanos, long toNanos, int limit) {
+        UserFills fills = users.get(userId);
+        if (fills == null || limit <= 0) {
+            return new Page(List.of(), 0L);
+        }
+        Pin pin = fills.pin();
+        long count = pin.count();
+        View view = pin.view();
+        long first = view.firstRow();
+        // Fill ids increase and times never decrease along a user's rows, so both bounds are
+        // binary searches.
+        long end = Math.min(lowerBound(view, first, count, FILL_IDS, before),
+                lowerBound(view, first, count, TIMESTAMPS, toNanos));
+        long start = lowerBound(view, first, end, TIMESTAMPS, fromNanos);
+        long stop = Math.max(start, end - limit);
+        List<FillRecord> page = new ArrayList<>((int) (end - stop));
+        PriceScaleRegistry registry = PriceScaleProvider.getRegistry();
+        for (long row = end - 1; row >= stop; row--) {
+            page.add(toRecord(userId, view, row, registry));
+        }
+        long nextCursor = stop > start
+                ? view.chunk(stop).getLong(FILL_IDS + (int) (stop % CHUNK_ROWS) * Long.BYTES)
+                : 0L;
+        return new Page(Collections.unmodifiableList(page), nextCursor);
+    }
+
+    /**
+     * @return every retained fill of {@code userId}, oldest first
+     */
+    public List<FillRecord> all(String userId) {
+        UserFills fills = users.get(userId);
+        if (fills == null) {
+            return List.of();
+        }
+        Pin pin = fills.pin();
+        long count = pin.count();
+        View view = pin.view();
+        PriceScaleRegistry registry = PriceScaleProvider.getRegistry();
+        List<FillRecord> all = new ArrayList<>((int) Math.max(0L, count - view.firstRow()));
+        for (long row = view.firstRow(); row < count; row++) {
+            all.add(toRecord(userId, view, row, registry));
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * @return each user's retained rows now, pinned for a later {@link #forEachRow} that must see
+     *         neither fills appended nor chunks retired afterwards
+     */
+    Map<String, Pin> mark() {
+        Map<String, Pin> marks = new HashMap<>(users.size() * 2);
+        users.forEach((userId, fills) -> marks.put(userId, fills.pin()));
+        return marks;
+    }
+
+    /**
+     * Visits the rows {@code pin} holds, oldest first.
+     *
+     * @return the number of rows visited
+     */
+    int forEachRow(Pin pin, RowVisitor visitor) {
+        View view = pin.view();
+        long end = pin.count();
+        int visited = 0;
+        for (long row = view.firstRow(); row < end; row++) {
+            ByteBuffer chunk = view.chunk(row);
+            int i = (int) (row % CHUNK_ROWS);
+            visitor.row(chunk.getLong(FILL_IDS + i * Long.BYTES), chunk.getLong(ORDER_IDS + i * Long.BYTES),
+                    chunk.getInt(INSTRUMENTS + i * Integer.BYTES), SIDE_VALUES[chunk.get(SIDES + i)],
+                    chunk.getInt(PRICES + i * Integer.BYTES), chunk.getInt(QUANTITIES + i * Integer.BYTES),
+                    chunk.getLong(TIMESTAMPS + i * Long.BYTES));
+            visited++;
+        }
+        return visited;
+    }
+
+    /**
+     * Forgets every user's history. Must only be called by the single writer.
+     */
+    void clear() {
+        users.clear();
+    }
+
+    public int users() {
+        return users.size();
+    }
+
+    /**
+     * @return fills currently retained, on the heap or spilled
+     */
+    public long retainedFills() {
+        long total = 0L;
+        for (UserFills fills : users.values()) {
+            total += Math.max(0L, fills.count - fills.view.firstRow());
+        }
+        return total;
+    }
+
+    /**
+     * @return chunks copied to the spill file since start
+     */
+    public long spilledChunks() {
+        return spilledChunks;
+    }
+
+    /**
+     * Starts a background thread that, every {@code window / 4} (at most a minute), moves sealed
+     * chunks older than {@code window} off the heap: into a memory-mapped file under
+     * {@code spillDirectory}, or nowhere if it is {@code null}.
+     */
+    public synchronized void startRetention(Duration window, Path spillDirectory) throws IOException {
+        if (retentionThread != null) {
+            throw new IllegalStateException("Fill retention already started");
+        }
+        if (spillDirectory != null) {
+            spill = new SpillFile(spillDirectory.resolve(SPILL_FILE));
+        }
+        long windowNanos = window.toNanos();
+        long periodMillis = Math.max(1_000L, Math.min(60_000L, window.toMillis() / 4));
+        Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(periodMillis);
+                    enforceRetention(nowNanos() - windowNanos);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException ex) {
+                    LOG.warn("Fill retention pass failed", ex);
+                }
+            }
+        }, "fill-retention");
+        thread.setDaemon(true);
+        retentionThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Moves every sealed chunk whose newest fill executed before {@code cutoffNanos} off the heap.
+     */
+    void enforceRetention(long cutoffNanos) {
+        for (UserFills fills : users.values()) {
+            fills.retire(cutoffNanos);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        Thread thread = retentionThread;
+        if (thread != null) {
+            thread.interrupt();
+            retentionThread = null;
+        }
+        SpillFile current = spill;
+        if (current != null) {
+            current.close();
+            spill = null;
+        }
+    }
+
+    static long toNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    private static long nowNanos() {
+        return toNanos(Instant.now());
+    }
+
+    private static FillRecord toRecord(String userId, View view, long row, PriceScaleRegistry registry) {
+        ByteBuffer chunk = view.chunk(row);
+        int i = (int) (row % CHUNK_ROWS);
+        String ticker = registry.tickerOf(chunk.getInt(INSTRUMENTS + i * Integer.BYTES));
+        long timestamp = chunk.getLong(TIMESTAMPS + i * Long.BYTES);
+        return new FillRecord(
+                Long.toString(chunk.getLong(FILL_IDS + i * Long.BYTES)),
+                Long.toString(chunk.getLong(ORDER_IDS + i * Long.BYTES)),
+                userId,
+                ticker,
+                SIDE_VALUES[chunk.get(SIDES + i)],
+                registry.getScale(ticker).toDisplayPrice(chunk.getInt(PRICES + i * Integer.BYTES)),
+                chunk.getInt(QUANTITIES + i * Integer.BYTES),
+                Instant.ofEpochSecond(Math.floorDiv(timestamp, 1_000_000_000L), Math.floorMod(timestamp, 1_000_000_000L)));
+    }
+
+    /**
+     * @return the first row in {@code [from, to)} whose {@code column} value is at least
+     *         {@code key}, or {@code to}
+     */
+    private static long lowerBound(View view, long from, long to, int column, long key) {
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            ByteBuffer chunk = view.chunk(mid);
+            if (chunk.getLong(column + (int) (mid % CHUNK_ROWS) * Long.BYTES) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Chunks holding rows {@code firstRow} onwards; {@code firstRow} is a multiple of
+     * {@link #CHUNK_ROWS}.
+     */
+    record View(ByteBuffer[] chunks, long firstRow) {
+        ByteBuffer chunk(long row) {
+            return chunks[(int) ((row - firstRow) / CHUNK_ROWS)];
+        }
+    }
+
+    private final class UserFills {
+        // Swapped under viewLock by the writer (new tail chunk) and by retention (spill or drop).
+        private final ReentrantLock viewLock = new ReentrantLock();
+        private volatile View view = new View(new ByteBuffer[0], 0L);
+        // Rows ever appended; written only by the writer, after the row itself.
+        private volatile long count;
+        private ByteBuffer tail;
+
+        Pin pin() {
+            // Count before view: the view published with a row always covers it, and one retired
+            // since only starts later, still below the count.
+            long rows = count;
+            return new Pin(rows, view);
+        }
+
+        void append(long fillId, long orderId, int instrumentId, OrderSide side, int priceTicks, int quantity,
+                long timestampNanos) {
+            long row = count;
+            int i = (int) (row % CHUNK_ROWS);
+            if (i == 0) {
+                tail = ByteBuffer.allocate(CHUNK_BYTES);
+                viewLock.lock();
+                try {
+                    View current = view;
+                    ByteBuffer[] chunks = Arrays.copyOf(current.chunks(), current.chunks().length + 1);
+                    chunks[chunks.length - 1] = tail;
+                    view = new View(chunks, current.chunks().length == 0 ? row : current.firstRow());
+                } finally {
+                    viewLock.unlock();
+                }
+            }
+            ByteBuffer chunk = tail;
+            chunk.putLong(FILL_IDS + i * Long.BYTES, fillId);
+            chunk.putLong(ORDER_IDS + i * Long.BYTES, orderId);
+            chunk.putLong(TIMESTAMPS + i * Long.BYTES, timestampNanos);
+            chunk.putInt(INSTRUMENTS + i * Integer.BYTES, instrumentId);
+            chunk.putInt(PRICES + i * Integer.BYTES, priceTicks);
+            chunk.putInt(QUANTITIES + i * Integer.BYTES, quantity);
+            chunk.put(SIDES + i, (byte) side.ordinal());
+            count = row + 1;
+        }
+
+        void retire(long cutoffNanos) {
+            viewLock.lock();
+            try {
+                View current = view;
+                ByteBuffer[] chunks = current.chunks();
+                long sealedChunks = (count - current.firstRow()) / CHUNK_ROWS;
+                SpillFile target = spill;
+                int retired = 0;
+                ByteBuffer[] updated = null;
+                for (int c = 0; c < sealedChunks; c++) {
+                    ByteBuffer chunk = chunks[c];
+                    long newest = chunk.getLong(TIMESTAMPS + (CHUNK_ROWS - 1) * Long.BYTES);
+                    if (newest >= cutoffNanos) {
+                        break;
+                    }
+                    if (target == null) {
+                        retired++;
+                        continue;
+                    }
+                    if (chunk.isDirect()) {
+                        continue;
+                    }
+                    ByteBuffer spilled = target.spill(chunk);
+                    if (spilled == null) {
+                        break;
+                    }
+                    if (updated == null) {
+                        updated = chunks.clone();
+                    }
+                    updated[c] = spilled;
+                    spilledChunks++;
+                }
+                if (retired > 0) {
+                    view = new View(Arrays.copyOfRange(chunks, retired, chunks.length),
+                            current.firstRow() + (long) retired * CHUNK_ROWS);
+                } else if (updated != null) {
+                    view = new View(updated, current.firstRow());
+                }
+            } finally {
+                viewLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Append-only file of spilled chunks, mapped in {@link #SPILL_SEGMENT_BYTES} segments so a long
+     * history needs few mappings.
+     */
+    private static final class SpillFile {
+        private final Path path;
+        private final FileChannel channel;
+        private MappedByteBuffer segment;
+        private long segmentStart;
+        private boolean failed;
+
+        SpillFile(Path path) throws IOException {
+            Files.createDirectories(path.getParent());
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * @return a read-only view of {@code chunk}'s copy in the file, or {@code null} if the file
+         *         cannot be extended, in which case chunks stay on the heap
+         */
+        synchronized ByteBuffer spill(ByteBuffer chunk) {
+            if (failed) {
+                return null;
+            }
+            try {
+                if (segment == null || segment.remaining() < CHUNK_BYTES) {
+                    segmentStart = segment == null ? 0L : segmentStart + SPILL_SEGMENT_BYTES;
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, SPILL_SEGMENT_BYTES);
+                }
+            } catch (IOException ex) {
+                failed = true;
+                LOG.warn("Cannot extend fill spill file {}; keeping fills on the heap", path, ex);
+                return null;
+            }
+            int offset = segment.position();
+            segment.put(offset, chunk, 0, CHUNK_BYTES);
+            segment.position(offset + CHUNK_BYTES);
+            return segment.slice(offset, CHUNK_BYTES).asReadOnlyBuffer();
+        }
+
+        synchronized void close() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                LOG.warn("Failed to remove fill spill file {}", path, ex);
+            }
+        }
+    }
+}
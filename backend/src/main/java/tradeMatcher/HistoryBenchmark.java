@@ -0,0 +1,121 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Fills a {@link TradeHistory} with synthetic trades (two fills each) spaced one millisecond
+ * apart, then measures the reconciliation queries it exists for: a user's fills over five minutes,
+ * a ticker's trades over the last five minutes, an unfiltered one-minute range through the sparse
+ * index, and reopening the history.
+ *
+ * <pre>
+ * java -Xmx2g -cp trade-matcher.jar tradeMatcher.HistoryBenchmark [fills=100000000] [dir=tmp] [users=1000] [tickers=8] [queries=200]
+ * </pre>
+ */
+public final class HistoryBenchmark {
+    private static final long START_NANOS = FillStore.toNanos(Instant.parse("2026-01-01T00:00:00Z"));
+    private static final long SPACING_NANOS = 1_000_000L;
+    private static final long WINDOW_NANOS = Duration.ofMinutes(5).toNanos();
+    private static final int POOL = 4_096;
+
+    private HistoryBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long fills = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000L;
+        Path directory = args.length > 1 ? Paths.get(args[1]) : Files.createTempDirectory("history-bench");
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        int tickers = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int queries = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+        long trades = fills / 2;
+
+        // A pool of pre-built trade sides; fill ids and timestamps still differ per trade.
+        SplittableRandom random = new SplittableRandom(42);
+        TradeInfo[] bids = new TradeInfo[POOL];
+        TradeInfo[] asks = new TradeInfo[POOL];
+        for (int i = 0; i < POOL; i++) {
+            String ticker = "T" + random.nextInt(tickers);
+            int price = 100_000 + random.nextInt(1_000);
+            int quantity = 1 + random.nextInt(100);
+            bids[i] = new TradeInfo(i, "user-" + random.nextInt(users), ticker, OrderSide.BUY, price / 1_000d, price, quantity);
+            asks[i] = new TradeInfo(POOL + i, "user-" + random.nextInt(users), ticker, OrderSide.SELL, price / 1_000d, price, quantity);
+        }
+
+        long started = System.nanoTime();
+        try (TradeHistory history = new TradeHistory(directory, Duration.ofHours(1))) {
+            for (long t = 0; t < trades; t++) {
+                int slot = (int) (t % POOL);
+                history.append(START_NANOS + t * SPACING_NANOS, bids[slot], asks[slot], 2 * t + 1, 2 * t + 2);
+            }
+            history.awaitSealed();
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("appended %,d trades (%,d fills) in %.1f s: %,.0f trades/s, %d partitions, %,d MB on disk%n",
+                    trades, trades * 2, seconds, trades / seconds, history.partitionCount(), directoryBytes(directory) >> 20);
+
+            long endNanos = START_NANOS + trades * SPACING_NANOS;
+            long[] latencies = new long[queries];
+            long[] rows = new long[1];
+
+            for (int q = 0; q < queries; q++) {
+                String user = "user-" + random.nextInt(users);
+                long from = START_NANOS + (long) (random.nextDouble() * Math.max(1L, endNanos - START_NANOS - WINDOW_NANOS));
+                long begin = System.nanoTime();
+                drain(history, user, null, from, from + WINDOW_NANOS, rows);
+                latencies[q] = System.nanoTime() - begin;
+            }
+            report("user fills, 5 min window", latencies, rows[0]);
+
+            rows[0] = 0L;
+            for (int q = 0; q < queries; q++) {
+                String ticker = "T" + random.nextInt(tickers);
+                long begin = System.nanoTime();
+                drain(history, null, ticker, endNanos - WINDOW_NANOS, Long.MAX_VALUE, rows);
+                latencies[q] = System.nanoTime() - begin;
+            }
+            report("ticker trades, last 5 min", latencies, rows[0]);
+
+            rows[0] = 0L;
+            for (int q = 0; q < queries; q++) {
+                long from = START_NANOS + (long) (random.nextDouble() * Math.max(1L, endNanos - START_NANOS - 60_000_000_000L));
+                long begin = System.nanoTime();
+                drain(history, null, null, from, from + 60_000_000_000L, rows);
+                latencies[q] = System.nanoTime() - begin;
+            }
+            report("all trades, 1 min window", latencies, rows[0]);
+        }
+
+        long reopenStarted = System.nanoTime();
+        try (TradeHistory reopened = new TradeHistory(directory, Duration.ofHours(1))) {
+            System.out.printf("reopened %,d trades in %.1f ms%n", reopened.size(), (System.nanoTime() - reopenStarted) / 1e6);
+        }
+    }
+
+    private static void drain(TradeHistory history, String user, String ticker, long from, long to, long[] rows) {
+        long after = 0L;
+        do {
+            after = history.scan(user, ticker, from, to, after, 10_000, row -> rows[0] += row.quantity() > 0 ? 1 : 0);
+        } while (after != 0L);
+    }
+
+    private static void report(String name, long[] latencies, long rows) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-28s p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms  avg rows %,d%n", name,
+                sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6,
+                sorted[sorted.length - 1] / 1e6, rows / sorted.length);
+    }
+
+    private static long directoryBytes(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+}
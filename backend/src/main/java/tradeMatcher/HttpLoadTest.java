@@ -0,0 +1,154 @@
+package tradeMatcher;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load test against a running server. For each concurrency level, every simulated
+ * client repeatedly submits a passive post-only order and cancels it, and the tool reports
+ * throughput and latency percentiles. Optional idle private WebSocket sessions add feed fan-out so
+ * the effect of {@code USE_VIRTUAL_THREADS} on connection count versus tail latency can be compared.
+ *
+ * <pre>
+ * java -cp trade-matcher.jar tradeMatcher.HttpLoadTest &lt;baseUrl&gt; &lt;apiKey&gt; [levels=16,64,256,1024] [secondsPerLevel=10] [privateSessions=0]
+ * </pre>
+ */
+public final class HttpLoadTest {
+    private static final Gson JSON = new Gson();
+
+    private final HttpClient http;
+    private final String baseUrl;
+    private final String apiKey;
+
+    private HttpLoadTest(String baseUrl, String apiKey) {
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: HttpLoadTest <baseUrl> <apiKey> [levels=16,64,256,1024] [secondsPerLevel=10] [privateSessions=0]");
+            return;
+        }
+        int[] levels = parseLevels(args.length > 2 ? args[2] : "16,64,256,1024");
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int privateSessions = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+        HttpLoadTest test = new HttpLoadTest(args[0], args[1]);
+        List<WebSocket> sockets = test.openPrivateSessions(privateSessions);
+
+        System.out.printf("%-12s %-12s %-10s %-10s %-10s %-10s %-8s%n",
+                "clients", "req/s", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "errors");
+        for (int level : levels) {
+            test.runLevel(level, seconds);
+        }
+
+        for (WebSocket socket : sockets) {
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+    }
+
+    private void runLevel(int clients, int seconds) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (int i = 0; i < clients; i++) {
+            clientLoop(deadline, latency, errors, done);
+        }
+        done.await();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9d;
+        System.out.printf("%-12d %-12.0f %-10.2f %-10.2f %-10.2f %-10.2f %-8d%n",
+                clients,
+                latency.count() / elapsedSeconds,
+                latency.valueAtPercentile(50.0d) / 1e6d,
+                latency.valueAtPercentile(99.0d) / 1e6d,
+                latency.valueAtPercentile(99.9d) / 1e6d,
+                latency.max() / 1e6d,
+                errors.get());
+    }
+
+    private void clientLoop(long deadline, LatencyHistogram latency, AtomicLong errors, CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        long submitted = System.nanoTime();
+        http.sendAsync(newOrderRequest(), HttpResponse.BodyHandlers.ofString())
+                .thenCompose(response -> {
+                    latency.record(System.nanoTime() - submitted);
+                    if (response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    String orderId = JSON.fromJson(response.body(), JsonObject.class).get("orderId").getAsString();
+                    long canceled = System.nanoTime();
+                    return http.sendAsync(cancelRequest(orderId), HttpResponse.BodyHandlers.discarding())
+                            .thenAccept(cancelResponse -> {
+                                latency.record(System.nanoTime() - canceled);
+                                if (cancelResponse.statusCode() != 200) {
+                                    errors.incrementAndGet();
+                                }
+                            });
+                })
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                        errors.incrementAndGet();
+                    }
+                    clientLoop(deadline, latency, errors, done);
+                });
+    }
+
+    private HttpRequest newOrderRequest() {
+        String body = "{\"orderType\":\"LIMIT\",\"side\":\"BUY\",\"price\":0.001,\"quantity\":1,\"postOnly\":true}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/order"))
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest cancelRequest(String orderId) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/order/" + orderId))
+                .header("Authorization", "Bearer " + apiKey)
+                .DELETE()
+                .build();
+    }
+
+    private List<WebSocket> openPrivateSessions(int count) {
+        List<WebSocket> sockets = new ArrayList<>(count);
+        String wsUrl = baseUrl.replaceFirst("^http", "ws") + "/ws/private?token=" + apiKey;
+        WebSocket.Listener listener = new WebSocket.Listener() {
+        };
+        for (int i = 0; i < count; i++) {
+            sockets.add(http.newWebSocketBuilder().buildAsync(URI.create(wsUrl), listener).join());
+        }
+        return sockets;
+    }
+
+    private static int[] parseLevels(String value) {
+        String[] tokens = value.split(",");
+        int[] levels = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            levels[i] = Integer.parseInt(tokens[i].trim());
+        }
+        return levels;
+    }
+}
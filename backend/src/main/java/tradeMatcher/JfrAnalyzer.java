@@ -0,0 +1,176 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Summarises a flight recording taken with {@code jfr/trade-matcher.jfc}: per-event duration
+ * percentiles for the {@link EngineEvents}, then the slowest commands with the book state they
+ * recorded and every GC pause, safepoint, park or monitor wait that overlapped them, so a tail
+ * outlier can be attributed to the collector, to lock contention, or to the book itself.
+ */
+public final class JfrAnalyzer {
+    private static final String PREFIX = "tradeMatcher.";
+    private static final Set<String> COMMANDS = Set.of(
+            "tradeMatcher.AddOrder", "tradeMatcher.CancelOrder", "tradeMatcher.Settle", "tradeMatcher.FeedPublish");
+    private static final Set<String> CONTEXT = Set.of(
+            "jdk.GarbageCollection", "jdk.GCPhasePause", "jdk.SafepointBegin", "jdk.ThreadPark", "jdk.JavaMonitorEnter");
+    private static final Set<String> SKIPPED_FIELDS = Set.of("startTime", "duration", "eventThread", "stackTrace");
+
+    private JfrAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: JfrAnalyzer <recording.jfr> [top=20]");
+            return;
+        }
+        int top = args.length == 2 ? Integer.parseInt(args[1]) : 20;
+
+        Map<String, List<Long>> durations = new TreeMap<>();
+        List<RecordedEvent> commands = new ArrayList<>();
+        List<RecordedEvent> context = new ArrayList<>();
+        try (RecordingFile recording = new RecordingFile(Path.of(args[0]))) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String name = event.getEventType().getName();
+                if (name.startsWith(PREFIX)) {
+                    durations.computeIfAbsent(name, __ -> new ArrayList<>()).add(event.getDuration().toNanos());
+                    if (COMMANDS.contains(name)) {
+                        commands.add(event);
+                    }
+                } else if (CONTEXT.contains(name)) {
+                    context.add(event);
+                }
+            }
+        }
+
+        if (durations.isEmpty()) {
+            System.out.println("No tradeMatcher events in " + args[0]
+                    + "; record with settings=jfr/trade-matcher.jfc or lower the thresholds.");
+            return;
+        }
+
+        System.out.printf(Locale.ROOT, "%-26s %10s %12s %12s %12s%n", "event", "count", "p50 us", "p99 us", "max us");
+        durations.forEach((name, values) -> {
+            values.sort(null);
+            System.out.printf(Locale.ROOT, "%-26s %10d %12.1f %12.1f %12.1f%n",
+                    name.substring(PREFIX.length()), values.size(),
+                    percentile(values, 50.0d) / 1e3d, percentile(values, 99.0d) / 1e3d,
+                    values.get(values.size() - 1) / 1e3d);
+        });
+        printContextTotals(context);
+
+        commands.sort(Comparator.comparing((RecordedEvent event) -> event.getDuration()).reversed());
+        System.out.println();
+        System.out.println("Slowest " + Math.min(top, commands.size()) + " commands:");
+        for (int i = 0; i < Math.min(top, commands.size()); i++) {
+            RecordedEvent command = commands.get(i);
+            System.out.printf(Locale.ROOT, "%n%3d. %s %.1f us on %s at %s%n", i + 1,
+                    command.getEventType().getName().substring(PREFIX.length()),
+                    command.getDuration().toNanos() / 1e3d, threadName(command.getThread()), command.getStartTime());
+            System.out.println("     " + fields(command));
+            for (RecordedEvent overlap : overlapping(command, context)) {
+                System.out.printf(Locale.ROOT, "     overlaps %s %.1f us on %s%s%n",
+                        overlap.getEventType().getName(), overlap.getDuration().toNanos() / 1e3d,
+                        threadName(overlap.getThread()), describe(overlap));
+            }
+        }
+    }
+
+    private static void printContextTotals(List<RecordedEvent> context) {
+        Map<String, long[]> totals = new TreeMap<>();
+        for (RecordedEvent event : context) {
+            long[] total = totals.computeIfAbsent(event.getEventType().getName(), __ -> new long[2]);
+            total[0]++;
+            total[1] += event.getDuration().toNanos();
+        }
+        totals.forEach((name, total) -> System.out.printf(Locale.ROOT, "%-26s %10d %12s %12s total %.1f ms%n",
+                name, total[0], "", "", total[1] / 1e6d));
+    }
+
+    private static List<RecordedEvent> overlapping(RecordedEvent command, List<RecordedEvent> context) {
+        Instant start = command.getStartTime();
+        Instant end = command.getEndTime();
+        List<RecordedEvent> overlaps = new ArrayList<>();
+        for (RecordedEvent event : context) {
+            if (event.getStartTime().isBefore(end) && event.getEndTime().isAfter(start)
+                    && affects(command, event)) {
+                overlaps.add(event);
+            }
+        }
+        return overlaps;
+    }
+
+    /**
+     * GC pauses and safepoints stop every thread; parks and monitor waits only matter on the
+     * command's own thread.
+     */
+    private static boolean affects(RecordedEvent command, RecordedEvent event) {
+        String name = event.getEventType().getName();
+        if (!name.equals("jdk.ThreadPark") && !name.equals("jdk.JavaMonitorEnter")) {
+            return true;
+        }
+        RecordedThread commandThread = command.getThread();
+        RecordedThread eventThread = event.getThread();
+        return commandThread != null && eventThread != null
+                && commandThread.getJavaThreadId() == eventThread.getJavaThreadId();
+    }
+
+    private static String fields(RecordedEvent event) {
+        StringBuilder out = new StringBuilder();
+        for (ValueDescriptor field : event.getFields()) {
+            if (SKIPPED_FIELDS.contains(field.getName())) {
+                continue;
+            }
+            if (out.length() > 0) {
+                out.append(' ');
+            }
+            Object value = event.getValue(field.getName());
+            out.append(field.getName()).append('=').append(value);
+        }
+        return out.toString();
+    }
+
+    private static String describe(RecordedEvent event) {
+        return switch (event.getEventType().getName()) {
+            case "jdk.GarbageCollection" -> " (" + event.getString("name") + ", " + event.getString("cause") + ")";
+            case "jdk.GCPhasePause" -> " (" + event.getString("name") + ")";
+            case "jdk.ThreadPark", "jdk.JavaMonitorEnter" -> event.hasField("monitorClass") || event.hasField("parkedClass")
+                    ? " (" + lockClass(event) + ")"
+                    : "";
+            default -> "";
+        };
+    }
+
+    private static String lockClass(RecordedEvent event) {
+        String field = event.hasField("monitorClass") ? "monitorClass" : "parkedClass";
+        Object value = event.getValue(field);
+        return value == null ? "unknown" : event.getClass(field).getName();
+    }
+
+    private static String threadName(RecordedThread thread) {
+        if (thread == null) {
+            return "vm";
+        }
+        return thread.getJavaName() != null ? thread.getJavaName() : thread.getOSName();
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0d * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
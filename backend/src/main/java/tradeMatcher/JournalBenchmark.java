@@ -0,0 +1,66 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Measures {@link CommandJournal} append cost and throughput for each sync mode. Segments are kept
+ * small enough that rolling is exercised during the run.
+ *
+ * <pre>
+ * java -cp trade-matcher.jar tradeMatcher.JournalBenchmark [records=2000000] [modes=ASYNC,INTERVAL,PER_COMMAND] [dir=tmp] [segmentMb=64]
+ * </pre>
+ *
+ * {@code PER_COMMAND} forces an {@code msync} per record and is capped at 20,000 records.
+ */
+public final class JournalBenchmark {
+    private static final int PER_COMMAND_LIMIT = 20_000;
+
+    private JournalBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        String[] modes = (args.length > 1 ? args[1] : "ASYNC,INTERVAL,PER_COMMAND").split(",");
+        Path root = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("journal-bench");
+        long segmentBytes = (args.length > 3 ? Long.parseLong(args[3]) : 64L) << 20;
+
+        Order order = new Order("1", "bench-user", "TEST", OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                100L, 1_000d, 0d, false, 100L);
+
+        System.out.printf("%-12s %-10s %-12s %-10s %-10s %-10s %-10s%n",
+                "mode", "records", "records/s", "p50(ns)", "p99(ns)", "p99.9(ns)", "max(ns)");
+        for (String token : modes) {
+            CommandJournal.SyncMode mode = CommandJournal.SyncMode.valueOf(token.trim().toUpperCase(Locale.ROOT));
+            int count = mode == CommandJournal.SyncMode.PER_COMMAND ? Math.min(records, PER_COMMAND_LIMIT) : records;
+            Path directory = Files.createDirectories(root.resolve(mode.name().toLowerCase(Locale.ROOT)));
+            LatencyHistogram latency = new LatencyHistogram();
+            long elapsed;
+            try (CommandJournal journal = new CommandJournal(directory, segmentBytes, mode, 1_000L)) {
+                // Warm up the encoder and fault in the first pages before measuring.
+                for (int i = 0; i < Math.min(count, 10_000); i++) {
+                    journal.appendAdd(order);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    long before = System.nanoTime();
+                    journal.appendAdd(order);
+                    latency.record(System.nanoTime() - before);
+                }
+                elapsed = System.nanoTime() - start;
+            }
+            System.out.printf("%-12s %-10d %-12.0f %-10d %-10d %-10d %-10d%n",
+                    mode,
+                    count,
+                    count / (elapsed / 1e9d),
+                    latency.valueAtPercentile(50.0d),
+                    latency.valueAtPercentile(99.0d),
+                    latency.valueAtPercentile(99.9d),
+                    latency.max());
+        }
+        System.out.println("Journal files written under " + root.toAbsolutePath());
+    }
+}
@@ -0,0 +1,143 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuilds accounts, the book and fills from the newest snapshot, if any, followed by re-running the
+ * journaled commands after it through the engine. The engine must not have a journal attached while
+ * this runs, otherwise commands would be written twice.
+ */
+public final class JournalRecovery {
+    private static final Logger LOG = LoggerFactory.getLogger(JournalRecovery.class);
+
+    private JournalRecovery() {
+    }
+
+    /**
+     * @param snapshotSequence journal sequence covered by the restored snapshot, or 0 without one
+     * @param lastSequence     last journal sequence applied
+     * @param maxOrderId       highest order identifier seen, so new identifiers can continue after it
+     * @param commands         number of journal records replayed after the snapshot
+     * @param fromSnapshot     whether a snapshot was restored
+     */
+    public record Result(long snapshotSequence, long lastSequence, long maxOrderId, long commands, boolean fromSnapshot) {
+        public static final Result EMPTY = new Result(0L, 0L, 0L, 0L, false);
+
+        /**
+         * @return {@code true} when neither a snapshot nor journal records were found
+         */
+        public boolean isEmpty() {
+            return !fromSnapshot && commands == 0L;
+        }
+    }
+
+    /**
+     * Restores the newest snapshot in {@code directory} and replays only the journal tail after it.
+     */
+    public static Result recover(Path directory, MatchingEngine engine, AccountManager accountManager) throws IOException {
+        long started = System.nanoTime();
+        EngineSnapshot.Header header = engine.restoreSnapshot(directory);
+        long snapshotSequence = header != null ? header.journalSequence() : 0L;
+        long restored = System.nanoTime();
+
+        Applier applier = new Applier(engine, accountManager);
+        long lastSequence = CommandJournal.replay(directory, snapshotSequence, applier);
+        long maxOrderId = Math.max(applier.maxOrderId, header != null ? header.nextOrderId() - 1L : 0L);
+        LOG.info("Recovered to journal sequence {}: snapshot {} in {} ms, {} tail records in {} ms",
+                lastSequence,
+                snapshotSequence,
+                (restored - started) / 1_000_000L,
+                applier.commands,
+                (System.nanoTime() - restored) / 1_000_000L);
+        return new Result(snapshotSequence, lastSequence, maxOrderId, applier.commands, header != null);
+    }
+
+    /**
+     * Replays every journal record after {@code afterSequence}, ignoring snapshots.
+     */
+    public static Result replay(Path directory, long afterSequence, MatchingEngine engine, AccountManager accountManager) throws IOException {
+        Applier applier = new Applier(engine, accountManager);
+        long lastSequence = CommandJournal.replay(directory, afterSequence, applier);
+        LOG.info("Replayed {} journal records up to sequence {}", applier.commands, lastSequence);
+        return new Result(afterSequence, lastSequence, applier.maxOrderId, applier.commands, false);
+    }
+
+    /**
+     * @return a visitor that applies journal records to the engine, e.g. for tools that drive
+     *         {@link CommandJournal#replay} themselves
+     */
+    public static CommandJournal.Visitor applier(MatchingEngine engine, AccountManager accountManager) {
+        return new Applier(engine, accountManager);
+    }
+
+    private static final class Applier implements CommandJournal.Visitor {
+        private final MatchingEngine engine;
+        private final AccountManager accountManager;
+        private long maxOrderId;
+        private long commands;
+
+        Applier(MatchingEngine engine, AccountManager accountManager) {
+            this.engine = engine;
+            this.accountManager = accountManager;
+        }
+
+        @Override
+        public void onAdd(long sequence, Order order) {
+            commands++;
+            maxOrderId = Math.max(maxOrderId, order.GetOrderId());
+            try {
+                engine.processOrder(order);
+            } catch (IllegalArgumentException ex) {
+                // Rejected the first time round as well; replay reproduces the same outcome.
+            }
+        }
+
+        @Override
+        public void onBatch(long sequence, List<Order> orders) {
+            commands++;
+            for (Order order : orders) {
+                maxOrderId = Math.max(maxOrderId, order.GetOrderId());
+            }
+            engine.processBatch(orders);
+        }
+
+        @Override
+        public void onCancel(long sequence, String userId, long orderId) {
+            commands++;
+            engine.cancelOrder(userId, orderId);
+        }
+
+        @Override
+        public void onModify(long sequence, String userId, long orderId, OrderSide side, int price, int quantity) {
+            commands++;
+            try {
+                engine.modifyOrder(userId, orderId, side, price, quantity);
+            } catch (IllegalArgumentException ex) {
+                // See onAdd.
+            }
+        }
+
+        @Override
+        public void onMassCancel(long sequence, String userId) {
+            commands++;
+            engine.cancelAllOrders(userId);
+        }
+
+        @Override
+        public void onReset(long sequence) {
+            commands++;
+            engine.reset();
+        }
+
+        @Override
+        public void onAccount(long sequence, String userId, String apiKey, double cash, Map<String, Long> positions, boolean admin) {
+            commands++;
+            accountManager.registerAccountWithApiKey(userId, apiKey, cash, positions, admin);
+        }
+    }
+}
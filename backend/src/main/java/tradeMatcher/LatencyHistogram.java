@@ -0,0 +1,99 @@
+package tradeMatcher;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-memory, log-linear latency histogram in the spirit of HdrHistogram. Values are bucketed
+ * with 64 linear sub-buckets per power of two, which bounds the relative error to under 2% while
+ * keeping the footprint constant. Recording is lock-free and allocation-free, so it is safe to
+ * call from the matching path and from many threads at once; the totals are striped
+ * {@link LongAdder}s so concurrent recorders do not contend on a single counter.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long value) {
+        long clamped = Math.max(0L, value);
+        counts.incrementAndGet(indexFor(clamped));
+        totalCount.increment();
+        totalSum.add(clamped);
+        long currentMax;
+        while (clamped > (currentMax = maxValue.get())) {
+            if (maxValue.compareAndSet(currentMax, clamped)) {
+                break;
+            }
+        }
+    }
+
+    public long count() {
+        return totalCount.sum();
+    }
+
+    public long max() {
+        return maxValue.get();
+    }
+
+    public double mean() {
+        long count = totalCount.sum();
+        return count == 0L ? 0.0d : (double) totalSum.sum() / count;
+    }
+
+    /**
+     * @param percentile value between 0 and 100
+     * @return the highest value equivalent to the bucket holding the requested percentile
+     */
+    public long valueAtPercentile(double percentile) {
+        long count = totalCount.sum();
+        if (count == 0L) {
+            return 0L;
+        }
+        double bounded = Math.min(100.0d, Math.max(0.0d, percentile));
+        long target = Math.max(1L, (long) Math.ceil(bounded / 100.0d * count));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        totalCount.reset();
+        totalSum.reset();
+        maxValue.set(0L);
+    }
+
+    private static int indexFor(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift);
+        return (shift << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1L) << shift) - 1L;
+    }
+}
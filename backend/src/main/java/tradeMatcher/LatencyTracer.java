@@ -0,0 +1,196 @@
+package tradeMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-stage latency tracing for order submissions. A trace is opened once a request has been
+ * authenticated and parsed, timed from its arrival, the matching path stamps
+ * {@link System#nanoTime()} as it passes each {@link Stage}, and closing the trace records every
+ * stamped stage's elapsed time since ingress into a fixed-memory {@link LatencyHistogram}. Stamps
+ * live in a per-thread array, so tracing allocates nothing per request on platform threads; on
+ * virtual threads the array is created once per request thread.
+ *
+ * <p>Stages are recorded as time since {@link Stage#RECEIVED} rather than time since the previous
+ * stage because their order varies: fills and the public delta go out after the command lock is
+ * released, in whatever order the listeners run, and a command without fills stamps none. A
+ * publication drained by another command's thread stamps nothing, since that thread's trace is not
+ * the command's. Stamping is a no-op on threads without an open trace (binary gateway, replay),
+ * and a stage hit several times (one fill per trade) keeps its last stamp.
+ */
+public final class LatencyTracer {
+
+    public enum Stage {
+        RECEIVED,
+        VALIDATED,
+        RISK_CHECKED,
+        MATCHED,
+        ACCOUNTS_UPDATED,
+        PUBLIC_DELTA_ENCODED,
+        PRIVATE_FILL_SENT,
+        /** The acknowledgement is built and about to be handed to the transport, on every entry path. */
+        ACKNOWLEDGED
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[STAGES.length];
+    private static final ThreadLocal<long[]> STAMPS = ThreadLocal.withInitial(() -> new long[STAGES.length]);
+    private static volatile boolean enabled = true;
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private LatencyTracer() {
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Opens a trace on the current thread and stamps {@link Stage#RECEIVED}.
+     */
+    public static void begin() {
+        begin(System.nanoTime());
+    }
+
+    /**
+     * Opens a trace on the current thread whose {@link Stage#RECEIVED} is {@code receivedNanos}, a
+     * {@link System#nanoTime()} taken at ingress. Lets a handler open the trace only once the
+     * request has passed authentication and parsing, which may throw, and still time from ingress.
+     */
+    public static void begin(long receivedNanos) {
+        if (!enabled) {
+            return;
+        }
+        long[] stamps = STAMPS.get();
+        Arrays.fill(stamps, 0L);
+        stamps[0] = receivedNanos;
+    }
+
+    /**
+     * Stamps {@code stage} if a trace is open on the current thread.
+     */
+    public static void mark(Stage stage) {
+        if (!enabled) {
+            return;
+        }
+        long[] stamps = STAMPS.get();
+        if (stamps[0] != 0L) {
+            stamps[stage.ordinal()] = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return the ingress stamp of the trace open on the current thread, or 0 without one; together
+     *         with the thread it identifies the trace a queued publication belongs to
+     */
+    public static long currentTrace() {
+        if (!enabled) {
+            return 0L;
+        }
+        return STAMPS.get()[0];
+    }
+
+    /**
+     * Sets the current thread's open trace aside, so stages stamped while delivering another
+     * command's publication do not land in it.
+     *
+     * @return the token to hand to {@link #resume}; 0 when no trace was open
+     */
+    public static long suspend() {
+        if (!enabled) {
+            return 0L;
+        }
+        long[] stamps = STAMPS.get();
+        long received = stamps[0];
+        stamps[0] = 0L;
+        return received;
+    }
+
+    /**
+     * Reopens a trace set aside by {@link #suspend}; a 0 token is a no-op.
+     */
+    public static void resume(long token) {
+        if (token != 0L) {
+            STAMPS.get()[0] = token;
+        }
+    }
+
+    /**
+     * Records the open trace into the stage histograms and closes it. Traces of rejected commands
+     * are closed without recording so they do not skew the percentiles.
+     */
+    public static void end(boolean record) {
+        if (!enabled) {
+            return;
+        }
+        long[] stamps = STAMPS.get();
+        long received = stamps[0];
+        if (received == 0L) {
+            return;
+        }
+        if (record) {
+            for (int i = 1; i < stamps.length; i++) {
+                if (stamps[i] != 0L) {
+                    HISTOGRAMS[i].record(stamps[i] - received);
+                }
+            }
+        }
+        stamps[0] = 0L;
+    }
+
+    /**
+     * @return elapsed nanoseconds since ingress for each stage stamped so far in the open trace,
+     *         for stamping onto acknowledgements; empty without an open trace
+     */
+    public static Map<String, Long> elapsedSoFar() {
+        Map<String, Long> elapsed = new LinkedHashMap<>();
+        if (!enabled) {
+            return elapsed;
+        }
+        long[] stamps = STAMPS.get();
+        if (stamps[0] == 0L) {
+            return elapsed;
+        }
+        for (int i = 1; i < stamps.length; i++) {
+            if (stamps[i] != 0L) {
+                elapsed.put(STAGES[i].name(), stamps[i] - stamps[0]);
+            }
+        }
+        return elapsed;
+    }
+
+    /**
+     * @return one entry per stage with sample count and percentiles in microseconds
+     */
+    public static List<Map<String, Object>> summary() {
+        List<Map<String, Object>> stages = new ArrayList<>(STAGES.length - 1);
+        for (int i = 1; i < STAGES.length; i++) {
+            LatencyHistogram histogram = HISTOGRAMS[i];
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("stage", STAGES[i].name());
+            entry.put("count", histogram.count());
+            entry.put("meanMicros", histogram.mean() / 1e3d);
+            entry.put("p50Micros", histogram.valueAtPercentile(50.0d) / 1e3d);
+            entry.put("p90Micros", histogram.valueAtPercentile(90.0d) / 1e3d);
+            entry.put("p99Micros", histogram.valueAtPercentile(99.0d) / 1e3d);
+            entry.put("p999Micros", histogram.valueAtPercentile(99.9d) / 1e3d);
+            entry.put("maxMicros", histogram.max() / 1e3d);
+            stages.add(entry);
+        }
+        return stages;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package tradeMatcher;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Aggregated quantity per price level of each side of an {@link Orderbook}, kept in primitive
+ * arrays so it can be read without the book lock. Levels are sorted worst to best, so the best
+ * level is the last one and the churn near the touch moves only the few entries behind it.
+ *
+ * <p>The book updates the ladder while it holds its lock and keeps one write stamp for the whole
+ * hold ({@link #beginWrite} on the first change, {@link #endWrite} on release). Readers walk under
+ * an optimistic stamp and retry, so they see the book as of a lock release and never block it.
+ */
+final class LevelLadder {
+    private static final int INITIAL_LEVELS = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private final Side bids = new Side();
+    private final Side asks = new Side();
+    // Stamp held by the book lock owner, 0 outside a write.
+    private long writeStamp;
+
+    /**
+     * Walk result for one requested quantity; prices are book ticks.
+     */
+    record Impact(long requested, long filled, long notionalTicks, int bestPriceTicks, int worstPriceTicks, int levels) {
+        double averagePriceTicks() {
+            return filled == 0L ? 0d : (double) notionalTicks / filled;
+        }
+    }
+
+    /**
+     * Quantity per price bucket: bucket {@code i} covers book prices
+     * {@code [firstPriceTicks + i * bucketTicks, firstPriceTicks + (i + 1) * bucketTicks)}.
+     */
+    record Buckets(int firstPriceTicks, int bucketTicks, long[] quantities) {
+    }
+
+    void beginWrite() {
+        if (writeStamp == 0L) {
+            writeStamp = lock.writeLock();
+        }
+    }
+
+    void endWrite() {
+        if (writeStamp != 0L) {
+            lock.unlockWrite(writeStamp);
+            writeStamp = 0L;
+        }
+    }
+
+    /**
+     * Adds {@code delta} (negative to remove) to a level's quantity; a level at zero is dropped.
+     * Must be called between {@link #beginWrite} and {@link #endWrite}.
+     */
+    void add(OrderSide side, int price, long delta) {
+        if (side == OrderSide.BUY) {
+            bids.add(price, delta);
+        } else {
+            asks.add(-(long) price, delta);
+        }
+    }
+
+    /**
+     * Walks the side an order of {@code side} would trade against, best level first, for each of
+     * {@code quantities} in one pass and from one consistent view of the book.
+     */
+    Impact[] estimate(OrderSide side, long[] quantities) {
+        Side levels = side == OrderSide.BUY ? asks : bids;
+        long sign = side == OrderSide.BUY ? -1L : 1L;
+        Integer[] order = new Integer[quantities.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(quantities[a], quantities[b]));
+        Impact[] impacts = new Impact[quantities.length];
+        while (true) {
+            long stamp = optimisticStamp();
+            long[] keys = levels.keys;
+            long[] sizes = levels.quantities;
+            int size = Math.min(levels.size, Math.min(keys.length, sizes.length));
+            int index = size - 1;
+            long filled = 0L;
+            long notional = 0L;
+            long best = index >= 0 ? keys[index] * sign : 0L;
+            long worst = 0L;
+            int walked = 0;
+            long consumed = 0L;
+            for (int next : order) {
+                long wanted = Math.max(0L, quantities[next]);
+                while (filled < wanted && index >= 0) {
+                    long price = keys[index] * sign;
+                    long available = sizes[index] - consumed;
+                    long take = Math.min(available, wanted - filled);
+                    if (consumed == 0L) {
+                        walked++;
+                    }
+                    filled += take;
+                    notional += take * price;
+                    worst = price;
+                    consumed += take;
+                    if (consumed >= sizes[index]) {
+                        index--;
+                        consumed = 0L;
+                    }
+                }
+                impacts[next] = new Impact(wanted, filled, notional, (int) best, (int) worst, walked);
+            }
+            if (lock.validate(stamp)) {
+                return impacts;
+            }
+        }
+    }
+
+    /**
+     * Sums one side's quantity into buckets of {@code bucketTicks} aligned to multiples of it, over
+     * the buckets holding {@code [fromPrice, toPrice]}, in one pass over the levels in that range.
+     * When the range needs more than {@code maxBuckets}, the buckets nearest the touch are kept:
+     * the highest for bids, the lowest for asks.
+     */
+    Buckets aggregate(OrderSide side, int fromPrice, int toPrice, int bucketTicks, int maxBuckets) {
+        long firstBucket = Math.floorDiv(fromPrice, bucketTicks);
+        long lastBucket = Math.floorDiv(toPrice, bucketTicks);
+        if (lastBucket - firstBucket + 1L > maxBuckets) {
+            if (side == OrderSide.BUY) {
+                firstBucket = lastBucket - maxBuckets + 1L;
+            } else {
+                lastBucket = firstBucket + maxBuckets - 1L;
+            }
+        }
+        long low = firstBucket * bucketTicks;
+        long high = (lastBucket + 1L) * bucketTicks - 1L;
+        Side levels = side == OrderSide.BUY ? bids : asks;
+        long sign = side == OrderSide.BUY ? 1L : -1L;
+        long fromKey = side == OrderSide.BUY ? low : -high;
+        long toKey = side == OrderSide.BUY ? high : -low;
+        long[] quantities = new long[(int) (lastBucket - firstBucket + 1L)];
+        while (true) {
+            long stamp = optimisticStamp();
+            Arrays.fill(quantities, 0L);
+            long[] keys = levels.keys;
+            long[] sizes = levels.quantities;
+            int size = Math.min(levels.size, Math.min(keys.length, sizes.length));
+            int index = Arrays.binarySearch(keys, 0, size, fromKey);
+            for (index = index >= 0 ? index : -index - 1; index < size && keys[index] <= toKey; index++) {
+                long price = keys[index] * sign;
+                int bucket = (int) (Math.floorDiv(price, bucketTicks) - firstBucket);
+                if (bucket >= 0 && bucket < quantities.length) {
+                    quantities[bucket] += sizes[index];
+                }
+            }
+            if (lock.validate(stamp)) {
+                return new Buckets((int) low, bucketTicks, quantities);
+            }
+        }
+    }
+
+    /**
+     * @return an optimistic read stamp, spinning while the book holds the write stamp
+     */
+    private long optimisticStamp() {
+        int spins = 0;
+        long stamp;
+        while ((stamp = lock.tryOptimisticRead()) == 0L) {
+            if (++spins % 64 == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * One side's levels, sorted by ascending key where a higher key is a better price: the price for
+     * bids, its negation for asks.
+     */
+    private static final class Side {
+        long[] keys = new long[INITIAL_LEVELS];
+        long[] quantities = new long[INITIAL_LEVELS];
+        int size;
+
+        void add(long key, long delta) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                quantities[index] += delta;
+                if (quantities[index] <= 0L) {
+                    System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                    System.arraycopy(quantities, index + 1, quantities, index, size - index - 1);
+                    size--;
+                }
+                return;
+            }
+            if (delta <= 0L) {
+                return;
+            }
+            int insertAt = -index - 1;
+            if (size == keys.length) {
+                // Readers may still hold the old arrays; they only ever see a consistent copy.
+                keys = Arrays.copyOf(keys, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+            System.arraycopy(quantities, insertAt, quantities, insertAt + 1, size - insertAt);
+            keys[insertAt] = key;
+            quantities[insertAt] = delta;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package tradeMatcher;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Macro load test: drives synthetic {@link OrderFlowGenerator} flow against a pre-filled book for
+ * every combination of book size and submitting-thread count, and reports sustained throughput,
+ * latency percentiles and heap/GC activity per scenario.
+ *
+ * <p>Targets are the in-process {@link MatchingEngine} ({@code --mode=engine}, the default), the
+ * REST API ({@code --mode=http}) or WebSocket order entry ({@code --mode=ws}) of a running server.
+ * With {@code --rate} set, arrivals are Poisson and latency is measured from each command's
+ * scheduled time, so queueing behind a stall is counted rather than hidden.
+ *
+ * <pre>
+ * java -Xmx4g -cp trade-matcher.jar tradeMatcher.LoadGenerator [--mode=engine|http|ws]
+ *     [--book-sizes=1000,100000,1000000] [--threads=1,4,16,64] [--seconds=10] [--warmup-seconds=3]
+ *     [--rate=0] [--users=100] [--mix=add:60,cancel:25,modify:10,market:5] [--walk=0.5] [--skew=1.0]
+ *     [--url=http://localhost:7070] [--accounts=accounts.json] [--seed=42] [--audit-dir=audit]
+ * java -cp trade-matcher.jar tradeMatcher.LoadGenerator --write-accounts=dir/accounts.json [--users=100]
+ * </pre>
+ *
+ * For the remote modes, start the server with the generated {@code accounts.json} on the classpath
+ * (e.g. {@code java -cp dir:trade-matcher.jar tradeMatcher.Main}) and pass the same file with
+ * {@code --accounts}. The REST API has no modify endpoint, so in {@code http} mode modifies are sent
+ * as cancels. Heap and GC columns describe this JVM, so they are only meaningful in engine mode.
+ * {@code --audit-dir} attaches an {@link OrderAuditLog} to the in-process engine.
+ */
+public final class LoadGenerator {
+    private static final Gson JSON = new Gson();
+    private static final String TICKER = "TEST";
+    private static final String USER_PREFIX = "load-";
+    private static final int PREFILL_BATCH = 5_000;
+
+    private enum Outcome {
+        OK,
+        REJECTED,
+        MISSING
+    }
+
+    /**
+     * Executes commands against one target on behalf of one submitting thread.
+     */
+    private interface Client {
+        Outcome execute(OrderFlowGenerator.Command command, OrderFlowGenerator generator) throws Exception;
+    }
+
+    private interface Target extends AutoCloseable {
+        /**
+         * Grows the resting book by {@code orders} orders outside the traded band.
+         */
+        void prefill(int fromIndex, int orders, OrderFlowGenerator layout) throws Exception;
+
+        Client client(int thread) throws Exception;
+
+        @Override
+        default void close() {
+        }
+    }
+
+    private record Options(
+            String mode,
+            int[] bookSizes,
+            int[] threads,
+            int seconds,
+            int warmupSeconds,
+            double rate,
+            int users,
+            long seed,
+            String url,
+            Path accounts,
+            OrderFlowGenerator.Profile profile) {
+    }
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> flags = parseFlags(args);
+        int users = Integer.parseInt(flags.getOrDefault("users", "100"));
+        if (flags.containsKey("write-accounts")) {
+            Path path = Paths.get(flags.get("write-accounts"));
+            writeAccounts(path, users);
+            System.out.println("Wrote " + users + " load-test accounts to " + path.toAbsolutePath());
+            return;
+        }
+
+        OrderFlowGenerator.Profile profile = OrderFlowGenerator.Profile.DEFAULT;
+        if (flags.containsKey("mix")) {
+            profile = profile.withMix(flags.get("mix"));
+        }
+        profile = profile
+                .withWalk(Double.parseDouble(flags.getOrDefault("walk", Double.toString(profile.walkTicks()))))
+                .withUserSkew(Double.parseDouble(flags.getOrDefault("skew", Double.toString(profile.userSkew()))));
+        Options options = new Options(
+                flags.getOrDefault("mode", "engine").toLowerCase(Locale.ROOT),
+                parseInts(flags.getOrDefault("book-sizes", "1000,100000,1000000")),
+                parseInts(flags.getOrDefault("threads", "1,4,16,64")),
+                Integer.parseInt(flags.getOrDefault("seconds", "10")),
+                Integer.parseInt(flags.getOrDefault("warmup-seconds", "3")),
+                Double.parseDouble(flags.getOrDefault("rate", "0")),
+                users,
+                Long.parseLong(flags.getOrDefault("seed", "42")),
+                flags.getOrDefault("url", "http://localhost:7070"),
+                Paths.get(flags.getOrDefault("accounts", "accounts.json")),
+                profile);
+
+        try (Target target = switch (options.mode()) {
+            case "engine" -> new EngineTarget(options.users(),
+                    flags.containsKey("audit-dir") ? Paths.get(flags.get("audit-dir")) : null);
+            case "http" -> new HttpTarget(options.url(), readApiKeys(options.accounts()));
+            case "ws" -> new WebSocketTarget(options.url(), readApiKeys(options.accounts()));
+            default -> throw new IllegalArgumentException("Unknown mode '" + options.mode() + "'");
+        }) {
+            run(options, target);
+        }
+    }
+
+    private static void run(Options options, Target target) throws Exception {
+        System.out.printf("%-10s %-8s %-10s %-10s %-10s %-10s %-10s %-9s %-9s %-9s %-7s %-8s%n",
+                "book", "threads", "cmd/s", "p50(us)", "p99(us)", "p99.9(us)", "max(us)",
+                "rejects", "misses", "heap(MB)", "gcs", "gc(ms)");
+        OrderFlowGenerator layout = new OrderFlowGenerator(options.profile(), 1, options.seed());
+        int filled = 0;
+        for (int bookSize : options.bookSizes()) {
+            // The book only grows between sizes; the flow itself adds and removes roughly in balance.
+            if (bookSize > filled) {
+                target.prefill(filled, bookSize - filled, layout);
+                filled = bookSize;
+            }
+            for (int threads : options.threads()) {
+                runScenario(options, target, bookSize, threads);
+            }
+        }
+    }
+
+    private static void runScenario(Options options, Target target, int bookSize, int threads) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong commands = new AtomicLong();
+        AtomicLong rejects = new AtomicLong();
+        AtomicLong misses = new AtomicLong();
+        OrderFlowGenerator.Profile profile = options.profile().withRate(options.rate() / threads);
+
+        System.gc();
+        long[] gcBefore = gcTotals();
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(options.seconds());
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Throwable> failures = new java.util.concurrent.CopyOnWriteArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Client client = target.client(t);
+            OrderFlowGenerator generator = new OrderFlowGenerator(profile, options.users(), options.seed() * 31L + bookSize + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    submitLoop(client, generator, warmupEnd, end, latency, commands, rejects, misses);
+                } catch (Throwable ex) {
+                    failures.add(ex);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.start();
+        }
+        done.await();
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Load thread failed", failures.get(0));
+        }
+
+        long[] gcAfter = gcTotals();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("%-10d %-8d %-10.0f %-10.1f %-10.1f %-10.1f %-10.1f %-9d %-9d %-9d %-7d %-8d%n",
+                bookSize,
+                threads,
+                commands.get() / (double) options.seconds(),
+                latency.valueAtPercentile(50.0d) / 1e3d,
+                latency.valueAtPercentile(99.0d) / 1e3d,
+                latency.valueAtPercentile(99.9d) / 1e3d,
+                latency.max() / 1e3d,
+                rejects.get(),
+                misses.get(),
+                heap.getUsed() >> 20,
+                gcAfter[0] - gcBefore[0],
+                gcAfter[1] - gcBefore[1]);
+    }
+
+    private static void submitLoop(
+            Client client,
+            OrderFlowGenerator generator,
+            long warmupEnd,
+            long end,
+            LatencyHistogram latency,
+            AtomicLong commands,
+            AtomicLong rejects,
+            AtomicLong misses) throws Exception {
+        OrderFlowGenerator.Command command = new OrderFlowGenerator.Command();
+        long scheduled = System.nanoTime();
+        while (true) {
+            long interval = generator.nextIntervalNanos();
+            long started;
+            if (interval > 0L) {
+                scheduled += interval;
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0L) {
+                    LockSupport.parkNanos(wait);
+                }
+                started = scheduled;
+            } else {
+                started = System.nanoTime();
+            }
+            if (started >= end) {
+                return;
+            }
+            Outcome outcome = client.execute(generator.next(command), generator);
+            if (started >= warmupEnd) {
+                latency.record(System.nanoTime() - started);
+                commands.incrementAndGet();
+                if (outcome == Outcome.REJECTED) {
+                    rejects.incrementAndGet();
+                } else if (outcome == Outcome.MISSING) {
+                    misses.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return cumulative collection count and time in milliseconds across all collectors
+     */
+    private static long[] gcTotals() {
+        long count = 0L;
+        long millis = 0L;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, bean.getCollectionCount());
+            millis += Math.max(0L, bean.getCollectionTime());
+        }
+        return new long[] {count, millis};
+    }
+
+    /**
+     * In-process target: one engine with {@code users} well-funded accounts.
+     */
+    private static final class EngineTarget implements Target {
+        private final AccountManager accounts = new AccountManager();
+        private final MatchingEngine engine = new MatchingEngine(accounts);
+        private final OrderIdGenerator orderIds = new OrderIdGenerator();
+        private final String[] userIds;
+        private final OrderAuditLog auditLog;
+
+        EngineTarget(int users, Path auditDir) throws java.io.IOException {
+            quietLogging();
+            auditLog = auditDir != null ? new OrderAuditLog(auditDir) : null;
+            engine.setAuditLog(auditLog);
+            userIds = new String[users];
+            for (int i = 0; i < users; i++) {
+                userIds[i] = USER_PREFIX + i;
+                accounts.registerAccount(userIds[i], 1e12d, Map.of(TICKER, Long.MAX_VALUE / 8), false);
+            }
+        }
+
+        @Override
+        public void prefill(int fromIndex, int orders, OrderFlowGenerator layout) {
+            long started = System.nanoTime();
+            List<Order> batch = new ArrayList<>(PREFILL_BATCH);
+            int target = fromIndex + orders;
+            for (int i = fromIndex; i < target; i++) {
+                OrderSide side = (i & 1) == 0 ? OrderSide.BUY : OrderSide.SELL;
+                int price = layout.prefillPrice(side, i, target);
+                batch.add(new Order(orderIds.nextId(), userIds[i % userIds.length], TICKER, side,
+                        OrderType.LIMIT, TimeInForce.GTC, 10L, price, price, false, 10L));
+                if (batch.size() == PREFILL_BATCH) {
+                    engine.processBatch(batch);
+                    batch = new ArrayList<>(PREFILL_BATCH);
+                }
+            }
+            if (!batch.isEmpty()) {
+                engine.processBatch(batch);
+            }
+            System.out.printf("# pre-filled %d resting orders in %d ms%n", orders, (System.nanoTime() - started) / 1_000_000L);
+        }
+
+        @Override
+        public Client client(int thread) {
+            return (command, generator) -> {
+                String userId = userIds[command.userIndex()];
+                switch (command.kind()) {
+                    case ADD, MARKET -> {
+                        boolean market = command.kind() == OrderFlowGenerator.Kind.MARKET;
+                        Order order = new Order(orderIds.nextId(), userId, TICKER, command.side(),
+                                market ? OrderType.MARKET : OrderType.LIMIT,
+                                market ? TimeInForce.IOC : TimeInForce.GTC,
+                                command.quantity(), command.price(), command.price(), false, command.quantity());
+                        try {
+                            engine.processOrder(order);
+                        } catch (IllegalArgumentException ex) {
+                            return Outcome.REJECTED;
+                        }
+                        if (!market && order.GetRemainingQuantity() > 0L) {
+                            generator.onAdded(order.GetOrderId(), command.userIndex());
+                        }
+                        return Outcome.OK;
+                    }
+                    case CANCEL -> {
+                        return engine.cancelOrder(userId, command.orderId()) ? Outcome.OK : Outcome.MISSING;
+                    }
+                    default -> {
+                        try {
+                            engine.modifyOrder(userId, command.orderId(), command.side(), command.price(), command.quantity());
+                            return Outcome.OK;
+                        } catch (IllegalArgumentException ex) {
+                            generator.onMissing(command.orderId());
+                            return Outcome.MISSING;
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            engine.close();
+            if (auditLog != null) {
+                auditLog.close();
+            }
+        }
+    }
+
+    /**
+     * REST target: blocking requests, one in flight per submitting thread.
+     */
+    private static final class HttpTarget implements Target {
+        private final HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        private final String baseUrl;
+        private final String[] apiKeys;
+        private final PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+
+        HttpTarget(String baseUrl, String[] apiKeys) {
+            this.baseUrl = trimSlash(baseUrl);
+            this.apiKeys = apiKeys;
+        }
+
+        @Override
+        public void prefill(int fromIndex, int orders, OrderFlowGenerator layout) throws Exception {
+            long started = System.nanoTime();
+            int target = fromIndex + orders;
+            for (int from = fromIndex; from < target; from += PREFILL_BATCH) {
+                int to = Math.min(target, from + PREFILL_BATCH);
+                JsonArray batch = new JsonArray();
+                for (int i = from; i < to; i++) {
+                    OrderSide side = (i & 1) == 0 ? OrderSide.BUY : OrderSide.SELL;
+                    batch.add(orderJson("LIMIT", side, scale.toDisplayPrice(layout.prefillPrice(side, i, target)), 10));
+                }
+                HttpResponse<String> response = http.send(
+                        request("/api/orders/batch", apiKeys[(from / PREFILL_BATCH) % apiKeys.length])
+                                .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Prefill batch failed: " + response.statusCode() + " " + response.body());
+                }
+            }
+            System.out.printf("# pre-filled %d resting orders in %d ms%n", orders, (System.nanoTime() - started) / 1_000_000L);
+        }
+
+        @Override
+        public Client client(int thread) {
+            return (command, generator) -> {
+                String apiKey = apiKeys[command.userIndex() % apiKeys.length];
+                switch (command.kind()) {
+                    case ADD, MARKET -> {
+                        boolean market = command.kind() == OrderFlowGenerator.Kind.MARKET;
+                        JsonObject body = orderJson(market ? "MARKET" : "LIMIT", command.side(),
+                                market ? 0.0d : scale.toDisplayPrice(command.price()), command.quantity());
+                        HttpResponse<String> response = http.send(
+                                request("/api/order", apiKey).POST(HttpRequest.BodyPublishers.ofString(body.toString())).build(),
+                                HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            return Outcome.REJECTED;
+                        }
+                        if (!market) {
+                            long orderId = JSON.fromJson(response.body(), JsonObject.class).get("orderId").getAsLong();
+                            generator.onAdded(orderId, command.userIndex());
+                        }
+                        return Outcome.OK;
+                    }
+                    case MODIFY -> {
+                        // No REST modify; cancel the order instead and forget it.
+                        generator.onMissing(command.orderId());
+                        return cancel(apiKey, command.orderId());
+                    }
+                    default -> {
+                        return cancel(apiKey, command.orderId());
+                    }
+                }
+            };
+        }
+
+        private Outcome cancel(String apiKey, long orderId) throws IOException, InterruptedException {
+            HttpResponse<Void> response = http.send(
+                    request("/api/order/" + orderId, apiKey).DELETE().build(),
+                    HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200 ? Outcome.OK : Outcome.MISSING;
+        }
+
+        private HttpRequest.Builder request(String path, String apiKey) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Authorization", "Bearer " + apiKey)
+                    .header("Content-Type", "application/json");
+        }
+    }
+
+    /**
+     * WebSocket order-entry target: one private session per account, shared by the submitting
+     * threads, with replies correlated by {@code clientOrderId}.
+     */
+    private static final class WebSocketTarget implements Target {
+        private final HttpTarget rest;
+        private final Session[] sessions;
+        private final PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+        private final AtomicLong clientOrderIds = new AtomicLong();
+
+        WebSocketTarget(String baseUrl, String[] apiKeys) {
+            // Pre-filling goes through the batch endpoint, which is far quicker than single orders.
+            this.rest = new HttpTarget(baseUrl, apiKeys);
+            this.sessions = new Session[apiKeys.length];
+            String wsUrl = trimSlash(baseUrl).replaceFirst("^http", "ws") + "/ws/private?token=";
+            HttpClient http = HttpClient.newHttpClient();
+            for (int i = 0; i < apiKeys.length; i++) {
+                Session session = new Session();
+                session.socket = http.newWebSocketBuilder().buildAsync(URI.create(wsUrl + apiKeys[i]), session).join();
+                sessions[i] = session;
+            }
+        }
+
+        @Override
+        public void prefill(int fromIndex, int orders, OrderFlowGenerator layout) throws Exception {
+            rest.prefill(fromIndex, orders, layout);
+        }
+
+        @Override
+        public Client client(int thread) {
+            return (command, generator) -> {
+                Session session = sessions[command.userIndex() % sessions.length];
+                String clientOrderId = Long.toString(clientOrderIds.incrementAndGet());
+                JsonObject message = new JsonObject();
+                message.addProperty("clientOrderId", clientOrderId);
+                switch (command.kind()) {
+                    case ADD, MARKET -> {
+                        boolean market = command.kind() == OrderFlowGenerator.Kind.MARKET;
+                        message = orderJson(market ? "MARKET" : "LIMIT", command.side(),
+                                market ? 0.0d : scale.toDisplayPrice(command.price()), command.quantity());
+                        message.addProperty("action", "NEW");
+                        message.addProperty("clientOrderId", clientOrderId);
+                    }
+                    case CANCEL -> {
+                        message.addProperty("action", "CANCEL");
+                        message.addProperty("orderId", Long.toString(command.orderId()));
+                    }
+                    default -> {
+                        message.addProperty("action", "MODIFY");
+                        message.addProperty("orderId", Long.toString(command.orderId()));
+                        message.addProperty("side", command.side().name());
+                        message.addProperty("price", scale.toDisplayPrice(command.price()));
+                        message.addProperty("quantity", command.quantity());
+                    }
+                }
+                JsonObject reply = session.request(clientOrderId, message.toString());
+                String type = reply.has("type") ? reply.get("type").getAsString() : "";
+                if (type.equals("ACK")) {
+                    if (command.kind() == OrderFlowGenerator.Kind.ADD) {
+                        generator.onAdded(reply.get("orderId").getAsLong(), command.userIndex());
+                    }
+                    return Outcome.OK;
+                }
+                if (type.equals("CANCELED") || type.equals("MODIFIED")) {
+                    return Outcome.OK;
+                }
+                if (command.kind() == OrderFlowGenerator.Kind.MODIFY) {
+                    generator.onMissing(command.orderId());
+                }
+                return command.kind() == OrderFlowGenerator.Kind.ADD || command.kind() == OrderFlowGenerator.Kind.MARKET
+                        ? Outcome.REJECTED
+                        : Outcome.MISSING;
+            };
+        }
+
+        @Override
+        public void close() {
+            for (Session session : sessions) {
+                session.socket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+            }
+        }
+
+        private static final class Session implements WebSocket.Listener {
+            private final Map<String, CompletableFuture<JsonObject>> pending = new ConcurrentHashMap<>();
+            private final StringBuilder partial = new StringBuilder();
+            private WebSocket socket;
+
+            JsonObject request(String clientOrderId, String message) throws Exception {
+                CompletableFuture<JsonObject> reply = new CompletableFuture<>();
+                pending.put(clientOrderId, reply);
+                synchronized (this) {
+                    // java.net.http.WebSocket allows one outstanding send per socket.
+                    socket.sendText(message, true).join();
+                }
+                return reply.get(30, TimeUnit.SECONDS);
+            }
+
+            @Override
+            public java.util.concurrent.CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                partial.append(data);
+                if (last) {
+                    JsonObject message = JSON.fromJson(partial.toString(), JsonObject.class);
+                    partial.setLength(0);
+                    JsonElement clientOrderId = message.get("clientOrderId");
+                    if (clientOrderId != null && !clientOrderId.isJsonNull()) {
+                        CompletableFuture<JsonObject> reply = pending.remove(clientOrderId.getAsString());
+                        if (reply != null) {
+                            reply.complete(message);
+                        }
+                    }
+                }
+                webSocket.request(1);
+                return null;
+            }
+        }
+    }
+
+    private static JsonObject orderJson(String orderType, OrderSide side, double price, long quantity) {
+        JsonObject order = new JsonObject();
+        order.addProperty("ticker", TICKER);
+        order.addProperty("orderType", orderType);
+        order.addProperty("side", side.name());
+        if (price > 0.0d) {
+            order.addProperty("price", price);
+        }
+        order.addProperty("quantity", quantity);
+        return order;
+    }
+
+    private static void writeAccounts(Path path, int users) throws IOException {
+        JsonArray accounts = new JsonArray();
+        for (int i = 0; i < users; i++) {
+            JsonObject account = new JsonObject();
+            account.addProperty("userId", USER_PREFIX + i);
+            account.addProperty("apiKey", USER_PREFIX + i + "-key");
+            account.addProperty("cash", 1e12d);
+            JsonObject positions = new JsonObject();
+            positions.addProperty(TICKER, Long.MAX_VALUE / 8);
+            account.add("positions", positions);
+            accounts.add(account);
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, accounts.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static String[] readApiKeys(Path path) {
+        try {
+            JsonArray accounts = JSON.fromJson(Files.readString(path, StandardCharsets.UTF_8), JsonArray.class);
+            List<String> keys = new ArrayList<>(accounts.size());
+            for (JsonElement account : accounts) {
+                JsonObject object = account.getAsJsonObject();
+                if (!object.has("admin") || !object.get("admin").getAsBoolean()) {
+                    keys.add(object.get("apiKey").getAsString());
+                }
+            }
+            if (keys.isEmpty()) {
+                throw new IllegalArgumentException("No non-admin accounts in " + path);
+            }
+            return keys.toArray(String[]::new);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read accounts from " + path, ex);
+        }
+    }
+
+    private static Map<String, String> parseFlags(String[] args) {
+        Map<String, String> flags = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument '" + arg + "'");
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                flags.put(arg.substring(2), "true");
+            } else {
+                flags.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return flags;
+    }
+
+    private static int[] parseInts(String value) {
+        String[] tokens = value.split(",");
+        int[] values = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            values[i] = Integer.parseInt(tokens[i].trim().replace("_", ""));
+        }
+        return values;
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static void quietLogging() {
+        // The engine logs every command at INFO; at load-test rates that is the bottleneck.
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+        }
+    }
+}
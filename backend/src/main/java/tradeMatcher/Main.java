@@ -5,19 +5,26 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
 import io.javalin.Javalin;
 import io.javalin.http.staticfiles.Location;
+import io.javalin.util.ConcurrencyUtil;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import org.eclipse.jetty.websocket.api.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,11 +38,39 @@ public class Main {
             Map.of("ticker", DEFAULT_TICKER, "tickSize", 0.001d, "minOrderQty", 1L),
             Map.of("ticker", "DEMO", "tickSize", 0.001d, "minOrderQty", 1L));
     private static final Map<String, String> MARKET_STATUS = Map.of("sessionStatus", "OPEN");
+    private static final long DEFAULT_CANCEL_ON_DISCONNECT_GRACE_MS = 2_000L;
+    private static final int MAX_BATCH_ORDERS = 5_000;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300L;
+    private static final String DEFAULT_AUDIT_LOG_DIR = "audit";
+    private static final long DEFAULT_FILL_RETENTION_MINUTES = 1_440L;
+    private static final String DEFAULT_FILL_SPILL_DIR = "fills";
+    private static final long DEFAULT_FILLS_PAGE = 500L;
+    private static final long MAX_FILLS_PAGE = 5_000L;
+    private static final String DEFAULT_HISTORY_DIR = "history";
+    private static final long DEFAULT_HISTORY_PARTITION_MINUTES = 60L;
+    private static final long DEFAULT_HISTORY_PAGE = 1_000L;
+    private static final long MAX_HISTORY_PAGE = 100_000L;
+    private static final OrderSide[] ORDER_SIDES = OrderSide.values();
+    private static final long DEFAULT_TAPE_PAGE = 100L;
+    private static final long DEFAULT_CANDLES_PAGE = 500L;
+    private static final long DEFAULT_STATS_INTERVAL_MS = 1_000L;
+    private static final int MAX_IMPACT_QUANTITIES = 100;
+    private static final long DEFAULT_DEPTH_BUCKETS = 500L;
+    private static final long MAX_DEPTH_BUCKETS = 10_000L;
 
     public static void main(String[] args) {
         AccountManager accountManager = new AccountManager();
+        MatchingEngine engine = new MatchingEngine(accountManager);
+        Path journalDir = resolveJournalDir();
+        JournalRecovery.Result recovered = recoverFromJournal(journalDir, engine, accountManager);
         List<SeedAccount> seedAccounts = loadSeedAccounts();
-        if (seedAccounts.isEmpty()) {
+        if (!recovered.isEmpty()) {
+            // Accounts, balances and resting orders come from the journal; only apply session flags.
+            for (SeedAccount seed : seedAccounts) {
+                accountManager.findById(seed.userId())
+                        .ifPresent(account -> account.setCancelOnDisconnect(seed.cancelOnDisconnect()));
+            }
+        } else if (seedAccounts.isEmpty()) {
             accountManager.registerAccount(ADMIN_USER_ID, 5_000_000d,
                     Map.of(DEFAULT_TICKER, 1_000_000L, "DEMO", 1_000_000L), true);
             accountManager.registerAccount("alpha", 250_000d, Map.of(DEFAULT_TICKER, 10_000L), false);
@@ -43,12 +78,13 @@ public class Main {
         } else {
             for (SeedAccount seed : seedAccounts) {
                 try {
-                    accountManager.registerAccountWithApiKey(
+                    UserAccount account = accountManager.registerAccountWithApiKey(
                             seed.userId(),
                             seed.apiKey(),
                             seed.cash(),
                             seed.positions(),
                             seed.admin());
+                    account.setCancelOnDisconnect(seed.cancelOnDisconnect());
                 } catch (IllegalArgumentException ex) {
                     LOG.warn("Failed to register seed account {}: {}", seed.userId(), ex.getMessage());
                 }
@@ -59,21 +95,62 @@ public class Main {
         for (UserAccount account : accountManager.getAllAccounts()) {
             LOG.info("user={} token={}", account.getUserId(), account.getApiKey());
         }
+        attachJournal(journalDir, engine, accountManager, recovered.isEmpty());
+        attachAuditLog(engine);
+        attachFillRetention(engine);
+        TradeHistory tradeHistory = attachTradeHistory(engine);
+        TradeTape tradeTape = attachTradeTape(engine);
+        CandleAggregator candles = new CandleAggregator();
+        engine.setCandles(candles);
+        MarketStats marketStats = new MarketStats(DEFAULT_TICKER);
+        engine.setMarketStats(marketStats);
 
-    MatchingEngine engine = new MatchingEngine(accountManager);
-    PublicFeedService publicFeed = new PublicFeedService();
-    PrivateFeedService privateFeed = new PrivateFeedService();
+    boolean useVirtualThreads = resolveVirtualThreads();
+    WebSocketSender feedSender = useVirtualThreads
+            ? new WebSocketSender(ConcurrencyUtil.executorService("feed-sender", true))
+            : new WebSocketSender();
+    PublicFeedService publicFeed = new PublicFeedService(feedSender);
+    PrivateFeedService privateFeed = new PrivateFeedService(resolveCancelOnDisconnectGrace(), feedSender);
     AuthService authService = new AuthService(accountManager);
-    OrderIdGenerator orderIdGenerator = new OrderIdGenerator();
+    OrderIdGenerator orderIdGenerator = new OrderIdGenerator(recovered.maxOrderId() + 1L);
+    EngineMetrics.startSampler();
+    LatencyTracer.setEnabled(!"false".equalsIgnoreCase(System.getenv("LATENCY_TRACING")));
+    boolean stampLatencyOnAcks = Boolean.parseBoolean(System.getenv("LATENCY_STAMP_ACKS"));
+        scheduleSnapshots(journalDir, engine, orderIdGenerator);
+        scheduleStatsPublisher(marketStats, publicFeed);
 
-        engine.onOrderBookUpdate(levels -> publicFeed.broadcastDelta(DEFAULT_TICKER, levels));
-        engine.onTrades(trades -> publicFeed.broadcastTrades(DEFAULT_TICKER, trades));
+        PriceScale bookScale = PRICE_SCALES.getScale(DEFAULT_TICKER);
+        // The book only builds level-3 events while someone is subscribed to them.
+        engine.onOrderEvents(events -> publicFeed.broadcastOrderEvents(DEFAULT_TICKER, bookScale, events),
+                publicFeed::hasOrderSubscribers);
+        engine.onOrderBookUpdate(levels -> {
+            publicFeed.broadcastDelta(DEFAULT_TICKER, levels);
+            if (publicFeed.hasDepthSubscribers()) {
+                publicFeed.broadcastDepthBuckets(engine::aggregateDepth);
+            }
+        });
+        engine.onTrades((trades, sequence) -> {
+            String ticker = trades.get(0).getBidTrade().getTicker();
+            publicFeed.broadcastTrades(DEFAULT_TICKER, trades, sequence);
+            if (publicFeed.hasCandleSubscribers()) {
+                PriceScale scale = PRICE_SCALES.getScale(ticker);
+                for (CandleAggregator.Candle bar : candles.latest(ticker)) {
+                    publicFeed.broadcastCandle(ticker, bar.interval(), candleJson(scale, bar));
+                }
+            }
+        });
         engine.onFill(privateFeed::sendFill);
+        privateFeed.onCancelOnDisconnect(userId -> {
+            List<Long> canceled = engine.cancelAllOrders(userId);
+            LOG.info("Cancel-on-disconnect removed {} resting orders for user={}", canceled.size(), userId);
+        });
 
         int port = resolvePort();
+        startBinaryGateway(engine, accountManager, orderIdGenerator);
 
         // 3. Start the Javalin server
         Javalin app = Javalin.create(config -> {
+            config.useVirtualThreads = useVirtualThreads;
             if (Main.class.getResource("/public") != null) {
                 // Serve pre-built frontend assets when they are bundled into the jar
                 config.staticFiles.add("/public");
@@ -105,6 +182,7 @@ public class Main {
         // 4. Define the HTTP "Command" Endpoint
         // This is how the user SUBMITS an order
     app.post("/api/order", ctx -> {
+            long received = System.nanoTime();
             UserAccount user = authService.requireUser(ctx);
             OrderPayload payload = ctx.bodyValidator(OrderPayload.class)
                     .check(p -> p.orderType() != null && !p.orderType().isBlank(), "orderType is required")
@@ -117,13 +195,11 @@ public class Main {
 
             try {
         Order newOrder = toDomainOrder(user.getUserId(), payload, assignedOrderId);
-                PriceScale scale = PRICE_SCALES.getScale(newOrder.getTicker());
-                double displayPrice = scale.toDisplayPrice((int) Math.round(newOrder.GetPrice()));
-                LOG.info("Received order via HTTP: type={}, side={}, price={}, qty={}, id={}",
-                        newOrder.GetOrderType(), newOrder.GetSide(), displayPrice,
-                        newOrder.GetInitialQuantity(), newOrder.GetOrderId());
+                LatencyTracer.begin(received);
+                LatencyTracer.mark(LatencyTracer.Stage.VALIDATED);
 
                 engine.processOrder(newOrder);
+                LatencyTracer.mark(LatencyTracer.Stage.ACKNOWLEDGED);
                 privateFeed.sendAcknowledgement(user.getUserId(), assignedOrderId, clientOrderId);
                 Map<String, Object> response = new java.util.HashMap<>();
                 response.put("status", "Order received");
@@ -131,6 +207,10 @@ public class Main {
                 if (clientOrderId != null && !clientOrderId.isBlank()) {
                     response.put("clientOrderId", clientOrderId);
                 }
+                if (stampLatencyOnAcks) {
+                    response.put("latencyNanos", LatencyTracer.elapsedSoFar());
+                }
+                LatencyTracer.end(true);
                 ctx.json(response);
             } catch (IllegalArgumentException ex) {
                 LOG.warn("Rejected order payload {}: {}", payload, ex.getMessage());
@@ -143,9 +223,91 @@ public class Main {
                     errorBody.put("clientOrderId", clientOrderId);
                 }
                 ctx.status(400).json(errorBody);
+            } finally {
+                // Closes a trace left open by a rejection or an unexpected failure, unrecorded.
+                LatencyTracer.end(false);
             }
         });
 
+    app.post("/api/orders/batch", ctx -> {
+            UserAccount user = authService.requireUser(ctx);
+            List<OrderPayload> payloads;
+            try {
+                payloads = parseBatchPayload(ctx.body());
+            } catch (IllegalArgumentException ex) {
+                ctx.status(400).json(Map.of("status", "error", "message", ex.getMessage()));
+                return;
+            }
+            if (payloads.size() > MAX_BATCH_ORDERS) {
+                ctx.status(400).json(Map.of(
+                        "status", "error",
+                        "message", "Batch exceeds " + MAX_BATCH_ORDERS + " orders"));
+                return;
+            }
+
+            List<Map<String, Object>> results = new ArrayList<>(payloads.size());
+            List<Order> accepted = new ArrayList<>(payloads.size());
+            List<Integer> acceptedIndices = new ArrayList<>(payloads.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                OrderPayload payload = payloads.get(i);
+                String assignedOrderId = orderIdGenerator.nextId();
+                String clientOrderId = payload != null ? payload.orderId() : null;
+                Map<String, Object> result = new HashMap<>();
+                result.put("index", i);
+                result.put("orderId", assignedOrderId);
+                if (clientOrderId != null && !clientOrderId.isBlank()) {
+                    result.put("clientOrderId", clientOrderId);
+                }
+                try {
+                    // Same required fields as a single /api/order, so a batch item never defaults its type.
+                    if (payload == null || payload.orderType() == null || payload.orderType().isBlank()) {
+                        throw new IllegalArgumentException("orderType is required");
+                    }
+                    if (payload.side() == null || payload.side().isBlank()) {
+                        throw new IllegalArgumentException("side is required");
+                    }
+                    if (payload.quantity() == null || payload.quantity() <= 0) {
+                        throw new IllegalArgumentException("quantity must be positive");
+                    }
+                    accepted.add(toDomainOrder(user.getUserId(), payload, assignedOrderId));
+                    acceptedIndices.add(i);
+                } catch (IllegalArgumentException ex) {
+                    result.put("status", "REJECTED");
+                    result.put("reason", ex.getMessage());
+                    privateFeed.sendReject(user.getUserId(), assignedOrderId, clientOrderId, ex.getMessage());
+                }
+                results.add(result);
+            }
+
+            // Fills of the batch's orders are held until every item's ACK or REJECT has been sent.
+            PrivateFeedService.HeldCommand heldFills = privateFeed.beginBatch(user.getUserId(),
+                    accepted.stream().map(Order::getOrderId).toList());
+            try {
+                List<MatchingEngine.BatchItemResult> outcomes = engine.processBatch(accepted);
+                for (int i = 0; i < outcomes.size(); i++) {
+                    MatchingEngine.BatchItemResult outcome = outcomes.get(i);
+                    Map<String, Object> result = results.get(acceptedIndices.get(i));
+                    String clientOrderId = (String) result.get("clientOrderId");
+                    if (outcome.accepted()) {
+                        result.put("status", "ACCEPTED");
+                        result.put("filledQuantity", outcome.order().getFilledQuantity());
+                        privateFeed.sendAcknowledgement(user.getUserId(), outcome.order().getOrderId(), clientOrderId);
+                    } else {
+                        result.put("status", "REJECTED");
+                        result.put("reason", outcome.rejectReason());
+                        privateFeed.sendReject(user.getUserId(), outcome.order().getOrderId(), clientOrderId,
+                                outcome.rejectReason());
+                    }
+                }
+            } finally {
+                privateFeed.endBatch(user.getUserId(), heldFills);
+            }
+            LOG.debug("Processed batch of {} orders for user={}", payloads.size(), user.getUserId());
+            ctx.json(Map.of(
+                    "status", "Batch processed",
+                    "results", results));
+        });
+
     app.delete("/api/order/{orderId}", ctx -> {
             UserAccount user = authService.requireUser(ctx);
             long orderId;
@@ -166,14 +328,17 @@ public class Main {
 
         app.get("/api/account", ctx -> {
             UserAccount user = authService.requireUser(ctx);
+            UserAccount.Snapshot ledger = user.snapshot();
             List<Map<String, Object>> positions = new ArrayList<>();
-            user.snapshotPositions().forEach((ticker, qty) -> positions.add(Map.of(
+            ledger.positions().forEach((ticker, qty) -> positions.add(Map.of(
                     "ticker", ticker,
                     "quantity", qty)));
             ctx.json(Map.of(
                     "userId", user.getUserId(),
-                    "cash", user.getCashBalance(),
-                    "positions", positions));
+                    "cash", ledger.cashBalance(),
+                    "reservedCash", user.getReservedCash(),
+                    "positions", positions,
+                    "reservedPositions", user.snapshotReservedInventory()));
         });
 
         app.get("/api/orders", ctx -> {
@@ -193,8 +358,26 @@ public class Main {
 
         app.get("/api/fills", ctx -> {
             UserAccount user = authService.requireUser(ctx);
+            // Newest first; "before" takes the X-Next-Cursor of the previous page, from/to are epoch ms.
+            long before;
+            long fromNanos;
+            long toNanos;
+            int limit;
+            try {
+                before = parseLongQuery(ctx.queryParam("before"), Long.MAX_VALUE);
+                fromNanos = millisToNanos(parseLongQuery(ctx.queryParam("from"), Long.MIN_VALUE));
+                toNanos = millisToNanos(parseLongQuery(ctx.queryParam("to"), Long.MAX_VALUE));
+                limit = (int) Math.min(MAX_FILLS_PAGE, parseLongQuery(ctx.queryParam("limit"), DEFAULT_FILLS_PAGE));
+            } catch (NumberFormatException | ArithmeticException ex) {
+                ctx.status(400).json(Map.of("status", "error", "message", "INVALID_QUERY"));
+                return;
+            }
+            FillStore.Page page = engine.getFills(user.getUserId(), before, fromNanos, toNanos, limit);
+            if (page.hasMore()) {
+                ctx.header("X-Next-Cursor", Long.toString(page.nextCursor()));
+            }
             List<Map<String, Object>> fills = new ArrayList<>();
-            for (FillRecord fill : engine.getFillsForUser(user.getUserId())) {
+            for (FillRecord fill : page.fills()) {
                 fills.add(Map.of(
                         "fillId", fill.fillId(),
                         "orderId", fill.orderId(),
@@ -207,6 +390,23 @@ public class Main {
             ctx.json(fills);
         });
 
+        app.get("/api/history/fills", ctx -> {
+            UserAccount user = authService.requireUser(ctx);
+            String userId = ctx.queryParam("userId");
+            if (userId == null || userId.isBlank()) {
+                userId = user.getUserId();
+            } else if (!userId.equals(user.getUserId())) {
+                authService.requireAdmin(ctx);
+            }
+            String ticker = ctx.queryParam("ticker");
+            streamHistory(ctx, tradeHistory, userId, ticker == null ? null : normalizeTicker(ticker));
+        });
+
+        app.get("/api/history/trades", ctx -> {
+            String ticker = ctx.queryParam("ticker");
+            streamHistory(ctx, tradeHistory, null, ticker == null ? null : normalizeTicker(ticker));
+        });
+
     app.get("/api/instruments", ctx -> ctx.json(INSTRUMENTS));
     app.get("/api/market/status", ctx -> ctx.json(MARKET_STATUS));
     app.get("/api/market/{ticker}/book", ctx -> {
@@ -225,6 +425,131 @@ public class Main {
             "asks", snapshot.GetAsks()));
     });
 
+        app.get("/api/market/{ticker}/trades", ctx -> {
+            String requestedTicker = ctx.pathParam("ticker");
+            if (!isSupportedTicker(requestedTicker)) {
+                ctx.status(404).json(Map.of("status", "error", "message", "UNKNOWN_TICKER"));
+                return;
+            }
+            if (tradeTape == null) {
+                ctx.status(503).json(Map.of("status", "error", "message", "TRADE_TAPE_DISABLED"));
+                return;
+            }
+            long since;
+            long limit;
+            try {
+                since = parseLongQuery(ctx.queryParam("since"), 0L);
+                limit = Math.min(tradeTape.capacity(), parseLongQuery(ctx.queryParam("limit"), DEFAULT_TAPE_PAGE));
+            } catch (NumberFormatException ex) {
+                ctx.status(400).json(Map.of("status", "error", "message", "INVALID_QUERY"));
+                return;
+            }
+            String ticker = normalizeTicker(requestedTicker);
+            List<TradeTape.Print> prints = tradeTape.read(ticker, since, (int) limit);
+            ctx.json(Map.of(
+                    "ticker", ticker,
+                    "trades", tapeJson(ticker, prints),
+                    "lastSequence", prints.isEmpty() ? tradeTape.lastSequence(ticker) : prints.get(prints.size() - 1).sequence()));
+        });
+
+        app.get("/api/market/{ticker}/stats", ctx -> {
+            String requestedTicker = ctx.pathParam("ticker");
+            if (!isSupportedTicker(requestedTicker)) {
+                ctx.status(404).json(Map.of("status", "error", "message", "UNKNOWN_TICKER"));
+                return;
+            }
+            String ticker = normalizeTicker(requestedTicker);
+            ctx.json(statsJson(ticker, marketStats.snapshot(ticker)));
+        });
+
+        app.get("/api/market/{ticker}/impact", ctx -> {
+            String requestedTicker = ctx.pathParam("ticker");
+            if (!isSupportedTicker(requestedTicker)) {
+                ctx.status(404).json(Map.of("status", "error", "message", "UNKNOWN_TICKER"));
+                return;
+            }
+            OrderSide side;
+            long[] quantities;
+            try {
+                side = parseSide(ctx.queryParam("side"));
+                quantities = parseImpactQuantities(ctx.queryParam("qty"));
+            } catch (IllegalArgumentException ex) {
+                ctx.status(400).json(Map.of("status", "error", "message", "INVALID_QUERY"));
+                return;
+            }
+            String ticker = normalizeTicker(requestedTicker);
+            PriceScale scale = PRICE_SCALES.getScale(ticker);
+            List<Map<String, Object>> estimates = new ArrayList<>(quantities.length);
+            for (LevelLadder.Impact impact : engine.estimateImpact(side, quantities)) {
+                estimates.add(impactJson(scale, impact));
+            }
+            ctx.json(Map.of("ticker", ticker, "side", side.name(), "estimates", estimates));
+        });
+
+        app.get("/api/market/{ticker}/depth", ctx -> {
+            String requestedTicker = ctx.pathParam("ticker");
+            if (!isSupportedTicker(requestedTicker)) {
+                ctx.status(404).json(Map.of("status", "error", "message", "UNKNOWN_TICKER"));
+                return;
+            }
+            String ticker = normalizeTicker(requestedTicker);
+            PriceScale scale = PRICE_SCALES.getScale(ticker);
+            String requestedSide = ctx.queryParam("side");
+            DepthRange range;
+            OrderSide side;
+            try {
+                side = requestedSide == null ? null : parseSide(requestedSide);
+                range = parseDepthRange(scale, ctx.queryParam("from"), ctx.queryParam("to"),
+                        ctx.queryParam("bucket"), ctx.queryParam("maxBuckets"));
+            } catch (IllegalArgumentException ex) {
+                ctx.status(400).json(Map.of("status", "error", "message", "INVALID_QUERY"));
+                return;
+            }
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("ticker", ticker);
+            json.put("bucket", scale.toDisplayPrice(range.bucketTicks()));
+            for (OrderSide bookSide : ORDER_SIDES) {
+                if (side == null || side == bookSide) {
+                    LevelLadder.Buckets buckets = engine.aggregateDepth(bookSide, range.fromPrice(), range.toPrice(),
+                            range.bucketTicks(), range.maxBuckets());
+                    json.put(bookSide == OrderSide.BUY ? "bids" : "asks", PublicFeedService.bucketsJson(scale, buckets));
+                }
+            }
+            ctx.json(json);
+        });
+
+        app.get("/api/market/{ticker}/candles", ctx -> {
+            String requestedTicker = ctx.pathParam("ticker");
+            if (!isSupportedTicker(requestedTicker)) {
+                ctx.status(404).json(Map.of("status", "error", "message", "UNKNOWN_TICKER"));
+                return;
+            }
+            String label = ctx.queryParam("interval");
+            CandleAggregator.Interval interval = CandleAggregator.Interval.parse(label == null ? "1m" : label);
+            if (interval == null) {
+                ctx.status(400).json(Map.of("status", "error", "message", "INVALID_INTERVAL"));
+                return;
+            }
+            long fromNanos;
+            long toNanos;
+            long limit;
+            try {
+                fromNanos = millisToNanos(parseLongQuery(ctx.queryParam("from"), Long.MIN_VALUE));
+                toNanos = millisToNanos(parseLongQuery(ctx.queryParam("to"), Long.MAX_VALUE));
+                limit = Math.min(interval.capacity(), parseLongQuery(ctx.queryParam("limit"), DEFAULT_CANDLES_PAGE));
+            } catch (NumberFormatException | ArithmeticException ex) {
+                ctx.status(400).json(Map.of("status", "error", "message", "INVALID_QUERY"));
+                return;
+            }
+            String ticker = normalizeTicker(requestedTicker);
+            PriceScale scale = PRICE_SCALES.getScale(ticker);
+            List<Map<String, Object>> bars = new ArrayList<>();
+            for (CandleAggregator.Candle bar : candles.read(ticker, interval, fromNanos, toNanos, (int) limit)) {
+                bars.add(candleJson(scale, bar));
+            }
+            ctx.json(Map.of("ticker", ticker, "interval", interval.label(), "candles", bars));
+        });
+
         app.post("/api/script", ctx -> {
             UserAccount admin = authService.requireAdmin(ctx);
             String rawBody = ctx.body();
@@ -248,7 +573,7 @@ public class Main {
                     continue;
                 }
                 String trimmed = command.trim();
-                LOG.info("Executing script line: {}", trimmed);
+                LOG.debug("Executing script line: {}", trimmed);
                 try {
                     executeScriptLine(engine, admin.getUserId(), trimmed);
                     executed++;
@@ -273,10 +598,80 @@ public class Main {
             ctx.json(Map.of("status", "Reset complete"));
         });
 
+        app.get("/api/metrics", ctx -> {
+            authService.requireAdmin(ctx);
+            Map<String, Object> metrics = new java.util.LinkedHashMap<>(EngineMetrics.snapshot());
+            metrics.put("book", engine.bookMetrics());
+            metrics.put("sessions", Map.of(
+                    "public", publicFeed.sessionMetrics(),
+                    "private", privateFeed.sessionMetrics()));
+            String accept = ctx.header("Accept");
+            if ("text".equalsIgnoreCase(ctx.queryParam("format"))
+                    || (accept != null && accept.contains("text/plain") && !accept.contains("application/json"))) {
+                ctx.contentType("text/plain; version=0.0.4").result(EngineMetrics.toText(metrics));
+            } else {
+                ctx.json(metrics);
+            }
+        });
+
+        app.get("/api/admin/latency", ctx -> {
+            authService.requireAdmin(ctx);
+            ctx.json(Map.of(
+                    "unit", "microseconds since request received",
+                    "stages", LatencyTracer.summary()));
+        });
+
+        app.post("/api/admin/latency/reset", ctx -> {
+            authService.requireAdmin(ctx);
+            LatencyTracer.reset();
+            ctx.json(Map.of("status", "Latency histograms reset"));
+        });
+
         app.ws("/ws/public", ws -> {
             ws.onConnect(ctx -> {
                 publicFeed.register(ctx.session);
                 publicFeed.sendSnapshot(ctx.session, DEFAULT_TICKER, engine.getOrderbookLevels());
+                if (Boolean.parseBoolean(ctx.queryParam("stats"))) {
+                    publicFeed.subscribeStats(ctx.session);
+                }
+                String candleIntervals = ctx.queryParam("candles");
+                if (candleIntervals != null) {
+                    Set<CandleAggregator.Interval> intervals = EnumSet.noneOf(CandleAggregator.Interval.class);
+                    for (String label : candleIntervals.split(",")) {
+                        CandleAggregator.Interval interval = CandleAggregator.Interval.parse(label);
+                        if (interval != null) {
+                            intervals.add(interval);
+                        }
+                    }
+                    publicFeed.subscribeCandles(ctx.session, intervals);
+                }
+                if (Boolean.parseBoolean(ctx.queryParam("l3"))) {
+                    publicFeed.subscribeOrders(ctx.session, DEFAULT_TICKER, PRICE_SCALES.getScale(DEFAULT_TICKER),
+                            engine::snapshotRestingOrders);
+                }
+                String depthBucket = ctx.queryParam("depthBucket");
+                if (depthBucket != null) {
+                    PriceScale scale = PRICE_SCALES.getScale(DEFAULT_TICKER);
+                    try {
+                        DepthRange range = parseDepthRange(scale, ctx.queryParam("depthFrom"),
+                                ctx.queryParam("depthTo"), depthBucket, ctx.queryParam("depthMaxBuckets"));
+                        publicFeed.subscribeDepthBuckets(ctx.session, DEFAULT_TICKER, scale, engine::aggregateDepth,
+                                range.fromPrice(), range.toPrice(), range.bucketTicks(), range.maxBuckets());
+                    } catch (IllegalArgumentException ex) {
+                        LOG.debug("Ignoring invalid depth bucket subscription bucket={}", depthBucket);
+                    }
+                }
+                String replay = ctx.queryParam("replay");
+                String since = ctx.queryParam("since");
+                if (tradeTape != null && (replay != null || since != null)) {
+                    try {
+                        long limit = Math.min(tradeTape.capacity(), parseLongQuery(replay, tradeTape.capacity()));
+                        List<TradeTape.Print> prints = tradeTape.read(DEFAULT_TICKER, parseLongQuery(since, 0L), (int) limit);
+                        publicFeed.sendTradeReplay(ctx.session, DEFAULT_TICKER, tapeJson(DEFAULT_TICKER, prints));
+                    } catch (NumberFormatException ex) {
+                        LOG.debug("Ignoring invalid trade replay request replay={} since={}", replay, since);
+                    }
+                }
             });
             ws.onClose(ctx -> publicFeed.unregister(ctx.session));
         });
@@ -289,8 +684,19 @@ public class Main {
                     ctx.session.close(4001, "Unauthorized");
                     return;
                 }
+                boolean cancelOnDisconnect = account.isCancelOnDisconnect()
+                        || Boolean.parseBoolean(ctx.queryParam("cancelOnDisconnect"));
                 ctx.attribute("userId", account.getUserId());
-                privateFeed.register(ctx.session, account.getUserId());
+                privateFeed.register(ctx.session, account.getUserId(), cancelOnDisconnect);
+            });
+
+            ws.onMessage(ctx -> {
+                String userId = ctx.attribute("userId");
+                if (userId == null) {
+                    return;
+                }
+                handlePrivateCommand(ctx.session, ctx.message(), userId, engine, privateFeed, orderIdGenerator,
+                        stampLatencyOnAcks);
             });
 
             ws.onClose(ctx -> {
@@ -312,6 +718,572 @@ public class Main {
         return 7070;
     }
 
+    private static Path resolveJournalDir() {
+        String envDir = System.getenv("JOURNAL_DIR");
+        if (envDir == null || envDir.isBlank()) {
+            return null;
+        }
+        return Paths.get(envDir.trim()).toAbsolutePath().normalize();
+    }
+
+    private static JournalRecovery.Result recoverFromJournal(Path journalDir, MatchingEngine engine, AccountManager accountManager) {
+        if (journalDir == null) {
+            return JournalRecovery.Result.EMPTY;
+        }
+        try {
+            return JournalRecovery.recover(journalDir, engine, accountManager);
+        } catch (java.io.IOException ex) {
+            throw new java.io.UncheckedIOException("Failed to replay journal in " + journalDir, ex);
+        }
+    }
+
+    /**
+     * Opens the command journal when {@code JOURNAL_DIR} is set. {@code JOURNAL_SYNC} selects the
+     * group-commit mode ({@code PER_COMMAND}, {@code INTERVAL} or {@code ASYNC}),
+     * {@code JOURNAL_SYNC_INTERVAL_MICROS} the interval and {@code JOURNAL_SEGMENT_MB} the segment size.
+     */
+    private static void attachJournal(Path journalDir, MatchingEngine engine, AccountManager accountManager, boolean journalAccounts) {
+        if (journalDir == null) {
+            return;
+        }
+        CommandJournal.SyncMode syncMode = CommandJournal.SyncMode.INTERVAL;
+        String envSync = System.getenv("JOURNAL_SYNC");
+        if (envSync != null && !envSync.isBlank()) {
+            try {
+                syncMode = CommandJournal.SyncMode.valueOf(envSync.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                LOG.warn("Invalid JOURNAL_SYNC value '{}', falling back to {}", envSync, syncMode);
+            }
+        }
+        long intervalMicros = resolveLongEnv("JOURNAL_SYNC_INTERVAL_MICROS", 1_000L);
+        long segmentBytes = resolveLongEnv("JOURNAL_SEGMENT_MB", CommandJournal.DEFAULT_SEGMENT_BYTES >> 20) << 20;
+        try {
+            CommandJournal journal = new CommandJournal(journalDir, segmentBytes, syncMode, intervalMicros);
+            if (journalAccounts) {
+                for (UserAccount account : accountManager.getAllAccounts()) {
+                    journal.appendAccount(account);
+                }
+            }
+            engine.setJournal(journal);
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-close"));
+            LOG.info("Journaling commands to {} (sync={})", journalDir, syncMode);
+        } catch (java.io.IOException ex) {
+            throw new java.io.UncheckedIOException("Failed to open journal in " + journalDir, ex);
+        }
+    }
+
+    /**
+     * Writes the order audit trail to {@code AUDIT_LOG_DIR} (default {@code audit}; {@code off}
+     * disables it). {@code AUDIT_LOG_FILE_MB} sets the roll size.
+     */
+    private static void attachAuditLog(MatchingEngine engine) {
+        String envDir = System.getenv("AUDIT_LOG_DIR");
+        String dir = envDir == null || envDir.isBlank() ? DEFAULT_AUDIT_LOG_DIR : envDir.trim();
+        if (dir.equalsIgnoreCase("off")) {
+            return;
+        }
+        long fileBytes = resolveLongEnv("AUDIT_LOG_FILE_MB", OrderAuditLog.DEFAULT_FILE_BYTES >> 20) << 20;
+        try {
+            OrderAuditLog auditLog = new OrderAuditLog(Path.of(dir), OrderAuditLog.DEFAULT_CAPACITY, fileBytes);
+            engine.setAuditLog(auditLog);
+            Runtime.getRuntime().addShutdownHook(new Thread(auditLog::close, "audit-close"));
+            LOG.info("Writing order audit log to {}", dir);
+        } catch (java.io.IOException ex) {
+            throw new java.io.UncheckedIOException("Failed to open audit log in " + dir, ex);
+        }
+    }
+
+    /**
+     * Periodically snapshots the engine next to the journal so restarts only replay the journal
+     * tail. {@code SNAPSHOT_INTERVAL_SECONDS} sets the period (default 300, 0 disables).
+     */
+    private static void scheduleSnapshots(Path journalDir, MatchingEngine engine, OrderIdGenerator orderIdGenerator) {
+        if (journalDir == null) {
+            return;
+        }
+        long intervalSeconds = resolveLongEnv("SNAPSHOT_INTERVAL_SECONDS", DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+        if (intervalSeconds <= 0L) {
+            return;
+        }
+        java.util.concurrent.ScheduledExecutorService scheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "engine-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                engine.writeSnapshot(journalDir, orderIdGenerator);
+            } catch (Exception ex) {
+                LOG.warn("Failed to write engine snapshot", ex);
+            }
+        }, intervalSeconds, intervalSeconds, java.util.concurrent.TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes one page of {@link TradeHistory} straight to the response as
+     * {@code {"items":[...],"nextCursor":"..."}}, oldest first. With {@code userId} each item is
+     * one of the user's fills, otherwise a public trade without user ids. Query parameters:
+     * {@code from}/{@code to} (epoch ms, to exclusive), {@code limit} and {@code after} (the
+     * previous page's {@code nextCursor}).
+     */
+    private static void streamHistory(io.javalin.http.Context ctx, TradeHistory history, String userId, String ticker)
+            throws java.io.IOException {
+        if (history == null) {
+            ctx.status(503).json(Map.of("status", "error", "message", "HISTORY_DISABLED"));
+            return;
+        }
+        long after;
+        long fromNanos;
+        long toNanos;
+        int limit;
+        try {
+            after = parseLongQuery(ctx.queryParam("after"), 0L);
+            fromNanos = millisToNanos(parseLongQuery(ctx.queryParam("from"), Long.MIN_VALUE));
+            toNanos = millisToNanos(parseLongQuery(ctx.queryParam("to"), Long.MAX_VALUE));
+            limit = (int) Math.min(MAX_HISTORY_PAGE, parseLongQuery(ctx.queryParam("limit"), DEFAULT_HISTORY_PAGE));
+        } catch (NumberFormatException | ArithmeticException ex) {
+            ctx.status(400).json(Map.of("status", "error", "message", "INVALID_QUERY"));
+            return;
+        }
+        ctx.contentType("application/json");
+        try (JsonWriter json = new JsonWriter(new java.io.BufferedWriter(
+                new java.io.OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8), 64 * 1024))) {
+            json.beginObject().name("items").beginArray();
+            long next = history.scan(userId, ticker, fromNanos, toNanos, after, limit, row -> {
+                try {
+                    if (userId == null) {
+                        writeHistoryTrade(json, row);
+                    } else {
+                        // A self-trade is one trade but two fills.
+                        for (OrderSide side : ORDER_SIDES) {
+                            if (userId.equals(row.userId(side))) {
+                                writeHistoryFill(json, row, side);
+                            }
+                        }
+                    }
+                } catch (java.io.IOException ex) {
+                    throw new java.io.UncheckedIOException(ex);
+                }
+            });
+            json.endArray();
+            if (next != 0L) {
+                json.name("nextCursor").value(Long.toString(next));
+            }
+            json.endObject();
+        }
+    }
+
+    private static void writeHistoryFill(JsonWriter json, TradeHistory.Row row, OrderSide side) throws java.io.IOException {
+        PriceScale scale = PRICE_SCALES.getScale(row.ticker());
+        json.beginObject()
+                .name("fillId").value(Long.toString(row.fillId(side)))
+                .name("orderId").value(Long.toString(row.orderId(side)))
+                .name("ticker").value(row.ticker())
+                .name("side").value(side.name())
+                .name("price").value(scale.toDisplayPrice(row.priceTicks(side)))
+                .name("quantity").value(row.quantity())
+                .name("timestamp").value(nanosToInstant(row.timestampNanos()).toString())
+                .endObject();
+    }
+
+    private static void writeHistoryTrade(JsonWriter json, TradeHistory.Row row) throws java.io.IOException {
+        PriceScale scale = PRICE_SCALES.getScale(row.ticker());
+        json.beginObject()
+                .name("ticker").value(row.ticker())
+                .name("quantity").value(row.quantity())
+                .name("buyOrderId").value(Long.toString(row.orderId(OrderSide.BUY)))
+                .name("buyPrice").value(scale.toDisplayPrice(row.priceTicks(OrderSide.BUY)))
+                .name("sellOrderId").value(Long.toString(row.orderId(OrderSide.SELL)))
+                .name("sellPrice").value(scale.toDisplayPrice(row.priceTicks(OrderSide.SELL)))
+                .name("timestamp").value(nanosToInstant(row.timestampNanos()).toString())
+                .endObject();
+    }
+
+    private static List<Map<String, Object>> tapeJson(String ticker, List<TradeTape.Print> prints) {
+        PriceScale scale = PRICE_SCALES.getScale(ticker);
+        List<Map<String, Object>> out = new ArrayList<>(prints.size());
+        for (TradeTape.Print print : prints) {
+            out.add(Map.of(
+                    "sequence", print.sequence(),
+                    "price", scale.toDisplayPrice(print.priceTicks()),
+                    "quantity", print.quantity(),
+                    "aggressor", print.aggressor().name(),
+                    "timestamp", nanosToInstant(print.timestampNanos()).toString()));
+        }
+        return out;
+    }
+
+    /**
+     * Parses a bucketed depth query: {@code from}, {@code to} and {@code bucket} are prices that
+     * must align with the ticker's tick, and {@code maxBuckets} defaults to
+     * {@link #DEFAULT_DEPTH_BUCKETS}.
+     */
+    private static DepthRange parseDepthRange(PriceScale scale, String from, String to, String bucket,
+            String maxBuckets) {
+        if (from == null || to == null || bucket == null) {
+            throw new IllegalArgumentException("from, to and bucket are required");
+        }
+        int fromPrice = scale.toBookPrice(Double.parseDouble(from));
+        int toPrice = scale.toBookPrice(Double.parseDouble(to));
+        int bucketTicks = scale.toBookPrice(Double.parseDouble(bucket));
+        long buckets = parseLongQuery(maxBuckets, DEFAULT_DEPTH_BUCKETS);
+        if (fromPrice < 0 || toPrice < fromPrice || bucketTicks <= 0 || buckets <= 0L || buckets > MAX_DEPTH_BUCKETS) {
+            throw new IllegalArgumentException("Invalid depth range");
+        }
+        return new DepthRange(fromPrice, toPrice, bucketTicks, (int) buckets);
+    }
+
+    /**
+     * Parses {@code qty} as one positive quantity or a comma-separated batch of up to
+     * {@link #MAX_IMPACT_QUANTITIES}.
+     */
+    private static long[] parseImpactQuantities(String raw) {
+        if (raw == null || raw.isBlank()) {
+            throw new IllegalArgumentException("qty missing");
+        }
+        String[] tokens = raw.split(",");
+        if (tokens.length > MAX_IMPACT_QUANTITIES) {
+            throw new IllegalArgumentException("Too many quantities");
+        }
+        long[] quantities = new long[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            quantities[i] = Long.parseLong(tokens[i].trim());
+            if (quantities[i] <= 0L) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+        }
+        return quantities;
+    }
+
+    /**
+     * One impact estimate; prices are {@code null} when nothing would fill, and
+     * {@code slippage} is the average price's distance from the best level, in price units.
+     */
+    private static Map<String, Object> impactJson(PriceScale scale, LevelLadder.Impact impact) {
+        boolean filled = impact.filled() > 0L;
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("quantity", impact.requested());
+        json.put("filledQuantity", impact.filled());
+        json.put("fullyFilled", impact.filled() == impact.requested());
+        json.put("averagePrice", filled ? impact.averagePriceTicks() / scale.scaleFactor() : null);
+        json.put("bestPrice", filled ? scale.toDisplayPrice(impact.bestPriceTicks()) : null);
+        json.put("worstPrice", filled ? scale.toDisplayPrice(impact.worstPriceTicks()) : null);
+        json.put("slippage", filled
+                ? Math.abs(impact.averagePriceTicks() - impact.bestPriceTicks()) / scale.scaleFactor() : null);
+        json.put("levels", impact.levels());
+        return json;
+    }
+
+    /**
+     * Statistics of one ticker; fields are {@code null} until there is a trade, or an order on
+     * that side of the book.
+     */
+    private static Map<String, Object> statsJson(String ticker, MarketStats.Snapshot stats) {
+        PriceScale scale = PRICE_SCALES.getScale(ticker);
+        boolean traded = stats != null && stats.trades() > 0L;
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("ticker", ticker);
+        json.put("last", traded ? scale.toDisplayPrice(stats.last()) : null);
+        json.put("open", traded ? scale.toDisplayPrice(stats.open()) : null);
+        json.put("high", traded ? scale.toDisplayPrice(stats.high()) : null);
+        json.put("low", traded ? scale.toDisplayPrice(stats.low()) : null);
+        json.put("volume", stats != null ? stats.volume() : 0L);
+        json.put("vwap", traded ? stats.vwapTicks() / scale.scaleFactor() : null);
+        json.put("trades", stats != null ? stats.trades() : 0L);
+        json.put("lastTradeTime", traded ? nanosToInstant(stats.lastTradeNanos()).toString() : null);
+        boolean bid = stats != null && stats.bidDepth() > 0L;
+        boolean ask = stats != null && stats.askDepth() > 0L;
+        json.put("bestBid", bid ? scale.toDisplayPrice(stats.bidPrice()) : null);
+        json.put("bestBidQuantity", bid ? stats.bidQuantity() : 0L);
+        json.put("bestAsk", ask ? scale.toDisplayPrice(stats.askPrice()) : null);
+        json.put("bestAskQuantity", ask ? stats.askQuantity() : 0L);
+        json.put("bidDepth", bid ? stats.bidDepth() : 0L);
+        json.put("askDepth", ask ? stats.askDepth() : 0L);
+        json.put("imbalance", stats != null ? stats.imbalance() : 0d);
+        return json;
+    }
+
+    /**
+     * Every {@code STATS_INTERVAL_MS} (default 1000, 0 disables) sends the statistics of each
+     * ticker that changed since the last round to {@code /ws/public} sessions that asked for them.
+     */
+    private static void scheduleStatsPublisher(MarketStats marketStats, PublicFeedService publicFeed) {
+        long intervalMillis = resolveLongEnv("STATS_INTERVAL_MS", DEFAULT_STATS_INTERVAL_MS);
+        if (intervalMillis <= 0L) {
+            return;
+        }
+        java.util.concurrent.ScheduledExecutorService scheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Long> publishedVersions = new HashMap<>();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                for (String ticker : marketStats.tickers()) {
+                    MarketStats.Snapshot stats = marketStats.snapshot(ticker);
+                    Long published = publishedVersions.put(ticker, stats.version());
+                    if (publicFeed.hasStatsSubscribers() && (published == null || published != stats.version())) {
+                        publicFeed.broadcastStats(ticker, statsJson(ticker, stats));
+                    }
+                }
+            } catch (Exception ex) {
+                LOG.warn("Failed to publish market statistics", ex);
+            }
+        }, intervalMillis, intervalMillis, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    private static Map<String, Object> candleJson(PriceScale scale, CandleAggregator.Candle bar) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("start", nanosToInstant(bar.startNanos()).toString());
+        json.put("open", scale.toDisplayPrice(bar.open()));
+        json.put("high", scale.toDisplayPrice(bar.high()));
+        json.put("low", scale.toDisplayPrice(bar.low()));
+        json.put("close", scale.toDisplayPrice(bar.close()));
+        json.put("volume", bar.volume());
+        json.put("vwap", bar.vwapTicks() / scale.scaleFactor());
+        json.put("trades", bar.trades());
+        return json;
+    }
+
+    private static java.time.Instant nanosToInstant(long nanos) {
+        return java.time.Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+    }
+
+    /**
+     * Keeps the last {@code TRADE_TAPE_CAPACITY} (default 4096, 0 disables) prints per ticker in
+     * memory for {@code /api/market/{ticker}/trades} and replay on {@code /ws/public}.
+     */
+    private static TradeTape attachTradeTape(MatchingEngine engine) {
+        long capacity = resolveLongEnv("TRADE_TAPE_CAPACITY", TradeTape.DEFAULT_CAPACITY);
+        if (capacity <= 0L) {
+            return null;
+        }
+        TradeTape tape = new TradeTape((int) Math.min(capacity, Integer.MAX_VALUE));
+        engine.setTradeTape(tape);
+        return tape;
+    }
+
+    /**
+     * Opens the persistent trade history in {@code HISTORY_DIR} (default {@code history};
+     * {@code off} disables it), one partition file per {@code HISTORY_PARTITION_MINUTES}
+     * (default 60).
+     */
+    private static TradeHistory attachTradeHistory(MatchingEngine engine) {
+        String envDir = System.getenv("HISTORY_DIR");
+        String dir = envDir == null || envDir.isBlank() ? DEFAULT_HISTORY_DIR : envDir.trim();
+        if (dir.equalsIgnoreCase("off")) {
+            return null;
+        }
+        long minutes = resolveLongEnv("HISTORY_PARTITION_MINUTES", DEFAULT_HISTORY_PARTITION_MINUTES);
+        try {
+            TradeHistory history = new TradeHistory(Path.of(dir), Duration.ofMinutes(minutes));
+            engine.setTradeHistory(history);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                engine.setTradeHistory(null);
+                history.close();
+            }, "history-close"));
+            LOG.info("Recording trade history to {} ({} trades in {} partitions)", dir, history.size(),
+                    history.partitionCount());
+            return history;
+        } catch (java.io.IOException ex) {
+            throw new java.io.UncheckedIOException("Failed to open trade history in " + dir, ex);
+        }
+    }
+
+    private static long parseLongQuery(String value, long defaultValue) {
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static long millisToNanos(long millis) {
+        if (millis == Long.MIN_VALUE || millis == Long.MAX_VALUE) {
+            return millis;
+        }
+        return Math.multiplyExact(millis, 1_000_000L);
+    }
+
+    /**
+     * Keeps {@code FILL_RETENTION_MINUTES} (default 1440) of fill history on the heap. Older fills
+     * spill to a memory-mapped file in {@code FILL_SPILL_DIR} (default {@code fills}); {@code off}
+     * drops them instead, and a retention of 0 keeps everything on the heap.
+     */
+    private static void attachFillRetention(MatchingEngine engine) {
+        long minutes = resolveLongEnv("FILL_RETENTION_MINUTES", DEFAULT_FILL_RETENTION_MINUTES);
+        if (minutes <= 0L) {
+            return;
+        }
+        String envDir = System.getenv("FILL_SPILL_DIR");
+        String dir = envDir == null || envDir.isBlank() ? DEFAULT_FILL_SPILL_DIR : envDir.trim();
+        Path spillDir = dir.equalsIgnoreCase("off") ? null : Path.of(dir);
+        try {
+            engine.startFillRetention(Duration.ofMinutes(minutes), spillDir);
+            LOG.info("Retaining {} minutes of fills on the heap, older fills {}", minutes,
+                    spillDir == null ? "dropped" : "spilled to " + spillDir);
+        } catch (java.io.IOException ex) {
+            throw new java.io.UncheckedIOException("Failed to open fill spill file in " + dir, ex);
+        }
+    }
+
+    private static long resolveLongEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value != null && !value.isBlank()) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                LOG.warn("Invalid {} value '{}', falling back to {}", name, value, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Starts the binary order-entry gateway when {@code ORDER_GATEWAY_PORT} is set.
+     */
+    private static void startBinaryGateway(MatchingEngine engine, AccountManager accountManager, OrderIdGenerator orderIdGenerator) {
+        String envPort = System.getenv("ORDER_GATEWAY_PORT");
+        if (envPort == null || envPort.isBlank()) {
+            return;
+        }
+        try {
+            BinaryOrderGateway gateway = new BinaryOrderGateway(engine, accountManager, orderIdGenerator);
+            gateway.start("0.0.0.0", Integer.parseInt(envPort.trim()));
+            engine.onFill(gateway::onFill);
+        } catch (NumberFormatException ex) {
+            LOG.warn("Invalid ORDER_GATEWAY_PORT value '{}', binary gateway disabled", envPort);
+        } catch (java.io.IOException ex) {
+            LOG.warn("Failed to start binary order gateway", ex);
+        }
+    }
+
+    /**
+     * Opt-in switch ({@code USE_VIRTUAL_THREADS=true}) that runs HTTP handlers and WebSocket sends on
+     * virtual threads. Javalin falls back to platform threads when the JVM has no Loom support.
+     */
+    private static boolean resolveVirtualThreads() {
+        boolean requested = Boolean.parseBoolean(System.getenv("USE_VIRTUAL_THREADS"));
+        if (requested && !ConcurrencyUtil.isLoomAvailable()) {
+            LOG.warn("USE_VIRTUAL_THREADS is set but this JVM has no virtual threads; using platform threads with async feed sends");
+        } else if (requested) {
+            LOG.info("Running HTTP handlers and feed sends on virtual threads");
+        }
+        return requested;
+    }
+
+    private static Duration resolveCancelOnDisconnectGrace() {
+        String envGrace = System.getenv("CANCEL_ON_DISCONNECT_GRACE_MS");
+        if (envGrace != null && !envGrace.isBlank()) {
+            try {
+                return Duration.ofMillis(Long.parseLong(envGrace.trim()));
+            } catch (NumberFormatException ex) {
+                LOG.warn("Invalid CANCEL_ON_DISCONNECT_GRACE_MS value '{}', falling back to {}ms",
+                        envGrace, DEFAULT_CANCEL_ON_DISCONNECT_GRACE_MS);
+            }
+        }
+        return Duration.ofMillis(DEFAULT_CANCEL_ON_DISCONNECT_GRACE_MS);
+    }
+
+    /**
+     * Handles an order-entry command received on an authenticated private WebSocket. Replies are
+     * correlated by {@code clientOrderId} and sent only on the originating session.
+     */
+    static void handlePrivateCommand(
+            Session session,
+            String message,
+            String userId,
+            MatchingEngine engine,
+            PrivateFeedService privateFeed,
+            OrderIdGenerator orderIdGenerator,
+            boolean stampLatencyOnAcks) {
+        PrivateCommand command;
+        try {
+            command = JSON.fromJson(message, PrivateCommand.class);
+        } catch (JsonSyntaxException ex) {
+            privateFeed.replyReject(session, null, null, "INVALID_MESSAGE");
+            return;
+        }
+        if (command == null || command.action() == null || command.action().isBlank()) {
+            privateFeed.replyReject(session, null, command != null ? command.clientOrderId() : null, "ACTION_REQUIRED");
+            return;
+        }
+
+        String clientOrderId = command.clientOrderId();
+        switch (normalizeToken(command.action())) {
+            case "NEW" -> {
+                long received = System.nanoTime();
+                String assignedOrderId = orderIdGenerator.nextId();
+                try {
+                    Order order = toDomainOrder(userId, command.toOrderPayload(), assignedOrderId);
+                    LatencyTracer.begin(received);
+                    LatencyTracer.mark(LatencyTracer.Stage.VALIDATED);
+                    // Fills of the order are held until the ACK is queued, so the client sees the ACK first.
+                    privateFeed.beginCommand(session, assignedOrderId);
+                    try {
+                        engine.processOrder(order);
+                        LatencyTracer.mark(LatencyTracer.Stage.ACKNOWLEDGED);
+                        privateFeed.replyAcknowledgement(session, assignedOrderId, clientOrderId,
+                                stampLatencyOnAcks ? LatencyTracer.elapsedSoFar() : null);
+                    } finally {
+                        privateFeed.endCommand(session);
+                    }
+                    LatencyTracer.end(true);
+                } catch (IllegalArgumentException ex) {
+                    privateFeed.replyReject(session, assignedOrderId, clientOrderId, ex.getMessage());
+                } finally {
+                    LatencyTracer.end(false);
+                }
+            }
+            case "CANCEL" -> {
+                Long orderId = parseOrderIdOrNull(command.orderId());
+                if (orderId != null && engine.cancelOrder(userId, orderId)) {
+                    privateFeed.replyCanceled(session, command.orderId(), clientOrderId);
+                } else {
+                    privateFeed.replyReject(session, command.orderId(), clientOrderId, "ORDER_NOT_FOUND");
+                }
+            }
+            case "MODIFY" -> {
+                Long orderId = parseOrderIdOrNull(command.orderId());
+                try {
+                    if (orderId == null) {
+                        throw new IllegalArgumentException("INVALID_ORDER_ID");
+                    }
+                    if (command.price() == null || command.quantity() == null || command.quantity() <= 0) {
+                        throw new IllegalArgumentException("Modify requires price and positive quantity");
+                    }
+                    String ticker = command.ticker() != null && !command.ticker().isBlank()
+                            ? normalizeTicker(command.ticker())
+                            : DEFAULT_TICKER;
+                    privateFeed.beginCommand(session, Long.toString(orderId));
+                    try {
+                        engine.modifyOrder(
+                                userId,
+                                orderId,
+                                parseSide(command.side()),
+                                PRICE_SCALES.getScale(ticker).toBookPrice(command.price()),
+                                Math.toIntExact(command.quantity()));
+                        privateFeed.replyModified(session, command.orderId(), clientOrderId);
+                    } finally {
+                        privateFeed.endCommand(session);
+                    }
+                } catch (IllegalArgumentException | ArithmeticException ex) {
+                    privateFeed.replyReject(session, command.orderId(), clientOrderId, ex.getMessage());
+                }
+            }
+            case "MASSCANCEL" -> privateFeed.replyMassCanceled(session, engine.cancelAllOrders(userId), clientOrderId);
+            default -> privateFeed.replyReject(session, null, clientOrderId, "UNSUPPORTED_ACTION");
+        }
+    }
+
+    private static Long parseOrderIdOrNull(String orderId) {
+        if (orderId == null || orderId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(orderId.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
     private static void executeScriptLine(MatchingEngine engine, String userId, String command) {
         String[] tokens = command.split("\\s+");
         if (tokens.length == 0) {
@@ -538,8 +1510,10 @@ public class Main {
                 }
                 double cash = object.has("cash") ? object.get("cash").getAsDouble() : 0.0d;
                 boolean admin = object.has("admin") && object.get("admin").getAsBoolean();
+                boolean cancelOnDisconnect = object.has("cancelOnDisconnect")
+                        && object.get("cancelOnDisconnect").getAsBoolean();
                 Map<String, Long> positions = extractPositions(object);
-                seeds.add(new SeedAccount(userId, apiKey, cash, positions, admin));
+                seeds.add(new SeedAccount(userId, apiKey, cash, positions, admin, cancelOnDisconnect));
             }
             return List.copyOf(seeds);
         } catch (Exception ex) {
@@ -571,7 +1545,13 @@ public class Main {
         return null;
     }
 
-    private record SeedAccount(String userId, String apiKey, double cash, Map<String, Long> positions, boolean admin) {
+    private record SeedAccount(
+            String userId,
+            String apiKey,
+            double cash,
+            Map<String, Long> positions,
+            boolean admin,
+            boolean cancelOnDisconnect) {
     }
 
     private record ParsedOrderAttributes(OrderType orderType, TimeInForce timeInForce) {
@@ -611,6 +1591,33 @@ public class Main {
         throw new IllegalArgumentException("Script payload must be an array of command strings");
     }
 
+    private static List<OrderPayload> parseBatchPayload(String rawBody) {
+        if (rawBody == null || rawBody.isBlank()) {
+            return List.of();
+        }
+        JsonElement root;
+        try {
+            root = JSON.fromJson(rawBody, JsonElement.class);
+        } catch (JsonSyntaxException ex) {
+            throw new IllegalArgumentException("Body must be valid JSON");
+        }
+        if (root != null && root.isJsonObject() && root.getAsJsonObject().has("orders")) {
+            root = root.getAsJsonObject().get("orders");
+        }
+        if (root == null || !root.isJsonArray()) {
+            throw new IllegalArgumentException("Batch payload must be an array of orders");
+        }
+        List<OrderPayload> payloads = new ArrayList<>(root.getAsJsonArray().size());
+        for (JsonElement element : root.getAsJsonArray()) {
+            try {
+                payloads.add(element.isJsonObject() ? JSON.fromJson(element, OrderPayload.class) : null);
+            } catch (JsonSyntaxException ex) {
+                payloads.add(null);
+            }
+        }
+        return payloads;
+    }
+
     private static List<String> extractCommandsFromArray(JsonArray array) {
         List<String> commands = new ArrayList<>(array.size());
         for (JsonElement element : array) {
@@ -637,6 +1644,29 @@ public class Main {
         return commands;
     }
 
+    private record PrivateCommand(
+        String action,
+        String clientOrderId,
+        String orderId,
+        String ticker,
+        String orderType,
+        String timeInForce,
+        String side,
+        Double price,
+        Double triggerPrice,
+        Long quantity,
+        Boolean postOnly,
+        Long displayQuantity) {
+
+        OrderPayload toOrderPayload() {
+            return new OrderPayload(clientOrderId, ticker, orderType, timeInForce, side, price, triggerPrice,
+                    quantity, postOnly, displayQuantity);
+        }
+    }
+
+    private record DepthRange(int fromPrice, int toPrice, int bucketTicks, int maxBuckets) {
+    }
+
     private record OrderPayload(
         String orderId,
         String ticker,
@@ -0,0 +1,179 @@
+package tradeMatcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Session statistics per ticker, kept up to date from the matcher so clients can read a last price
+ * or the spread without polling the whole book. Trade statistics (last, open, high, low, volume,
+ * VWAP, trade count) fold in each trade; book statistics (best bid and ask, and the imbalance of
+ * the best {@link Orderbook#DEPTH_LEVELS} levels) come from {@link OrderbookListener#onTopOfBook}.
+ * Both cost a fixed number of field writes per event. The session runs from start-up or the last
+ * engine reset.
+ *
+ * <p>The engine runs one book, so its top of book is attributed to {@code bookTicker}, as the
+ * public depth feed does. Writers take a per-ticker write stamp; {@link #snapshot} reads under an
+ * optimistic stamp, as {@link TradeTape} does.
+ */
+public final class MarketStats {
+    private final String bookTicker;
+    private final Map<String, Ticker> tickers = new ConcurrentHashMap<>();
+
+    public MarketStats(String bookTicker) {
+        this.bookTicker = bookTicker;
+    }
+
+    /**
+     * One ticker's statistics. Prices are book ticks, 0 when there is no trade or no order on that
+     * side; {@code version} increases with every update.
+     */
+    public record Snapshot(long version, long lastTradeNanos, int last, int open, int high, int low, long volume,
+            long notionalTicks, long trades, int bidPrice, long bidQuantity, long bidDepth, int askPrice,
+            long askQuantity, long askDepth) {
+        public double vwapTicks() {
+            return volume == 0L ? 0d : (double) notionalTicks / volume;
+        }
+
+        /**
+         * @return (bid depth - ask depth) / (bid depth + ask depth), in [-1, 1]; 0 for an empty book
+         */
+        public double imbalance() {
+            long total = bidDepth + askDepth;
+            return total == 0L ? 0d : (double) (bidDepth - askDepth) / total;
+        }
+    }
+
+    /**
+     * Folds one match cycle's trades in at the resting price; see {@link TradeTape#record}.
+     */
+    void recordTrades(String ticker, long timestampNanos, List<Trade> trades, long aggressorOrderId) {
+        Ticker stats = ticker(ticker);
+        long stamp = stats.lock.writeLock();
+        try {
+            for (int i = 0; i < trades.size(); i++) {
+                TradeInfo bid = trades.get(i).getBidTrade();
+                TradeInfo ask = trades.get(i).getAskTrade();
+                if (bid == null || ask == null) {
+                    continue;
+                }
+                int price = (TradeTape.buyerAggressed(bid, ask, aggressorOrderId) ? ask : bid).getPriceTicks();
+                long quantity = bid.getQuantity();
+                if (stats.trades == 0L) {
+                    stats.open = price;
+                    stats.high = price;
+                    stats.low = price;
+                } else {
+                    stats.high = Math.max(stats.high, price);
+                    stats.low = Math.min(stats.low, price);
+                }
+                stats.last = price;
+                stats.volume += quantity;
+                stats.notional += price * quantity;
+                stats.trades++;
+            }
+            stats.lastTradeNanos = timestampNanos;
+            stats.version++;
+        } finally {
+            stats.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Records the engine book's new top of book; see {@link OrderbookListener#onTopOfBook}.
+     */
+    void recordTopOfBook(int bidPrice, long bidQuantity, long bidDepth, int askPrice, long askQuantity,
+            long askDepth) {
+        Ticker stats = ticker(bookTicker);
+        long stamp = stats.lock.writeLock();
+        try {
+            stats.bidPrice = bidPrice;
+            stats.bidQuantity = bidQuantity;
+            stats.bidDepth = bidDepth;
+            stats.askPrice = askPrice;
+            stats.askQuantity = askQuantity;
+            stats.askDepth = askDepth;
+            stats.version++;
+        } finally {
+            stats.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Starts a new session: trade statistics are cleared, the book is left to the next update.
+     */
+    void clear() {
+        for (Ticker stats : tickers.values()) {
+            long stamp = stats.lock.writeLock();
+            try {
+                stats.last = 0;
+                stats.open = 0;
+                stats.high = 0;
+                stats.low = 0;
+                stats.volume = 0L;
+                stats.notional = 0L;
+                stats.trades = 0L;
+                stats.lastTradeNanos = 0L;
+                stats.version++;
+            } finally {
+                stats.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * @return tickers with statistics so far
+     */
+    public Set<String> tickers() {
+        return tickers.keySet();
+    }
+
+    /**
+     * @return the ticker's statistics, or {@code null} before its first trade or book update
+     */
+    public Snapshot snapshot(String ticker) {
+        Ticker stats = tickers.get(ticker);
+        if (stats == null) {
+            return null;
+        }
+        while (true) {
+            long stamp = stats.lock.tryOptimisticRead();
+            if (stamp == 0L) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Snapshot snapshot = new Snapshot(stats.version, stats.lastTradeNanos, stats.last, stats.open, stats.high,
+                    stats.low, stats.volume, stats.notional, stats.trades, stats.bidPrice, stats.bidQuantity,
+                    stats.bidDepth, stats.askPrice, stats.askQuantity, stats.askDepth);
+            if (stats.lock.validate(stamp)) {
+                return snapshot;
+            }
+        }
+    }
+
+    private Ticker ticker(String ticker) {
+        Ticker stats = tickers.get(ticker);
+        return stats != null ? stats : tickers.computeIfAbsent(ticker, __ -> new Ticker());
+    }
+
+    private static final class Ticker {
+        final StampedLock lock = new StampedLock();
+        long version;
+        long lastTradeNanos;
+        int last;
+        int open;
+        int high;
+        int low;
+        long volume;
+        long notional;
+        long trades;
+        int bidPrice;
+        long bidQuantity;
+        long bidDepth;
+        int askPrice;
+        long askQuantity;
+        long askDepth;
+    }
+}
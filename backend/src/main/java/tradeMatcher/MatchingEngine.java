@@ -1,38 +1,129 @@
 package tradeMatcher;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class MatchingEngine {
 
-    private Orderbook orderbook = new Orderbook();
+    // Volatile so the metrics endpoint sees the book swapped in by reset without taking a lock.
+    private volatile Orderbook orderbook;
     private final AccountManager accountManager;
+    private final OrderbookListener bookListener;
     private Consumer<OrderbookLevelInfos> orderBookUpdateListener;
-    private Consumer<List<Trade>> tradeListener;
+    private BiConsumer<List<Trade>, Long> tradeListener;
+    private volatile Consumer<List<OrderEvent>> orderEventListener;
+    private volatile BooleanSupplier orderEventDemand = () -> false;
+    // Filled by the book under its lock, by commands and the prune thread; drained after each command.
+    private final List<OrderEvent> pendingOrderEvents = new ArrayList<>();
     private final List<Consumer<FillRecord>> fillListeners = new CopyOnWriteArrayList<>();
-    private final Map<String, List<FillRecord>> fillsByUser = new ConcurrentHashMap<>();
+    private final FillStore fills = new FillStore();
     private final AtomicLong fillSequence = new AtomicLong(1L);
+    // Match-cycle scratch, used only under commandLock.
+    private final FillSettlement settlement;
+    private final List<FillRecord> pendingFills = new ArrayList<>();
+    // Serializes commands so the journal order is the execution order. ReentrantLock rather than
+    // synchronized: reset joins the prune thread, which would pin the carrier of a virtual thread.
+    private final ReentrantLock commandLock = new ReentrantLock();
+    // What each applied command produced, queued under commandLock and delivered to the listeners
+    // after it is released, so a slow subscriber or an expensive encode never holds up matching.
+    // publishLock keeps delivery in command order.
+    private final Queue<Publication> publications = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private volatile CommandJournal journal;
+    private volatile OrderAuditLog auditLog;
+    private volatile TradeHistory tradeHistory;
+    private volatile TradeTape tradeTape;
+    private volatile CandleAggregator candles;
+    private volatile MarketStats marketStats;
     private static final Logger LOG = LoggerFactory.getLogger(MatchingEngine.class);
 
     public MatchingEngine(AccountManager accountManager) {
         this.accountManager = accountManager;
+        // Fills, cancels, expiries and kills all pass through the book, so releasing reservations
+        // there covers every way an order's open quantity can shrink.
+        this.bookListener = new OrderbookListener() {
+            @Override
+            public void onOrderFilled(Order order, long quantity) {
+                accountManager.releaseFilled(order, quantity);
+            }
+
+            @Override
+            public void onOrderRemoved(Order order) {
+                accountManager.releaseOpen(order);
+            }
+
+            @Override
+            public boolean wantsOrderEvents() {
+                return orderEventDemand.getAsBoolean();
+            }
+
+            @Override
+            public void onOrderEvent(OrderEvent event) {
+                synchronized (pendingOrderEvents) {
+                    pendingOrderEvents.add(event);
+                }
+            }
+
+            @Override
+            public void onTopOfBook(int bidPrice, long bidQuantity, long bidDepth, int askPrice, long askQuantity,
+                    long askDepth) {
+                MarketStats stats = marketStats;
+                if (stats != null) {
+                    stats.recordTopOfBook(bidPrice, bidQuantity, bidDepth, askPrice, askQuantity, askDepth);
+                }
+            }
+        };
+        this.orderbook = new Orderbook(bookListener);
+        this.settlement = new FillSettlement(accountManager);
     }
 
     public void onOrderBookUpdate(Consumer<OrderbookLevelInfos> listener) {
         this.orderBookUpdateListener = listener;
     }
 
-    public void onTrades(Consumer<List<Trade>> listener) {
+    /**
+     * Receives the level-3 events of each command, in sequence order, just before its book
+     * update. Events from the DAY-order sweep go out with the next command's.
+     */
+    public void onOrderEvents(Consumer<List<OrderEvent>> listener) {
+        onOrderEvents(listener, () -> true);
+    }
+
+    /**
+     * As {@link #onOrderEvents(Consumer)}, but the book only builds events while {@code wanted}
+     * answers true, e.g. while a level-3 feed has subscribers. Sequence numbers advance either
+     * way, so a subscriber that makes {@code wanted} true before taking its snapshot misses
+     * nothing after it.
+     */
+    public void onOrderEvents(Consumer<List<OrderEvent>> listener, BooleanSupplier wanted) {
+        this.orderEventListener = listener;
+        this.orderEventDemand = listener == null ? () -> false : wanted;
+    }
+
+    /**
+     * Receives each command's trades with the trade tape sequence of the last one, or 0 without a
+     * tape. The sequence is taken when the trades are recorded, since delivery happens later.
+     */
+    public void onTrades(BiConsumer<List<Trade>, Long> listener) {
         this.tradeListener = listener;
     }
 
@@ -42,65 +133,382 @@ public class MatchingEngine {
         }
     }
 
+    /**
+     * Journals every subsequent command before it is applied. Pass {@code null} to stop journaling,
+     * e.g. while replaying.
+     */
+    public void setJournal(CommandJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Records accepted, rejected, modified, canceled and filled orders to {@code auditLog} from now
+     * on. Pass {@code null} to stop auditing.
+     */
+    public void setAuditLog(OrderAuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Appends every trade to {@code tradeHistory} from now on. Pass {@code null} to stop.
+     */
+    public void setTradeHistory(TradeHistory tradeHistory) {
+        this.tradeHistory = tradeHistory;
+    }
+
+    /**
+     * Keeps recent prints per ticker on {@code tradeTape} from now on. Pass {@code null} to stop.
+     */
+    public void setTradeTape(TradeTape tradeTape) {
+        this.tradeTape = tradeTape;
+    }
+
+    /**
+     * Folds every trade into {@code candles} from now on. Pass {@code null} to stop.
+     */
+    public void setCandles(CandleAggregator candles) {
+        this.candles = candles;
+    }
+
+    /**
+     * Keeps session statistics and the top of book in {@code marketStats} from now on, starting
+     * with the current book. Pass {@code null} to stop.
+     */
+    public void setMarketStats(MarketStats marketStats) {
+        this.marketStats = marketStats;
+        if (marketStats != null) {
+            orderbook.refreshTopOfBook();
+        }
+    }
+
     public void processOrder(Order order) {
         Objects.requireNonNull(order, "order");
+        commandLock.lock();
+        try {
+            CommandJournal current = journal;
+            if (current != null) {
+                current.appendAdd(order);
+            }
+            applyOrder(order);
+        } finally {
+            commandLock.unlock();
+            publish();
+        }
+    }
+
+    private void applyOrder(Order order) {
         PriceScale scale = PriceScaleProvider.getRegistry().getScale(order.getTicker());
         double displayPrice = scale.toDisplayPrice((int) Math.round(order.GetPrice()));
 
-        UserAccount account = accountManager.findById(order.getUserId())
-                .orElseThrow(() -> new IllegalArgumentException("UNKNOWN_USER"));
+        OrderAuditLog audit = auditLog;
+        try {
+            enforcePostOnly(order);
+            checkPreTradeRisk(order, displayPrice);
+        } catch (IllegalArgumentException ex) {
+            if (audit != null) {
+                audit.orderRejected(order, displayPrice, ex.getMessage());
+            }
+            throw ex;
+        }
+        LatencyTracer.mark(LatencyTracer.Stage.RISK_CHECKED);
 
-        enforcePostOnly(order);
+        List<Trade> trades = orderbook.AddOrder(order);
+        LatencyTracer.mark(LatencyTracer.Stage.MATCHED);
+        EngineMetrics.recordOrders(order.getTicker(), 1);
+        if (audit != null) {
+            audit.orderAccepted(order, displayPrice);
+        }
+        handleTrades(trades, order.GetOrderId());
+        queuePublication(trades);
+    }
 
-        if (order.GetSide() == OrderSide.BUY && order.GetOrderType() != OrderType.MARKET) {
-            accountManager.ensureSufficientBuyingPower(account, order.getTicker(), displayPrice, order.GetInitialQuantity());
+    /**
+     * Runs risk checks and matching for a batch of orders, making one book pass and publishing one
+     * conflated book update and trade burst per ticker instead of one per order.
+     *
+     * @return one result per input order, in input order
+     */
+    public List<BatchItemResult> processBatch(List<Order> batch) {
+        Objects.requireNonNull(batch, "batch");
+        commandLock.lock();
+        try {
+            CommandJournal current = journal;
+            if (current != null && !batch.isEmpty()) {
+                current.appendBatch(batch);
+            }
+            return applyBatch(batch);
+        } finally {
+            commandLock.unlock();
+            publish();
         }
-        if (order.GetSide() == OrderSide.SELL) {
-            accountManager.ensureSufficientInventory(account, order.getTicker(), order.GetInitialQuantity());
+    }
+
+    private List<BatchItemResult> applyBatch(List<Order> batch) {
+        OrderAuditLog audit = auditLog;
+        String[] rejections = new String[batch.size()];
+        Map<String, List<Integer>> indicesByTicker = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            indicesByTicker.computeIfAbsent(batch.get(i).getTicker(), __ -> new ArrayList<>()).add(i);
         }
 
-        LOG.info("Processing order: user={}, type={}, side={}, price={}, qty={}, id={}",
-                order.getUserId(),
-                order.GetOrderType(),
-                order.GetSide(),
-                displayPrice,
-                order.GetInitialQuantity(),
-                order.GetOrderId());
+        for (Map.Entry<String, List<Integer>> group : indicesByTicker.entrySet()) {
+            PriceScale scale = PriceScaleProvider.getRegistry().getScale(group.getKey());
+            List<Order> accepted = new ArrayList<>(group.getValue().size());
+            List<Integer> acceptedIndices = new ArrayList<>(group.getValue().size());
+            for (int index : group.getValue()) {
+                Order order = batch.get(index);
+                try {
+                    checkPreTradeRisk(order, scale.toDisplayPrice((int) Math.round(order.GetPrice())));
+                    accepted.add(order);
+                    acceptedIndices.add(index);
+                } catch (IllegalArgumentException ex) {
+                    rejections[index] = ex.getMessage();
+                    if (audit != null) {
+                        audit.orderRejected(order, scale.toDisplayPrice((int) Math.round(order.GetPrice())), ex.getMessage());
+                    }
+                }
+            }
+            if (accepted.isEmpty()) {
+                continue;
+            }
 
-        List<Trade> trades = orderbook.AddOrder(order);
-        handleTrades(trades);
-        broadcastOrderBook();
-        broadcastTrades(trades);
+            LOG.debug("Processing batch of {} orders for ticker={}", accepted.size(), group.getKey());
+            String[] bookRejections = new String[accepted.size()];
+            List<Trade> trades = orderbook.AddOrders(accepted, bookRejections);
+            EngineMetrics.recordOrders(group.getKey(), accepted.size());
+            for (int i = 0; i < bookRejections.length; i++) {
+                if (bookRejections[i] != null) {
+                    rejections[acceptedIndices.get(i)] = bookRejections[i];
+                }
+                if (audit != null) {
+                    Order order = accepted.get(i);
+                    double displayPrice = scale.toDisplayPrice((int) Math.round(order.GetPrice()));
+                    if (bookRejections[i] != null) {
+                        audit.orderRejected(order, displayPrice, bookRejections[i]);
+                    } else {
+                        audit.orderAccepted(order, displayPrice);
+                    }
+                }
+            }
+            handleTrades(trades, 0L);
+            queuePublication(trades);
+        }
+
+        List<BatchItemResult> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            results.add(new BatchItemResult(batch.get(i), rejections[i]));
+        }
+        return results;
     }
 
     public void modifyOrder(String userId, long orderId, OrderSide side, int price, int quantity) {
-        LOG.info("Modifying order: user={}, id={}, side={}, price={}, qty={}", userId, orderId, side, price, quantity);
+        commandLock.lock();
+        try {
+            CommandJournal current = journal;
+            if (current != null) {
+                current.appendModify(userId, orderId, side, price, quantity);
+            }
+            applyModify(userId, orderId, side, price, quantity);
+        } finally {
+            commandLock.unlock();
+            publish();
+        }
+    }
+
+    private void applyModify(String userId, long orderId, OrderSide side, int price, int quantity) {
         Order existing = orderbook.findOrder(orderId);
         if (existing == null || !existing.getUserId().equals(userId)) {
             throw new IllegalArgumentException("ORDER_NOT_FOUND");
         }
         OrderModify modify = new OrderModify(orderId, userId, existing.getTicker(), side, price, quantity);
-        List<Trade> trades = orderbook.ModifyOrder(modify);
-        handleTrades(trades);
-        broadcastOrderBook();
-        broadcastTrades(trades);
+        Order replacement = modify.ToOrderPointer(existing.GetOrderType(), existing.GetTimeInForce());
+        double displayPrice = PriceScaleProvider.getRegistry().getScale(existing.getTicker()).toDisplayPrice(price);
+        UserAccount account = accountManager.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("UNKNOWN_USER"));
+        // The reservation moves under the book lock, after the order is confirmed still resting:
+        // the prune thread may have expired it since the lookup above, releasing what it held.
+        List<Trade> trades = orderbook.ReplaceOrder(replacement,
+                resting -> accountManager.reserveReplacing(account, resting, replacement, displayPrice));
+        if (trades == null) {
+            throw new IllegalArgumentException("ORDER_NOT_FOUND");
+        }
+        OrderAuditLog audit = auditLog;
+        if (audit != null) {
+            audit.orderModified(userId, orderId, existing.getTicker(), side, displayPrice, quantity);
+        }
+        handleTrades(trades, orderId);
+        queuePublication(trades);
     }
 
     public boolean cancelOrder(String userId, long orderId) {
-        LOG.info("Canceling order: user={}, id={}", userId, orderId);
+        commandLock.lock();
+        try {
+            CommandJournal current = journal;
+            if (current != null) {
+                current.appendCancel(userId, orderId);
+            }
+            return applyCancel(userId, orderId);
+        } finally {
+            commandLock.unlock();
+            publish();
+        }
+    }
+
+    private boolean applyCancel(String userId, long orderId) {
         Order existing = orderbook.findOrder(orderId);
         if (existing == null || !existing.getUserId().equals(userId)) {
             return false;
         }
         orderbook.CancelOrder(orderId);
-        broadcastOrderBook();
+        EngineMetrics.recordCancels(existing.getTicker(), 1);
+        OrderAuditLog audit = auditLog;
+        if (audit != null) {
+            audit.orderCanceled(existing);
+        }
+        queuePublication(List.of());
         return true;
     }
 
+    /**
+     * Cancels every resting order owned by the user in a single book operation and publishes one
+     * conflated book update.
+     *
+     * @return identifiers of the orders that were canceled
+     */
+    public List<Long> cancelAllOrders(String userId) {
+        commandLock.lock();
+        try {
+            CommandJournal current = journal;
+            if (current != null) {
+                current.appendMassCancel(userId);
+            }
+            return applyCancelAll(userId);
+        } finally {
+            commandLock.unlock();
+            publish();
+        }
+    }
+
+    private List<Long> applyCancelAll(String userId) {
+        List<Order> canceled = orderbook.CancelOrdersForUser(userId);
+        if (canceled.isEmpty()) {
+            return List.of();
+        }
+        LOG.info("Mass-canceled {} orders for user={}", canceled.size(), userId);
+        List<Long> orderIds = new ArrayList<>(canceled.size());
+        OrderAuditLog audit = auditLog;
+        for (Order order : canceled) {
+            orderIds.add(order.GetOrderId());
+            EngineMetrics.recordCancels(order.getTicker(), 1);
+            if (audit != null) {
+                audit.orderCanceled(order);
+            }
+        }
+        queuePublication(List.of());
+        return orderIds;
+    }
+
+    /**
+     * Takes a snapshot between two commands and writes it to {@code directory}. Only the copy of
+     * order references and counters runs under the command lock; encoding and the file write
+     * happen after matching has resumed.
+     *
+     * @return the last journal sequence covered by the snapshot
+     */
+    public long writeSnapshot(Path directory, OrderIdGenerator orderIds) throws IOException {
+        EngineSnapshot.Capture capture;
+        long started = System.nanoTime();
+        commandLock.lock();
+        try {
+            CommandJournal current = journal;
+            long sequence = current != null ? current.nextSequence() - 1L : 0L;
+            capture = EngineSnapshot.capture(sequence, orderIds.peekNextId(), fillSequence.get(),
+                    orderbook, accountManager, fills);
+        } finally {
+            commandLock.unlock();
+        }
+        long paused = System.nanoTime() - started;
+        ByteBuffer image = capture.encode();
+        int bytes = image.remaining();
+        EngineSnapshot.write(directory, capture.journalSequence(), image);
+        LOG.info("Snapshot at journal sequence {} written ({} bytes, matching paused {} ms, total {} ms)",
+                capture.journalSequence(), bytes, paused / 1_000_000L, (System.nanoTime() - started) / 1_000_000L);
+        return capture.journalSequence();
+    }
+
+    /**
+     * Loads the newest valid snapshot into this engine, which must not have processed any commands.
+     *
+     * @return the restored counters, or {@code null} when there is no usable snapshot
+     */
+    public EngineSnapshot.Header restoreSnapshot(Path directory) throws IOException {
+        commandLock.lock();
+        try {
+            EngineSnapshot.Header header = EngineSnapshot.restoreLatest(directory, orderbook, accountManager, fills);
+            if (header != null) {
+                fillSequence.set(header.nextFillId());
+                orderbook.forEachRestingOrder(order -> accountManager.restoreReservation(order,
+                        PriceScaleProvider.getRegistry().getScale(order.getTicker())
+                                .toDisplayPrice((int) Math.round(order.GetPrice()))));
+            }
+            return header;
+        } finally {
+            commandLock.unlock();
+        }
+    }
+
     public OrderbookLevelInfos getOrderbookLevels() {
         return orderbook.GetOrderInfos();
     }
 
+    /**
+     * Book size and retained fill history for the metrics endpoint. Reads counts the book
+     * published when it last released its lock, so this never waits behind matching.
+     */
+    public Map<String, Object> bookMetrics() {
+        int[] counts = orderbook.publishedCounts();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("bidOrders", counts[0]);
+        metrics.put("askOrders", counts[1]);
+        metrics.put("bidLevels", counts[2]);
+        metrics.put("askLevels", counts[3]);
+        metrics.put("fillsRetained", fills.retainedFills());
+        metrics.put("fillsAccounts", fills.users());
+        metrics.put("fillChunksSpilled", fills.spilledChunks());
+        return metrics;
+    }
+
+    /**
+     * Estimates the fill of a hypothetical order without touching the book or the command lock;
+     * see {@link Orderbook#estimateImpact}.
+     */
+    public LevelLadder.Impact[] estimateImpact(OrderSide side, long[] quantities) {
+        return orderbook.estimateImpact(side, quantities);
+    }
+
+    /**
+     * Bucketed depth of one side without the command lock; see {@link Orderbook#aggregateDepth}.
+     */
+    public LevelLadder.Buckets aggregateDepth(OrderSide side, int fromPrice, int toPrice, int bucketTicks,
+            int maxBuckets) {
+        return orderbook.aggregateDepth(side, fromPrice, toPrice, bucketTicks, maxBuckets);
+    }
+
+    /**
+     * Visits resting orders in book priority order for a level-3 snapshot; see
+     * {@link Orderbook#snapshotRestingOrders}.
+     */
+    public long snapshotRestingOrders(Consumer<Order> visitor) {
+        return orderbook.snapshotRestingOrders(visitor);
+    }
+
+    /**
+     * Visits resting orders in book priority order; see {@link Orderbook#forEachRestingOrder}.
+     */
+    public void forEachRestingOrder(Consumer<Order> visitor) {
+        orderbook.forEachRestingOrder(visitor);
+    }
+
     public List<OrderDetails> getOpenOrdersForUser(String userId) {
         List<OrderDetails> details = orderbook.GetOrderDetails();
         if (details.isEmpty()) {
@@ -115,34 +523,182 @@ public class MatchingEngine {
         return filtered;
     }
 
+    /**
+     * @return every retained fill of the user, oldest first
+     */
     public List<FillRecord> getFillsForUser(String userId) {
-        List<FillRecord> fills = fillsByUser.get(userId);
-        if (fills == null) {
-            return List.of();
+        return fills.all(userId);
+    }
+
+    /**
+     * Pages through a user's fills newest first; see {@link FillStore#query}.
+     */
+    public FillStore.Page getFills(String userId, long before, long fromNanos, long toNanos, int limit) {
+        return fills.query(userId, before, fromNanos, toNanos, limit);
+    }
+
+    /**
+     * Moves fill history older than {@code window} off the heap, into a memory-mapped file under
+     * {@code spillDirectory} or, if that is {@code null}, out of the engine entirely.
+     */
+    public void startFillRetention(Duration window, Path spillDirectory) throws IOException {
+        fills.startRetention(window, spillDirectory);
+    }
+
+    /**
+     * Queues what the current command produced for delivery once the command lock is released:
+     * its fills, the level-3 events since the last command, the book levels it left and its trades.
+     * Must be called under the command lock, which fixes the delivery order.
+     */
+    private void queuePublication(List<Trade> trades) {
+        List<FillRecord> fillRecords = List.copyOf(pendingFills);
+        pendingFills.clear();
+        List<OrderEvent> events = List.of();
+        if (orderEventListener != null) {
+            synchronized (pendingOrderEvents) {
+                if (!pendingOrderEvents.isEmpty()) {
+                    events = List.copyOf(pendingOrderEvents);
+                    pendingOrderEvents.clear();
+                }
+            }
+        }
+        OrderbookLevelInfos levels = orderBookUpdateListener != null ? orderbook.GetOrderInfos() : null;
+        long tapeSequence = 0L;
+        TradeTape tape = tradeTape;
+        if (trades == null) {
+            trades = List.of();
+        } else if (tape != null && !trades.isEmpty()) {
+            tapeSequence = tape.lastSequence(trades.get(0).getBidTrade().getTicker());
+        }
+        publications.add(new Publication(fillRecords, events, levels, trades, tapeSequence,
+                Thread.currentThread(), LatencyTracer.currentTrace()));
+    }
+
+    /**
+     * Delivers queued publications in command order. Called after releasing the command lock; when
+     * another thread is already delivering, waits for it so the caller's own publication has gone
+     * out by the time its command returns.
+     */
+    private void publish() {
+        if (publications.isEmpty()) {
+            return;
+        }
+        publishLock.lock();
+        try {
+            Publication next;
+            while ((next = publications.poll()) != null) {
+                try {
+                    deliver(next);
+                } catch (RuntimeException ex) {
+                    LOG.warn("Publication listener failed", ex);
+                }
+            }
+        } finally {
+            publishLock.unlock();
         }
-        return Collections.unmodifiableList(fills);
     }
 
-    private void broadcastOrderBook() {
-        if (orderBookUpdateListener != null) {
-            orderBookUpdateListener.accept(orderbook.GetOrderInfos());
+    private void deliver(Publication publication) {
+        // Another thread may drain this publication; its own open trace must not get our stages.
+        boolean ownTrace = publication.traceThread() == Thread.currentThread()
+                && publication.trace() == LatencyTracer.currentTrace();
+        long suspended = ownTrace ? 0L : LatencyTracer.suspend();
+        try {
+            deliverListeners(publication);
+        } finally {
+            LatencyTracer.resume(suspended);
         }
     }
 
-    private void broadcastTrades(List<Trade> trades) {
-        if (tradeListener != null && trades != null && !trades.isEmpty()) {
-            tradeListener.accept(trades);
+    private void deliverListeners(Publication publication) {
+        if (!publication.fills().isEmpty()) {
+            for (FillRecord fill : publication.fills()) {
+                for (Consumer<FillRecord> listener : fillListeners) {
+                    try {
+                        listener.accept(fill);
+                    } catch (Exception ex) {
+                        LOG.warn("Fill listener failed", ex);
+                    }
+                }
+            }
+            LatencyTracer.mark(LatencyTracer.Stage.PRIVATE_FILL_SENT);
+        }
+        Consumer<List<OrderEvent>> eventListener = orderEventListener;
+        if (eventListener != null && !publication.events().isEmpty()) {
+            eventListener.accept(publication.events());
+        }
+        if (orderBookUpdateListener != null && publication.levels() != null) {
+            orderBookUpdateListener.accept(publication.levels());
+        }
+        if (tradeListener != null && !publication.trades().isEmpty()) {
+            tradeListener.accept(publication.trades(), publication.tapeSequence());
         }
     }
 
-    public synchronized void reset() {
-        LOG.info("Resetting matching engine");
-        if (orderbook != null) {
+    public void reset() {
+        commandLock.lock();
+        try {
+            CommandJournal current = journal;
+            if (current != null) {
+                current.appendReset();
+            }
+            LOG.info("Resetting matching engine");
+            orderbook.forEachRestingOrder(accountManager::releaseOpen);
             orderbook.close();
+            long clearSequence = orderbook.lastOrderEventSequence() + 1L;
+            orderbook = new Orderbook(bookListener, clearSequence);
+            if (bookListener.wantsOrderEvents()) {
+                synchronized (pendingOrderEvents) {
+                    pendingOrderEvents.add(new OrderEvent(clearSequence, OrderEvent.Type.CLEAR, 0L, null, 0, 0L, 0L));
+                }
+            }
+            fills.clear();
+            TradeTape tape = tradeTape;
+            if (tape != null) {
+                tape.clear();
+            }
+            CandleAggregator bars = candles;
+            if (bars != null) {
+                bars.clear();
+            }
+            MarketStats stats = marketStats;
+            if (stats != null) {
+                stats.clear();
+                orderbook.refreshTopOfBook();
+            }
+            queuePublication(List.of());
+        } finally {
+            commandLock.unlock();
+            publish();
+        }
+    }
+
+    /**
+     * Stops the current book's background pruning thread. The engine must not be used afterwards.
+     */
+    public void close() {
+        commandLock.lock();
+        try {
+            orderbook.close();
+            fills.close();
+        } finally {
+            commandLock.unlock();
+        }
+    }
+
+    private void checkPreTradeRisk(Order order, double displayPrice) {
+        UserAccount account = accountManager.findById(order.getUserId())
+                .orElseThrow(() -> new IllegalArgumentException("UNKNOWN_USER"));
+        if (order.GetOrderType() == OrderType.MARKET && order.GetSide() == OrderSide.BUY) {
+            // Priced here rather than by the book, at the worst ask it may sweep to, so the cash
+            // for a remainder that rests there is held like a limit buy's.
+            Integer worstAsk = orderbook.getWorstAskPriceKey();
+            if (worstAsk != null) {
+                order.ToGoodTillCancel(worstAsk);
+                displayPrice = PriceScaleProvider.getRegistry().getScale(order.getTicker()).toDisplayPrice(worstAsk);
+            }
         }
-        orderbook = new Orderbook();
-        fillsByUser.clear();
-        broadcastOrderBook();
+        accountManager.reserve(account, order, displayPrice);
     }
 
     private void enforcePostOnly(Order order) {
@@ -164,53 +720,116 @@ public class MatchingEngine {
         }
     }
 
-    private void handleTrades(List<Trade> trades) {
+    /**
+     * Settles one match cycle: every fill is audited and appended to {@link FillStore}, but cash and
+     * positions move once per user through {@link FillSettlement}.
+     * The fills stay in {@code pendingFills} until the command queues its publication, after which
+     * fill listeners see them in execution order.
+     *
+     * @param aggressorOrderId the command's incoming order, or 0 when a batch has several
+     */
+    private void handleTrades(List<Trade> trades, long aggressorOrderId) {
         if (trades == null || trades.isEmpty()) {
             return;
         }
+        String ticker = trades.get(0).getBidTrade().getTicker();
+        EngineMetrics.recordTrades(ticker, trades.size());
+        EngineEvents.Settle event = new EngineEvents.Settle();
+        event.begin();
+        OrderAuditLog audit = auditLog;
+        PriceScaleRegistry registry = PriceScaleProvider.getRegistry();
+        long cashUnitsPerTick = registry.getScale(ticker).cashUnitsPerTick();
+        int instrumentId = registry.instrumentId(ticker);
+        // One timestamp per cycle: every fill of a command executes at the same instant.
+        Instant executedAt = Instant.now();
+        long executedAtNanos = FillStore.toNanos(executedAt);
+        TradeHistory history = tradeHistory;
         for (Trade trade : trades) {
-            recordFill(trade.getBidTrade());
-            recordFill(trade.getAskTrade());
+            TradeInfo bid = trade.getBidTrade();
+            TradeInfo ask = trade.getAskTrade();
+            long bidFillId = collectFill(bid, audit, instrumentId, cashUnitsPerTick, executedAt, executedAtNanos);
+            long askFillId = collectFill(ask, audit, instrumentId, cashUnitsPerTick, executedAt, executedAtNanos);
+            if (history != null && bid != null && ask != null) {
+                try {
+                    history.append(executedAtNanos, bid, ask, bidFillId, askFillId);
+                } catch (UncheckedIOException ex) {
+                    LOG.error("Trade history append failed; history disabled", ex);
+                    tradeHistory = null;
+                    history = null;
+                }
+            }
+        }
+        TradeTape tape = tradeTape;
+        if (tape != null) {
+            tape.record(ticker, executedAtNanos, trades, aggressorOrderId);
+        }
+        CandleAggregator bars = candles;
+        if (bars != null) {
+            bars.record(ticker, executedAtNanos, trades, aggressorOrderId);
+        }
+        MarketStats stats = marketStats;
+        if (stats != null) {
+            stats.recordTrades(ticker, executedAtNanos, trades, aggressorOrderId);
+        }
+        int accounts = settlement.size();
+        settlement.settle();
+        LatencyTracer.mark(LatencyTracer.Stage.ACCOUNTS_UPDATED);
+
+        int fillCount = pendingFills.size();
+        event.end();
+        if (event.shouldCommit()) {
+            event.ticker = ticker;
+            event.fills = fillCount;
+            event.accounts = accounts;
+            event.listeners = fillListeners.size();
+            event.commit();
         }
     }
 
-    private void recordFill(TradeInfo info) {
+    private long collectFill(TradeInfo info, OrderAuditLog audit, int instrumentId, long cashUnitsPerTick,
+            Instant executedAt, long executedAtNanos) {
         if (info == null) {
-            return;
+            return 0L;
         }
-
-        accountManager.findById(info.getUserId()).ifPresent(account -> {
-            double notional = info.getPrice() * info.getQuantity();
-            if (info.getSide() == OrderSide.BUY) {
-                account.adjustCash(-notional);
-                account.adjustPosition(info.getTicker(), info.getQuantity());
-            } else {
-                account.adjustCash(notional);
-                account.adjustPosition(info.getTicker(), -info.getQuantity());
-            }
-        });
-
+        if (audit != null) {
+            audit.orderFilled(info);
+        }
+        long fillId = fillSequence.getAndIncrement();
+        fills.append(info.getUserId(), fillId, info.getOrderId(), instrumentId, info.getSide(), info.getPriceTicks(),
+                info.getQuantity(), executedAtNanos);
         FillRecord fill = new FillRecord(
-                nextFillId(),
+                Long.toString(fillId),
                 Long.toString(info.getOrderId()),
                 info.getUserId(),
                 info.getTicker(),
                 info.getSide(),
                 info.getPrice(),
                 info.getQuantity(),
-                Instant.now());
+                executedAt);
+        pendingFills.add(fill);
 
-        fillsByUser.computeIfAbsent(info.getUserId(), __ -> new CopyOnWriteArrayList<>()).add(fill);
-        for (Consumer<FillRecord> listener : fillListeners) {
-            try {
-                listener.accept(fill);
-            } catch (Exception ex) {
-                LOG.warn("Fill listener failed", ex);
-            }
+        // Exact fixed-point notional: ticks x quantity x ledger units per tick.
+        long quantity = info.getQuantity();
+        long notional = Math.multiplyExact(info.getPriceTicks() * quantity, cashUnitsPerTick);
+        if (info.getSide() == OrderSide.BUY) {
+            settlement.add(info.getUserId(), instrumentId, quantity, -notional);
+        } else {
+            settlement.add(info.getUserId(), instrumentId, -quantity, notional);
         }
+        return fillId;
+    }
+
+    /** One command's output, queued under the command lock and delivered in command order. */
+    private record Publication(List<FillRecord> fills, List<OrderEvent> events, OrderbookLevelInfos levels,
+            List<Trade> trades, long tapeSequence, Thread traceThread, long trace) {
     }
 
-    private String nextFillId() {
-        return Long.toString(fillSequence.getAndIncrement());
+    /**
+     * Outcome of a single order within {@link #processBatch(List)}.
+     */
+    public record BatchItemResult(Order order, String rejectReason) {
+        public boolean accepted() {
+            return rejectReason == null;
+        }
     }
 }
@@ -22,6 +22,9 @@ public final class Order {
     private final boolean postOnly;
     private final long displayQuantity;
     private long remainingQuantity;
+    // Buying power (cash units per unit of quantity) or inventory held for the open quantity.
+    private long reservedCashPerUnit;
+    private boolean inventoryReserved;
 
     /**
      * Constructs an immutable order instance.
@@ -173,6 +176,19 @@ public final class Order {
         this.timeInForce = lifetime != null ? lifetime : TimeInForce.GTC;
     }
 
+    long getReservedCashPerUnit() {
+        return reservedCashPerUnit;
+    }
+
+    boolean isInventoryReserved() {
+        return inventoryReserved;
+    }
+
+    void setReservation(long cashPerUnit, boolean inventory) {
+        this.reservedCashPerUnit = cashPerUnit;
+        this.inventoryReserved = inventory;
+    }
+
     // Legacy compatibility helpers ---------------------------------------------------------
 
     public long GetOrderId() {
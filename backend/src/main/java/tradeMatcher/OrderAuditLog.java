@@ -0,0 +1,452 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Order audit trail kept off the matching path. Producers copy an event's primitive fields and
+ * existing string references into a preallocated slot of a power-of-two ring and publish it with a
+ * single volatile write; a background thread drains published slots, encodes them into a reusable
+ * buffer and appends them to rolling files. Recording therefore formats nothing and allocates
+ * nothing. When the writer falls a full ring behind, producers wait for it rather than drop
+ * records, so the trail stays complete.
+ *
+ * <pre>
+ * file    magic:int version:short record...
+ * record  length:short sequence:long timestampMillis:long type:byte orderId:long userId:str
+ *         ticker:str side:byte orderType:byte timeInForce:byte price:double quantity:long
+ *         remaining:long reason:str
+ * str     length:short chars:char[length]     (length -1 for absent)
+ * </pre>
+ *
+ * Files are named {@code audit-<firstSequence>.log} and rolled once they exceed the configured
+ * size. Read them back with {@link #read(Path, Visitor)} or {@code tradeMatcher.AuditLogDecoder}.
+ */
+public final class OrderAuditLog implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(OrderAuditLog.class);
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final long DEFAULT_FILE_BYTES = 64L * 1024 * 1024;
+    static final int MAGIC = 0x41554454;
+    static final short VERSION = 1;
+    private static final int MAX_STRING_CHARS = 256;
+    private static final int MAX_RECORD_BYTES = 2 + 8 + 8 + 1 + 8 + 3 + 8 + 8 + 8 + 3 * (2 + 2 * MAX_STRING_CHARS) + 3;
+    private static final int BATCH_HINT = 256;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private static final String FILE_PREFIX = "audit-";
+    private static final String FILE_SUFFIX = ".log";
+
+    /**
+     * What happened to the order. Only append constants: ordinals are written to disk.
+     */
+    public enum Type {
+        ACCEPTED,
+        REJECTED,
+        MODIFIED,
+        CANCELED,
+        FILLED
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final OrderSide[] SIDES = OrderSide.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final TimeInForce[] TIME_IN_FORCE = TimeInForce.values();
+
+    /**
+     * One decoded record. {@code side}, {@code orderType}, {@code timeInForce}, {@code ticker} and
+     * {@code reason} are {@code null} when the event does not carry them.
+     */
+    public record Entry(
+            long sequence,
+            long timestampMillis,
+            Type type,
+            long orderId,
+            String userId,
+            String ticker,
+            OrderSide side,
+            OrderType orderType,
+            TimeInForce timeInForce,
+            double price,
+            long quantity,
+            long remaining,
+            String reason) {
+    }
+
+    public interface Visitor {
+        void onEntry(Entry entry);
+    }
+
+    /**
+     * Mutable ring slot. Fields are written by the producer that claimed the slot and read by the
+     * writer after it observes {@code published} equal to the slot's sequence.
+     */
+    private static final class Slot {
+        volatile long published = -1L;
+        long timestampMillis;
+        Type type;
+        long orderId;
+        String userId;
+        String ticker;
+        OrderSide side;
+        OrderType orderType;
+        TimeInForce timeInForce;
+        double price;
+        long quantity;
+        long remaining;
+        String reason;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed;
+    private volatile long consumed;
+    private final Path directory;
+    private final long fileBytes;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private final Thread writer;
+    private volatile boolean running = true;
+    private FileChannel channel;
+    private long fileWritten;
+
+    public OrderAuditLog(Path directory) throws IOException {
+        this(directory, DEFAULT_CAPACITY, DEFAULT_FILE_BYTES);
+    }
+
+    /**
+     * @param capacity  ring slots; rounded up to a power of two
+     * @param fileBytes roll to a new file once the current one reaches this size
+     */
+    public OrderAuditLog(Path directory, int capacity, long fileBytes) throws IOException {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 2 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.directory = directory;
+        this.fileBytes = Math.max(fileBytes, MAX_RECORD_BYTES * 2L);
+        Files.createDirectories(directory);
+        long first = lastSequence(directory) + 1L;
+        this.claimed = new AtomicLong(first);
+        this.consumed = first;
+        this.writer = new Thread(this::drainLoop, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void orderAccepted(Order order, double displayPrice) {
+        Slot slot = claim();
+        fillOrder(slot, Type.ACCEPTED, order, displayPrice);
+        slot.reason = null;
+        publish(slot);
+    }
+
+    public void orderRejected(Order order, double displayPrice, String reason) {
+        Slot slot = claim();
+        fillOrder(slot, Type.REJECTED, order, displayPrice);
+        slot.reason = reason;
+        publish(slot);
+    }
+
+    public void orderModified(String userId, long orderId, String ticker, OrderSide side, double displayPrice, long quantity) {
+        Slot slot = claim();
+        fill(slot, Type.MODIFIED, orderId, userId, ticker, side, displayPrice, quantity, quantity);
+        publish(slot);
+    }
+
+    public void orderCanceled(Order order) {
+        Slot slot = claim();
+        fill(slot, Type.CANCELED, order.GetOrderId(), order.getUserId(), order.getTicker(), order.GetSide(),
+                0.0d, order.GetInitialQuantity(), order.GetRemainingQuantity());
+        publish(slot);
+    }
+
+    public void orderFilled(TradeInfo fill) {
+        Slot slot = claim();
+        fill(slot, Type.FILLED, fill.getOrderId(), fill.getUserId(), fill.getTicker(), fill.getSide(),
+                fill.getPrice(), fill.getQuantity(), 0L);
+        publish(slot);
+    }
+
+    private static void fillOrder(Slot slot, Type type, Order order, double displayPrice) {
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.type = type;
+        slot.orderId = order.GetOrderId();
+        slot.userId = order.getUserId();
+        slot.ticker = order.getTicker();
+        slot.side = order.GetSide();
+        slot.orderType = order.GetOrderType();
+        slot.timeInForce = order.GetTimeInForce();
+        slot.price = displayPrice;
+        slot.quantity = order.GetInitialQuantity();
+        slot.remaining = order.GetRemainingQuantity();
+    }
+
+    private static void fill(Slot slot, Type type, long orderId, String userId, String ticker, OrderSide side,
+            double price, long quantity, long remaining) {
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.type = type;
+        slot.orderId = orderId;
+        slot.userId = userId;
+        slot.ticker = ticker;
+        slot.side = side;
+        slot.orderType = null;
+        slot.timeInForce = null;
+        slot.price = price;
+        slot.quantity = quantity;
+        slot.remaining = remaining;
+        slot.reason = null;
+    }
+
+    private Slot claim() {
+        long sequence = claimed.getAndIncrement();
+        Slot slot = slots[(int) (sequence & mask)];
+        // The slot is free once the writer has consumed the lap before ours.
+        while (sequence - consumed >= slots.length) {
+            LockSupport.parkNanos(10_000L);
+        }
+        slot.published = -1L - sequence;
+        return slot;
+    }
+
+    private static void publish(Slot slot) {
+        slot.published = -1L - slot.published;
+    }
+
+    /**
+     * @return records accepted by the ring but not yet handed to the file
+     */
+    public long backlog() {
+        return claimed.get() - consumed;
+    }
+
+    private void drainLoop() {
+        try {
+            while (running || consumed < claimed.get()) {
+                // Park rather than spin between batches: the writer shares cores with matching, and
+                // larger batches make each file write cheaper per record.
+                if (drain() < BATCH_HINT) {
+                    LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Audit writer stopped; audit records are no longer persisted", ex);
+            // Keep consuming so producers never block on a dead writer.
+            while (running) {
+                consumed = claimed.get();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10L));
+            }
+        }
+    }
+
+    private int drain() throws IOException {
+        long next = consumed;
+        int drained = 0;
+        buffer.clear();
+        while (true) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                break;
+            }
+            if (channel == null || fileWritten + buffer.position() + MAX_RECORD_BYTES > fileBytes) {
+                // Roll between records so every file starts at a record boundary.
+                flush();
+                roll(next);
+            } else if (buffer.remaining() < MAX_RECORD_BYTES) {
+                flush();
+            }
+            encode(next, slot);
+            slot.userId = null;
+            slot.ticker = null;
+            slot.reason = null;
+            next++;
+            drained++;
+            consumed = next;
+        }
+        flush();
+        return drained;
+    }
+
+    private void encode(long sequence, Slot slot) {
+        int start = buffer.position();
+        buffer.position(start + Short.BYTES);
+        buffer.putLong(sequence);
+        buffer.putLong(slot.timestampMillis);
+        buffer.put((byte) slot.type.ordinal());
+        buffer.putLong(slot.orderId);
+        putString(slot.userId);
+        putString(slot.ticker);
+        buffer.put(slot.side == null ? -1 : (byte) slot.side.ordinal());
+        buffer.put(slot.orderType == null ? -1 : (byte) slot.orderType.ordinal());
+        buffer.put(slot.timeInForce == null ? -1 : (byte) slot.timeInForce.ordinal());
+        buffer.putDouble(slot.price);
+        buffer.putLong(slot.quantity);
+        buffer.putLong(slot.remaining);
+        putString(slot.reason);
+        buffer.putShort(start, (short) (buffer.position() - start));
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        int length = Math.min(value.length(), MAX_STRING_CHARS);
+        buffer.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void roll(long firstSequence) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        Path path = directory.resolve(String.format(Locale.ROOT, "%s%020d%s", FILE_PREFIX, firstSequence, FILE_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES).putInt(MAGIC).putShort(VERSION).flip();
+        fileWritten = channel.write(header);
+    }
+
+    /**
+     * Drains every accepted record to disk and stops the writer.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10L));
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            LOG.warn("Failed to close audit log", ex);
+        }
+    }
+
+    /**
+     * Visits every record in {@code directory}, oldest file first.
+     *
+     * @return the number of records visited
+     */
+    public static long read(Path directory, Visitor visitor) throws IOException {
+        long count = 0L;
+        for (Path file : listFiles(directory)) {
+            count += readFile(file, visitor);
+        }
+        return count;
+    }
+
+    private static long readFile(Path file, Visitor visitor) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (data.remaining() < Integer.BYTES + Short.BYTES || data.getInt() != MAGIC) {
+            throw new IOException(file + " is not an audit log");
+        }
+        short version = data.getShort();
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported audit log version " + version);
+        }
+        long count = 0L;
+        while (data.remaining() >= Short.BYTES) {
+            int start = data.position();
+            int length = Short.toUnsignedInt(data.getShort());
+            if (length <= Short.BYTES || length > data.remaining() + Short.BYTES) {
+                // Torn tail from a crash mid-write.
+                break;
+            }
+            visitor.onEntry(readEntry(data));
+            data.position(start + length);
+            count++;
+        }
+        return count;
+    }
+
+    private static Entry readEntry(ByteBuffer data) {
+        long sequence = data.getLong();
+        long timestampMillis = data.getLong();
+        Type type = TYPES[data.get()];
+        long orderId = data.getLong();
+        String userId = readString(data);
+        String ticker = readString(data);
+        byte side = data.get();
+        byte orderType = data.get();
+        byte timeInForce = data.get();
+        return new Entry(sequence, timestampMillis, type, orderId, userId, ticker,
+                side < 0 ? null : SIDES[side],
+                orderType < 0 ? null : ORDER_TYPES[orderType],
+                timeInForce < 0 ? null : TIME_IN_FORCE[timeInForce],
+                data.getDouble(), data.getLong(), data.getLong(), readString(data));
+    }
+
+    private static String readString(ByteBuffer data) {
+        int length = data.getShort();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = data.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the sequence of the last readable record, or -1 for an empty directory
+     */
+    private static long lastSequence(Path directory) throws IOException {
+        List<Path> files = listFiles(directory);
+        if (files.isEmpty()) {
+            return -1L;
+        }
+        long[] last = {firstSequenceOf(files.get(files.size() - 1)) - 1L};
+        readFile(files.get(files.size() - 1), entry -> last[0] = entry.sequence());
+        return last[0];
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    static List<Path> listFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+}
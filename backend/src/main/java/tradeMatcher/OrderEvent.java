@@ -0,0 +1,26 @@
+package tradeMatcher;
+
+/**
+ * One order-by-order change to the resting book, for the public level-3 feed. Events come from the
+ * {@link Orderbook} as it mutates, numbered under its lock, so {@code sequence} follows execution
+ * order and carries on across an engine reset, which is announced with {@link Type#CLEAR}.
+ *
+ * <p>Only resting orders appear: an arriving order's own fills and its unfilled IOC remainder are
+ * not events, and it is added once matching leaves it resting. No user identifier is carried.
+ */
+public record OrderEvent(long sequence, Type type, long orderId, OrderSide side, int priceTicks, long quantity,
+        long remainingQuantity) {
+
+    public enum Type {
+        /** An order rests at the back of its level with {@code quantity} open. */
+        ADD,
+        /** A modify moved the order to the back of a level, with {@code quantity} open. */
+        MODIFY,
+        /** The resting order traded {@code quantity} at its price; {@code remainingQuantity} is left. */
+        EXECUTE,
+        /** The order left the book with {@code quantity} open: canceled, expired or modified away. */
+        DELETE,
+        /** Every order left the book. */
+        CLEAR
+    }
+}
@@ -0,0 +1,306 @@
+package tradeMatcher;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic order flow for load tests. Arrivals follow a Poisson process, commands are drawn from a
+ * configurable add/cancel/modify/market mix, limit prices are placed around a mid that performs a
+ * random walk, and users are picked from a Zipf distribution so a few accounts dominate the flow
+ * the way market makers do. Every generator tracks the orders it has added so cancels and modifies
+ * target live identifiers; one generator per submitting thread keeps the flow reproducible for a
+ * given seed.
+ */
+public final class OrderFlowGenerator {
+
+    public enum Kind {
+        ADD,
+        CANCEL,
+        MODIFY,
+        MARKET
+    }
+
+    /**
+     * @param ratePerSecond mean arrivals per second for this generator, or 0 to run unthrottled
+     * @param addWeight     relative weight of limit adds
+     * @param cancelWeight  relative weight of cancels
+     * @param modifyWeight  relative weight of price/quantity modifies
+     * @param marketWeight  relative weight of IOC market orders
+     * @param midTicks      starting mid price in book ticks
+     * @param walkTicks     standard deviation of the mid's step per command, in ticks
+     * @param depthTicks    limit prices land up to this many ticks behind the mid on the passive side
+     * @param crossTicks    and up to this many ticks through it, so some adds trade on arrival
+     * @param maxQuantity   quantities are uniform in {@code [1, maxQuantity]}
+     * @param userSkew      Zipf exponent for picking users; 0 picks uniformly
+     */
+    public record Profile(
+            double ratePerSecond,
+            int addWeight,
+            int cancelWeight,
+            int modifyWeight,
+            int marketWeight,
+            int midTicks,
+            double walkTicks,
+            int depthTicks,
+            int crossTicks,
+            int maxQuantity,
+            double userSkew) {
+
+        public static final Profile DEFAULT = new Profile(0.0d, 60, 25, 10, 5, 100_000, 0.5d, 50, 2, 100, 1.0d);
+
+        public Profile {
+            if (addWeight < 0 || cancelWeight < 0 || modifyWeight < 0 || marketWeight < 0
+                    || addWeight + cancelWeight + modifyWeight + marketWeight == 0) {
+                throw new IllegalArgumentException("Command weights must be non-negative and not all zero");
+            }
+            if (midTicks <= 2 * depthTicks + 2 || depthTicks < 1 || crossTicks < 0 || maxQuantity < 1) {
+                throw new IllegalArgumentException("Price and quantity bounds are inconsistent");
+            }
+        }
+
+        public Profile withRate(double perSecond) {
+            return new Profile(perSecond, addWeight, cancelWeight, modifyWeight, marketWeight,
+                    midTicks, walkTicks, depthTicks, crossTicks, maxQuantity, userSkew);
+        }
+
+        /**
+         * @param mix comma-separated {@code kind:weight} pairs, e.g. {@code add:60,cancel:25,modify:10,market:5}
+         */
+        public Profile withMix(String mix) {
+            int[] weights = {addWeight, cancelWeight, modifyWeight, marketWeight};
+            for (String pair : mix.split(",")) {
+                String[] parts = pair.trim().split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid mix entry '" + pair + "'");
+                }
+                weights[Kind.valueOf(parts[0].trim().toUpperCase(java.util.Locale.ROOT)).ordinal()] = Integer.parseInt(parts[1].trim());
+            }
+            return new Profile(ratePerSecond, weights[0], weights[1], weights[2], weights[3],
+                    midTicks, walkTicks, depthTicks, crossTicks, maxQuantity, userSkew);
+        }
+
+        public Profile withWalk(double ticks) {
+            return new Profile(ratePerSecond, addWeight, cancelWeight, modifyWeight, marketWeight,
+                    midTicks, ticks, depthTicks, crossTicks, maxQuantity, userSkew);
+        }
+
+        public Profile withUserSkew(double skew) {
+            return new Profile(ratePerSecond, addWeight, cancelWeight, modifyWeight, marketWeight,
+                    midTicks, walkTicks, depthTicks, crossTicks, maxQuantity, skew);
+        }
+    }
+
+    /**
+     * Reusable holder for the next command, so generating flow does not allocate.
+     */
+    public static final class Command {
+        Kind kind;
+        int userIndex;
+        OrderSide side;
+        int price;
+        int quantity;
+        long orderId;
+
+        public Kind kind() {
+            return kind;
+        }
+
+        public int userIndex() {
+            return userIndex;
+        }
+
+        public OrderSide side() {
+            return side;
+        }
+
+        /**
+         * @return limit price in book ticks; 0 for market orders
+         */
+        public int price() {
+            return price;
+        }
+
+        public int quantity() {
+            return quantity;
+        }
+
+        /**
+         * @return the order to cancel or modify; unused for adds and market orders
+         */
+        public long orderId() {
+            return orderId;
+        }
+    }
+
+    private final Profile profile;
+    private final SplittableRandom random;
+    private final double[] userCdf;
+    private final int totalWeight;
+    private final double meanIntervalNanos;
+    private double mid;
+    private long[] liveIds = new long[1_024];
+    private int[] liveUsers = new int[1_024];
+    private int liveCount;
+
+    public OrderFlowGenerator(Profile profile, int users, long seed) {
+        if (users < 1) {
+            throw new IllegalArgumentException("At least one user is required");
+        }
+        this.profile = profile;
+        this.random = new SplittableRandom(seed);
+        this.userCdf = zipfCdf(users, profile.userSkew());
+        this.totalWeight = profile.addWeight() + profile.cancelWeight() + profile.modifyWeight() + profile.marketWeight();
+        this.meanIntervalNanos = profile.ratePerSecond() > 0.0d ? 1e9d / profile.ratePerSecond() : 0.0d;
+        this.mid = profile.midTicks();
+    }
+
+    /**
+     * @return nanoseconds until the next arrival, exponentially distributed; 0 when unthrottled
+     */
+    public long nextIntervalNanos() {
+        if (meanIntervalNanos == 0.0d) {
+            return 0L;
+        }
+        return (long) (-Math.log(1.0d - random.nextDouble()) * meanIntervalNanos);
+    }
+
+    /**
+     * Fills {@code command} with the next command. Cancels and modifies fall back to adds while
+     * this generator has no live orders.
+     */
+    public Command next(Command command) {
+        stepMid();
+        int draw = random.nextInt(totalWeight);
+        Kind kind;
+        if (draw < profile.addWeight()) {
+            kind = Kind.ADD;
+        } else if (draw < profile.addWeight() + profile.cancelWeight()) {
+            kind = Kind.CANCEL;
+        } else if (draw < profile.addWeight() + profile.cancelWeight() + profile.modifyWeight()) {
+            kind = Kind.MODIFY;
+        } else {
+            kind = Kind.MARKET;
+        }
+        if ((kind == Kind.CANCEL || kind == Kind.MODIFY) && liveCount == 0) {
+            kind = Kind.ADD;
+        }
+
+        command.kind = kind;
+        command.side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+        command.quantity = 1 + random.nextInt(profile.maxQuantity());
+        command.orderId = 0L;
+        switch (kind) {
+            case ADD -> {
+                command.userIndex = nextUser();
+                command.price = limitPrice(command.side);
+            }
+            case MARKET -> {
+                command.userIndex = nextUser();
+                command.price = 0;
+            }
+            case CANCEL -> {
+                int slot = random.nextInt(liveCount);
+                command.orderId = liveIds[slot];
+                command.userIndex = liveUsers[slot];
+                removeLive(slot);
+            }
+            case MODIFY -> {
+                int slot = random.nextInt(liveCount);
+                command.orderId = liveIds[slot];
+                command.userIndex = liveUsers[slot];
+                command.price = limitPrice(command.side);
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Records an accepted add so later cancels and modifies can target it.
+     */
+    public void onAdded(long orderId, int userIndex) {
+        if (liveCount == liveIds.length) {
+            liveIds = Arrays.copyOf(liveIds, liveCount << 1);
+            liveUsers = Arrays.copyOf(liveUsers, liveCount << 1);
+        }
+        liveIds[liveCount] = orderId;
+        liveUsers[liveCount] = userIndex;
+        liveCount++;
+    }
+
+    /**
+     * Forgets an order that turned out to be filled or gone when modified.
+     */
+    public void onMissing(long orderId) {
+        for (int i = liveCount - 1; i >= 0; i--) {
+            if (liveIds[i] == orderId) {
+                removeLive(i);
+                return;
+            }
+        }
+    }
+
+    public int liveOrders() {
+        return liveCount;
+    }
+
+    /**
+     * Price for the {@code index}-th order of a pre-filled book of {@code bookSize} orders. The
+     * orders alternate sides and sit behind the band the flow trades in, about 100 per level, so a
+     * large book adds memory and map depth without the flow having to chew through it.
+     */
+    public int prefillPrice(OrderSide side, int index, int bookSize) {
+        int levels = Math.max(1, Math.min(profile.midTicks() - 2 * profile.depthTicks() - 2, bookSize / 200));
+        int offset = 2 * profile.depthTicks() + 1 + (index >> 1) % levels;
+        return side == OrderSide.BUY ? profile.midTicks() - offset : profile.midTicks() + offset;
+    }
+
+    private int limitPrice(OrderSide side) {
+        int offset = random.nextInt(-profile.crossTicks(), profile.depthTicks() + 1);
+        int center = (int) Math.round(mid);
+        int price = side == OrderSide.BUY ? center - offset : center + offset;
+        return Math.max(1, price);
+    }
+
+    private void stepMid() {
+        if (profile.walkTicks() > 0.0d) {
+            double step = profile.walkTicks() * gaussian();
+            // Mean-reverting pull keeps long runs within the pre-filled price band.
+            mid += step + (profile.midTicks() - mid) * 1e-4d;
+            mid = Math.max(profile.depthTicks() + 1.0d, mid);
+        }
+    }
+
+    private double gaussian() {
+        // Box-Muller without caching the second value; the flow does not need both.
+        double u = 1.0d - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2.0d * Math.log(u)) * Math.cos(2.0d * Math.PI * v);
+    }
+
+    private int nextUser() {
+        if (userCdf.length == 1) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(userCdf, random.nextDouble());
+        return Math.min(userCdf.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    private void removeLive(int slot) {
+        liveCount--;
+        liveIds[slot] = liveIds[liveCount];
+        liveUsers[slot] = liveUsers[liveCount];
+    }
+
+    private static double[] zipfCdf(int users, double skew) {
+        double[] cdf = new double[users];
+        double sum = 0.0d;
+        for (int i = 0; i < users; i++) {
+            sum += 1.0d / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < users; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+}
@@ -19,6 +19,13 @@ public final class OrderIdGenerator {
         this.sequence = new AtomicLong(initialValue);
     }
 
+    /**
+     * @return the identifier the next call to {@link #nextId()} would return
+     */
+    public long peekNextId() {
+        return sequence.get();
+    }
+
     public String nextId() {
         long value = sequence.getAndIncrement();
         return Long.toString(value);
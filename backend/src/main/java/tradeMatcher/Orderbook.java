@@ -16,8 +16,14 @@ import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public final class Orderbook implements AutoCloseable {
+    /**
+     * Levels per side summed into the depth reported by {@link OrderbookListener#onTopOfBook}.
+     */
+    public static final int DEPTH_LEVELS = 5;
+
     private static final class OrderEntry {
         final Order order;
 
@@ -45,12 +51,108 @@ public final class Orderbook implements AutoCloseable {
     private final Condition shutdownCondition = ordersLock.newCondition();
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
     private final Thread ordersPruneThread;
+    // Written only by the lock holder; the volatile copies let metrics read sizes without the lock.
+    private long lockAcquiredNanos;
+    private int bidOrderCount;
+    private int lastLevelsWalked;
+    private boolean levelsChanged;
+    // Scratch for publishTopOfBook: bid price, quantity, depth, then the same for asks.
+    private final long[] topOfBook = new long[6];
+    // Per-side level quantities for readers that must not take ordersLock; see estimateImpact.
+    private final LevelLadder ladder = new LevelLadder();
+    // Level-3 event state, lock holder only: the last sequence handed out, the order being added
+    // (whose own fills and IOC remainder are not events), and a modify's order id and replaced order.
+    private long orderEventSequence;
+    private Order arriving;
+    private long replacingOrderId;
+    private Order replaced;
+    private volatile int publishedOrderCount;
+    private volatile int publishedBidOrderCount;
+    private volatile int publishedBidLevels;
+    private volatile int publishedAskLevels;
+
+    private final OrderbookListener listener;
 
     public Orderbook() {
+        this(OrderbookListener.NONE);
+    }
+
+    public Orderbook(OrderbookListener listener) {
+        this(listener, 0L);
+    }
+
+    /**
+     * @param orderEventSequence sequence of the last {@link OrderEvent} already published, so a
+     *                           book replacing another one continues its numbering
+     */
+    public Orderbook(OrderbookListener listener, long orderEventSequence) {
+        this.listener = listener;
+        this.orderEventSequence = orderEventSequence;
         ordersPruneThread = new Thread(this::PruneGoodForDayOrders, "orderbook-prune");
         ordersPruneThread.start();
     }
 
+    /**
+     * Acquires {@link #ordersLock}, recording the wait and starting the hold clock for the
+     * outermost acquisition. The prune thread's timed wait bypasses this so sleeping on the
+     * shutdown condition is not counted as hold time.
+     */
+    private void lockOrders() {
+        long requested = System.nanoTime();
+        ordersLock.lock();
+        if (ordersLock.getHoldCount() == 1) {
+            lockAcquiredNanos = System.nanoTime();
+            EngineMetrics.LOCK_WAIT.record(lockAcquiredNanos - requested);
+        }
+    }
+
+    private void unlockOrders() {
+        if (ordersLock.getHoldCount() == 1) {
+            publishedOrderCount = orders.size();
+            publishedBidOrderCount = bidOrderCount;
+            publishedBidLevels = bids.size();
+            publishedAskLevels = asks.size();
+            if (levelsChanged) {
+                levelsChanged = false;
+                publishTopOfBook();
+            }
+            ladder.endWrite();
+            EngineMetrics.LOCK_HOLD.record(System.nanoTime() - lockAcquiredNanos);
+        }
+        ordersLock.unlock();
+    }
+
+    /**
+     * Reports the best level and the quantity of the best {@link #DEPTH_LEVELS} levels of each side:
+     * at most a fixed number of level lookups, whatever the book's size.
+     */
+    private void publishTopOfBook() {
+        topLevels(bids, 0);
+        topLevels(asks, 3);
+        long[] top = topOfBook;
+        listener.onTopOfBook((int) top[0], top[1], top[2], (int) top[3], top[4], top[5]);
+    }
+
+    private void topLevels(NavigableMap<Integer, Deque<Order>> side, int offset) {
+        long[] top = topOfBook;
+        top[offset] = 0L;
+        top[offset + 1] = 0L;
+        top[offset + 2] = 0L;
+        int levels = 0;
+        for (Integer price : side.keySet()) {
+            LevelData level = data.get(price);
+            long quantity = level != null ? level.quantity : 0L;
+            if (levels == 0) {
+                top[offset] = price;
+                top[offset + 1] = quantity;
+            }
+            top[offset + 2] += quantity;
+            if (++levels == DEPTH_LEVELS) {
+                break;
+            }
+        }
+    }
+
     private static int priceKey(Order order) {
         return (int) Math.round(order.GetPrice());
     }
@@ -93,37 +195,34 @@ public final class Orderbook implements AutoCloseable {
                 ordersLock.unlock();
             }
 
-            List<Long> orderIds = new ArrayList<>();
-
-            ordersLock.lock();
-            try {
-                for (OrderEntry entry : orders.values()) {
-                    if (entry.order.GetTimeInForce() == TimeInForce.DAY) {
-                        orderIds.add(entry.order.GetOrderId());
-                    }
-                }
-            } finally {
-                ordersLock.unlock();
-            }
-
-            if (!orderIds.isEmpty()) {
-                CancelOrders(orderIds);
-            }
+            expireDayOrders();
         }
     }
 
-    private void CancelOrders(List<Long> orderIds) {
-        ordersLock.lock();
+    /**
+     * Cancels every resting DAY order in one hold of the book lock, as the prune thread does at
+     * 16:00.
+     */
+    void expireDayOrders() {
+        lockOrders();
         try {
+            List<Long> orderIds = new ArrayList<>();
+            for (OrderEntry entry : orders.values()) {
+                if (entry.order.GetTimeInForce() == TimeInForce.DAY) {
+                    orderIds.add(entry.order.GetOrderId());
+                }
+            }
             for (long orderId : orderIds) {
                 CancelOrderInternal(orderId);
             }
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
         }
     }
 
     private void CancelOrderInternal(long orderId) {
+        EngineEvents.CancelOrder event = new EngineEvents.CancelOrder();
+        event.begin();
         OrderEntry entry = orders.remove(orderId);
         if (entry == null) {
             return;
@@ -132,7 +231,9 @@ public final class Orderbook implements AutoCloseable {
         Order order = entry.order;
         NavigableMap<Integer, Deque<Order>> book = order.GetSide() == OrderSide.SELL ? asks : bids;
         Deque<Order> ordersAtPrice = book.get(priceKey(order));
+        int queueLength = 0;
         if (ordersAtPrice != null) {
+            queueLength = ordersAtPrice.size();
             ordersAtPrice.remove(order);
             if (ordersAtPrice.isEmpty()) {
                 book.remove(priceKey(order));
@@ -140,21 +241,48 @@ public final class Orderbook implements AutoCloseable {
         }
 
         OnOrderCancelled(order);
+        listener.onOrderRemoved(order);
+        if (order != arriving) {
+            if (order.GetOrderId() == replacingOrderId) {
+                replaced = order;
+            } else {
+                emitOrderEvent(OrderEvent.Type.DELETE, order, order.GetRemainingQuantity());
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.orderId = orderId;
+            event.side = order.GetSide().name();
+            event.price = priceKey(order);
+            event.remainingQuantity = order.GetRemainingQuantity();
+            event.queueLength = queueLength;
+            event.restingOrders = orders.size();
+            event.commit();
+        }
     }
 
     private void OnOrderCancelled(Order order) {
-        UpdateLevelData(priceKey(order), (int) order.GetRemainingQuantity(), LevelData.Action.Remove);
+        if (order.GetSide() == OrderSide.BUY) {
+            bidOrderCount--;
+        }
+        UpdateLevelData(order.GetSide(), priceKey(order), (int) order.GetRemainingQuantity(), LevelData.Action.Remove);
     }
 
     private void OnOrderAdded(Order order) {
-        UpdateLevelData(priceKey(order), (int) order.GetInitialQuantity(), LevelData.Action.Add);
+        if (order.GetSide() == OrderSide.BUY) {
+            bidOrderCount++;
+        }
+        UpdateLevelData(order.GetSide(), priceKey(order), (int) order.GetInitialQuantity(), LevelData.Action.Add);
     }
 
-    private void OnOrderMatched(int price, int quantity, boolean isFullyFilled) {
-        UpdateLevelData(price, quantity, isFullyFilled ? LevelData.Action.Remove : LevelData.Action.Match);
+    private void OnOrderMatched(OrderSide side, int price, int quantity, boolean isFullyFilled) {
+        UpdateLevelData(side, price, quantity, isFullyFilled ? LevelData.Action.Remove : LevelData.Action.Match);
     }
 
-    private void UpdateLevelData(int price, int quantity, LevelData.Action action) {
+    private void UpdateLevelData(OrderSide side, int price, int quantity, LevelData.Action action) {
+        levelsChanged = true;
+        ladder.beginWrite();
+        ladder.add(side, price, action == LevelData.Action.Add ? quantity : -(long) quantity);
         LevelData levelData = data.computeIfAbsent(price, p -> new LevelData());
 
         if (action == LevelData.Action.Remove) {
@@ -244,7 +372,8 @@ public final class Orderbook implements AutoCloseable {
     }
 
     private List<Trade> MatchOrders() {
-        List<Trade> trades = new ArrayList<>(orders.size());
+        List<Trade> trades = new ArrayList<>();
+        int levelsWalked = 0;
 
         while (true) {
             if (bids.isEmpty() || asks.isEmpty()) {
@@ -259,11 +388,14 @@ public final class Orderbook implements AutoCloseable {
             if (bidPrice < askPrice) {
                 break;
             }
+            levelsWalked++;
 
             Deque<Order> bidOrders = bidEntry.getValue();
             Deque<Order> askOrders = askEntry.getValue();
 
             while (!bidOrders.isEmpty() && !askOrders.isEmpty()) {
+                EngineEvents.Match event = new EngineEvents.Match();
+                event.begin();
                 Order bid = bidOrders.peekFirst();
                 Order ask = askOrders.peekFirst();
 
@@ -271,10 +403,19 @@ public final class Orderbook implements AutoCloseable {
 
                 bid.Fill(quantity);
                 ask.Fill(quantity);
+                listener.onOrderFilled(bid, quantity);
+                listener.onOrderFilled(ask, quantity);
+                if (bid != arriving) {
+                    emitOrderEvent(OrderEvent.Type.EXECUTE, bid, quantity);
+                }
+                if (ask != arriving) {
+                    emitOrderEvent(OrderEvent.Type.EXECUTE, ask, quantity);
+                }
 
                 if (bid.IsFilled()) {
                     bidOrders.removeFirst();
                     orders.remove(bid.GetOrderId());
+                    bidOrderCount--;
                 }
 
                 if (ask.IsFilled()) {
@@ -289,6 +430,7 @@ public final class Orderbook implements AutoCloseable {
                         bid.getTicker(),
                         OrderSide.BUY,
                         displayPrice(priceKey(bid), bid),
+                        priceKey(bid),
                         quantity),
                     new TradeInfo(
                         ask.GetOrderId(),
@@ -296,20 +438,33 @@ public final class Orderbook implements AutoCloseable {
                         ask.getTicker(),
                         OrderSide.SELL,
                         displayPrice(priceKey(ask), ask),
+                        priceKey(ask),
                         quantity)));
 
-                OnOrderMatched(priceKey(bid), quantity, bid.IsFilled());
-                OnOrderMatched(priceKey(ask), quantity, ask.IsFilled());
+                OnOrderMatched(OrderSide.BUY, priceKey(bid), quantity, bid.IsFilled());
+                OnOrderMatched(OrderSide.SELL, priceKey(ask), quantity, ask.IsFilled());
+                event.end();
+                if (event.shouldCommit()) {
+                    event.bidOrderId = bid.GetOrderId();
+                    event.askOrderId = ask.GetOrderId();
+                    event.bidPrice = bidPrice;
+                    event.askPrice = askPrice;
+                    event.quantity = quantity;
+                    event.levelDepth = levelsWalked;
+                    event.bidQueueLength = bidOrders.size();
+                    event.askQueueLength = askOrders.size();
+                    event.commit();
+                }
             }
 
+            // Level data drops a price once its order count reaches zero; it is shared by both
+            // sides, so removing it here would also drop an order the other side rests there.
             if (bidOrders.isEmpty()) {
                 bids.pollFirstEntry();
-                data.remove(bidPrice);
             }
 
             if (askOrders.isEmpty()) {
                 asks.pollFirstEntry();
-                data.remove(askPrice);
             }
         }
 
@@ -329,126 +484,385 @@ public final class Orderbook implements AutoCloseable {
             }
         }
 
+        lastLevelsWalked = levelsWalked;
         return trades;
     }
 
     public List<Trade> AddOrder(Order order) {
-        ordersLock.lock();
+        EngineEvents.AddOrder event = new EngineEvents.AddOrder();
+        event.begin();
+        lockOrders();
         try {
-            if (orders.containsKey(order.GetOrderId())) {
-                return List.of();
+            List<Trade> trades = AddOrderInternal(order);
+            event.end();
+            if (event.shouldCommit()) {
+                event.orderId = order.GetOrderId();
+                event.userId = order.getUserId();
+                event.ticker = order.getTicker();
+                event.side = order.GetSide().name();
+                event.orderType = order.GetOrderType().name();
+                event.timeInForce = order.GetTimeInForce().name();
+                event.price = priceKey(order);
+                event.quantity = order.GetInitialQuantity();
+                event.trades = trades.size();
+                event.levelsWalked = lastLevelsWalked;
+                event.restingOrders = orders.size();
+                event.bidLevels = bids.size();
+                event.askLevels = asks.size();
+                event.commit();
             }
+            return trades;
+        } finally {
+            unlockOrders();
+        }
+    }
 
-            if (order.GetOrderType() == OrderType.MARKET) {
-                if (order.GetSide() == OrderSide.BUY && !asks.isEmpty()) {
-                    int worstAsk = asks.lastEntry().getKey();
-                    order.ToGoodTillCancel(worstAsk);
-                } else if (order.GetSide() == OrderSide.SELL && !bids.isEmpty()) {
-                    int worstBid = bids.lastEntry().getKey();
-                    order.ToGoodTillCancel(worstBid);
-                } else {
-                    return List.of();
+    /**
+     * Adds a batch of orders under a single acquisition of the book lock. Post-only orders are
+     * checked against the book as it stands when their turn comes, so they also see the effect of
+     * earlier orders in the same batch.
+     *
+     * @param rejections receives, at the index of each order, the reason it was rejected or
+     *                   {@code null} when it was handed to the matcher
+     * @return every trade produced by the batch, in execution order
+     */
+    public List<Trade> AddOrders(List<Order> batch, String[] rejections) {
+        lockOrders();
+        try {
+            List<Trade> trades = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                Order order = batch.get(i);
+                if (order.isPostOnly() && CanMatch(order.GetSide(), priceKey(order))) {
+                    rejections[i] = "POST_ONLY_WOULD_TRADE";
+                    listener.onOrderRemoved(order);
+                    continue;
                 }
+                trades.addAll(AddOrderInternal(order));
             }
+            return trades;
+        } finally {
+            unlockOrders();
+        }
+    }
 
-            if (order.GetTimeInForce() == TimeInForce.IOC && !CanMatch(order.GetSide(), (int) Math.round(order.GetPrice()))) {
-                return List.of();
+    /**
+     * Adds and matches one order, then reports it to the level-3 feed as it ends up: added if it
+     * rests, and for the second half of a modify, moved if it rests or deleted if it does not.
+     */
+    private List<Trade> AddOrderInternal(Order order) {
+        arriving = order;
+        List<Trade> trades;
+        try {
+            trades = AddAndMatch(order);
+        } finally {
+            arriving = null;
+        }
+        OrderEntry entry = orders.get(order.GetOrderId());
+        boolean resting = entry != null && entry.order == order;
+        if (replaced != null && order.GetOrderId() == replacingOrderId) {
+            if (resting) {
+                emitOrderEvent(OrderEvent.Type.MODIFY, order, order.GetRemainingQuantity());
+            } else {
+                emitOrderEvent(OrderEvent.Type.DELETE, replaced, replaced.GetRemainingQuantity());
             }
+            replaced = null;
+        } else if (resting) {
+            emitOrderEvent(OrderEvent.Type.ADD, order, order.GetRemainingQuantity());
+        }
+        return trades;
+    }
 
-            if (order.GetTimeInForce() == TimeInForce.FOK && !CanFullyFill(order.GetSide(), (int) Math.round(order.GetPrice()), (int) order.GetInitialQuantity())) {
-                return List.of();
-            }
+    private List<Trade> AddAndMatch(Order order) {
+        if (orders.containsKey(order.GetOrderId())) {
+            listener.onOrderRemoved(order);
+            return List.of();
+        }
 
-            Deque<Order> priceOrders;
-            int priceKey = (int) Math.round(order.GetPrice());
-            if (order.GetSide() == OrderSide.BUY) {
-                priceOrders = bids.computeIfAbsent(priceKey, __ -> new ArrayDeque<>());
+        if (order.GetOrderType() == OrderType.MARKET) {
+            if (order.GetSide() == OrderSide.BUY && !asks.isEmpty()) {
+                int worstAsk = asks.lastEntry().getKey();
+                order.ToGoodTillCancel(worstAsk);
+            } else if (order.GetSide() == OrderSide.SELL && !bids.isEmpty()) {
+                int worstBid = bids.lastEntry().getKey();
+                order.ToGoodTillCancel(worstBid);
             } else {
-                priceOrders = asks.computeIfAbsent(priceKey, __ -> new ArrayDeque<>());
+                listener.onOrderRemoved(order);
+                return List.of();
             }
+        }
 
-            priceOrders.addLast(order);
-            orders.put(order.GetOrderId(), new OrderEntry(order));
+        if (order.GetTimeInForce() == TimeInForce.IOC && !CanMatch(order.GetSide(), (int) Math.round(order.GetPrice()))) {
+            listener.onOrderRemoved(order);
+            return List.of();
+        }
 
-            OnOrderAdded(order);
+        if (order.GetTimeInForce() == TimeInForce.FOK && !CanFullyFill(order.GetSide(), (int) Math.round(order.GetPrice()), (int) order.GetInitialQuantity())) {
+            listener.onOrderRemoved(order);
+            return List.of();
+        }
 
-            return MatchOrders();
-        } finally {
-            ordersLock.unlock();
+        Deque<Order> priceOrders;
+        int priceKey = (int) Math.round(order.GetPrice());
+        if (order.GetSide() == OrderSide.BUY) {
+            priceOrders = bids.computeIfAbsent(priceKey, __ -> new ArrayDeque<>());
+        } else {
+            priceOrders = asks.computeIfAbsent(priceKey, __ -> new ArrayDeque<>());
         }
+
+        priceOrders.addLast(order);
+        orders.put(order.GetOrderId(), new OrderEntry(order));
+
+        OnOrderAdded(order);
+
+        return MatchOrders();
     }
 
     public void CancelOrder(long orderId) {
-        ordersLock.lock();
+        lockOrders();
         try {
             CancelOrderInternal(orderId);
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
         }
     }
 
-    public List<Trade> ModifyOrder(OrderModify order) {
-        OrderType orderType;
-        TimeInForce timeInForce;
+    public List<Order> CancelOrdersForUser(String userId) {
+        lockOrders();
+        try {
+            List<Order> canceled = new ArrayList<>();
+            for (OrderEntry entry : orders.values()) {
+                if (entry.order.getUserId().equals(userId)) {
+                    canceled.add(entry.order);
+                }
+            }
+            for (Order order : canceled) {
+                CancelOrderInternal(order.GetOrderId());
+            }
+            return canceled;
+        } finally {
+            unlockOrders();
+        }
+    }
 
-        ordersLock.lock();
+    public List<Trade> ModifyOrder(OrderModify order) {
+        lockOrders();
         try {
             OrderEntry entry = orders.get(order.GetOrderId());
             if (entry == null) {
                 return List.of();
             }
 
-            orderType = entry.order.GetOrderType();
-            timeInForce = entry.order.GetTimeInForce();
+            Order replacement = order.ToOrderPointer(entry.order.GetOrderType(), entry.order.GetTimeInForce());
+            return ReplaceOrder(replacement, __ -> {
+            });
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
         }
+    }
 
-        CancelOrder(order.GetOrderId());
-        return AddOrder(order.ToOrderPointer(orderType, timeInForce));
+    /**
+     * Cancels the order with {@code replacement}'s id and adds {@code replacement}, which loses
+     * time priority. Both halves run in one hold, so the level-3 feed sees a single
+     * {@link OrderEvent.Type#MODIFY}, or a delete if the replacement does not rest, and never the
+     * order briefly missing.
+     *
+     * <p>The resting order is looked up in the same hold, so one the prune thread expired after
+     * the caller last saw it is not brought back.
+     *
+     * @param prepare called with the resting order under the book lock before anything changes, to
+     *                move its reservation onto {@code replacement}; throwing aborts the replace
+     * @return the trades, or {@code null} when no order with that id rests, in which case neither
+     *         {@code prepare} nor the book is touched
+     */
+    public List<Trade> ReplaceOrder(Order replacement, Consumer<Order> prepare) {
+        lockOrders();
+        try {
+            OrderEntry entry = orders.get(replacement.GetOrderId());
+            if (entry == null) {
+                return null;
+            }
+            prepare.accept(entry.order);
+            replacingOrderId = replacement.GetOrderId();
+            CancelOrder(replacement.GetOrderId());
+            return AddOrder(replacement);
+        } finally {
+            replacingOrderId = 0L;
+            replaced = null;
+            unlockOrders();
+        }
     }
 
     public int Size() {
-        ordersLock.lock();
+        lockOrders();
         try {
             return orders.size();
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
         }
     }
 
     public Order findOrder(long orderId) {
-        ordersLock.lock();
+        lockOrders();
         try {
             OrderEntry entry = orders.get(orderId);
             return entry != null ? entry.order : null;
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
+        }
+    }
+
+    /**
+     * Visits every resting order, bids then asks, best level first and in time priority within a
+     * level, while holding the book lock.
+     */
+    public void forEachRestingOrder(Consumer<Order> visitor) {
+        lockOrders();
+        try {
+            for (Deque<Order> level : bids.values()) {
+                level.forEach(visitor);
+            }
+            for (Deque<Order> level : asks.values()) {
+                level.forEach(visitor);
+            }
+        } finally {
+            unlockOrders();
+        }
+    }
+
+    /**
+     * Like {@link #forEachRestingOrder}, for bootstrapping a level-3 feed.
+     *
+     * @return the sequence of the last {@link OrderEvent} the visited orders reflect; stream events
+     *         after it
+     */
+    public long snapshotRestingOrders(Consumer<Order> visitor) {
+        lockOrders();
+        try {
+            forEachRestingOrder(visitor);
+            return orderEventSequence;
+        } finally {
+            unlockOrders();
+        }
+    }
+
+    /**
+     * @return the sequence of the last {@link OrderEvent} handed out
+     */
+    public long lastOrderEventSequence() {
+        lockOrders();
+        try {
+            return orderEventSequence;
+        } finally {
+            unlockOrders();
+        }
+    }
+
+    private void emitOrderEvent(OrderEvent.Type type, Order order, long quantity) {
+        long sequence = ++orderEventSequence;
+        if (listener.wantsOrderEvents()) {
+            long remaining = type == OrderEvent.Type.DELETE ? 0L : order.GetRemainingQuantity();
+            listener.onOrderEvent(new OrderEvent(sequence, type, order.GetOrderId(), order.GetSide(), priceKey(order),
+                    quantity, remaining));
+        }
+    }
+
+    /**
+     * Appends an order to the back of its price level without matching. Used when loading a
+     * snapshot, where orders arrive in the priority order produced by {@link #forEachRestingOrder}.
+     */
+    public void RestoreOrder(Order order) {
+        lockOrders();
+        try {
+            NavigableMap<Integer, Deque<Order>> book = order.GetSide() == OrderSide.BUY ? bids : asks;
+            book.computeIfAbsent(priceKey(order), __ -> new ArrayDeque<>()).addLast(order);
+            orders.put(order.GetOrderId(), new OrderEntry(order));
+            if (order.GetSide() == OrderSide.BUY) {
+                bidOrderCount++;
+            }
+            UpdateLevelData(order.GetSide(), priceKey(order), (int) order.GetRemainingQuantity(), LevelData.Action.Add);
+            emitOrderEvent(OrderEvent.Type.ADD, order, order.GetRemainingQuantity());
+        } finally {
+            unlockOrders();
         }
     }
 
     public Integer getBestBidPriceKey() {
-        ordersLock.lock();
+        lockOrders();
         try {
             Map.Entry<Integer, Deque<Order>> entry = bids.firstEntry();
             return entry != null ? entry.getKey() : null;
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
         }
     }
 
     public Integer getBestAskPriceKey() {
-        ordersLock.lock();
+        lockOrders();
         try {
             Map.Entry<Integer, Deque<Order>> entry = asks.firstEntry();
             return entry != null ? entry.getKey() : null;
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
+        }
+    }
+
+    /**
+     * @return the highest ask price, which a market buy is converted to, or {@code null} without asks
+     */
+    public Integer getWorstAskPriceKey() {
+        lockOrders();
+        try {
+            Map.Entry<Integer, Deque<Order>> entry = asks.lastEntry();
+            return entry != null ? entry.getKey() : null;
+        } finally {
+            unlockOrders();
+        }
+    }
+
+    /**
+     * Reports the current top of book to the listener, as if the levels had just changed.
+     */
+    public void refreshTopOfBook() {
+        lockOrders();
+        try {
+            levelsChanged = true;
+        } finally {
+            unlockOrders();
         }
     }
 
+    /**
+     * Estimates what an order of {@code side} for each of {@code quantities} would fill against the
+     * opposite side, walking only the levels it needs and without taking the book lock: the levels
+     * are read as of the last release of the lock, so the matcher is never blocked. Iceberg
+     * quantity counts in full, as it would fill.
+     */
+    public LevelLadder.Impact[] estimateImpact(OrderSide side, long[] quantities) {
+        return ladder.estimate(side, quantities);
+    }
+
+    /**
+     * Aggregates one side's quantity into price buckets over a range, as of the last release of the
+     * book lock and without taking it; see {@link LevelLadder#aggregate}. No per-level objects are
+     * built, so the cost is one pass over the levels in the range.
+     */
+    public LevelLadder.Buckets aggregateDepth(OrderSide side, int fromPrice, int toPrice, int bucketTicks,
+            int maxBuckets) {
+        return ladder.aggregate(side, fromPrice, toPrice, bucketTicks, maxBuckets);
+    }
+
+    /**
+     * @return resting order and price-level counts as of the last release of the book lock, read
+     *         without taking it: {@code [bidOrders, askOrders, bidLevels, askLevels]}
+     */
+    public int[] publishedCounts() {
+        int total = publishedOrderCount;
+        int bidOrders = publishedBidOrderCount;
+        return new int[] {bidOrders, Math.max(0, total - bidOrders), publishedBidLevels, publishedAskLevels};
+    }
+
     public OrderbookLevelInfos GetOrderInfos() {
-        ordersLock.lock();
+        lockOrders();
         try {
             List<LevelInfo> bidInfos = new ArrayList<>(orders.size());
             List<LevelInfo> askInfos = new ArrayList<>(orders.size());
@@ -463,19 +877,19 @@ public final class Orderbook implements AutoCloseable {
 
             return new OrderbookLevelInfos(bidInfos, askInfos);
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
         }
     }
 
     public List<OrderDetails> GetOrderDetails() {
-        ordersLock.lock();
+        lockOrders();
         try {
             List<OrderDetails> details = new ArrayList<>(orders.size());
             appendOrderDetails(bids, details);
             appendOrderDetails(asks, details);
             return List.copyOf(details);
         } finally {
-            ordersLock.unlock();
+            unlockOrders();
         }
     }
 
@@ -0,0 +1,45 @@
+package tradeMatcher;
+
+/**
+ * Callbacks for changes to an order's open quantity, invoked by {@link Orderbook} while it holds
+ * its book lock. Implementations must be quick and must not call back into the book.
+ */
+public interface OrderbookListener {
+    OrderbookListener NONE = new OrderbookListener() {
+    };
+
+    /**
+     * {@code quantity} of {@code order} traded; its remaining quantity has already been reduced.
+     */
+    default void onOrderFilled(Order order, long quantity) {
+    }
+
+    /**
+     * {@code order} left the book, or never rested, with {@link Order#GetRemainingQuantity()}
+     * unfilled: canceled, expired, an IOC remainder, or killed on arrival (FOK, IOC or market order
+     * that could not trade, post-only that would have, duplicate identifier).
+     */
+    default void onOrderRemoved(Order order) {
+    }
+
+    /**
+     * @return whether to build {@link OrderEvent}s for {@link #onOrderEvent}; checked per event
+     */
+    default boolean wantsOrderEvents() {
+        return false;
+    }
+
+    /**
+     * One order-by-order change to the resting book, in sequence order.
+     */
+    default void onOrderEvent(OrderEvent event) {
+    }
+
+    /**
+     * The price levels changed during the lock hold that is ending. Prices are book ticks, 0 for
+     * an empty side; depths sum the quantity of the best {@link Orderbook#DEPTH_LEVELS} levels.
+     */
+    default void onTopOfBook(int bidPrice, long bidQuantity, long bidDepth, int askPrice, long askQuantity,
+            long askDepth) {
+    }
+}
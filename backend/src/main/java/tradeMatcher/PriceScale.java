@@ -11,6 +11,7 @@ import java.util.Objects;
 public final class PriceScale {
     private final int precision;
     private final int scaleFactor;
+    private final long cashUnitsPerTick;
 
     private PriceScale(int precision, int scaleFactor) {
         if (precision < 0) {
@@ -19,8 +20,12 @@ public final class PriceScale {
         if (scaleFactor <= 0) {
             throw new IllegalArgumentException("scaleFactor must be positive");
         }
+        if (UserAccount.CASH_SCALE % scaleFactor != 0L) {
+            throw new IllegalArgumentException("precision cannot be finer than the cash ledger's " + UserAccount.CASH_SCALE);
+        }
         this.precision = precision;
         this.scaleFactor = scaleFactor;
+        this.cashUnitsPerTick = UserAccount.CASH_SCALE / scaleFactor;
     }
 
     public static PriceScale fromPrecision(int precision) {
@@ -36,6 +41,14 @@ public final class PriceScale {
         return scaleFactor;
     }
 
+    /**
+     * @return cash ledger units ({@link UserAccount#CASH_SCALE} per unit of cash) in one price tick,
+     *         so {@code ticks * quantity * cashUnitsPerTick()} is an exact notional
+     */
+    public long cashUnitsPerTick() {
+        return cashUnitsPerTick;
+    }
+
     public int toBookPrice(double decimalPrice) {
         if (decimalPrice == 0.0d) {
             return 0;
@@ -1,15 +1,22 @@
 package tradeMatcher;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Provides access to {@link PriceScale} instances per ticker symbol.
+ * Provides access to {@link PriceScale} instances per ticker symbol, and dense instrument
+ * identifiers for ledgers that index arrays by instrument.
  */
 public final class PriceScaleRegistry {
     private final Map<String, PriceScale> scales = new ConcurrentHashMap<>();
     private final int defaultPrecision;
+    private final Map<String, Integer> instrumentIds = new ConcurrentHashMap<>();
+    private final List<String> tickersById = new CopyOnWriteArrayList<>();
+    private final ReentrantLock instrumentLock = new ReentrantLock();
 
     public PriceScaleRegistry(int defaultPrecision) {
         if (defaultPrecision < 0) {
@@ -27,6 +34,38 @@ public final class PriceScaleRegistry {
         scales.put(normalizeKey(ticker), PriceScale.fromPrecision(precision));
     }
 
+    /**
+     * @return a small, dense identifier for {@code ticker}, assigned on first use and stable for
+     *         the life of the process. Looking up a known upper-case ticker allocates nothing.
+     */
+    public int instrumentId(String ticker) {
+        String key = normalizeKey(ticker);
+        Integer id = instrumentIds.get(key);
+        return id != null ? id : assignInstrumentId(key);
+    }
+
+    /**
+     * @return the ticker {@link #instrumentId} assigned {@code id} to
+     */
+    public String tickerOf(int id) {
+        return tickersById.get(id);
+    }
+
+    private int assignInstrumentId(String key) {
+        instrumentLock.lock();
+        try {
+            Integer id = instrumentIds.get(key);
+            if (id == null) {
+                id = tickersById.size();
+                tickersById.add(key);
+                instrumentIds.put(key, id);
+            }
+            return id;
+        } finally {
+            instrumentLock.unlock();
+        }
+    }
+
     private static String normalizeKey(String ticker) {
         if (ticker == null || ticker.isBlank()) {
             return "";
@@ -1,11 +1,23 @@
 package tradeMatcher;
 
 import com.google.gson.Gson;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import org.eclipse.jetty.websocket.api.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,17 +29,72 @@ public final class PrivateFeedService {
     private static final Logger LOG = LoggerFactory.getLogger(PrivateFeedService.class);
 
     private final ConcurrentHashMap<String, Set<Session>> sessionsByUser = new ConcurrentHashMap<>();
+    // Users who opted in on any session; kept across reconnects until the cancel fires, so it does
+    // not depend on which of the user's sessions happens to close last.
+    private final Set<String> cancelOnDisconnectUsers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, ScheduledFuture<?>> pendingDisconnectCancels = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Session, HeldCommand> heldCommands = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, List<HeldCommand>> heldBatches = new ConcurrentHashMap<>();
     private final Gson gson = new Gson();
+    private final Duration cancelOnDisconnectGrace;
+    private final ScheduledExecutorService disconnectScheduler;
+    private final WebSocketSender sender;
+    private volatile Consumer<String> cancelOnDisconnectHandler;
+
+    public PrivateFeedService() {
+        this(Duration.ZERO);
+    }
+
+    public PrivateFeedService(Duration cancelOnDisconnectGrace) {
+        this(cancelOnDisconnectGrace, new WebSocketSender());
+    }
+
+    /**
+     * @param cancelOnDisconnectGrace how long to wait after the last session of a user who opted in
+     *                                on any session closes before mass-canceling, so brief reconnects
+     *                                keep quotes alive
+     */
+    public PrivateFeedService(Duration cancelOnDisconnectGrace, WebSocketSender sender) {
+        this.sender = Objects.requireNonNull(sender, "sender");
+        this.cancelOnDisconnectGrace = cancelOnDisconnectGrace == null || cancelOnDisconnectGrace.isNegative()
+                ? Duration.ZERO
+                : cancelOnDisconnectGrace;
+        this.disconnectScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "private-feed-disconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers the action to run, with the user id, once cancel-on-disconnect fires.
+     */
+    public void onCancelOnDisconnect(Consumer<String> handler) {
+        this.cancelOnDisconnectHandler = handler;
+    }
 
     public void register(Session session, String userId) {
+        register(session, userId, false);
+    }
+
+    public void register(Session session, String userId, boolean cancelOnDisconnect) {
+        if (cancelOnDisconnect) {
+            cancelOnDisconnectUsers.add(userId);
+        }
         sessionsByUser.compute(userId, (key, existing) -> {
             Set<Session> set = existing == null ? new CopyOnWriteArraySet<>() : existing;
             set.add(session);
             return set;
         });
+        ScheduledFuture<?> pending = pendingDisconnectCancels.remove(userId);
+        if (pending != null && pending.cancel(false)) {
+            LOG.info("User {} reconnected within grace period; cancel-on-disconnect aborted", userId);
+        }
     }
 
     public void unregister(Session session, String userId) {
+        sender.release(session);
+        heldCommands.remove(session);
         if (userId == null) {
             return;
         }
@@ -35,33 +102,170 @@ public final class PrivateFeedService {
             set.remove(session);
             return set.isEmpty() ? null : set;
         });
+        if (cancelOnDisconnectUsers.contains(userId) && !sessionsByUser.containsKey(userId)) {
+            scheduleDisconnectCancel(userId);
+        }
+    }
+
+    private void scheduleDisconnectCancel(String userId) {
+        ScheduledFuture<?> future = disconnectScheduler.schedule(
+                () -> fireDisconnectCancel(userId),
+                cancelOnDisconnectGrace.toMillis(),
+                TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = pendingDisconnectCancels.put(userId, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private void fireDisconnectCancel(String userId) {
+        pendingDisconnectCancels.remove(userId);
+        // A reconnect inside the grace period wins even if it raced with this task being scheduled.
+        if (sessionsByUser.containsKey(userId) || !cancelOnDisconnectUsers.remove(userId)) {
+            return;
+        }
+        Consumer<String> handler = cancelOnDisconnectHandler;
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.accept(userId);
+        } catch (Exception ex) {
+            LOG.warn("Cancel-on-disconnect failed for user {}", userId, ex);
+        }
     }
 
     public void sendAcknowledgement(String userId, String orderId, String clientOrderId) {
+        send(userId, acknowledgement(orderId, clientOrderId));
+    }
+
+    public void sendReject(String userId, String orderId, String clientOrderId, String reason) {
+        send(userId, reject(orderId, clientOrderId, reason));
+    }
+
+    /**
+     * Replies on the session that submitted a command instead of fanning out to every session of
+     * the user, so WebSocket order entry costs one message per command.
+     */
+    public void replyAcknowledgement(Session session, String orderId, String clientOrderId) {
+        sendTo(session, acknowledgement(orderId, clientOrderId));
+    }
+
+    /**
+     * @param latencyNanos per-stage elapsed time since ingress to stamp onto the reply, or {@code null}
+     */
+    public void replyAcknowledgement(Session session, String orderId, String clientOrderId, Map<String, Long> latencyNanos) {
+        Map<String, Object> payload = acknowledgement(orderId, clientOrderId);
+        if (latencyNanos != null) {
+            payload.put("latencyNanos", latencyNanos);
+        }
+        sendTo(session, payload);
+    }
+
+    public void replyReject(Session session, String orderId, String clientOrderId, String reason) {
+        sendTo(session, reject(orderId, clientOrderId, reason));
+    }
+
+    public void replyCanceled(Session session, String orderId, String clientOrderId) {
+        Map<String, Object> payload = new java.util.HashMap<>();
+        payload.put("type", "CANCELED");
+        payload.put("orderId", orderId);
+        putClientOrderId(payload, clientOrderId);
+        payload.put("timestamp", Instant.now().toString());
+        sendTo(session, payload);
+    }
+
+    public void replyModified(Session session, String orderId, String clientOrderId) {
+        Map<String, Object> payload = new java.util.HashMap<>();
+        payload.put("type", "MODIFIED");
+        payload.put("orderId", orderId);
+        putClientOrderId(payload, clientOrderId);
+        payload.put("timestamp", Instant.now().toString());
+        sendTo(session, payload);
+    }
+
+    public void replyMassCanceled(Session session, List<Long> orderIds, String clientOrderId) {
+        Map<String, Object> payload = new java.util.HashMap<>();
+        payload.put("type", "MASS_CANCELED");
+        payload.put("orderIds", orderIds);
+        putClientOrderId(payload, clientOrderId);
+        payload.put("timestamp", Instant.now().toString());
+        sendTo(session, payload);
+    }
+
+    private static Map<String, Object> acknowledgement(String orderId, String clientOrderId) {
         Map<String, Object> payload = new java.util.HashMap<>();
         payload.put("type", "ACK");
         payload.put("orderId", orderId);
-        if (clientOrderId != null && !clientOrderId.isBlank()) {
-            payload.put("clientOrderId", clientOrderId);
-        }
+        putClientOrderId(payload, clientOrderId);
         payload.put("timestamp", Instant.now().toString());
-        send(userId, payload);
+        return payload;
     }
 
-    public void sendReject(String userId, String orderId, String clientOrderId, String reason) {
+    private static Map<String, Object> reject(String orderId, String clientOrderId, String reason) {
         Map<String, Object> payload = new java.util.HashMap<>();
         payload.put("type", "REJECT");
-        payload.put("orderId", orderId);
-        if (clientOrderId != null && !clientOrderId.isBlank()) {
-            payload.put("clientOrderId", clientOrderId);
+        if (orderId != null) {
+            payload.put("orderId", orderId);
         }
+        putClientOrderId(payload, clientOrderId);
         payload.put("reason", reason);
         payload.put("timestamp", Instant.now().toString());
-        send(userId, payload);
+        return payload;
+    }
+
+    private static void putClientOrderId(Map<String, Object> payload, String clientOrderId) {
+        if (clientOrderId != null && !clientOrderId.isBlank()) {
+            payload.put("clientOrderId", clientOrderId);
+        }
+    }
+
+    /**
+     * Starts a command on {@code orderId} from {@code session}: fills of that order bound for the
+     * session are held until {@link #endCommand}, so the client sees the command's reply before them.
+     */
+    public void beginCommand(Session session, String orderId) {
+        heldCommands.put(session, new HeldCommand(Set.of(orderId)));
+    }
+
+    /**
+     * Sends the fills held since {@link #beginCommand}; call after the command's reply.
+     */
+    public void endCommand(Session session) {
+        HeldCommand held = heldCommands.remove(session);
+        if (held != null) {
+            held.release(json -> sender.send(session, json));
+        }
+    }
+
+    /**
+     * Starts a batch of {@code orderIds} for {@code userId}: their fills are held for every session
+     * of the user until {@link #endBatch}, so each order's ACK or REJECT reaches the client first.
+     * Concurrent batches of the same user hold independently.
+     */
+    public HeldCommand beginBatch(String userId, Collection<String> orderIds) {
+        HeldCommand held = new HeldCommand(Set.copyOf(orderIds));
+        heldBatches.computeIfAbsent(userId, key -> new CopyOnWriteArrayList<>()).add(held);
+        return held;
+    }
+
+    /**
+     * Sends the fills held since {@link #beginBatch}; call after the batch's per-order replies.
+     */
+    public void endBatch(String userId, HeldCommand held) {
+        heldBatches.computeIfPresent(userId, (key, holds) -> {
+            holds.remove(held);
+            return holds.isEmpty() ? null : holds;
+        });
+        held.release(json -> sendEncoded(userId, json));
     }
 
     public void sendFill(FillRecord fill) {
-        send(fill.userId(), Map.of(
+        Set<Session> sessions = fill.userId() == null ? null : sessionsByUser.get(fill.userId());
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+        String json = encode(Map.of(
                 "type", "FILL",
                 "orderId", fill.orderId(),
                 "fillId", fill.fillId(),
@@ -70,6 +274,20 @@ public final class PrivateFeedService {
                 "quantity", fill.quantity(),
                 "ticker", fill.ticker(),
                 "timestamp", fill.timestamp().toString()));
+        List<HeldCommand> batches = heldBatches.get(fill.userId());
+        if (batches != null) {
+            for (HeldCommand held : batches) {
+                if (held.hold(fill.orderId(), json)) {
+                    return;
+                }
+            }
+        }
+        for (Session session : sessions) {
+            HeldCommand held = heldCommands.get(session);
+            if (held == null || !held.hold(fill.orderId(), json)) {
+                sender.send(session, json);
+            }
+        }
     }
 
     public void sendCanceled(String userId, String orderId) {
@@ -87,13 +305,100 @@ public final class PrivateFeedService {
         if (sessions == null || sessions.isEmpty()) {
             return;
         }
-        String json = gson.toJson(payload);
+        String json = encode(payload);
+        for (Session session : sessions) {
+            sender.send(session, json);
+        }
+    }
+
+    private void sendEncoded(String userId, String json) {
+        Set<Session> sessions = sessionsByUser.get(userId);
+        if (sessions == null) {
+            return;
+        }
         for (Session session : sessions) {
+            sender.send(session, json);
+        }
+    }
+
+    private void sendTo(Session session, Map<String, Object> payload) {
+        if (session == null || !session.isOpen()) {
+            return;
+        }
+        sender.send(session, encode(payload));
+    }
+
+    private String encode(Map<String, Object> payload) {
+        long started = System.nanoTime();
+        String json = gson.toJson(payload);
+        EngineMetrics.GSON_ENCODE.record(System.nanoTime() - started);
+        return json;
+    }
+
+    /**
+     * Fills held while a command or batch on their orders is in flight. They are sent under the
+     * lock, so a fill arriving during {@link #release} queues behind them rather than ahead.
+     */
+    public final class HeldCommand {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Set<String> orderIds;
+        private final List<String> frames = new ArrayList<>();
+        private boolean released;
+
+        private HeldCommand(Set<String> orderIds) {
+            this.orderIds = orderIds;
+        }
+
+        private boolean hold(String fillOrderId, String json) {
+            lock.lock();
             try {
-                session.getRemote().sendString(json);
-            } catch (Exception ex) {
-                LOG.warn("Failed to send private message to user {}", userId, ex);
+                if (released || fillOrderId == null || !orderIds.contains(fillOrderId)) {
+                    return false;
+                }
+                frames.add(json);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(Consumer<String> sink) {
+            lock.lock();
+            try {
+                released = true;
+                for (String json : frames) {
+                    sink.accept(json);
+                }
+                frames.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return connected session count and outbound backlog, total and per session with its user
+     */
+    public Map<String, Object> sessionMetrics() {
+        List<Map<String, Object>> perSession = new java.util.ArrayList<>();
+        long totalBacklog = 0L;
+        int maxBacklog = 0;
+        for (Map.Entry<String, Set<Session>> entry : sessionsByUser.entrySet()) {
+            for (Session session : entry.getValue()) {
+                int backlog = sender.backlog(session);
+                totalBacklog += backlog;
+                maxBacklog = Math.max(maxBacklog, backlog);
+                perSession.add(Map.of(
+                        "userId", entry.getKey(),
+                        "remote", String.valueOf(session.getRemoteAddress()),
+                        "backlog", backlog));
             }
         }
+        Map<String, Object> metrics = new java.util.LinkedHashMap<>();
+        metrics.put("count", perSession.size());
+        metrics.put("backlogTotal", totalBacklog);
+        metrics.put("backlogMax", maxBacklog);
+        metrics.put("perSession", perSession);
+        return metrics;
     }
 }
@@ -3,6 +3,7 @@ package tradeMatcher;
 import com.google.gson.Gson;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -10,6 +11,8 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import org.eclipse.jetty.websocket.api.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,9 +24,23 @@ public final class PublicFeedService {
     private static final Logger LOG = LoggerFactory.getLogger(PublicFeedService.class);
 
     private final Set<Session> sessions = new CopyOnWriteArraySet<>();
+    private final Map<Session, Set<CandleAggregator.Interval>> candleSubscriptions = new ConcurrentHashMap<>();
+    private final Set<Session> statsSubscriptions = new CopyOnWriteArraySet<>();
+    private final Map<Session, DepthGroup> depthSubscriptions = new ConcurrentHashMap<>();
+    private final Map<DepthKey, DepthGroup> depthGroups = new ConcurrentHashMap<>();
+    private final Map<Session, OrderSubscription> orderSubscriptions = new ConcurrentHashMap<>();
     private final Map<String, Map<String, Integer>> lastBidLevels = new ConcurrentHashMap<>();
     private final Map<String, Map<String, Integer>> lastAskLevels = new ConcurrentHashMap<>();
     private final Gson gson = new Gson();
+    private final WebSocketSender sender;
+
+    public PublicFeedService() {
+        this(new WebSocketSender());
+    }
+
+    public PublicFeedService(WebSocketSender sender) {
+        this.sender = Objects.requireNonNull(sender, "sender");
+    }
 
     public void register(Session session) {
         sessions.add(session);
@@ -31,6 +48,14 @@ public final class PublicFeedService {
 
     public void unregister(Session session) {
         sessions.remove(session);
+        candleSubscriptions.remove(session);
+        statsSubscriptions.remove(session);
+        DepthGroup depth = depthSubscriptions.remove(session);
+        if (depth != null) {
+            depth.leave(session);
+        }
+        orderSubscriptions.remove(session);
+        sender.release(session);
     }
 
     public void sendSnapshot(Session session, String ticker, OrderbookLevelInfos snapshot) {
@@ -40,11 +65,7 @@ public final class PublicFeedService {
                 "ticker", ticker,
                 "bids", snapshot.GetBids(),
                 "asks", snapshot.GetAsks());
-        try {
-            session.getRemote().sendString(gson.toJson(payload));
-        } catch (Exception ex) {
-            LOG.warn("Failed to send snapshot", ex);
-        }
+        sender.send(session, encode(payload));
     }
 
     public void broadcastSnapshot(String ticker, OrderbookLevelInfos snapshot) {
@@ -82,20 +103,368 @@ public final class PublicFeedService {
                 "ticker", ticker,
                 "changes", changes);
         sendToAll(payload);
+        LatencyTracer.mark(LatencyTracer.Stage.PUBLIC_DELTA_ENCODED);
 
         lastBidLevels.put(ticker, currentBids);
         lastAskLevels.put(ticker, currentAsks);
     }
 
     public void broadcastTrades(String ticker, List<Trade> trades) {
+        broadcastTrades(ticker, trades, 0L);
+    }
+
+    /**
+     * @param sequence trade tape sequence of the burst's last print, or 0 without a tape; lets a
+     *                 client drop prints it already received in a replay
+     */
+    public void broadcastTrades(String ticker, List<Trade> trades, long sequence) {
         if (trades == null || trades.isEmpty()) {
             return;
         }
+        Map<String, Object> payload = sequence > 0L
+                ? Map.of("type", "TRADES", "ticker", ticker, "data", trades, "sequence", sequence)
+                : Map.of("type", "TRADES", "ticker", ticker, "data", trades);
+        sendToAll(payload);
+    }
+
+    /**
+     * Sends recent prints from the trade tape to one newly connected session.
+     */
+    public void sendTradeReplay(Session session, String ticker, List<Map<String, Object>> prints) {
+        Objects.requireNonNull(session, "session");
         Map<String, Object> payload = Map.of(
-                "type", "TRADES",
+                "type", "TRADES_REPLAY",
                 "ticker", ticker,
-                "data", trades);
-        sendToAll(payload);
+                "data", prints);
+        sender.send(session, encode(payload));
+    }
+
+    /**
+     * Sends the session a {@code CANDLE} message whenever a bar of one of {@code intervals} changes.
+     */
+    public void subscribeCandles(Session session, Set<CandleAggregator.Interval> intervals) {
+        Objects.requireNonNull(session, "session");
+        if (!intervals.isEmpty()) {
+            candleSubscriptions.put(session, Set.copyOf(intervals));
+        }
+    }
+
+    public boolean hasCandleSubscribers() {
+        return !candleSubscriptions.isEmpty();
+    }
+
+    /**
+     * Publishes one updated bar to the sessions subscribed to its interval.
+     */
+    public void broadcastCandle(String ticker, CandleAggregator.Interval interval, Map<String, Object> bar) {
+        String json = null;
+        for (Map.Entry<Session, Set<CandleAggregator.Interval>> subscription : candleSubscriptions.entrySet()) {
+            if (!subscription.getValue().contains(interval)) {
+                continue;
+            }
+            if (json == null) {
+                json = encode(Map.of(
+                        "type", "CANDLE",
+                        "ticker", ticker,
+                        "interval", interval.label(),
+                        "bar", bar));
+            }
+            sender.send(subscription.getKey(), json);
+        }
+    }
+
+    /**
+     * Sends the session a {@code STATS} message each time {@link #broadcastStats} runs.
+     */
+    public void subscribeStats(Session session) {
+        statsSubscriptions.add(Objects.requireNonNull(session, "session"));
+    }
+
+    public boolean hasStatsSubscribers() {
+        return !statsSubscriptions.isEmpty();
+    }
+
+    public void broadcastStats(String ticker, Map<String, Object> stats) {
+        if (statsSubscriptions.isEmpty()) {
+            return;
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "STATS");
+        payload.putAll(stats);
+        payload.put("ticker", ticker);
+        String json = encode(payload);
+        for (Session session : statsSubscriptions) {
+            sender.send(session, json);
+        }
+    }
+
+    /**
+     * Where bucketed depth is read from; {@link MatchingEngine#aggregateDepth} fits.
+     */
+    @FunctionalInterface
+    public interface DepthSource {
+        LevelLadder.Buckets aggregate(OrderSide side, int fromPrice, int toPrice, int bucketTicks, int maxBuckets);
+    }
+
+    /**
+     * Sends the session a {@code DEPTH_BUCKETS} snapshot of both sides over a fixed bucket range,
+     * then a {@code DEPTH_BUCKETS_UPDATE} with only the buckets that changed each time
+     * {@link #broadcastDepthBuckets} runs. Buckets are {@code [price, quantity]} pairs keyed by
+     * their lowest price; a quantity of 0 means the bucket emptied. Sessions asking for the same
+     * range and bucket size share one aggregation and one encoded update.
+     */
+    public void subscribeDepthBuckets(Session session, String ticker, PriceScale scale, DepthSource source,
+            int fromPrice, int toPrice, int bucketTicks, int maxBuckets) {
+        Objects.requireNonNull(session, "session");
+        DepthKey key = new DepthKey(ticker, fromPrice, toPrice, bucketTicks, maxBuckets);
+        DepthGroup previous = null;
+        for (boolean subscribed = false; !subscribed; ) {
+            DepthGroup group = depthGroups.computeIfAbsent(key, __ -> new DepthGroup(key, scale));
+            // Held until the snapshot is queued, so no update can overtake it.
+            group.lock.lock();
+            try {
+                if (group.retired) {
+                    continue;
+                }
+                if (group.bids == null) {
+                    group.bids = source.aggregate(OrderSide.BUY, fromPrice, toPrice, bucketTicks, maxBuckets);
+                    group.asks = source.aggregate(OrderSide.SELL, fromPrice, toPrice, bucketTicks, maxBuckets);
+                }
+                previous = depthSubscriptions.put(session, group);
+                group.sessions.add(session);
+                // The group's buckets are those its sessions last saw; the next update brings them current.
+                Map<String, Object> payload = new LinkedHashMap<>();
+                payload.put("type", "DEPTH_BUCKETS");
+                payload.put("ticker", ticker);
+                payload.put("bucket", scale.toDisplayPrice(bucketTicks));
+                payload.put("bids", bucketsJson(scale, group.bids));
+                payload.put("asks", bucketsJson(scale, group.asks));
+                sender.send(session, encode(payload));
+                subscribed = true;
+                if (previous == group) {
+                    previous = null;
+                }
+            } finally {
+                group.lock.unlock();
+            }
+        }
+        if (previous != null) {
+            previous.leave(session);
+        }
+    }
+
+    public boolean hasDepthSubscribers() {
+        return !depthSubscriptions.isEmpty();
+    }
+
+    /**
+     * Re-aggregates each distinct subscribed range after a book change and sends the buckets whose
+     * quantity differs from the last message, if any, to every session of that range.
+     */
+    public void broadcastDepthBuckets(DepthSource source) {
+        for (DepthGroup group : depthGroups.values()) {
+            DepthKey key = group.key;
+            group.lock.lock();
+            try {
+                if (group.retired || group.sessions.isEmpty()) {
+                    continue;
+                }
+                LevelLadder.Buckets bids = source.aggregate(OrderSide.BUY, key.fromPrice(), key.toPrice(),
+                        key.bucketTicks(), key.maxBuckets());
+                LevelLadder.Buckets asks = source.aggregate(OrderSide.SELL, key.fromPrice(), key.toPrice(),
+                        key.bucketTicks(), key.maxBuckets());
+                List<List<Object>> changes = new ArrayList<>();
+                collectBucketChanges("BUY", group.scale, group.bids, bids, changes);
+                collectBucketChanges("SELL", group.scale, group.asks, asks, changes);
+                group.bids = bids;
+                group.asks = asks;
+                if (changes.isEmpty()) {
+                    continue;
+                }
+                String json = encode(Map.of(
+                        "type", "DEPTH_BUCKETS_UPDATE",
+                        "ticker", key.ticker(),
+                        "changes", changes));
+                for (Session session : group.sessions) {
+                    sender.send(session, json);
+                }
+            } finally {
+                group.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Non-empty buckets as {@code [price, quantity]}, price being the bucket's lowest price.
+     */
+    static List<List<Object>> bucketsJson(PriceScale scale, LevelLadder.Buckets buckets) {
+        List<List<Object>> out = new ArrayList<>();
+        long[] quantities = buckets.quantities();
+        for (int i = 0; i < quantities.length; i++) {
+            if (quantities[i] != 0L) {
+                out.add(List.of(scale.toDisplayPrice(buckets.firstPriceTicks() + i * buckets.bucketTicks()),
+                        quantities[i]));
+            }
+        }
+        return out;
+    }
+
+    private static void collectBucketChanges(String side, PriceScale scale, LevelLadder.Buckets previous,
+            LevelLadder.Buckets current, List<List<Object>> out) {
+        long[] before = previous.quantities();
+        long[] after = current.quantities();
+        for (int i = 0; i < after.length; i++) {
+            if (after[i] != before[i]) {
+                out.add(List.of(side, scale.toDisplayPrice(current.firstPriceTicks() + i * current.bucketTicks()),
+                        after[i]));
+            }
+        }
+    }
+
+    /**
+     * Where a level-3 snapshot is read from; {@link MatchingEngine#snapshotRestingOrders} fits.
+     */
+    @FunctionalInterface
+    public interface OrderSnapshotSource {
+        /**
+         * Visits the resting orders in priority order and returns the sequence they reflect.
+         */
+        long snapshot(Consumer<Order> visitor);
+    }
+
+    /**
+     * Sends the session an {@code L3_SNAPSHOT} of every resting order, in priority order and
+     * without user identifiers, then every {@link OrderEvent} after the snapshot's sequence as
+     * {@code L3_UPDATE} messages. The session is registered before the snapshot is read, so no
+     * event between the two is lost; those the snapshot already reflects are dropped.
+     */
+    public void subscribeOrders(Session session, String ticker, PriceScale scale, OrderSnapshotSource source) {
+        Objects.requireNonNull(session, "session");
+        OrderSubscription subscription = new OrderSubscription();
+        // Held until the snapshot is queued, so no update can overtake it.
+        subscription.lock.lock();
+        try {
+            orderSubscriptions.put(session, subscription);
+            List<Map<String, Object>> orders = new ArrayList<>();
+            subscription.sequence = source.snapshot(order -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("orderId", order.GetOrderId());
+                row.put("side", order.GetSide().name());
+                row.put("price", scale.toDisplayPrice((int) Math.round(order.GetPrice())));
+                row.put("quantity", order.GetRemainingQuantity());
+                orders.add(row);
+            });
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("type", "L3_SNAPSHOT");
+            payload.put("ticker", ticker);
+            payload.put("sequence", subscription.sequence);
+            payload.put("orders", orders);
+            sender.send(session, encode(payload));
+        } finally {
+            subscription.lock.unlock();
+        }
+    }
+
+    public boolean hasOrderSubscribers() {
+        return !orderSubscriptions.isEmpty();
+    }
+
+    /**
+     * Sends one command's level-3 events to every subscribed session, skipping those a session's
+     * snapshot already reflects. The message is encoded once unless a snapshot overlaps it.
+     */
+    public void broadcastOrderEvents(String ticker, PriceScale scale, List<OrderEvent> events) {
+        if (orderSubscriptions.isEmpty() || events.isEmpty()) {
+            return;
+        }
+        long last = events.get(events.size() - 1).sequence();
+        String json = null;
+        for (Map.Entry<Session, OrderSubscription> entry : orderSubscriptions.entrySet()) {
+            OrderSubscription subscription = entry.getValue();
+            subscription.lock.lock();
+            try {
+                if (subscription.sequence >= last) {
+                    continue;
+                }
+                if (subscription.sequence < events.get(0).sequence()) {
+                    if (json == null) {
+                        json = encodeOrderEvents(ticker, scale, events);
+                    }
+                    sender.send(entry.getKey(), json);
+                } else {
+                    long after = subscription.sequence;
+                    sender.send(entry.getKey(), encodeOrderEvents(ticker, scale,
+                            events.stream().filter(event -> event.sequence() > after).toList()));
+                }
+                subscription.sequence = last;
+            } finally {
+                subscription.lock.unlock();
+            }
+        }
+    }
+
+    private String encodeOrderEvents(String ticker, PriceScale scale, List<OrderEvent> events) {
+        List<Map<String, Object>> rows = new ArrayList<>(events.size());
+        for (OrderEvent event : events) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("sequence", event.sequence());
+            row.put("type", event.type().name());
+            if (event.type() != OrderEvent.Type.CLEAR) {
+                row.put("orderId", event.orderId());
+                row.put("side", event.side().name());
+                row.put("price", scale.toDisplayPrice(event.priceTicks()));
+                row.put("quantity", event.quantity());
+                row.put("remaining", event.remainingQuantity());
+            }
+            rows.add(row);
+        }
+        return encode(Map.of(
+                "type", "L3_UPDATE",
+                "ticker", ticker,
+                "events", rows));
+    }
+
+    // Subscription state is guarded by a ReentrantLock rather than synchronized, so a feed sender on
+    // a virtual thread does not pin its carrier while it holds it.
+    private static final class OrderSubscription {
+        final ReentrantLock lock = new ReentrantLock();
+        // Last sequence sent to the session.
+        long sequence;
+    }
+
+    private record DepthKey(String ticker, int fromPrice, int toPrice, int bucketTicks, int maxBuckets) {
+    }
+
+    /**
+     * The sessions subscribed to one range and bucket size, and the buckets they last saw.
+     */
+    private final class DepthGroup {
+        final ReentrantLock lock = new ReentrantLock();
+        final DepthKey key;
+        final PriceScale scale;
+        final Set<Session> sessions = new CopyOnWriteArraySet<>();
+        LevelLadder.Buckets bids;
+        LevelLadder.Buckets asks;
+        // Set once the last session leaves; a subscriber that finds it retired makes a new group.
+        boolean retired;
+
+        DepthGroup(DepthKey key, PriceScale scale) {
+            this.key = key;
+            this.scale = scale;
+        }
+
+        void leave(Session session) {
+            lock.lock();
+            try {
+                sessions.remove(session);
+                if (sessions.isEmpty() && !retired) {
+                    retired = true;
+                    depthGroups.remove(key, this);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     private void collectChanges(String side, Map<String, Integer> previous, Map<String, Integer> current, List<List<String>> out) {
@@ -134,13 +503,48 @@ public final class PublicFeedService {
         if (sessions.isEmpty()) {
             return;
         }
+        EngineEvents.FeedPublish event = new EngineEvents.FeedPublish();
+        event.begin();
+        String json = encode(payload);
+        int sent = 0;
+        for (Session session : sessions) {
+            sender.send(session, json);
+            sent++;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.messageType = String.valueOf(payload.get("type"));
+            event.sessions = sent;
+            event.bytes = json.length();
+            event.commit();
+        }
+    }
+
+    private String encode(Map<String, Object> payload) {
+        long started = System.nanoTime();
         String json = gson.toJson(payload);
+        EngineMetrics.GSON_ENCODE.record(System.nanoTime() - started);
+        return json;
+    }
+
+    /**
+     * @return connected session count and outbound backlog, total and per session
+     */
+    public Map<String, Object> sessionMetrics() {
+        List<Map<String, Object>> perSession = new ArrayList<>();
+        long totalBacklog = 0L;
+        int maxBacklog = 0;
         for (Session session : sessions) {
-            try {
-                session.getRemote().sendString(json);
-            } catch (Exception ex) {
-                LOG.warn("Failed to broadcast public feed update", ex);
-            }
+            int backlog = sender.backlog(session);
+            totalBacklog += backlog;
+            maxBacklog = Math.max(maxBacklog, backlog);
+            perSession.add(Map.of("remote", String.valueOf(session.getRemoteAddress()), "backlog", backlog));
         }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("count", perSession.size());
+        metrics.put("backlogTotal", totalBacklog);
+        metrics.put("backlogMax", maxBacklog);
+        metrics.put("perSession", perSession);
+        return metrics;
     }
 }
@@ -0,0 +1,106 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures restart time for a large resting book: snapshot restore plus journal tail replay, compared
+ * with replaying the whole journal. The book is built from non-crossing batches so the run is
+ * dominated by recovery rather than matching or logging.
+ *
+ * <pre>
+ * java -Xmx8g -cp trade-matcher.jar tradeMatcher.RecoveryBenchmark [restingOrders=5000000] [tailOrders=100000] [dir=tmp] [fullReplay=true]
+ * </pre>
+ */
+public final class RecoveryBenchmark {
+    private static final String TICKER = "TEST";
+    private static final int BATCH = 5_000;
+    private static final int LEVELS_PER_SIDE = 5_000;
+    private static final int MID_TICKS = 100_000;
+    private static final String[] USERS = {"bench-a", "bench-b", "bench-c", "bench-d"};
+
+    private RecoveryBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int restingOrders = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int tailOrders = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Path directory = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("recovery-bench");
+        boolean fullReplay = args.length <= 3 || Boolean.parseBoolean(args[3]);
+
+        OrderIdGenerator orderIds = new OrderIdGenerator();
+        AccountManager accounts = new AccountManager();
+        MatchingEngine engine = new MatchingEngine(accounts);
+        long snapshotSequence;
+        try (CommandJournal journal = new CommandJournal(directory, CommandJournal.DEFAULT_SEGMENT_BYTES,
+                CommandJournal.SyncMode.ASYNC, 0L)) {
+            for (String user : USERS) {
+                journal.appendAccount(accounts.registerAccount(user, 1e12d, Map.of(TICKER, Long.MAX_VALUE / 8), false));
+            }
+            engine.setJournal(journal);
+
+            long started = System.nanoTime();
+            submit(engine, orderIds, restingOrders);
+            System.out.printf("built %d resting orders in %d ms%n", restingOrders, (System.nanoTime() - started) / 1_000_000L);
+
+            started = System.nanoTime();
+            snapshotSequence = engine.writeSnapshot(directory, orderIds);
+            System.out.printf("snapshot at sequence %d taken in %d ms%n", snapshotSequence, (System.nanoTime() - started) / 1_000_000L);
+
+            submit(engine, orderIds, tailOrders);
+        }
+        engine.close();
+
+        measure("snapshot + tail", directory, true);
+        if (fullReplay) {
+            measure("full journal", directory, false);
+        }
+        System.out.println("Files written under " + directory.toAbsolutePath());
+    }
+
+    private static void measure(String label, Path directory, boolean useSnapshot) throws IOException {
+        System.gc();
+        AccountManager accounts = new AccountManager();
+        MatchingEngine engine = new MatchingEngine(accounts);
+        long started = System.nanoTime();
+        JournalRecovery.Result result = useSnapshot
+                ? JournalRecovery.recover(directory, engine, accounts)
+                : JournalRecovery.replay(directory, 0L, engine, accounts);
+        long elapsed = System.nanoTime() - started;
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%-16s %6d ms  records=%d  sequence=%d  heap=%d MB%n",
+                label,
+                elapsed / 1_000_000L,
+                result.commands(),
+                result.lastSequence(),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        engine.close();
+    }
+
+    /**
+     * Rests {@code count} orders spread over bid and ask levels around a fixed mid, in batches.
+     */
+    private static void submit(MatchingEngine engine, OrderIdGenerator orderIds, int count) {
+        List<Order> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < count; i++) {
+            boolean buy = (i & 1) == 0;
+            int level = 1 + (i >> 1) % LEVELS_PER_SIDE;
+            int price = buy ? MID_TICKS - level : MID_TICKS + level;
+            batch.add(new Order(orderIds.nextId(), USERS[i % USERS.length], TICKER,
+                    buy ? OrderSide.BUY : OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                    10L, price, price, false, 10L));
+            if (batch.size() == BATCH) {
+                engine.processBatch(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+        if (!batch.isEmpty()) {
+            engine.processBatch(batch);
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package tradeMatcher;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays an {@link OrderbookDemo}-style script or a {@link CommandJournal} directory as fast as
+ * possible and prints throughput, a per-command latency histogram and a hash of the final state, so
+ * two builds can be shown to produce identical results.
+ *
+ * <p>Scripts are memory-mapped in windows and tokenized in place: numbers and prices are parsed
+ * straight from the mapped bytes into integers and ticks, so no line or token strings are created.
+ * Journal directories are replayed through {@link MatchingEngine} with the same applier used at
+ * startup. Logging is turned down to WARN for the run.
+ *
+ * <pre>
+ * java -cp trade-matcher.jar tradeMatcher.ReplayTool &lt;script-file|journal-dir&gt; [--expect-hash=&lt;hex&gt;]
+ * </pre>
+ *
+ * The exit status is 1 when {@code --expect-hash} does not match or a script's {@code R} line
+ * disagrees with the final book.
+ */
+public final class ReplayTool {
+    private static final String EXPECT_HASH_FLAG = "--expect-hash=";
+    private static final String SCRIPT_TICKER = "DEMO";
+    private static final String SCRIPT_USER = "demo-cli";
+    private static final long WINDOW_BYTES = 256L * 1024 * 1024;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final byte[][] TYPE_TOKENS = {
+            bytes("MARKET"), bytes("LIMIT"), bytes("STOPMARKET"), bytes("STOP"), bytes("STOPLIMIT"),
+            bytes("GOODTILLCANCEL"), bytes("GTC"), bytes("GOODFORDAY"), bytes("DAY"),
+            bytes("FILLANDKILL"), bytes("IOC"), bytes("FAK"), bytes("FILLORKILL"), bytes("FOK")};
+    private static final OrderType[] TYPE_ORDER_TYPES = {
+            OrderType.MARKET, OrderType.LIMIT, OrderType.STOP_MARKET, OrderType.STOP_MARKET, OrderType.STOP_LIMIT,
+            OrderType.LIMIT, OrderType.LIMIT, OrderType.LIMIT, OrderType.LIMIT,
+            OrderType.LIMIT, OrderType.LIMIT, OrderType.LIMIT, OrderType.LIMIT, OrderType.LIMIT};
+    private static final TimeInForce[] TYPE_TIME_IN_FORCE = {
+            TimeInForce.IOC, TimeInForce.GTC, TimeInForce.IOC, TimeInForce.IOC, TimeInForce.GTC,
+            TimeInForce.GTC, TimeInForce.GTC, TimeInForce.DAY, TimeInForce.DAY,
+            TimeInForce.IOC, TimeInForce.IOC, TimeInForce.IOC, TimeInForce.FOK, TimeInForce.FOK};
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final byte[] typeScratch = new byte[32];
+    private long commands;
+    private long trades;
+    private long tradeHash = FNV_OFFSET;
+    private long finalHash;
+
+    // Script tokenizer state over the current mapped window.
+    private MappedByteBuffer window;
+    private int cursor;
+    private int lineEnd;
+    private long lineNumber;
+    private int[] expected;
+
+    private ReplayTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String source = null;
+        String expectedHash = null;
+        for (String arg : args) {
+            if (arg.startsWith(EXPECT_HASH_FLAG)) {
+                expectedHash = arg.substring(EXPECT_HASH_FLAG.length()).toLowerCase(Locale.ROOT);
+            } else if (source == null) {
+                source = arg;
+            } else {
+                System.err.println("Unexpected argument: " + arg);
+                return;
+            }
+        }
+        if (source == null) {
+            System.err.println("Usage: ReplayTool <script-file|journal-dir> [--expect-hash=<hex>]");
+            return;
+        }
+        quietLogging();
+
+        Path path = Path.of(source);
+        ReplayTool tool = new ReplayTool();
+        boolean ok = Files.isDirectory(path) ? tool.replayJournal(path) : tool.replayScript(path);
+        String hash = String.format(Locale.ROOT, "%016x", tool.finalHash);
+        System.out.println("state hash:  " + hash);
+        if (expectedHash != null && !expectedHash.equals(hash)) {
+            System.out.println("STATE HASH MISMATCH: expected " + expectedHash);
+            ok = false;
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private boolean replayScript(Path path) throws IOException {
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(SCRIPT_TICKER);
+        long started;
+        long elapsed;
+        try (Orderbook orderbook = new Orderbook();
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long base = 0L;
+            started = System.nanoTime();
+            while (base < size) {
+                long length = Math.min(WINDOW_BYTES, size - base);
+                boolean lastWindow = base + length >= size;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+                int limit = (int) length;
+                int position = 0;
+                while (position < limit) {
+                    int newline = indexOfNewline(position, limit);
+                    if (newline < 0) {
+                        if (!lastWindow) {
+                            // Partial line at the end of the window; remap starting at it.
+                            break;
+                        }
+                        newline = limit;
+                    }
+                    lineNumber++;
+                    cursor = position;
+                    lineEnd = newline;
+                    try {
+                        processLine(orderbook, scale);
+                    } catch (RuntimeException ex) {
+                        throw new IllegalStateException("Failed to process line " + lineNumber, ex);
+                    }
+                    position = newline + 1;
+                }
+                if (position == 0) {
+                    throw new IllegalStateException("Line " + (lineNumber + 1) + " exceeds the mapping window");
+                }
+                base += Math.min(position, limit);
+            }
+            elapsed = System.nanoTime() - started;
+
+            long[] hash = {tradeHash};
+            orderbook.forEachRestingOrder(order -> hash[0] = hashOrder(hash[0], order));
+            finalHash = hash[0];
+            report(elapsed, orderbook.Size());
+            return validateExpected(orderbook);
+        }
+    }
+
+    private void processLine(Orderbook orderbook, PriceScale scale) {
+        skipBlanks();
+        if (cursor >= lineEnd || window.get(cursor) == '#') {
+            return;
+        }
+        byte code = (byte) Character.toUpperCase(window.get(cursor));
+        skipToken();
+        switch (code) {
+            case 'A' -> {
+                OrderSide side = nextSide();
+                int typeIndex = nextTypeIndex();
+                OrderType orderType = TYPE_ORDER_TYPES[typeIndex];
+                int ticks = nextPriceTicks(scale);
+                long quantity = nextLong();
+                long orderId = nextLong();
+                int bookPrice = orderType == OrderType.MARKET ? 0 : ticks;
+                int bookTrigger = orderType == OrderType.STOP_MARKET || orderType == OrderType.STOP_LIMIT ? ticks : bookPrice;
+                Order order = new Order(Long.toString(orderId), SCRIPT_USER, SCRIPT_TICKER, side, orderType,
+                        TYPE_TIME_IN_FORCE[typeIndex], quantity, bookPrice, bookTrigger, false, quantity);
+                long before = System.nanoTime();
+                List<Trade> result = orderbook.AddOrder(order);
+                latency.record(System.nanoTime() - before);
+                countTrades(result);
+            }
+            case 'C' -> {
+                long orderId = nextLong();
+                long before = System.nanoTime();
+                orderbook.CancelOrder(orderId);
+                latency.record(System.nanoTime() - before);
+            }
+            case 'M' -> {
+                long orderId = nextLong();
+                OrderSide side = nextSide();
+                int ticks = nextPriceTicks(scale);
+                long quantity = nextLong();
+                long before = System.nanoTime();
+                List<Trade> result = orderbook.ModifyOrder(
+                        new OrderModify(orderId, SCRIPT_USER, SCRIPT_TICKER, side, ticks, (int) quantity));
+                latency.record(System.nanoTime() - before);
+                countTrades(result);
+            }
+            case 'R' -> {
+                expected = new int[] {(int) nextLong(), (int) nextLong(), (int) nextLong()};
+                return;
+            }
+            default -> throw new IllegalArgumentException("Unsupported command: " + (char) code);
+        }
+        commands++;
+    }
+
+    private boolean validateExpected(Orderbook orderbook) {
+        if (expected == null) {
+            return true;
+        }
+        OrderbookLevelInfos infos = orderbook.GetOrderInfos();
+        int total = orderbook.Size();
+        int bids = infos.GetBids().size();
+        int asks = infos.GetAsks().size();
+        if (total == expected[0] && bids == expected[1] && asks == expected[2]) {
+            System.out.println("Script summary matches current orderbook state.");
+            return true;
+        }
+        System.out.printf("Script summary mismatch: expected total=%d bids=%d asks=%d but was total=%d bids=%d asks=%d%n",
+                expected[0], expected[1], expected[2], total, bids, asks);
+        return false;
+    }
+
+    private boolean replayJournal(Path directory) throws IOException {
+        AccountManager accounts = new AccountManager();
+        MatchingEngine engine = new MatchingEngine(accounts);
+        engine.onTrades((trades, sequence) -> countTrades(trades));
+        CommandJournal.Visitor applier = JournalRecovery.applier(engine, accounts);
+        CommandJournal.Visitor timed = new CommandJournal.Visitor() {
+            @Override
+            public void onAdd(long sequence, Order order) {
+                long before = System.nanoTime();
+                applier.onAdd(sequence, order);
+                record(before);
+            }
+
+            @Override
+            public void onBatch(long sequence, List<Order> orders) {
+                long before = System.nanoTime();
+                applier.onBatch(sequence, orders);
+                record(before);
+            }
+
+            @Override
+            public void onCancel(long sequence, String userId, long orderId) {
+                long before = System.nanoTime();
+                applier.onCancel(sequence, userId, orderId);
+                record(before);
+            }
+
+            @Override
+            public void onModify(long sequence, String userId, long orderId, OrderSide side, int price, int quantity) {
+                long before = System.nanoTime();
+                applier.onModify(sequence, userId, orderId, side, price, quantity);
+                record(before);
+            }
+
+            @Override
+            public void onMassCancel(long sequence, String userId) {
+                long before = System.nanoTime();
+                applier.onMassCancel(sequence, userId);
+                record(before);
+            }
+
+            @Override
+            public void onReset(long sequence) {
+                long before = System.nanoTime();
+                applier.onReset(sequence);
+                record(before);
+            }
+
+            @Override
+            public void onAccount(long sequence, String userId, String apiKey, double cash, Map<String, Long> positions, boolean admin) {
+                applier.onAccount(sequence, userId, apiKey, cash, positions, admin);
+            }
+
+            private void record(long before) {
+                latency.record(System.nanoTime() - before);
+                commands++;
+            }
+        };
+
+        long started = System.nanoTime();
+        CommandJournal.replay(directory, 0L, timed);
+        long elapsed = System.nanoTime() - started;
+
+        long[] hash = {tradeHash};
+        int[] resting = new int[1];
+        engine.forEachRestingOrder(order -> {
+            hash[0] = hashOrder(hash[0], order);
+            resting[0]++;
+        });
+        Map<String, UserAccount> sorted = new TreeMap<>();
+        for (UserAccount account : accounts.getAllAccounts()) {
+            sorted.put(account.getUserId(), account);
+        }
+        for (UserAccount account : sorted.values()) {
+            long h = mixString(hash[0], account.getUserId());
+            h = mix(h, account.getCashUnits());
+            for (Map.Entry<String, Long> position : new TreeMap<>(account.snapshotPositions()).entrySet()) {
+                h = mix(mixString(h, position.getKey()), position.getValue());
+            }
+            hash[0] = h;
+        }
+        finalHash = hash[0];
+        engine.close();
+        report(elapsed, resting[0]);
+        return true;
+    }
+
+    private void countTrades(List<Trade> result) {
+        for (Trade trade : result) {
+            TradeInfo bid = trade.getBidTrade();
+            TradeInfo ask = trade.getAskTrade();
+            long h = mix(tradeHash, bid.getOrderId());
+            h = mix(h, ask.getOrderId());
+            h = mix(h, bid.getQuantity());
+            h = mix(h, Double.doubleToLongBits(bid.getPrice()));
+            tradeHash = mix(h, Double.doubleToLongBits(ask.getPrice()));
+            trades++;
+        }
+    }
+
+    private void report(long elapsedNanos, int restingOrders) {
+        double seconds = elapsedNanos / 1e9d;
+        System.out.printf("commands:    %d in %.3f s (%.0f commands/s)%n", commands, seconds, commands / seconds);
+        System.out.printf("trades:      %d (%.0f trades/s)%n", trades, trades / seconds);
+        System.out.printf("latency:     mean=%.0fns p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns%n",
+                latency.mean(),
+                latency.valueAtPercentile(50.0d),
+                latency.valueAtPercentile(90.0d),
+                latency.valueAtPercentile(99.0d),
+                latency.valueAtPercentile(99.9d),
+                latency.max());
+        System.out.println("resting:     " + restingOrders);
+    }
+
+    private static long hashOrder(long hash, Order order) {
+        long h = mix(hash, order.GetOrderId());
+        h = mix(h, order.GetSide().ordinal());
+        h = mix(h, Double.doubleToLongBits(order.GetPrice()));
+        return mix(h, order.GetRemainingQuantity());
+    }
+
+    private static long mix(long hash, long value) {
+        long h = hash;
+        for (int i = 0; i < Long.BYTES; i++) {
+            h ^= (value >>> (i * 8)) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mixString(long hash, String value) {
+        long h = hash;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    // Tokenizer ---------------------------------------------------------------------------
+
+    private int indexOfNewline(int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void skipBlanks() {
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return;
+            }
+            cursor++;
+        }
+    }
+
+    private void skipToken() {
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b == ' ' || b == '\t' || b == '\r') {
+                return;
+            }
+            cursor++;
+        }
+    }
+
+    private void requireToken(String label) {
+        skipBlanks();
+        if (cursor >= lineEnd) {
+            throw new IllegalArgumentException("Missing " + label);
+        }
+    }
+
+    private OrderSide nextSide() {
+        requireToken("side");
+        byte b = (byte) Character.toUpperCase(window.get(cursor));
+        skipToken();
+        return switch (b) {
+            case 'B' -> OrderSide.BUY;
+            case 'S' -> OrderSide.SELL;
+            default -> throw new IllegalArgumentException("Unknown side: " + (char) b);
+        };
+    }
+
+    private long nextLong() {
+        requireToken("number");
+        long value = 0L;
+        int start = cursor;
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            cursor++;
+        }
+        if (cursor == start) {
+            throw new IllegalArgumentException("Expected a non-negative integer");
+        }
+        skipToken();
+        return value;
+    }
+
+    /**
+     * Parses a decimal price directly into book ticks without going through {@code double}.
+     */
+    private int nextPriceTicks(PriceScale scale) {
+        requireToken("price");
+        long whole = 0L;
+        long fraction = 0L;
+        int fractionDigits = 0;
+        boolean inFraction = false;
+        boolean any = false;
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b == '.' && !inFraction) {
+                inFraction = true;
+            } else if (b >= '0' && b <= '9') {
+                any = true;
+                if (!inFraction) {
+                    whole = whole * 10 + (b - '0');
+                } else if (fractionDigits < scale.precision()) {
+                    fraction = fraction * 10 + (b - '0');
+                    fractionDigits++;
+                } else if (b != '0') {
+                    throw new IllegalArgumentException("Price does not align with precision " + scale.precision());
+                }
+            } else {
+                break;
+            }
+            cursor++;
+        }
+        if (!any) {
+            throw new IllegalArgumentException("Expected a price");
+        }
+        skipToken();
+        for (int i = fractionDigits; i < scale.precision(); i++) {
+            fraction *= 10;
+        }
+        return Math.toIntExact(whole * scale.scaleFactor() + fraction);
+    }
+
+    private int nextTypeIndex() {
+        requireToken("order type");
+        int length = 0;
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b == ' ' || b == '\t' || b == '\r') {
+                break;
+            }
+            if (b != '_' && b != '-') {
+                if (length == typeScratch.length) {
+                    throw new IllegalArgumentException("Unsupported order type token");
+                }
+                typeScratch[length++] = (byte) Character.toUpperCase(b);
+            }
+            cursor++;
+        }
+        for (int i = 0; i < TYPE_TOKENS.length; i++) {
+            byte[] token = TYPE_TOKENS[i];
+            if (token.length == length && Arrays.equals(token, 0, length, typeScratch, 0, length)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported order type token: " + new String(typeScratch, 0, length));
+    }
+
+    private static byte[] bytes(String token) {
+        return token.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void quietLogging() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+        }
+    }
+}
@@ -0,0 +1,772 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent trade history, partitioned by execution time, for range queries that
+ * {@link FillStore} (recent, per user, in memory) cannot answer: every fill of a user between two
+ * times, or every trade in a ticker over the last few minutes.
+ *
+ * <pre>
+ * directory  users.dict, tickers.dict   (length:short utf8)*; a name's id is its position
+ *            &lt;key&gt;.trd                  record*, key = epoch nanos / partition span
+ *            &lt;key&gt;.post                 magic:int entries:int (name:int offset:int length:int)* index:int*
+ * record     timestampNanos:long bidFillId:long askFillId:long bidOrderId:long askOrderId:long
+ *            ticker:int bidUser:int askUser:int bidPriceTicks:int askPriceTicks:int quantity:int
+ * </pre>
+ *
+ * Records are 64 bytes, appended in time order into memory-mapped segments, and the timestamp is
+ * written last so a torn tail record reads as the end of the partition. Each partition keeps a
+ * sparse in-memory index of every {@value #INDEX_STRIDE}th timestamp for unfiltered range scans,
+ * and postings (record indices per user and per ticker; a ticker's name in postings is
+ * {@code ~tickerId}). The active partition's postings live in memory; once a partition is
+ * rolled a background thread writes them to its {@code .post} file, which is then mapped.
+ *
+ * <p>The engine is the single writer. Queries never lock: each partition publishes its record
+ * count after the record, as {@link FillStore} does.
+ */
+public final class TradeHistory implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TradeHistory.class);
+
+    static final int RECORD_BYTES = 64;
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+    private static final long SEGMENT_BYTES = (long) SEGMENT_RECORDS * RECORD_BYTES;
+    static final int INDEX_STRIDE = 1024;
+    private static final int POSTINGS_MAGIC = 0x54485031;
+    private static final String DATA_SUFFIX = ".trd";
+    private static final String POSTINGS_SUFFIX = ".post";
+
+    private static final int TIMESTAMP = 0;
+    private static final int BID_FILL = 8;
+    private static final int ASK_FILL = 16;
+    private static final int BID_ORDER = 24;
+    private static final int ASK_ORDER = 32;
+    private static final int TICKER = 40;
+    private static final int BID_USER = 44;
+    private static final int ASK_USER = 48;
+    private static final int BID_PRICE = 52;
+    private static final int ASK_PRICE = 56;
+    private static final int QUANTITY = 60;
+
+    private final Path directory;
+    private final long spanNanos;
+    private final NameTable users;
+    private final NameTable tickers;
+    private final ConcurrentSkipListMap<Long, Partition> partitions = new ConcurrentSkipListMap<>();
+    private final ExecutorService sealer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "history-seal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Writer state.
+    private Partition active;
+    private long lastTimestamp;
+
+    /**
+     * Opens or creates a history in {@code directory}. The newest partition is reopened for
+     * appending; older partitions without postings (e.g. after a crash) get them rebuilt.
+     *
+     * @param partitionSpan time covered by one partition file, at least a minute
+     */
+    public TradeHistory(Path directory, Duration partitionSpan) throws IOException {
+        if (partitionSpan.compareTo(Duration.ofMinutes(1)) < 0) {
+            throw new IllegalArgumentException("partitionSpan must be at least one minute");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.spanNanos = partitionSpan.toNanos();
+        this.users = new NameTable(directory.resolve("users.dict"));
+        this.tickers = new NameTable(directory.resolve("tickers.dict"));
+
+        List<Long> keys = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(DATA_SUFFIX))
+                    .forEach(name -> keys.add(Long.parseLong(name.substring(0, name.length() - DATA_SUFFIX.length()))));
+        }
+        keys.sort(null);
+        for (int i = 0; i < keys.size(); i++) {
+            boolean newest = i == keys.size() - 1;
+            Partition partition = new Partition(keys.get(i), newest);
+            partitions.put(partition.key, partition);
+            if (newest) {
+                active = partition;
+                lastTimestamp = partition.count > 0 ? partition.timestamp(partition.count - 1) : 0L;
+            }
+        }
+    }
+
+    /**
+     * Appends one trade, both sides. Must only be called by the single writer. Timestamps that go
+     * backwards (a clock step) are clamped so each partition stays in time order.
+     */
+    public void append(long timestampNanos, TradeInfo bid, TradeInfo ask, long bidFillId, long askFillId) {
+        long timestamp = Math.max(Math.max(timestampNanos, lastTimestamp), 1L);
+        lastTimestamp = timestamp;
+        long key = Math.floorDiv(timestamp, spanNanos);
+        Partition partition = active;
+        if (partition == null || partition.key != key) {
+            partition = roll(key);
+        }
+        partition.append(timestamp, tickers.id(bid.getTicker()), users.id(bid.getUserId()), users.id(ask.getUserId()),
+                bidFillId, askFillId, bid.getOrderId(), ask.getOrderId(), bid.getPriceTicks(), ask.getPriceTicks(),
+                bid.getQuantity());
+    }
+
+    /**
+     * One trade visited by {@link #scan}; valid only during the callback.
+     */
+    public final class Row {
+        private ByteBuffer segment;
+        private int offset;
+
+        public long timestampNanos() {
+            return segment.getLong(offset + TIMESTAMP);
+        }
+
+        public String ticker() {
+            return tickers.name(segment.getInt(offset + TICKER));
+        }
+
+        public int quantity() {
+            return segment.getInt(offset + QUANTITY);
+        }
+
+        public long fillId(OrderSide side) {
+            return segment.getLong(offset + (side == OrderSide.BUY ? BID_FILL : ASK_FILL));
+        }
+
+        public long orderId(OrderSide side) {
+            return segment.getLong(offset + (side == OrderSide.BUY ? BID_ORDER : ASK_ORDER));
+        }
+
+        public String userId(OrderSide side) {
+            return users.name(segment.getInt(offset + (side == OrderSide.BUY ? BID_USER : ASK_USER)));
+        }
+
+        public int priceTicks(OrderSide side) {
+            return segment.getInt(offset + (side == OrderSide.BUY ? BID_PRICE : ASK_PRICE));
+        }
+    }
+
+    /**
+     * Visits, oldest first, up to {@code limit} trades executed in {@code [fromNanos, toNanos)}
+     * after position {@code after} (0 to start at {@code fromNanos}). {@code userId} and
+     * {@code ticker} narrow the scan through postings; pass {@code null} for no filter. With both
+     * set, the user's postings are walked and filtered by ticker.
+     *
+     * @return the position of the last visited trade if the limit was reached, to pass as
+     *         {@code after} for the next page (which may then be empty), or 0 if the range is done
+     */
+    public long scan(String userId, String ticker, long fromNanos, long toNanos, long after, int limit,
+            Consumer<Row> visitor) {
+        int userName = userId == null ? 0 : users.find(userId);
+        int tickerId = ticker == null ? 0 : tickers.find(ticker);
+        if (userName < 0 || tickerId < 0 || limit <= 0 || fromNanos >= toNanos) {
+            return 0L;
+        }
+        Integer posting = userId != null ? Integer.valueOf(userName) : ticker != null ? Integer.valueOf(~tickerId) : null;
+        long afterKey = after == 0L ? Long.MIN_VALUE : after >>> 32;
+        int afterIndex = (int) after;
+        long firstKey = Math.max(Math.floorDiv(fromNanos, spanNanos), afterKey);
+        long lastKey = toNanos == Long.MAX_VALUE ? Long.MAX_VALUE : Math.floorDiv(toNanos - 1, spanNanos);
+        if (firstKey > lastKey) {
+            return 0L;
+        }
+
+        Row row = new Row();
+        int visited = 0;
+        for (Partition partition : partitions.subMap(firstKey, true, lastKey, true).values()) {
+            int count = partition.count;
+            int resumeAt = partition.key == afterKey ? afterIndex + 1 : 0;
+            if (posting == null) {
+                for (int index = Math.max(resumeAt, partition.seek(fromNanos, count)); index < count; index++) {
+                    if (partition.timestamp(index) >= toNanos) {
+                        return 0L;
+                    }
+                    partition.position(row, index);
+                    visitor.accept(row);
+                    if (++visited == limit) {
+                        return position(partition.key, index);
+                    }
+                }
+                continue;
+            }
+            Postings postings = partition.postings(posting);
+            if (postings == null) {
+                continue;
+            }
+            int size = postings.size();
+            for (int p = Math.max(postings.firstAtLeast(resumeAt, size), partition.seek(postings, fromNanos, size));
+                    p < size; p++) {
+                int index = postings.get(p);
+                if (index >= count) {
+                    break;
+                }
+                if (partition.timestamp(index) >= toNanos) {
+                    return 0L;
+                }
+                partition.position(row, index);
+                if (userId != null && ticker != null && partition.ticker(index) != tickerId) {
+                    continue;
+                }
+                visitor.accept(row);
+                if (++visited == limit) {
+                    return position(partition.key, index);
+                }
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @return trades stored across all partitions
+     */
+    public long size() {
+        long total = 0L;
+        for (Partition partition : partitions.values()) {
+            total += partition.count;
+        }
+        return total;
+    }
+
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Waits for partitions rolled so far to have their postings written.
+     */
+    void awaitSealed() {
+        try {
+            sealer.submit(() -> { }).get();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Sealing failed", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        sealer.shutdown();
+        try {
+            sealer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (Partition partition : partitions.values()) {
+            partition.close();
+        }
+        users.close();
+        tickers.close();
+    }
+
+    private static long position(long key, int index) {
+        return (key << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    private Partition roll(long key) {
+        Partition previous = active;
+        Partition next;
+        try {
+            next = new Partition(key, true);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open history partition " + key, ex);
+        }
+        partitions.put(key, next);
+        active = next;
+        if (previous != null) {
+            sealer.execute(() -> {
+                try {
+                    previous.seal();
+                } catch (IOException ex) {
+                    LOG.warn("Failed to write postings for history partition {}", previous.key, ex);
+                }
+            });
+        }
+        return next;
+    }
+
+    /**
+     * Record indices for one name within a partition, ascending.
+     */
+    private interface Postings {
+        int size();
+
+        int get(int position);
+
+        /**
+         * @return the first position in {@code [0, size)} whose record index is at least
+         *         {@code index}
+         */
+        default int firstAtLeast(int index, int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid) < index) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Postings of the active partition. The writer appends and then publishes the size; a grown
+     * array is published before the size that needs it.
+     */
+    private static final class LivePostings implements Postings {
+        private volatile int[] values = new int[16];
+        private volatile int size;
+
+        void add(int index) {
+            int[] current = values;
+            int n = size;
+            if (n == current.length) {
+                current = Arrays.copyOf(current, n * 2);
+                values = current;
+            }
+            current[n] = index;
+            size = n + 1;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int get(int position) {
+            return values[position];
+        }
+    }
+
+    private record SealedPostings(ByteBuffer file, int start, int size) implements Postings {
+        @Override
+        public int get(int position) {
+            return file.getInt(start + position * Integer.BYTES);
+        }
+    }
+
+    private final class Partition {
+        private final long key;
+        private final Path dataPath;
+        private final Path postingsPath;
+        private final FileChannel channel;
+        private final boolean writable;
+        private volatile MappedByteBuffer[] segments;
+        private volatile int count;
+        // Timestamp of every INDEX_STRIDE-th record; entries below ceil(count / stride) are valid.
+        private volatile long[] sparse = new long[16];
+        // Live postings while appendable, replaced by the mapped file once sealed.
+        private volatile LivePostings[] userPostings = new LivePostings[16];
+        private volatile LivePostings[] tickerPostings = new LivePostings[4];
+        private volatile ByteBuffer sealed;
+        private int sealedEntries;
+
+        Partition(long key, boolean writable) throws IOException {
+            this.key = key;
+            this.writable = writable;
+            this.dataPath = directory.resolve(String.format(Locale.ROOT, "%d%s", key, DATA_SUFFIX));
+            this.postingsPath = directory.resolve(String.format(Locale.ROOT, "%d%s", key, POSTINGS_SUFFIX));
+            this.channel = writable
+                    ? FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(dataPath, StandardOpenOption.READ);
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            int existing = (int) ((channel.size() + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[existing];
+            for (int s = 0; s < existing; s++) {
+                long length = writable ? SEGMENT_BYTES : Math.min(SEGMENT_BYTES, channel.size() - s * SEGMENT_BYTES);
+                mapped[s] = channel.map(mode, s * SEGMENT_BYTES, length);
+            }
+            this.segments = mapped;
+            this.count = findCount(mapped);
+            rebuildSparse();
+            if (writable) {
+                Files.deleteIfExists(postingsPath);
+                for (int index = 0; index < count; index++) {
+                    addPostings(index, ticker(index), user(index, BID_USER), user(index, ASK_USER));
+                }
+            } else if (Files.exists(postingsPath)) {
+                mapPostings();
+            } else {
+                for (int index = 0; index < count; index++) {
+                    addPostings(index, ticker(index), user(index, BID_USER), user(index, ASK_USER));
+                }
+                seal();
+            }
+        }
+
+        long timestamp(int index) {
+            return segment(index).getLong(offset(index) + TIMESTAMP);
+        }
+
+        int ticker(int index) {
+            return segment(index).getInt(offset(index) + TICKER);
+        }
+
+        private int user(int index, int field) {
+            return segment(index).getInt(offset(index) + field);
+        }
+
+        void position(Row row, int index) {
+            row.segment = segment(index);
+            row.offset = offset(index);
+        }
+
+        void append(long timestamp, int ticker, int bidUser, int askUser, long bidFillId, long askFillId,
+                long bidOrderId, long askOrderId, int bidPriceTicks, int askPriceTicks, int quantity) {
+            int index = count;
+            int s = index >>> SEGMENT_SHIFT;
+            MappedByteBuffer[] current = segments;
+            if (s == current.length) {
+                try {
+                    current = Arrays.copyOf(current, s + 1);
+                    current[s] = channel.map(FileChannel.MapMode.READ_WRITE, s * SEGMENT_BYTES, SEGMENT_BYTES);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Cannot extend history partition " + dataPath, ex);
+                }
+                segments = current;
+            }
+            MappedByteBuffer segment = current[s];
+            int offset = offset(index);
+            segment.putLong(offset + BID_FILL, bidFillId);
+            segment.putLong(offset + ASK_FILL, askFillId);
+            segment.putLong(offset + BID_ORDER, bidOrderId);
+            segment.putLong(offset + ASK_ORDER, askOrderId);
+            segment.putInt(offset + TICKER, ticker);
+            segment.putInt(offset + BID_USER, bidUser);
+            segment.putInt(offset + ASK_USER, askUser);
+            segment.putInt(offset + BID_PRICE, bidPriceTicks);
+            segment.putInt(offset + ASK_PRICE, askPriceTicks);
+            segment.putInt(offset + QUANTITY, quantity);
+            segment.putLong(offset + TIMESTAMP, timestamp);
+            if (index % INDEX_STRIDE == 0) {
+                long[] samples = sparse;
+                int sample = index / INDEX_STRIDE;
+                if (sample == samples.length) {
+                    samples = Arrays.copyOf(samples, sample * 2);
+                    sparse = samples;
+                }
+                samples[sample] = timestamp;
+            }
+            addPostings(index, ticker, bidUser, askUser);
+            count = index + 1;
+        }
+
+        /**
+         * @return the first record index in {@code [0, count)} executed at or after
+         *         {@code fromNanos}, located through the sparse index
+         */
+        int seek(long fromNanos, int count) {
+            long[] samples = sparse;
+            int low = 0;
+            int high = (count + INDEX_STRIDE - 1) / INDEX_STRIDE;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (samples[mid] < fromNanos) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            int index = Math.max(0, (low - 1) * INDEX_STRIDE);
+            while (index < count && timestamp(index) < fromNanos) {
+                index++;
+            }
+            return index;
+        }
+
+        /**
+         * @return the first posting position whose record executed at or after {@code fromNanos}
+         */
+        int seek(Postings postings, long fromNanos, int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamp(postings.get(mid)) < fromNanos) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        Postings postings(int name) {
+            ByteBuffer file = sealed;
+            if (file != null) {
+                int low = 0;
+                int high = sealedEntries;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    int entry = Integer.BYTES * 2 + mid * Integer.BYTES * 3;
+                    int found = file.getInt(entry);
+                    if (found < name) {
+                        low = mid + 1;
+                    } else if (found > name) {
+                        high = mid;
+                    } else {
+                        int valuesStart = Integer.BYTES * 2 + sealedEntries * Integer.BYTES * 3;
+                        return new SealedPostings(file, valuesStart + file.getInt(entry + Integer.BYTES) * Integer.BYTES,
+                                file.getInt(entry + Integer.BYTES * 2));
+                    }
+                }
+                return null;
+            }
+            LivePostings[] table = name >= 0 ? userPostings : tickerPostings;
+            int slot = name >= 0 ? name : ~name;
+            return slot < table.length ? table[slot] : null;
+        }
+
+        /**
+         * Writes the live postings to {@code .post}, flushes the records and switches readers to
+         * the mapped postings.
+         */
+        void seal() throws IOException {
+            List<int[]> entries = new ArrayList<>();
+            collectEntries(tickerPostings, true, entries);
+            collectEntries(userPostings, false, entries);
+            entries.sort((a, b) -> Integer.compare(a[0], b[0]));
+            long values = 0L;
+            for (int[] entry : entries) {
+                values += entry[2];
+            }
+            long bytes = Integer.BYTES * 2L + entries.size() * Integer.BYTES * 3L + values * Integer.BYTES;
+            Path temp = directory.resolve(postingsPath.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer file = out.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                file.putInt(POSTINGS_MAGIC).putInt(entries.size());
+                int offset = 0;
+                for (int[] entry : entries) {
+                    file.putInt(entry[0]).putInt(offset).putInt(entry[2]);
+                    offset += entry[2];
+                }
+                for (int[] entry : entries) {
+                    LivePostings live = entry[1] >= 0 ? userPostings[entry[1]] : tickerPostings[~entry[1]];
+                    for (int p = 0; p < entry[2]; p++) {
+                        file.putInt(live.get(p));
+                    }
+                }
+                file.force();
+            }
+            for (MappedByteBuffer segment : segments) {
+                if (writable) {
+                    segment.force();
+                }
+            }
+            Files.move(temp, postingsPath, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                    java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            mapPostings();
+        }
+
+        void close() {
+            try {
+                if (writable) {
+                    for (MappedByteBuffer segment : segments) {
+                        segment.force();
+                    }
+                }
+                channel.close();
+            } catch (IOException ex) {
+                LOG.warn("Failed to close history partition {}", dataPath, ex);
+            }
+        }
+
+        private void collectEntries(LivePostings[] table, boolean ticker, List<int[]> entries) {
+            for (int slot = 0; slot < table.length; slot++) {
+                if (table[slot] != null) {
+                    int name = ticker ? ~slot : slot;
+                    entries.add(new int[] {name, name, table[slot].size()});
+                }
+            }
+        }
+
+        private void mapPostings() throws IOException {
+            try (FileChannel in = FileChannel.open(postingsPath, StandardOpenOption.READ)) {
+                ByteBuffer file = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                if (file.getInt(0) != POSTINGS_MAGIC) {
+                    throw new IOException("Bad postings file " + postingsPath);
+                }
+                sealedEntries = file.getInt(Integer.BYTES);
+                sealed = file;
+            }
+            userPostings = new LivePostings[0];
+            tickerPostings = new LivePostings[0];
+        }
+
+        private void addPostings(int index, int ticker, int bidUser, int askUser) {
+            livePostings(~ticker).add(index);
+            livePostings(bidUser).add(index);
+            if (askUser != bidUser) {
+                livePostings(askUser).add(index);
+            }
+        }
+
+        private LivePostings livePostings(int name) {
+            boolean user = name >= 0;
+            int slot = user ? name : ~name;
+            LivePostings[] table = user ? userPostings : tickerPostings;
+            if (slot >= table.length) {
+                table = Arrays.copyOf(table, Math.max(table.length * 2, slot + 1));
+                if (user) {
+                    userPostings = table;
+                } else {
+                    tickerPostings = table;
+                }
+            }
+            LivePostings postings = table[slot];
+            if (postings == null) {
+                postings = new LivePostings();
+                table[slot] = postings;
+            }
+            return postings;
+        }
+
+        private void rebuildSparse() {
+            int samples = (count + INDEX_STRIDE - 1) / INDEX_STRIDE;
+            long[] built = new long[Math.max(16, samples)];
+            for (int sample = 0; sample < samples; sample++) {
+                built[sample] = timestamp(sample * INDEX_STRIDE);
+            }
+            sparse = built;
+        }
+
+        private MappedByteBuffer segment(int index) {
+            return segments[index >>> SEGMENT_SHIFT];
+        }
+
+        private int offset(int index) {
+            return (index & (SEGMENT_RECORDS - 1)) * RECORD_BYTES;
+        }
+
+        /**
+         * Records fill a prefix of the file; the first zero timestamp ends it.
+         */
+        private int findCount(MappedByteBuffer[] mapped) {
+            long capacity = 0L;
+            for (MappedByteBuffer segment : mapped) {
+                capacity += segment.capacity() / RECORD_BYTES;
+            }
+            int low = 0;
+            int high = (int) Math.min(Integer.MAX_VALUE, capacity);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mapped[mid >>> SEGMENT_SHIFT].getLong(offset(mid) + TIMESTAMP) != 0L) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Append-only dictionary of user or ticker names. Ids are assigned by the writer; readers only
+     * look names up.
+     */
+    private static final class NameTable {
+        private final FileChannel channel;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[16];
+        private int size;
+
+        NameTable(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            ByteBuffer existing = ByteBuffer.allocate((int) channel.size());
+            while (existing.hasRemaining() && channel.read(existing, existing.position()) > 0) {
+                // read fully
+            }
+            existing.flip();
+            while (existing.remaining() >= Short.BYTES) {
+                int length = existing.getShort() & 0xFFFF;
+                if (existing.remaining() < length) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                existing.get(bytes);
+                register(new String(bytes, StandardCharsets.UTF_8));
+            }
+            channel.position(existing.position());
+            channel.truncate(existing.position());
+        }
+
+        int id(String name) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(Short.BYTES + bytes.length).putShort((short) bytes.length).put(bytes);
+            record.flip();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot extend history dictionary", ex);
+            }
+            return register(name);
+        }
+
+        int find(String name) {
+            Integer id = ids.get(name);
+            return id == null ? -1 : id;
+        }
+
+        String name(int id) {
+            return names[id];
+        }
+
+        private int register(String name) {
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = name;
+            names = current;
+            ids.put(name, size);
+            return size++;
+        }
+
+        void close() {
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException ex) {
+                LOG.warn("Failed to close history dictionary", ex);
+            }
+        }
+    }
+}
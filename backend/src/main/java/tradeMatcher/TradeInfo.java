@@ -6,14 +6,16 @@ public final class TradeInfo {
     private final String ticker;
     private final OrderSide side;
     private final double price;
+    private final int priceTicks;
     private final int quantity;
 
-    public TradeInfo(long orderId, String userId, String ticker, OrderSide side, double price, int quantity) {
+    public TradeInfo(long orderId, String userId, String ticker, OrderSide side, double price, int priceTicks, int quantity) {
         this.orderId = orderId;
         this.userId = userId;
         this.ticker = ticker;
         this.side = side;
         this.price = price;
+        this.priceTicks = priceTicks;
         this.quantity = quantity;
     }
 
@@ -37,6 +39,13 @@ public final class TradeInfo {
         return price;
     }
 
+    /**
+     * @return the execution price in book ticks of the instrument's {@link PriceScale}
+     */
+    public int getPriceTicks() {
+        return priceTicks;
+    }
+
     public int getQuantity() {
         return quantity;
     }
@@ -0,0 +1,185 @@
+package tradeMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The most recent executions per ticker, so a client that connects mid-session can see recent
+ * prints instead of waiting for the next trade. Each ticker has a fixed-capacity ring of primitive
+ * columns (price ticks, quantity, aggressor side, time); a print's sequence is implied by its slot,
+ * so appending allocates nothing once the ticker's ring exists.
+ *
+ * <p>The engine is the single writer and appends a match cycle under one write stamp. Readers
+ * copy under an optimistic stamp and retry if the writer moved, so they never hold up matching.
+ */
+public final class TradeTape {
+    public static final int DEFAULT_CAPACITY = 4_096;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private final int capacity;
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity prints kept per ticker; rounded up to a power of two
+     */
+    public TradeTape(int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        this.capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(capacity - 1) << 1);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Appends one match cycle's trades. The aggressor is the side whose order id is
+     * {@code aggressorOrderId} or, when neither side has it (a batch, or a stop triggered by the
+     * command), the side that arrived later; each print carries the resting (maker) side's price.
+     */
+    void record(String ticker, long timestampNanos, List<Trade> trades, long aggressorOrderId) {
+        Ring ring = rings.get(ticker);
+        if (ring == null) {
+            ring = rings.computeIfAbsent(ticker, __ -> new Ring(capacity));
+        }
+        long stamp = ring.lock.writeLock();
+        try {
+            for (int i = 0; i < trades.size(); i++) {
+                TradeInfo bid = trades.get(i).getBidTrade();
+                TradeInfo ask = trades.get(i).getAskTrade();
+                if (bid == null || ask == null) {
+                    continue;
+                }
+                boolean buyerAggressed = buyerAggressed(bid, ask, aggressorOrderId);
+                TradeInfo maker = buyerAggressed ? ask : bid;
+                ring.append(timestampNanos, maker.getPriceTicks(), bid.getQuantity(),
+                        buyerAggressed ? OrderSide.BUY : OrderSide.SELL);
+            }
+        } finally {
+            ring.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Whether the buy side took liquidity in a trade; see {@link #record}.
+     */
+    static boolean buyerAggressed(TradeInfo bid, TradeInfo ask, long aggressorOrderId) {
+        return bid.getOrderId() == aggressorOrderId
+                || (ask.getOrderId() != aggressorOrderId && bid.getOrderId() > ask.getOrderId());
+    }
+
+    /**
+     * Forgets every print; sequences keep counting so cursors held by clients stay monotonic.
+     */
+    void clear() {
+        for (Ring ring : rings.values()) {
+            long stamp = ring.lock.writeLock();
+            try {
+                ring.floor = ring.head;
+            } finally {
+                ring.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Reads prints in sequence order. With {@code since} of 0 or less this is the newest
+     * {@code limit} prints; otherwise the oldest {@code limit} prints after sequence {@code since}
+     * that are still on the tape.
+     */
+    public List<Print> read(String ticker, long since, int limit) {
+        Ring ring = rings.get(ticker);
+        if (ring == null || limit <= 0) {
+            return List.of();
+        }
+        int wanted = Math.min(limit, capacity);
+        long[] timestamps = new long[wanted];
+        int[] prices = new int[wanted];
+        int[] quantities = new int[wanted];
+        byte[] sides = new byte[wanted];
+        while (true) {
+            long stamp = ring.lock.tryOptimisticRead();
+            if (stamp == 0L) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long head = ring.head;
+            long first = Math.max(ring.floor, head - capacity) + 1L;
+            long from = since <= 0L ? Math.max(first, head - wanted + 1L) : Math.max(first, since + 1L);
+            int count = (int) Math.max(0L, Math.min(wanted, head - from + 1L));
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((from + i) & ring.mask);
+                timestamps[i] = ring.timestamps[slot];
+                prices[i] = ring.prices[slot];
+                quantities[i] = ring.quantities[slot];
+                sides[i] = ring.sides[slot];
+            }
+            if (!ring.lock.validate(stamp)) {
+                continue;
+            }
+            List<Print> prints = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                prints.add(new Print(from + i, timestamps[i], prices[i], quantities[i],
+                        sides[i] == 0 ? OrderSide.BUY : OrderSide.SELL));
+            }
+            return prints;
+        }
+    }
+
+    /**
+     * @return the sequence of the ticker's newest print, or 0 before its first
+     */
+    public long lastSequence(String ticker) {
+        Ring ring = rings.get(ticker);
+        if (ring == null) {
+            return 0L;
+        }
+        while (true) {
+            long stamp = ring.lock.tryOptimisticRead();
+            long head = ring.head;
+            if (stamp != 0L && ring.lock.validate(stamp)) {
+                return head;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * One execution on the tape; {@code aggressor} is the side of the incoming order.
+     */
+    public record Print(long sequence, long timestampNanos, int priceTicks, int quantity, OrderSide aggressor) {
+    }
+
+    private static final class Ring {
+        final StampedLock lock = new StampedLock();
+        final long mask;
+        final long[] timestamps;
+        final int[] prices;
+        final int[] quantities;
+        final byte[] sides;
+        // Sequence of the newest print, and of the newest print dropped by clear().
+        long head;
+        long floor;
+
+        Ring(int capacity) {
+            mask = capacity - 1L;
+            timestamps = new long[capacity];
+            prices = new int[capacity];
+            quantities = new int[capacity];
+            sides = new byte[capacity];
+        }
+
+        void append(long timestampNanos, int priceTicks, int quantity, OrderSide aggressor) {
+            int slot = (int) (++head & mask);
+            timestamps[slot] = timestampNanos;
+            prices[slot] = priceTicks;
+            quantities[slot] = quantity;
+            sides[slot] = (byte) (aggressor == OrderSide.BUY ? 0 : 1);
+        }
+    }
+}
@@ -1,20 +1,51 @@
 package tradeMatcher;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Represents an authenticated user of the trading engine.
+ *
+ * <p>Cash is held as a fixed-point {@code long} of {@link #CASH_SCALE} units and positions as a
+ * {@code long[]} indexed by {@link PriceScaleRegistry#instrumentId}. Both sit behind one
+ * {@link StampedLock}: a fill moves cash and position together under the write lock without
+ * allocating, and readers take an optimistic stamp and retry, so a {@link #snapshot()} never shows
+ * one half of a fill.
+ *
+ * <p>Besides cash and positions the account keeps reservation ledgers: buying power held by
+ * resting buys and inventory held by resting sells. They are fixed-point {@code long}s updated
+ * with compare-and-set, so risk checks on different accounts never contend and a check on one
+ * account never waits behind a cash update.
  */
 public final class UserAccount {
+    /** Fixed-point units per unit of cash in the cash and reservation ledgers (micro-units). */
+    public static final long CASH_SCALE = 1_000_000L;
+
+    /** Largest cash amount the fixed-point ledger holds with headroom for fills. */
+    public static final double MAX_CASH = 1e12d;
+
+    private static final int INITIAL_INSTRUMENTS = 8;
+
     private final String userId;
     private final String apiKey;
     private final boolean admin;
-    private final ConcurrentHashMap<String, Long> positions = new ConcurrentHashMap<>();
-    private double cashBalance;
+    // StampedLock is not reentrant and never pins virtual threads; writers are fills and admin
+    // adjustments, readers are risk checks and REST snapshots.
+    private final StampedLock ledgerLock = new StampedLock();
+    // Written under the ledger write lock. Volatile so the reservation check can read it alone.
+    private volatile long cashUnits;
+    // Replaced (grown) and written under the ledger write lock.
+    private long[] positions = new long[INITIAL_INSTRUMENTS];
+    private final AtomicLong reservedCash = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> reservedInventory = new ConcurrentHashMap<>();
+    private volatile boolean cancelOnDisconnect;
 
     public static UserAccount create(String userId, double startingCash, Map<String, Long> startingPositions, boolean admin) {
         return createWithGeneratedApiKey(userId, startingCash, startingPositions, admin);
@@ -30,14 +61,17 @@ public final class UserAccount {
         if (apiKey.isBlank()) {
             throw new IllegalArgumentException("apiKey cannot be blank");
         }
+        if (!(Math.abs(startingCash) <= MAX_CASH)) {
+            throw new IllegalArgumentException("startingCash out of range: " + startingCash);
+        }
         UserAccount account = new UserAccount(userId, apiKey, admin);
-        account.cashBalance = startingCash;
+        account.cashUnits = toCashUnits(startingCash);
         if (startingPositions != null) {
             startingPositions.forEach((ticker, qty) -> {
                 if (ticker == null || qty == null || qty == 0L) {
                     return;
                 }
-                account.positions.put(ticker.toUpperCase(), qty);
+                account.adjustPosition(ticker, qty);
             });
         }
         return account;
@@ -65,37 +99,258 @@ public final class UserAccount {
         return admin;
     }
 
-    public synchronized double getCashBalance() {
-        return cashBalance;
+    /**
+     * Whether resting orders should be mass-canceled once the user's last private session closes.
+     */
+    public boolean isCancelOnDisconnect() {
+        return cancelOnDisconnect;
+    }
+
+    public void setCancelOnDisconnect(boolean cancelOnDisconnect) {
+        this.cancelOnDisconnect = cancelOnDisconnect;
+    }
+
+    public double getCashBalance() {
+        return cashUnits / (double) CASH_SCALE;
     }
 
-    public synchronized void adjustCash(double delta) {
-        cashBalance += delta;
+    /**
+     * @return cash in {@link #CASH_SCALE} units
+     */
+    public long getCashUnits() {
+        return cashUnits;
+    }
+
+    public void adjustCash(double delta) {
+        adjustCashUnits(toCashUnits(delta));
+    }
+
+    public void adjustCashUnits(long delta) {
+        long stamp = ledgerLock.writeLock();
+        try {
+            cashUnits = Math.addExact(cashUnits, delta);
+        } finally {
+            ledgerLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Overwrites the cash balance; used when restoring a snapshot, which records exact units.
+     */
+    void restoreCashUnits(long units) {
+        long stamp = ledgerLock.writeLock();
+        try {
+            cashUnits = units;
+        } finally {
+            ledgerLock.unlockWrite(stamp);
+        }
     }
 
-    public synchronized boolean hasSufficientCash(double requiredCash) {
-        return cashBalance >= requiredCash;
+    public boolean hasSufficientCash(double requiredCash) {
+        return cashUnits >= toCashUnits(requiredCash);
     }
 
+    public static long toCashUnits(double cash) {
+        return Math.round(cash * CASH_SCALE);
+    }
+
+    /**
+     * @return buying power held by open buy orders, in {@link #CASH_SCALE} units
+     */
+    public long getReservedCashUnits() {
+        return reservedCash.get();
+    }
+
+    public double getReservedCash() {
+        return reservedCash.get() / (double) CASH_SCALE;
+    }
+
+    /**
+     * Holds {@code units} of buying power if cash not already reserved covers it.
+     *
+     * @return whether the reservation was made
+     */
+    public boolean tryReserveCash(long units) {
+        long cashUnits = this.cashUnits;
+        while (true) {
+            long reserved = reservedCash.get();
+            long updated = reserved + units;
+            if (updated < reserved || updated > cashUnits) {
+                return false;
+            }
+            if (reservedCash.compareAndSet(reserved, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Changes the reservation by {@code delta} units, which may be negative, if the result is still
+     * covered by cash. Reductions always succeed.
+     */
+    public boolean tryAdjustReservedCash(long delta) {
+        if (delta <= 0L) {
+            reservedCash.addAndGet(delta);
+            return true;
+        }
+        return tryReserveCash(delta);
+    }
+
+    public void releaseCash(long units) {
+        reservedCash.addAndGet(-units);
+    }
+
+    public long getReservedInventory(String ticker) {
+        AtomicLong reserved = ticker == null ? null : reservedInventory.get(ticker.toUpperCase());
+        return reserved == null ? 0L : reserved.get();
+    }
+
+    /**
+     * Holds {@code quantity} of {@code ticker} if the position not already reserved covers it. A
+     * negative quantity reduces the reservation and always succeeds.
+     */
+    public boolean tryReserveInventory(String ticker, long quantity) {
+        String key = ticker.toUpperCase();
+        AtomicLong reserved = reservedInventory.get(key);
+        if (reserved == null) {
+            reserved = reservedInventory.computeIfAbsent(key, __ -> new AtomicLong());
+        }
+        if (quantity <= 0L) {
+            reserved.addAndGet(quantity);
+            return true;
+        }
+        while (true) {
+            long current = reserved.get();
+            long updated = current + quantity;
+            if (updated < current || updated > getPosition(key)) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    public void releaseInventory(String ticker, long quantity) {
+        AtomicLong reserved = reservedInventory.get(ticker.toUpperCase());
+        if (reserved != null) {
+            reserved.addAndGet(-quantity);
+        }
+    }
+
+    /**
+     * Adds to the reservations without checking them against cash or positions; used for orders
+     * restored from a snapshot, which were checked when first accepted.
+     */
+    void restoreReservation(long cashUnits, String ticker, long quantity) {
+        reservedCash.addAndGet(cashUnits);
+        if (ticker != null && quantity != 0L) {
+            reservedInventory.computeIfAbsent(ticker.toUpperCase(), __ -> new AtomicLong()).addAndGet(quantity);
+        }
+    }
+
+    /**
+     * @return inventory held by open sell orders, by ticker; zero entries omitted
+     */
+    public Map<String, Long> snapshotReservedInventory() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        reservedInventory.forEach((ticker, reserved) -> {
+            long quantity = reserved.get();
+            if (quantity != 0L) {
+                snapshot.put(ticker, quantity);
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * Cash and positions as of one instant; no fill is half applied.
+     *
+     * @param positions non-zero positions by ticker
+     */
+    public record Snapshot(long cashUnits, Map<String, Long> positions) {
+        public double cashBalance() {
+            return cashUnits / (double) CASH_SCALE;
+        }
+    }
+
+    public Snapshot snapshot() {
+        long stamp = ledgerLock.tryOptimisticRead();
+        long cash = cashUnits;
+        long[] copy = positions.clone();
+        if (!ledgerLock.validate(stamp)) {
+            stamp = ledgerLock.readLock();
+            try {
+                cash = cashUnits;
+                copy = positions.clone();
+            } finally {
+                ledgerLock.unlockRead(stamp);
+            }
+        }
+        PriceScaleRegistry registry = PriceScaleProvider.getRegistry();
+        Map<String, Long> byTicker = new TreeMap<>();
+        for (int id = 0; id < copy.length; id++) {
+            if (copy[id] != 0L) {
+                byTicker.put(registry.tickerOf(id), copy[id]);
+            }
+        }
+        return new Snapshot(cash, Collections.unmodifiableMap(byTicker));
+    }
+
+    /**
+     * @return non-zero positions by ticker, from a consistent {@link #snapshot()}
+     */
     public Map<String, Long> snapshotPositions() {
-        return Collections.unmodifiableMap(positions);
+        return snapshot().positions();
     }
 
     public long getPosition(String ticker) {
         if (ticker == null) {
             return 0L;
         }
-        return positions.getOrDefault(ticker.toUpperCase(), 0L);
+        return getPosition(PriceScaleProvider.getRegistry().instrumentId(ticker));
+    }
+
+    public long getPosition(int instrumentId) {
+        long stamp = ledgerLock.tryOptimisticRead();
+        long[] current = positions;
+        long quantity = instrumentId < current.length ? current[instrumentId] : 0L;
+        if (ledgerLock.validate(stamp)) {
+            return quantity;
+        }
+        stamp = ledgerLock.readLock();
+        try {
+            current = positions;
+            return instrumentId < current.length ? current[instrumentId] : 0L;
+        } finally {
+            ledgerLock.unlockRead(stamp);
+        }
     }
 
     public void adjustPosition(String ticker, long delta) {
         if (ticker == null || delta == 0L) {
             return;
         }
-        positions.merge(ticker.toUpperCase(), delta, (existing, change) -> {
-            long updated = existing + change;
-            return updated == 0L ? null : updated;
-        });
+        applyFill(PriceScaleProvider.getRegistry().instrumentId(ticker), delta, 0L);
+    }
+
+    /**
+     * Moves {@code quantityDelta} of an instrument and {@code cashDeltaUnits} of cash as one update.
+     * Allocates only the first time the account sees an instrument beyond its ledger's capacity.
+     */
+    public void applyFill(int instrumentId, long quantityDelta, long cashDeltaUnits) {
+        long stamp = ledgerLock.writeLock();
+        try {
+            long[] current = positions;
+            if (instrumentId >= current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, instrumentId + 1));
+                positions = current;
+            }
+            current[instrumentId] = Math.addExact(current[instrumentId], quantityDelta);
+            cashUnits = Math.addExact(cashUnits, cashDeltaUnits);
+        } finally {
+            ledgerLock.unlockWrite(stamp);
+        }
     }
 
     public boolean hasInventory(String ticker, long requiredQty) {
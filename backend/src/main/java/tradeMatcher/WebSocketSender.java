@@ -0,0 +1,137 @@
+package tradeMatcher;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers text frames to WebSocket sessions. Without an executor, frames are written inline on the
+ * calling thread as before. With an executor (typically virtual threads), each session gets an
+ * outbound queue drained by at most one task at a time, so per-session ordering is kept while the
+ * blocking {@code sendString} call no longer runs on the matching or request thread.
+ *
+ * <p>A queue holds at most {@code maxBacklog} frames. A session that falls further behind is closed
+ * as a slow consumer and its queued frames are dropped, so one stalled client cannot grow the heap.
+ */
+public final class WebSocketSender {
+    private static final Logger LOG = LoggerFactory.getLogger(WebSocketSender.class);
+    public static final int DEFAULT_MAX_BACKLOG = 10_000;
+
+    private final ExecutorService executor;
+    private final int maxBacklog;
+    private final Map<Session, Outbound> outbound = new ConcurrentHashMap<>();
+
+    public WebSocketSender() {
+        this(null);
+    }
+
+    public WebSocketSender(ExecutorService executor) {
+        this(executor, DEFAULT_MAX_BACKLOG);
+    }
+
+    public WebSocketSender(ExecutorService executor, int maxBacklog) {
+        if (maxBacklog <= 0) {
+            throw new IllegalArgumentException("maxBacklog must be positive");
+        }
+        this.executor = executor;
+        this.maxBacklog = maxBacklog;
+    }
+
+    public boolean isAsync() {
+        return executor != null;
+    }
+
+    public void send(Session session, String json) {
+        if (!session.isOpen()) {
+            return;
+        }
+        if (executor == null) {
+            sendNow(session, json);
+            return;
+        }
+        Outbound queue = outbound.computeIfAbsent(session, Outbound::new);
+        // release() runs once the session has closed; a send that raced past the check above may
+        // have recreated the queue after it, so it drops the queue itself.
+        if (queue.closed || !session.isOpen()) {
+            discard(queue);
+            return;
+        }
+        if (queue.backlog.incrementAndGet() > maxBacklog) {
+            LOG.warn("Closing WebSocket session {}: more than {} frames queued", session.getRemoteAddress(), maxBacklog);
+            discard(queue);
+            session.close(StatusCode.TRY_AGAIN_LATER, "Slow consumer");
+            return;
+        }
+        queue.pending.add(json);
+        if (queue.draining.compareAndSet(false, true)) {
+            executor.execute(queue::drain);
+        }
+    }
+
+    /**
+     * @return frames queued for the session but not yet written
+     */
+    public int backlog(Session session) {
+        Outbound queue = outbound.get(session);
+        return queue == null ? 0 : queue.backlog.get();
+    }
+
+    public void release(Session session) {
+        Outbound queue = outbound.get(session);
+        if (queue != null) {
+            discard(queue);
+        }
+    }
+
+    private void discard(Outbound queue) {
+        queue.closed = true;
+        outbound.remove(queue.session, queue);
+        queue.pending.clear();
+        queue.backlog.set(0);
+    }
+
+    private static void sendNow(Session session, String json) {
+        try {
+            session.getRemote().sendString(json);
+        } catch (Exception ex) {
+            LOG.warn("Failed to send WebSocket message", ex);
+        }
+    }
+
+    private static final class Outbound {
+        private final Session session;
+        private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicInteger backlog = new AtomicInteger();
+        private volatile boolean closed;
+
+        Outbound(Session session) {
+            this.session = session;
+        }
+
+        void drain() {
+            while (true) {
+                String json;
+                while ((json = pending.poll()) != null) {
+                    backlog.decrementAndGet();
+                    if (!closed && session.isOpen()) {
+                        sendNow(session, json);
+                    }
+                }
+                draining.set(false);
+                // A producer may have enqueued after the last poll but before the flag was cleared.
+                if (pending.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package tradeMatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class AccountReservationTests {
+
+    private static final String TICKER = "TEST";
+    private static final int THREADS = 8;
+
+    @Test
+    void concurrentReservationsNeverOvercommitTheAccount() throws Exception {
+        UserAccount account = UserAccount.create("shared", 1_000d, Map.of(TICKER, 1_000L), false);
+        long cashUnits = UserAccount.toCashUnits(account.getCashBalance());
+        AtomicLong violations = new AtomicLong();
+
+        runConcurrently(thread -> {
+            SplittableRandom random = new SplittableRandom(thread);
+            List<long[]> held = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                if (!held.isEmpty() && random.nextInt(3) == 0) {
+                    long[] reservation = held.remove(held.size() - 1);
+                    account.releaseCash(reservation[0]);
+                    account.releaseInventory(TICKER, reservation[1]);
+                    continue;
+                }
+                long cash = (1 + random.nextInt(50)) * UserAccount.CASH_SCALE;
+                long quantity = 1 + random.nextInt(50);
+                boolean cashHeld = account.tryReserveCash(cash);
+                boolean inventoryHeld = account.tryReserveInventory(TICKER, quantity);
+                held.add(new long[] {cashHeld ? cash : 0L, inventoryHeld ? quantity : 0L});
+                if (account.getReservedCashUnits() > cashUnits || account.getReservedInventory(TICKER) > 1_000L) {
+                    violations.incrementAndGet();
+                }
+            }
+            for (long[] reservation : held) {
+                account.releaseCash(reservation[0]);
+                account.releaseInventory(TICKER, reservation[1]);
+            }
+        });
+
+        Assertions.assertEquals(0L, violations.get(), "Reservations exceeded cash or inventory");
+        Assertions.assertEquals(0L, account.getReservedCashUnits());
+        Assertions.assertEquals(0L, account.getReservedInventory(TICKER));
+    }
+
+    @Test
+    void engineReservationsTrackRestingOrdersUnderConcurrentFlow() throws Exception {
+        AccountManager accounts = new AccountManager();
+        List<String> users = List.of("u0", "u1", "u2", "u3");
+        for (String user : users) {
+            accounts.registerAccount(user, 20_000d, Map.of(TICKER, 400L), false);
+        }
+        MatchingEngine engine = new MatchingEngine(accounts);
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+        OrderIdGenerator orderIds = new OrderIdGenerator(1L);
+        AtomicLong rejections = new AtomicLong();
+
+        try {
+            runConcurrently(thread -> {
+                SplittableRandom random = new SplittableRandom(100 + thread);
+                List<Long> mine = new ArrayList<>();
+                String user = users.get(thread % users.size());
+                for (int i = 0; i < 3_000; i++) {
+                    int action = random.nextInt(10);
+                    if (action < 6 || mine.isEmpty()) {
+                        OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+                        int price = scale.toBookPrice(95.0d + random.nextInt(11));
+                        TimeInForce tif = random.nextInt(5) == 0 ? TimeInForce.IOC : TimeInForce.GTC;
+                        String orderId = orderIds.nextId();
+                        try {
+                            engine.processOrder(new Order(orderId, user, TICKER, side, OrderType.LIMIT, tif,
+                                    1 + random.nextInt(40), price, price, false, 1));
+                            mine.add(Long.parseLong(orderId));
+                        } catch (IllegalArgumentException ex) {
+                            rejections.incrementAndGet();
+                        }
+                    } else if (action < 8) {
+                        engine.cancelOrder(user, mine.remove(random.nextInt(mine.size())));
+                    } else {
+                        long orderId = mine.get(random.nextInt(mine.size()));
+                        try {
+                            engine.modifyOrder(user, orderId, random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL,
+                                    scale.toBookPrice(95.0d + random.nextInt(11)), 1 + random.nextInt(40));
+                        } catch (IllegalArgumentException ex) {
+                            rejections.incrementAndGet();
+                        }
+                    }
+                }
+            });
+
+            Assertions.assertTrue(rejections.get() > 0L, "Flow should exhaust buying power or inventory at times");
+            Map<String, Long> expectedCash = new HashMap<>();
+            Map<String, Long> expectedInventory = new HashMap<>();
+            engine.forEachRestingOrder(order -> {
+                if (order.GetSide() == OrderSide.BUY) {
+                    long units = UserAccount.toCashUnits(scale.toDisplayPrice((int) Math.round(order.GetPrice())))
+                            * order.GetRemainingQuantity();
+                    expectedCash.merge(order.getUserId(), units, Long::sum);
+                } else {
+                    expectedInventory.merge(order.getUserId(), order.GetRemainingQuantity(), Long::sum);
+                }
+            });
+            for (String user : users) {
+                UserAccount account = accounts.findById(user).orElseThrow();
+                Assertions.assertEquals(expectedCash.getOrDefault(user, 0L), account.getReservedCashUnits(), user);
+                Assertions.assertEquals(expectedInventory.getOrDefault(user, 0L), account.getReservedInventory(TICKER), user);
+                Assertions.assertTrue(account.getReservedCashUnits() <= UserAccount.toCashUnits(account.getCashBalance()), user);
+                Assertions.assertTrue(account.getReservedInventory(TICKER) <= account.getPosition(TICKER), user);
+            }
+
+            for (String user : users) {
+                engine.cancelAllOrders(user);
+                UserAccount account = accounts.findById(user).orElseThrow();
+                Assertions.assertEquals(0L, account.getReservedCashUnits(), user);
+                Assertions.assertEquals(0L, account.getReservedInventory(TICKER), user);
+            }
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    void modifyDoesNotRestoreAnOrderExpiredAfterItsLookup() {
+        AccountManager accounts = new AccountManager();
+        UserAccount account = accounts.registerAccount("day", 10_000d, Map.of(TICKER, 0L), false);
+        // The same release hook the engine installs, so expiry frees what the order held.
+        Orderbook book = new Orderbook(new OrderbookListener() {
+            @Override
+            public void onOrderRemoved(Order order) {
+                accounts.releaseOpen(order);
+            }
+        });
+        try {
+            PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+            int price = scale.toBookPrice(99.0d);
+            Order order = new Order("1", "day", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.DAY, 10, price,
+                    price, false, 10);
+            accounts.reserve(account, order, 99.0d);
+            book.AddOrder(order);
+
+            // A modify looks the order up, then the 16:00 sweep runs before it replaces it.
+            Order existing = book.findOrder(1L);
+            Assertions.assertNotNull(existing);
+            book.expireDayOrders();
+            Assertions.assertEquals(0L, account.getReservedCashUnits());
+
+            Order replacement = new OrderModify(1L, "day", TICKER, OrderSide.BUY, price, 20)
+                    .ToOrderPointer(existing.GetOrderType(), existing.GetTimeInForce());
+            List<Trade> trades = book.ReplaceOrder(replacement,
+                    resting -> accounts.reserveReplacing(account, resting, replacement, 99.0d));
+
+            Assertions.assertNull(trades);
+            Assertions.assertNull(book.findOrder(1L));
+            Assertions.assertEquals(0, book.Size());
+            Assertions.assertEquals(0L, account.getReservedCashUnits());
+        } finally {
+            book.close();
+        }
+    }
+
+    @Test
+    void marketBuyHoldsCashForTheRemainderItRestsAtTheWorstAsk() {
+        AccountManager accounts = new AccountManager();
+        accounts.registerAccount("maker", 0d, Map.of(TICKER, 100L), false);
+        UserAccount buyer = accounts.registerAccount("buyer", 2_000d, Map.of(TICKER, 0L), false);
+        MatchingEngine engine = new MatchingEngine(accounts);
+        try {
+            PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+            int low = scale.toBookPrice(100.0d);
+            int high = scale.toBookPrice(101.0d);
+            engine.processOrder(new Order("1", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                    5, low, low, false, 5));
+            engine.processOrder(new Order("2", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                    5, high, high, false, 5));
+
+            // 25 at up to 101 needs 2,525 of cash, more than the buyer has.
+            Order tooLarge = new Order("3", "buyer", TICKER, OrderSide.BUY, OrderType.MARKET, TimeInForce.GTC,
+                    25, 0, 0, false, 25);
+            IllegalArgumentException rejected = Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> engine.processOrder(tooLarge));
+            Assertions.assertEquals("INSUFFICIENT_FUNDS", rejected.getMessage());
+
+            engine.processOrder(new Order("4", "buyer", TICKER, OrderSide.BUY, OrderType.MARKET, TimeInForce.GTC,
+                    15, 0, 0, false, 15));
+
+            Assertions.assertEquals(1, engine.getOpenOrdersForUser("buyer").size());
+            Assertions.assertEquals(5L * UserAccount.toCashUnits(101.0d), buyer.getReservedCashUnits());
+            engine.cancelAllOrders("buyer");
+            Assertions.assertEquals(0L, buyer.getReservedCashUnits());
+        } finally {
+            engine.close();
+        }
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package tradeMatcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+final class BinaryOrderGatewayTests {
+
+    private static final String TICKER = "TEST";
+
+    private AccountManager accounts;
+    private MatchingEngine engine;
+    private BinaryOrderGateway gateway;
+    private SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(64 * 1024).flip();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        accounts = new AccountManager();
+        accounts.registerAccount("maker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        accounts.registerAccount("taker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        engine = new MatchingEngine(accounts);
+        gateway = new BinaryOrderGateway(engine, accounts, new OrderIdGenerator(1_000L));
+        engine.onFill(gateway::onFill);
+        gateway.start("127.0.0.1", 0);
+        channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", gateway.getPort()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        channel.close();
+        gateway.close();
+        engine.close();
+    }
+
+    @Test
+    void tickerAndExecReportRoundTrip() {
+        long code = BinaryProtocol.encodeTicker("AAPL");
+        Assertions.assertEquals("AAPL", BinaryProtocol.decodeTicker(code));
+        Assertions.assertEquals("ABCDEFGH", BinaryProtocol.decodeTicker(BinaryProtocol.encodeTicker("ABCDEFGHIJ")));
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        BinaryProtocol.writeExecReport(buffer, BinaryProtocol.EXEC_REJECT, 7L, 42L, 101_000, 5L, 123L, "NO");
+        buffer.flip();
+        Assertions.assertEquals(buffer.remaining() - BinaryProtocol.LENGTH_PREFIX_BYTES, buffer.getInt());
+        Assertions.assertEquals(BinaryProtocol.MSG_EXEC_REPORT, buffer.get());
+        Report report = Report.read(buffer);
+        Assertions.assertEquals(new Report(BinaryProtocol.EXEC_REJECT, 7L, 42L, 101_000, 5L, "NO"), report);
+        Assertions.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void newOrderIsAcknowledgedBeforeItsFillsWhichEchoTheClientOrderId() throws IOException {
+        int price = PriceScaleProvider.getRegistry().getScale(TICKER).toBookPrice(101.000);
+        engine.processOrder(new Order("1", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                3, price, price, false, 3));
+        engine.processOrder(new Order("2", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                2, price, price, false, 2));
+
+        Assertions.assertEquals(BinaryProtocol.LOGON_ACCEPTED, logon(apiKey("taker")));
+        write(buffer -> BinaryProtocol.writeNewOrder(buffer, 77L, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                false, price, 0, 5L, 5L, BinaryProtocol.encodeTicker(TICKER)));
+
+        List<Report> reports = List.of(Report.read(nextFrame(BinaryProtocol.MSG_EXEC_REPORT)),
+                Report.read(nextFrame(BinaryProtocol.MSG_EXEC_REPORT)),
+                Report.read(nextFrame(BinaryProtocol.MSG_EXEC_REPORT)));
+        Assertions.assertEquals(List.of(BinaryProtocol.EXEC_ACK, BinaryProtocol.EXEC_FILL, BinaryProtocol.EXEC_FILL),
+                reports.stream().map(Report::execType).toList());
+        Assertions.assertTrue(reports.stream().allMatch(report -> report.clientOrderId() == 77L));
+        Assertions.assertEquals(List.of(5L, 3L, 2L), reports.stream().map(Report::quantity).toList());
+    }
+
+    @Test
+    void logonWithKeyLengthBeyondItsFrameClosesTheConnection() throws IOException {
+        String key = apiKey("taker");
+        ByteBuffer out = ByteBuffer.allocate(256);
+        // Claims more key bytes than the frame holds; the next frame must not be read as the key.
+        out.putInt(1 + Short.BYTES + 2);
+        out.put(BinaryProtocol.MSG_LOGON);
+        out.putShort((short) (key.length() + 2));
+        out.put((byte) 'x').put((byte) 'y');
+        BinaryProtocol.writeLogon(out, key);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        Assertions.assertThrows(IOException.class, () -> nextFrame(BinaryProtocol.MSG_LOGON_REPLY));
+    }
+
+    @Test
+    void logonWithNegativeKeyLengthClosesTheConnection() throws IOException {
+        write(buffer -> {
+            buffer.putInt(1 + Short.BYTES);
+            buffer.put(BinaryProtocol.MSG_LOGON);
+            buffer.putShort((short) -1);
+        });
+        Assertions.assertThrows(IOException.class, () -> nextFrame(BinaryProtocol.MSG_LOGON_REPLY));
+    }
+
+    private String apiKey(String userId) {
+        return accounts.findById(userId).orElseThrow().getApiKey();
+    }
+
+    private byte logon(String key) throws IOException {
+        write(buffer -> BinaryProtocol.writeLogon(buffer, key));
+        return nextFrame(BinaryProtocol.MSG_LOGON_REPLY).get();
+    }
+
+    private void write(Consumer<ByteBuffer> encoder) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME_BYTES);
+        encoder.accept(out);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    /**
+     * Reads the next frame and returns its body, after checking its message type.
+     */
+    private ByteBuffer nextFrame(byte expectedType) throws IOException {
+        while (true) {
+            if (in.remaining() >= BinaryProtocol.LENGTH_PREFIX_BYTES) {
+                int length = in.getInt(in.position());
+                if (in.remaining() >= BinaryProtocol.LENGTH_PREFIX_BYTES + length) {
+                    in.getInt();
+                    ByteBuffer frame = in.slice(in.position(), length);
+                    in.position(in.position() + length);
+                    Assertions.assertEquals(expectedType, frame.get());
+                    return frame;
+                }
+            }
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                throw new IOException("Gateway closed the connection");
+            }
+        }
+    }
+
+    /**
+     * An execution report body, read from just after its message type.
+     */
+    private record Report(byte execType, long clientOrderId, long orderId, int price, long quantity, String reason) {
+        static Report read(ByteBuffer frame) {
+            byte execType = frame.get();
+            long clientOrderId = frame.getLong();
+            long orderId = frame.getLong();
+            int price = frame.getInt();
+            long quantity = frame.getLong();
+            frame.getLong();
+            byte[] reason = new byte[frame.getShort()];
+            frame.get(reason);
+            return new Report(execType, clientOrderId, orderId, price, quantity, new String(reason));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package tradeMatcher;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class CandleAggregatorTests {
+
+    private static final String TICKER = "TEST";
+    private static final long MINUTE = 60_000_000_000L;
+    private static final long START = 28_333_333L * MINUTE;
+
+    @Test
+    void foldsTradesIntoBarsPerIntervalAtTheRestingPrice() {
+        CandleAggregator candles = new CandleAggregator();
+        // Buyer aggresses against asks at 101 and 103, then a seller hits a bid at 99.
+        candles.record(TICKER, START + 1_000L, List.of(trade(1, 110_000, 2, 101_000, 5), trade(1, 110_000, 3, 103_000, 5)), 1L);
+        candles.record(TICKER, START + 30_000_000_000L, List.of(trade(4, 99_000, 5, 95_000, 10)), 5L);
+        candles.record(TICKER, START + MINUTE + 1L, List.of(trade(6, 100_000, 7, 100_000, 1)), 7L);
+
+        List<CandleAggregator.Candle> minutes = candles.read(TICKER, CandleAggregator.Interval.M1, Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        Assertions.assertEquals(2, minutes.size());
+        CandleAggregator.Candle first = minutes.get(0);
+        Assertions.assertEquals(START, first.startNanos());
+        Assertions.assertEquals(List.of(101_000, 103_000, 99_000, 99_000),
+                List.of(first.open(), first.high(), first.low(), first.close()));
+        Assertions.assertEquals(20L, first.volume());
+        Assertions.assertEquals(3, first.trades());
+        Assertions.assertEquals((101_000d * 5 + 103_000d * 5 + 99_000d * 10) / 20, first.vwapTicks(), 1e-9);
+        Assertions.assertEquals(START + MINUTE, minutes.get(1).startNanos());
+
+        Assertions.assertEquals(3, candles.read(TICKER, CandleAggregator.Interval.S1, Long.MIN_VALUE, Long.MAX_VALUE, 10).size());
+        Assertions.assertEquals(List.of(START + 30_000_000_000L), candles.read(TICKER, CandleAggregator.Interval.S1,
+                START + 1L, START + MINUTE, 10).stream().map(CandleAggregator.Candle::startNanos).toList());
+        Assertions.assertEquals(1, candles.read(TICKER, CandleAggregator.Interval.H1, Long.MIN_VALUE, Long.MAX_VALUE, 10).size());
+        Assertions.assertEquals(4, candles.latest(TICKER).size());
+
+        // A day later the one-second ring has wrapped; bars older than it are no longer served.
+        candles.record(TICKER, START + 1_440 * MINUTE, List.of(trade(8, 100_000, 9, 100_000, 1)), 9L);
+        Assertions.assertEquals(1, candles.read(TICKER, CandleAggregator.Interval.S1, Long.MIN_VALUE, Long.MAX_VALUE, 10).size());
+
+        candles.clear();
+        Assertions.assertTrue(candles.read(TICKER, CandleAggregator.Interval.M1, Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+        Assertions.assertTrue(candles.latest(TICKER).isEmpty());
+    }
+
+    private static Trade trade(long bidOrderId, int bidPrice, long askOrderId, int askPrice, int quantity) {
+        return new Trade(new TradeInfo(bidOrderId, "b", TICKER, OrderSide.BUY, bidPrice / 1_000d, bidPrice, quantity),
+                new TradeInfo(askOrderId, "a", TICKER, OrderSide.SELL, askPrice / 1_000d, askPrice, quantity));
+    }
+}
@@ -0,0 +1,109 @@
+package tradeMatcher;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class FillStoreTests {
+
+    private static final String TICKER = "TEST";
+    private static final int ROWS = FillStore.CHUNK_ROWS * 3 + 17;
+
+    @Test
+    void pagesNewestFirstAcrossChunksByCursorAndTimeRange() {
+        try (FillStore store = filledStore()) {
+            List<Long> seen = new ArrayList<>();
+            long cursor = Long.MAX_VALUE;
+            while (true) {
+                FillStore.Page page = store.query("u", cursor, Long.MIN_VALUE, Long.MAX_VALUE, 100);
+                page.fills().forEach(fill -> seen.add(Long.parseLong(fill.fillId())));
+                if (!page.hasMore()) {
+                    break;
+                }
+                cursor = page.nextCursor();
+            }
+            Assertions.assertEquals(ROWS, seen.size());
+            for (int i = 0; i < ROWS; i++) {
+                Assertions.assertEquals(fillId(ROWS - 1 - i), seen.get(i));
+            }
+
+            FillStore.Page range = store.query("u", Long.MAX_VALUE, timestamp(300), timestamp(310), 5);
+            Assertions.assertEquals(List.of("619", "617", "615", "613", "611"),
+                    range.fills().stream().map(FillRecord::fillId).toList());
+            Assertions.assertEquals(611L, range.nextCursor());
+            FillRecord newest = range.fills().get(0);
+            Assertions.assertEquals(OrderSide.SELL, newest.side());
+            Assertions.assertEquals(100.309, newest.price(), 1e-9);
+            Assertions.assertEquals(1_000L + 309, Long.parseLong(newest.orderId()));
+
+            Assertions.assertFalse(store.query("u", Long.MAX_VALUE, timestamp(300), timestamp(310), 10).hasMore());
+            Assertions.assertTrue(store.query("nobody", Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 10).fills().isEmpty());
+        }
+    }
+
+    @Test
+    void retentionSpillsSealedChunksOrDropsThemWithoutSpillDirectory(@TempDir Path spillDir) throws Exception {
+        try (FillStore spilled = filledStore()) {
+            List<FillRecord> before = spilled.all("u");
+            spilled.startRetention(Duration.ofDays(1), spillDir);
+            spilled.enforceRetention(timestamp(FillStore.CHUNK_ROWS * 2));
+
+            Assertions.assertEquals(2L, spilled.spilledChunks());
+            Assertions.assertEquals(before, spilled.all("u"));
+            Assertions.assertEquals(ROWS, spilled.retainedFills());
+        }
+
+        try (FillStore dropping = filledStore()) {
+            dropping.enforceRetention(Long.MAX_VALUE);
+
+            // Only the partially filled tail chunk is kept.
+            Assertions.assertEquals(17L, dropping.retainedFills());
+            Assertions.assertEquals(fillId(FillStore.CHUNK_ROWS * 3), Long.parseLong(dropping.all("u").get(0).fillId()));
+            dropping.append("u", fillId(ROWS), 1L, instrument(), OrderSide.BUY, 100_000, 1, timestamp(ROWS));
+            Assertions.assertEquals(18, dropping.query("u", Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 100).fills().size());
+        }
+    }
+
+    @Test
+    void markPinsRowsThatRetentionDropsBeforeTheyAreRead() {
+        try (FillStore store = filledStore()) {
+            FillStore.Pin pin = store.mark().get("u");
+            store.append("u", fillId(ROWS), 1L, instrument(), OrderSide.BUY, 100_000, 1, timestamp(ROWS));
+            store.enforceRetention(Long.MAX_VALUE);
+
+            List<Long> visited = new ArrayList<>();
+            int count = store.forEachRow(pin, (fillId, orderId, instrumentId, side, priceTicks, quantity, timestampNanos)
+                    -> visited.add(fillId));
+
+            Assertions.assertEquals(ROWS, count);
+            Assertions.assertEquals(fillId(0), visited.get(0));
+            Assertions.assertEquals(fillId(ROWS - 1), visited.get(ROWS - 1));
+        }
+    }
+
+    private static FillStore filledStore() {
+        FillStore store = new FillStore();
+        for (int i = 0; i < ROWS; i++) {
+            store.append("u", fillId(i), 1_000L + i, instrument(), i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL,
+                    100_000 + i, 1 + i % 5, timestamp(i));
+        }
+        return store;
+    }
+
+    private static long fillId(int row) {
+        return 2L * row + 1L;
+    }
+
+    private static long timestamp(int row) {
+        return 1_700_000_000_000_000_000L + row * 1_000_000L;
+    }
+
+    private static int instrument() {
+        return PriceScaleProvider.getRegistry().instrumentId(TICKER);
+    }
+}
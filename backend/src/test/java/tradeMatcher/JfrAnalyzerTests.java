@@ -0,0 +1,96 @@
+package tradeMatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class JfrAnalyzerTests {
+
+    private static final String TICKER = "TEST";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void engineEventsAreRecordedAndSummarised() throws Exception {
+        Path file = dir.resolve("engine.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("tradeMatcher.AddOrder").withThreshold(Duration.ZERO);
+            recording.enable("tradeMatcher.CancelOrder").withThreshold(Duration.ZERO);
+            recording.start();
+            runOrders();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent add = events.stream()
+                .filter(event -> event.getEventType().getName().equals("tradeMatcher.AddOrder"))
+                .filter(event -> event.getLong("orderId") == 3L)
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertEquals("taker", add.getString("userId"));
+        Assertions.assertEquals(1, add.getInt("trades"));
+        Assertions.assertTrue(events.stream()
+                .anyMatch(event -> event.getEventType().getName().equals("tradeMatcher.CancelOrder")));
+
+        String report = analyze(file.toString());
+        Assertions.assertTrue(report.contains("AddOrder"), report);
+        Assertions.assertTrue(report.contains("CancelOrder"), report);
+        Assertions.assertTrue(report.contains("Slowest"), report);
+        Assertions.assertTrue(report.contains("orderId=3"), report);
+    }
+
+    @Test
+    void recordingWithoutEngineEventsSaysSo() throws Exception {
+        Path file = dir.resolve("empty.jfr");
+        try (Recording recording = new Recording()) {
+            recording.start();
+            recording.stop();
+            recording.dump(file);
+        }
+        Assertions.assertTrue(analyze(file.toString()).startsWith("No tradeMatcher events"));
+    }
+
+    private static void runOrders() {
+        AccountManager accounts = new AccountManager();
+        accounts.registerAccount("maker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        accounts.registerAccount("taker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        MatchingEngine engine = new MatchingEngine(accounts);
+        try {
+            int price = PriceScaleProvider.getRegistry().getScale(TICKER).toBookPrice(101.000);
+            engine.processOrder(new Order("1", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                    5, price, price, false, 5));
+            engine.processOrder(new Order("2", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                    5, price + 1, price + 1, false, 5));
+            engine.processOrder(new Order("3", "taker", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                    5, price, price, false, 5));
+            engine.cancelOrder("maker", 2L);
+        } finally {
+            engine.close();
+        }
+    }
+
+    private static String analyze(String file) throws Exception {
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            JfrAnalyzer.main(new String[] {file, "5"});
+        } finally {
+            System.setOut(original);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+}
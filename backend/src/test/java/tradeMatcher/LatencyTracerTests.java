@@ -0,0 +1,125 @@
+package tradeMatcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+final class LatencyTracerTests {
+
+    @BeforeEach
+    void setUp() {
+        LatencyTracer.setEnabled(true);
+        LatencyTracer.end(false);
+        LatencyTracer.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        LatencyTracer.end(false);
+        LatencyTracer.reset();
+    }
+
+    @Test
+    void recordsStampedStagesSinceIngressOnlyForCompletedTraces() {
+        long received = System.nanoTime() - 1_000_000L;
+        LatencyTracer.begin(received);
+        LatencyTracer.mark(LatencyTracer.Stage.VALIDATED);
+        LatencyTracer.mark(LatencyTracer.Stage.ACKNOWLEDGED);
+
+        Map<String, Long> elapsed = LatencyTracer.elapsedSoFar();
+        Assertions.assertEquals(List.of("VALIDATED", "ACKNOWLEDGED"), List.copyOf(elapsed.keySet()));
+        Assertions.assertTrue(elapsed.get("VALIDATED") >= 1_000_000L, "Timed from the ingress stamp");
+        LatencyTracer.end(true);
+
+        // A rejected command's trace is closed without recording.
+        LatencyTracer.begin();
+        LatencyTracer.mark(LatencyTracer.Stage.VALIDATED);
+        LatencyTracer.end(false);
+
+        Assertions.assertEquals(1L, count("VALIDATED"));
+        Assertions.assertEquals(1L, count("ACKNOWLEDGED"));
+        Assertions.assertEquals(0L, count("MATCHED"));
+    }
+
+    @Test
+    void stampsAreIgnoredWithoutAnOpenTraceAndEndIsIdempotent() {
+        LatencyTracer.mark(LatencyTracer.Stage.MATCHED);
+        Assertions.assertTrue(LatencyTracer.elapsedSoFar().isEmpty());
+
+        LatencyTracer.begin();
+        LatencyTracer.mark(LatencyTracer.Stage.MATCHED);
+        LatencyTracer.end(true);
+        // The finally-block close after a completed trace must not record it twice.
+        LatencyTracer.end(true);
+        LatencyTracer.mark(LatencyTracer.Stage.MATCHED);
+
+        Assertions.assertEquals(1L, count("MATCHED"));
+    }
+
+    @Test
+    void publicationDrainedForAnotherCommandStampsNothingOnTheDrainingTrace() throws Exception {
+        String ticker = "TEST";
+        AccountManager accounts = new AccountManager();
+        accounts.registerAccount("maker", 1_000_000d, Map.of(ticker, 10_000L), false);
+        accounts.registerAccount("taker", 1_000_000d, Map.of(ticker, 10_000L), false);
+        MatchingEngine engine = new MatchingEngine(accounts);
+        int price = PriceScaleProvider.getRegistry().getScale(ticker).toBookPrice(101.000);
+        engine.processOrder(new Order("1", "maker", ticker, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                5, price, price, false, 5));
+
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        engine.onFill(fill -> { });
+        engine.onOrderBookUpdate(levels -> {
+            if (delivering.getCount() > 0L) {
+                delivering.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        AtomicReference<Map<String, Long>> drainerStages = new AtomicReference<>();
+        // Rests without filling, then stalls in its own delivery and drains the taker's publication.
+        Thread drainer = new Thread(() -> {
+            LatencyTracer.begin();
+            engine.processOrder(new Order("2", "maker", ticker, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                    1, price - 10, price - 10, false, 1));
+            drainerStages.set(LatencyTracer.elapsedSoFar());
+            LatencyTracer.end(false);
+        });
+        drainer.start();
+        Assertions.assertTrue(delivering.await(5, TimeUnit.SECONDS));
+        Thread taker = new Thread(() -> engine.processOrder(new Order("3", "taker", ticker, OrderSide.BUY,
+                OrderType.LIMIT, TimeInForce.GTC, 5, price, price, false, 5)));
+        taker.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        // The taker has matched and queued its publication once it parks on the publish lock.
+        while (taker.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1L);
+        }
+        release.countDown();
+        drainer.join();
+        taker.join();
+        engine.close();
+
+        Assertions.assertFalse(drainerStages.get().containsKey("PRIVATE_FILL_SENT"), drainerStages.get().toString());
+        Assertions.assertTrue(drainerStages.get().containsKey("MATCHED"));
+    }
+
+    private static long count(String stage) {
+        return LatencyTracer.summary().stream()
+                .filter(entry -> entry.get("stage").equals(stage))
+                .mapToLong(entry -> ((Number) entry.get("count")).longValue())
+                .findFirst()
+                .orElseThrow();
+    }
+}
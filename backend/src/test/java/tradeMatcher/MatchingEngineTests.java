@@ -0,0 +1,450 @@
+package tradeMatcher;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class MatchingEngineTests {
+
+    private static final String TICKER = "TEST";
+
+    private AccountManager accounts;
+    private MatchingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        accounts = new AccountManager();
+        accounts.registerAccount("maker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        accounts.registerAccount("taker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        engine = new MatchingEngine(accounts);
+    }
+
+    @Test
+    void cancelAllOrdersRemovesOnlyTheUsersOrdersWithOneBookUpdate() {
+        engine.processOrder(limit("1", "maker", OrderSide.BUY, 100.000, 10));
+        engine.processOrder(limit("2", "maker", OrderSide.SELL, 105.000, 10));
+        engine.processOrder(limit("3", "taker", OrderSide.BUY, 99.000, 10));
+
+        List<OrderbookLevelInfos> updates = new ArrayList<>();
+        engine.onOrderBookUpdate(updates::add);
+
+        List<Long> canceled = engine.cancelAllOrders("maker");
+
+        Assertions.assertEquals(List.of(1L, 2L), canceled.stream().sorted().toList());
+        Assertions.assertEquals(1, updates.size(), "Expected a single conflated book update");
+        Assertions.assertTrue(engine.getOpenOrdersForUser("maker").isEmpty());
+        Assertions.assertEquals(1, engine.getOpenOrdersForUser("taker").size());
+        Assertions.assertTrue(engine.cancelAllOrders("maker").isEmpty());
+    }
+
+    @Test
+    void processBatchMatchesInOnePassAndRejectsPerItem() {
+        Order restingAsk = limit("10", "maker", OrderSide.SELL, 101.000, 5);
+        Order crossingBid = limit("11", "taker", OrderSide.BUY, 101.000, 5);
+        Order postOnlyAsk = new Order("12", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                5, 99_000, 99_000, true, 5);
+        Order restingBid = limit("13", "taker", OrderSide.BUY, 99.000, 5);
+        Order tooLarge = limit("14", "taker", OrderSide.BUY, 100.000, 1_000_000);
+
+        List<OrderbookLevelInfos> updates = new ArrayList<>();
+        List<List<Trade>> tradeBursts = new ArrayList<>();
+        engine.onOrderBookUpdate(updates::add);
+        engine.onTrades((trades, sequence) -> tradeBursts.add(trades));
+
+        List<MatchingEngine.BatchItemResult> results = engine.processBatch(
+                List.of(restingAsk, crossingBid, restingBid, postOnlyAsk, tooLarge));
+
+        Assertions.assertEquals(5, results.size());
+        Assertions.assertTrue(results.get(0).accepted());
+        Assertions.assertEquals(5, results.get(1).order().getFilledQuantity());
+        Assertions.assertTrue(results.get(2).accepted());
+        Assertions.assertEquals("POST_ONLY_WOULD_TRADE", results.get(3).rejectReason());
+        Assertions.assertEquals("INSUFFICIENT_FUNDS", results.get(4).rejectReason());
+        Assertions.assertEquals(1, updates.size(), "Expected one conflated book update");
+        Assertions.assertEquals(1, tradeBursts.size(), "Expected one trade burst");
+        Assertions.assertEquals(1, engine.getOpenOrdersForUser("taker").size());
+    }
+
+    @Test
+    void journalReplayRebuildsBookAndBalances(@TempDir Path journalDir) throws Exception {
+        try (CommandJournal journal = new CommandJournal(journalDir, 4_096, CommandJournal.SyncMode.ASYNC, 0L)) {
+            for (UserAccount account : accounts.getAllAccounts()) {
+                journal.appendAccount(account);
+            }
+            engine.setJournal(journal);
+            engine.processOrder(limit("1", "maker", OrderSide.SELL, 101.000, 10));
+            engine.processOrder(limit("2", "taker", OrderSide.BUY, 101.000, 4));
+            engine.processOrder(limit("3", "taker", OrderSide.BUY, 100.000, 5));
+            engine.modifyOrder("taker", 3L, OrderSide.BUY, 99_000, 6);
+            engine.processBatch(List.of(limit("4", "maker", OrderSide.SELL, 105.000, 2)));
+            for (int i = 0; i < 100; i++) {
+                // Enough traffic to roll the tiny segments several times.
+                engine.processOrder(limit(Long.toString(100 + i), "maker", OrderSide.SELL, 110.000, 1));
+                engine.cancelOrder("maker", 100 + i);
+            }
+        }
+
+        AccountManager recoveredAccounts = new AccountManager();
+        MatchingEngine recovered = new MatchingEngine(recoveredAccounts);
+        JournalRecovery.Result result = JournalRecovery.replay(journalDir, 0L, recovered, recoveredAccounts);
+
+        Assertions.assertEquals(207L, result.commands());
+        Assertions.assertEquals(199L, result.maxOrderId());
+        for (String userId : List.of("maker", "taker")) {
+            UserAccount original = accounts.findById(userId).orElseThrow();
+            UserAccount replayed = recoveredAccounts.findById(userId).orElseThrow();
+            Assertions.assertEquals(original.getApiKey(), replayed.getApiKey());
+            Assertions.assertEquals(original.getCashUnits(), replayed.getCashUnits());
+            Assertions.assertEquals(original.snapshotPositions(), replayed.snapshotPositions());
+            Assertions.assertEquals(
+                    engine.getOpenOrdersForUser(userId).stream().map(OrderDetails::getOrderId).toList(),
+                    recovered.getOpenOrdersForUser(userId).stream().map(OrderDetails::getOrderId).toList());
+        }
+    }
+
+    @Test
+    void snapshotRecoveryReplaysOnlyTheJournalTail(@TempDir Path journalDir) throws Exception {
+        OrderIdGenerator orderIds = new OrderIdGenerator(1L);
+        try (CommandJournal journal = new CommandJournal(journalDir, 64 * 1024, CommandJournal.SyncMode.ASYNC, 0L)) {
+            for (UserAccount account : accounts.getAllAccounts()) {
+                journal.appendAccount(account);
+            }
+            engine.setJournal(journal);
+            engine.processOrder(limit(orderIds.nextId(), "maker", OrderSide.SELL, 101.000, 10));
+            engine.processOrder(limit(orderIds.nextId(), "maker", OrderSide.SELL, 101.000, 7));
+            engine.processOrder(limit(orderIds.nextId(), "taker", OrderSide.BUY, 101.000, 4));
+            engine.processOrder(limit(orderIds.nextId(), "taker", OrderSide.BUY, 99.000, 3));
+
+            Assertions.assertEquals(6L, engine.writeSnapshot(journalDir, orderIds));
+
+            engine.processOrder(limit(orderIds.nextId(), "taker", OrderSide.BUY, 101.000, 8));
+            engine.cancelOrder("taker", 4L);
+        }
+
+        AccountManager recoveredAccounts = new AccountManager();
+        MatchingEngine recovered = new MatchingEngine(recoveredAccounts);
+        JournalRecovery.Result result = JournalRecovery.recover(journalDir, recovered, recoveredAccounts);
+
+        Assertions.assertTrue(result.fromSnapshot());
+        Assertions.assertEquals(6L, result.snapshotSequence());
+        Assertions.assertEquals(2L, result.commands());
+        Assertions.assertEquals(5L, result.maxOrderId());
+        for (String userId : List.of("maker", "taker")) {
+            UserAccount original = accounts.findById(userId).orElseThrow();
+            UserAccount replayed = recoveredAccounts.findById(userId).orElseThrow();
+            Assertions.assertEquals(original.getCashUnits(), replayed.getCashUnits());
+            Assertions.assertEquals(original.snapshotPositions(), replayed.snapshotPositions());
+            Assertions.assertEquals(original.getReservedCashUnits(), replayed.getReservedCashUnits());
+            Assertions.assertEquals(original.getReservedInventory(TICKER), replayed.getReservedInventory(TICKER));
+            // Fills replayed from the journal tail are re-stamped, so compare everything but time.
+            Assertions.assertEquals(
+                    engine.getFillsForUser(userId).stream().map(MatchingEngineTests::withoutTime).toList(),
+                    recovered.getFillsForUser(userId).stream().map(MatchingEngineTests::withoutTime).toList());
+        }
+        // The partially filled second ask keeps its remaining quantity and its place in the queue.
+        List<OrderDetails> resting = recovered.getOpenOrdersForUser("maker");
+        Assertions.assertEquals(1, resting.size());
+        Assertions.assertEquals(2L, resting.get(0).getOrderId());
+        Assertions.assertEquals(5L, resting.get(0).getRemainingQuantity());
+    }
+
+    @Test
+    void sweepSettlesNettedBalancesEqualToPerFillTotalsAndKeepsEveryFill() {
+        accounts.registerAccount("maker2", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+        long expectedNotional = 0L;
+        long restingQuantity = 0L;
+        for (int i = 0; i < 40; i++) {
+            String maker = i % 2 == 0 ? "maker" : "maker2";
+            double price = (100_001 + i * 17) / 1_000d;
+            long quantity = 1 + i % 7;
+            engine.processOrder(limit(Integer.toString(100 + i), maker, OrderSide.SELL, price, quantity));
+            expectedNotional += scale.toBookPrice(price) * quantity * scale.cashUnitsPerTick();
+            restingQuantity += quantity;
+        }
+        List<FillRecord> streamed = new ArrayList<>();
+        engine.onFill(streamed::add);
+        long makerCash = accounts.findById("maker").orElseThrow().getCashUnits();
+        long maker2Cash = accounts.findById("maker2").orElseThrow().getCashUnits();
+        long takerCash = accounts.findById("taker").orElseThrow().getCashUnits();
+
+        engine.processOrder(limit("200", "taker", OrderSide.BUY, 200.000, restingQuantity));
+
+        UserAccount taker = accounts.findById("taker").orElseThrow();
+        long makersReceived = accounts.findById("maker").orElseThrow().getCashUnits() - makerCash
+                + accounts.findById("maker2").orElseThrow().getCashUnits() - maker2Cash;
+        // Each side of a fill settles at its own order's price.
+        Assertions.assertEquals(scale.toBookPrice(200.000) * restingQuantity * scale.cashUnitsPerTick(),
+                takerCash - taker.getCashUnits());
+        Assertions.assertEquals(expectedNotional, makersReceived);
+        Assertions.assertEquals(10_000L + restingQuantity, taker.getPosition(TICKER));
+        Assertions.assertEquals(20_000L - restingQuantity, accounts.findById("maker").orElseThrow().getPosition(TICKER)
+                + accounts.findById("maker2").orElseThrow().getPosition(TICKER));
+        Assertions.assertEquals(40, engine.getFillsForUser("taker").size());
+        Assertions.assertEquals(80, streamed.size());
+        Assertions.assertEquals(engine.getFillsForUser("taker"),
+                streamed.stream().filter(fill -> fill.userId().equals("taker")).toList());
+    }
+
+    @Test
+    void tradeTapeKeepsRecentPrintsAtMakerPriceWithAggressor() {
+        TradeTape tape = new TradeTape(16);
+        engine.setTradeTape(tape);
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+        for (int i = 0; i < 20; i++) {
+            engine.processOrder(limit(Integer.toString(100 + i), "maker", OrderSide.SELL, 100.000 + i, 1));
+        }
+        engine.processOrder(limit("200", "taker", OrderSide.BUY, 150.000, 20));
+
+        List<TradeTape.Print> newest = tape.read(TICKER, 0L, 3);
+        Assertions.assertEquals(List.of(18L, 19L, 20L), newest.stream().map(TradeTape.Print::sequence).toList());
+        Assertions.assertEquals(scale.toBookPrice(119.000), newest.get(2).priceTicks());
+        Assertions.assertEquals(OrderSide.BUY, newest.get(2).aggressor());
+        // Sequences 1-4 were overwritten; a stale cursor resumes at the oldest retained print.
+        List<TradeTape.Print> caughtUp = tape.read(TICKER, 2L, 100);
+        Assertions.assertEquals(16, caughtUp.size());
+        Assertions.assertEquals(5L, caughtUp.get(0).sequence());
+
+        engine.processOrder(limit("201", "maker", OrderSide.BUY, 90.000, 5));
+        engine.processOrder(limit("202", "taker", OrderSide.SELL, 80.000, 5));
+        TradeTape.Print sold = tape.read(TICKER, 20L, 10).get(0);
+        Assertions.assertEquals(OrderSide.SELL, sold.aggressor());
+        Assertions.assertEquals(scale.toBookPrice(90.000), sold.priceTicks());
+        Assertions.assertEquals(5, sold.quantity());
+
+        engine.reset();
+        Assertions.assertTrue(tape.read(TICKER, 0L, 10).isEmpty());
+        Assertions.assertEquals(21L, tape.lastSequence(TICKER));
+    }
+
+    @Test
+    void marketStatsTrackSessionTradesAndTopOfBook() {
+        MarketStats stats = new MarketStats(TICKER);
+        engine.processOrder(limit("1", "maker", OrderSide.BUY, 99.000, 30));
+        engine.setMarketStats(stats);
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+        Assertions.assertEquals(scale.toBookPrice(99.000), stats.snapshot(TICKER).bidPrice());
+        Assertions.assertEquals(1d, stats.snapshot(TICKER).imbalance(), 1e-9);
+
+        for (int i = 0; i < 7; i++) {
+            engine.processOrder(limit(Integer.toString(10 + i), "maker", OrderSide.SELL, 101.000 + i, 10));
+        }
+        engine.processOrder(limit("20", "taker", OrderSide.BUY, 102.000, 15));
+        engine.processOrder(limit("21", "taker", OrderSide.SELL, 99.000, 5));
+
+        MarketStats.Snapshot snapshot = stats.snapshot(TICKER);
+        Assertions.assertEquals(List.of(scale.toBookPrice(101.000), scale.toBookPrice(102.000),
+                scale.toBookPrice(99.000), scale.toBookPrice(99.000)),
+                List.of(snapshot.open(), snapshot.high(), snapshot.low(), snapshot.last()));
+        Assertions.assertEquals(20L, snapshot.volume());
+        Assertions.assertEquals(3L, snapshot.trades());
+        Assertions.assertEquals((101_000d * 10 + 102_000d * 5 + 99_000d * 5) / 20, snapshot.vwapTicks(), 1e-9);
+        // Asks: 102 x 5 left, then 103-105 x 10 within the five best levels (106 and 107 are beyond).
+        Assertions.assertEquals(scale.toBookPrice(102.000), snapshot.askPrice());
+        Assertions.assertEquals(5L, snapshot.askQuantity());
+        Assertions.assertEquals(45L, snapshot.askDepth());
+        Assertions.assertEquals(25L, snapshot.bidDepth());
+        Assertions.assertEquals((25d - 45d) / 70d, snapshot.imbalance(), 1e-9);
+
+        engine.reset();
+        MarketStats.Snapshot afterReset = stats.snapshot(TICKER);
+        Assertions.assertEquals(0L, afterReset.trades());
+        Assertions.assertEquals(0L, afterReset.askDepth() + afterReset.bidDepth());
+    }
+
+    @Test
+    void impactEstimateWalksOppositeLevelsWithoutChangingTheBook() {
+        engine.processOrder(limit("1", "maker", OrderSide.BUY, 99.000, 30));
+        for (int i = 0; i < 3; i++) {
+            engine.processOrder(limit(Integer.toString(10 + i), "maker", OrderSide.SELL, 101.000 + i, 10));
+        }
+        engine.processOrder(limit("20", "taker", OrderSide.BUY, 101.000, 5));
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+
+        // Asks: 101 x 5, 102 x 10, 103 x 10; quantities in any order are answered in one walk.
+        LevelLadder.Impact[] buys = engine.estimateImpact(OrderSide.BUY, new long[] {12, 100, 5});
+        Assertions.assertEquals(12L, buys[0].filled());
+        Assertions.assertEquals(2, buys[0].levels());
+        Assertions.assertEquals(scale.toBookPrice(102.000), buys[0].worstPriceTicks());
+        Assertions.assertEquals((101_000d * 5 + 102_000d * 7) / 12, buys[0].averagePriceTicks(), 1e-9);
+        Assertions.assertEquals(25L, buys[1].filled());
+        Assertions.assertEquals(3, buys[1].levels());
+        Assertions.assertEquals(1, buys[2].levels());
+        Assertions.assertEquals(scale.toBookPrice(101.000), buys[2].bestPriceTicks());
+
+        LevelLadder.Impact sell = engine.estimateImpact(OrderSide.SELL, new long[] {10})[0];
+        Assertions.assertEquals(scale.toBookPrice(99.000), sell.worstPriceTicks());
+        Assertions.assertEquals(10L, sell.filled());
+        Assertions.assertEquals(3, engine.getOrderbookLevels().GetAsks().size());
+
+        engine.cancelOrder("maker", 1L);
+        Assertions.assertEquals(0L, engine.estimateImpact(OrderSide.SELL, new long[] {10})[0].filled());
+    }
+
+    @Test
+    void depthAggregatesLevelsIntoPriceBuckets() {
+        double[] bids = {98.950, 99.000, 99.020, 99.049, 99.500};
+        for (int i = 0; i < bids.length; i++) {
+            engine.processOrder(limit(Integer.toString(1 + i), "maker", OrderSide.BUY, bids[i], 10 + i));
+        }
+        engine.processOrder(limit("10", "maker", OrderSide.SELL, 100.010, 7));
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+        int from = scale.toBookPrice(99.000);
+        int to = scale.toBookPrice(100.100);
+        int bucket = scale.toBookPrice(0.050);
+
+        // 99.000-99.049 hold 11 + 12 + 13; 98.950 is below the range.
+        LevelLadder.Buckets buckets = engine.aggregateDepth(OrderSide.BUY, from, to, bucket, 100);
+        Assertions.assertEquals(from, buckets.firstPriceTicks());
+        Assertions.assertEquals(23, buckets.quantities().length);
+        Assertions.assertEquals(36L, buckets.quantities()[0]);
+        Assertions.assertEquals(14L, buckets.quantities()[10]);
+        Assertions.assertEquals(50L, Arrays.stream(buckets.quantities()).sum());
+
+        // Capped at two buckets, bids keep those nearest the touch and asks the lowest.
+        Assertions.assertEquals(scale.toBookPrice(100.050),
+                engine.aggregateDepth(OrderSide.BUY, from, to, bucket, 2).firstPriceTicks());
+        LevelLadder.Buckets asks = engine.aggregateDepth(OrderSide.SELL, scale.toBookPrice(100.000), to, bucket, 2);
+        Assertions.assertArrayEquals(new long[] {7L, 0L}, asks.quantities());
+    }
+
+    @Test
+    void orderEventsDescribeRestingOrdersOnlyInSequence() {
+        List<OrderEvent> events = new ArrayList<>();
+        engine.onOrderEvents(events::addAll);
+        engine.processOrder(limit("1", "maker", OrderSide.SELL, 101.000, 10));
+        engine.processOrder(limit("2", "maker", OrderSide.SELL, 101.000, 5));
+        // The taker sweeps both asks and rests nothing, so only the makers' executions appear.
+        engine.processOrder(limit("3", "taker", OrderSide.BUY, 101.000, 12));
+        engine.modifyOrder("maker", 2L, OrderSide.SELL, 102_000, 4);
+        engine.processOrder(limit("4", "taker", OrderSide.BUY, 100.000, 6));
+        engine.cancelOrder("taker", 4L);
+
+        Assertions.assertEquals(List.of(
+                List.of(OrderEvent.Type.ADD, 1L, 10L, 10L),
+                List.of(OrderEvent.Type.ADD, 2L, 5L, 5L),
+                List.of(OrderEvent.Type.EXECUTE, 1L, 10L, 0L),
+                List.of(OrderEvent.Type.EXECUTE, 2L, 2L, 3L),
+                List.of(OrderEvent.Type.MODIFY, 2L, 4L, 4L),
+                List.of(OrderEvent.Type.ADD, 4L, 6L, 6L),
+                List.of(OrderEvent.Type.DELETE, 4L, 6L, 0L)),
+                events.stream().map(event -> List.<Object>of(event.type(), event.orderId(), event.quantity(),
+                        event.remainingQuantity())).toList());
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), events.stream().map(OrderEvent::sequence).toList());
+        Assertions.assertEquals(102_000, events.get(4).priceTicks());
+
+        List<Long> resting = new ArrayList<>();
+        Assertions.assertEquals(7L, engine.snapshotRestingOrders(order -> resting.add(order.GetOrderId())));
+        Assertions.assertEquals(List.of(2L), resting);
+
+        engine.reset();
+        Assertions.assertEquals(OrderEvent.Type.CLEAR, events.get(events.size() - 1).type());
+        Assertions.assertEquals(8L, events.get(events.size() - 1).sequence());
+        engine.processOrder(limit("5", "maker", OrderSide.SELL, 101.000, 1));
+        Assertions.assertEquals(9L, events.get(events.size() - 1).sequence());
+    }
+
+    @Test
+    void orderEventsAreOnlyBuiltWhileWantedButKeepTheirSequence() {
+        List<OrderEvent> events = new ArrayList<>();
+        boolean[] subscribed = {false};
+        engine.onOrderEvents(events::addAll, () -> subscribed[0]);
+        engine.processOrder(limit("1", "maker", OrderSide.SELL, 101.000, 10));
+        engine.processOrder(limit("2", "maker", OrderSide.SELL, 102.000, 10));
+        Assertions.assertTrue(events.isEmpty());
+
+        subscribed[0] = true;
+        Assertions.assertEquals(2L, engine.snapshotRestingOrders(order -> { }));
+        engine.cancelOrder("maker", 1L);
+        Assertions.assertEquals(List.of(3L), events.stream().map(OrderEvent::sequence).toList());
+    }
+
+    @Test
+    void slowListenerDoesNotHoldUpMatching() throws Exception {
+        CountDownLatch listening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> bidLevelCounts = new CopyOnWriteArrayList<>();
+        engine.onOrderBookUpdate(levels -> {
+            bidLevelCounts.add(levels.GetBids().size());
+            listening.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread first = new Thread(() -> engine.processOrder(limit("1", "maker", OrderSide.BUY, 99.000, 1)));
+        first.start();
+        Assertions.assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+        // The first command's delivery is stuck, but the next command still matches.
+        Thread second = new Thread(() -> engine.processOrder(limit("2", "taker", OrderSide.BUY, 98.000, 1)));
+        second.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (engine.getOpenOrdersForUser("taker").isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1L);
+        }
+        Assertions.assertEquals(1, engine.getOpenOrdersForUser("taker").size());
+        Assertions.assertEquals(List.of(1), bidLevelCounts);
+
+        release.countDown();
+        first.join();
+        second.join();
+        // Deliveries keep command order and each carries the book its command left.
+        Assertions.assertEquals(List.of(1, 2), bidLevelCounts);
+    }
+
+    @Test
+    void bookMetricsMatchTheBookAfterEachMutation() {
+        long lockHolds = EngineMetrics.LOCK_HOLD.count();
+        engine.processOrder(limit("1", "maker", OrderSide.BUY, 99.000, 5));
+        engine.processOrder(limit("2", "maker", OrderSide.BUY, 99.000, 5));
+        engine.processOrder(limit("3", "maker", OrderSide.BUY, 98.000, 5));
+        engine.processOrder(limit("4", "maker", OrderSide.SELL, 101.000, 5));
+        assertBookMetrics();
+
+        // Partial fill, full fill, cancel, then a modify that moves an order across sides.
+        engine.processOrder(limit("5", "taker", OrderSide.SELL, 99.000, 7));
+        assertBookMetrics();
+        engine.cancelOrder("maker", 3L);
+        assertBookMetrics();
+        int price = PriceScaleProvider.getRegistry().getScale(TICKER).toBookPrice(102.000);
+        engine.modifyOrder("maker", 2L, OrderSide.SELL, price, 3);
+        assertBookMetrics();
+        engine.cancelAllOrders("maker");
+        assertBookMetrics();
+
+        Assertions.assertTrue(EngineMetrics.LOCK_HOLD.count() > lockHolds);
+    }
+
+    private void assertBookMetrics() {
+        OrderbookLevelInfos levels = engine.getOrderbookLevels();
+        int[] orders = new int[2];
+        engine.forEachRestingOrder(order -> orders[order.GetSide() == OrderSide.BUY ? 0 : 1]++);
+        Map<String, Object> metrics = engine.bookMetrics();
+        Assertions.assertEquals(orders[0], metrics.get("bidOrders"));
+        Assertions.assertEquals(orders[1], metrics.get("askOrders"));
+        Assertions.assertEquals(levels.GetBids().size(), metrics.get("bidLevels"));
+        Assertions.assertEquals(levels.GetAsks().size(), metrics.get("askLevels"));
+    }
+
+    private static List<Object> withoutTime(FillRecord fill) {
+        return List.of(fill.fillId(), fill.orderId(), fill.ticker(), fill.side(), fill.price(), fill.quantity());
+    }
+
+    private static Order limit(String orderId, String userId, OrderSide side, double price, long quantity) {
+        int bookPrice = PriceScaleProvider.getRegistry().getScale(TICKER).toBookPrice(price);
+        return new Order(orderId, userId, TICKER, side, OrderType.LIMIT, TimeInForce.GTC,
+                quantity, bookPrice, bookPrice, false, quantity);
+    }
+}
@@ -0,0 +1,120 @@
+package tradeMatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class OrderAuditLogTests {
+
+    private static final String TICKER = "TEST";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsReadBackAsWritten() throws Exception {
+        Order accepted = new Order("7", "alpha", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                10, 101_000, 101_000, false, 10);
+        Order rejected = new Order("8", "beta", TICKER, OrderSide.SELL, OrderType.MARKET, TimeInForce.IOC,
+                4, 0, 0, false, 4);
+        try (OrderAuditLog log = new OrderAuditLog(dir)) {
+            log.orderAccepted(accepted, 101.0d);
+            log.orderRejected(rejected, 0.0d, "INSUFFICIENT_POSITION");
+            log.orderModified("alpha", 7L, TICKER, OrderSide.BUY, 100.5d, 6L);
+            log.orderCanceled(accepted);
+        }
+
+        List<OrderAuditLog.Entry> entries = read();
+        Assertions.assertEquals(4, entries.size());
+        Assertions.assertEquals(List.of(0L, 1L, 2L, 3L), entries.stream().map(OrderAuditLog.Entry::sequence).toList());
+
+        OrderAuditLog.Entry first = entries.get(0);
+        Assertions.assertEquals(OrderAuditLog.Type.ACCEPTED, first.type());
+        Assertions.assertEquals(7L, first.orderId());
+        Assertions.assertEquals("alpha", first.userId());
+        Assertions.assertEquals(TICKER, first.ticker());
+        Assertions.assertEquals(OrderSide.BUY, first.side());
+        Assertions.assertEquals(OrderType.LIMIT, first.orderType());
+        Assertions.assertEquals(TimeInForce.GTC, first.timeInForce());
+        Assertions.assertEquals(101.0d, first.price());
+        Assertions.assertEquals(10L, first.quantity());
+        Assertions.assertEquals(10L, first.remaining());
+        Assertions.assertNull(first.reason());
+
+        OrderAuditLog.Entry second = entries.get(1);
+        Assertions.assertEquals(OrderAuditLog.Type.REJECTED, second.type());
+        Assertions.assertEquals(OrderType.MARKET, second.orderType());
+        Assertions.assertEquals(TimeInForce.IOC, second.timeInForce());
+        Assertions.assertEquals("INSUFFICIENT_POSITION", second.reason());
+
+        OrderAuditLog.Entry third = entries.get(2);
+        Assertions.assertEquals(OrderAuditLog.Type.MODIFIED, third.type());
+        Assertions.assertNull(third.orderType());
+        Assertions.assertEquals(100.5d, third.price());
+        Assertions.assertEquals(6L, third.quantity());
+
+        Assertions.assertEquals(OrderAuditLog.Type.CANCELED, entries.get(3).type());
+    }
+
+    @Test
+    void rolledFilesAndReopenKeepOneSequence() throws Exception {
+        Order order = new Order("1", "alpha", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                1, 101_000, 101_000, false, 1);
+        // Files are clamped to two worst-case records, which these short records outgrow.
+        try (OrderAuditLog log = new OrderAuditLog(dir, 4, 0L)) {
+            for (int i = 0; i < 20; i++) {
+                log.orderAccepted(order, 101.0d);
+            }
+        }
+        try (OrderAuditLog log = new OrderAuditLog(dir, 4, 0L)) {
+            log.orderRejected(order, 101.0d, "LAST");
+        }
+
+        Assertions.assertTrue(OrderAuditLog.listFiles(dir).size() > 1);
+        List<OrderAuditLog.Entry> entries = read();
+        Assertions.assertEquals(21, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Assertions.assertEquals(i, entries.get(i).sequence());
+        }
+        Assertions.assertEquals("LAST", entries.get(20).reason());
+    }
+
+    @Test
+    void decoderPrintsTheRecordsOfOneOrder() throws Exception {
+        Order first = new Order("1", "alpha", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                5, 101_000, 101_000, false, 5);
+        Order second = new Order("2", "beta", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                5, 102_000, 102_000, false, 5);
+        try (OrderAuditLog log = new OrderAuditLog(dir)) {
+            log.orderAccepted(first, 101.0d);
+            log.orderAccepted(second, 102.0d);
+            log.orderCanceled(first);
+        }
+
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            AuditLogDecoder.main(new String[] {dir.toString(), "--order=1"});
+        } finally {
+            System.setOut(original);
+        }
+        List<String> lines = captured.toString(StandardCharsets.UTF_8).lines().toList();
+        Assertions.assertEquals(2, lines.size());
+        Assertions.assertTrue(lines.get(0).contains("ACCEPTED order=1 user=alpha ticker=TEST side=BUY"), lines.get(0));
+        Assertions.assertTrue(lines.get(1).contains("CANCELED order=1"), lines.get(1));
+    }
+
+    private List<OrderAuditLog.Entry> read() throws Exception {
+        List<OrderAuditLog.Entry> entries = new ArrayList<>();
+        OrderAuditLog.read(dir, entries::add);
+        return entries;
+    }
+}
@@ -0,0 +1,105 @@
+package tradeMatcher;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class OrderFlowGeneratorTests {
+
+    private static final OrderFlowGenerator.Profile PROFILE = OrderFlowGenerator.Profile.DEFAULT.withWalk(0.0d);
+
+    @Test
+    void sameSeedProducesTheSameFlow() {
+        Assertions.assertEquals(flow(42L, 2_000), flow(42L, 2_000));
+        Assertions.assertNotEquals(flow(42L, 2_000), flow(43L, 2_000));
+    }
+
+    @Test
+    void cancelsAndModifiesOnlyTargetLiveOrders() {
+        OrderFlowGenerator generator = new OrderFlowGenerator(PROFILE.withMix("add:1,cancel:1,modify:1,market:0"), 4, 7L);
+        OrderFlowGenerator.Command command = new OrderFlowGenerator.Command();
+
+        // With nothing live yet, the first command must be an add.
+        Assertions.assertEquals(OrderFlowGenerator.Kind.ADD, generator.next(command).kind());
+
+        Set<Long> live = new HashSet<>();
+        Map<Long, Integer> owners = new HashMap<>();
+        long nextId = 1L;
+        Map<OrderFlowGenerator.Kind, Integer> kinds = new EnumMap<>(OrderFlowGenerator.Kind.class);
+        for (int i = 0; i < 5_000; i++) {
+            generator.next(command);
+            kinds.merge(command.kind(), 1, Integer::sum);
+            switch (command.kind()) {
+                case ADD -> {
+                    int price = command.price();
+                    Assertions.assertTrue(Math.abs(price - PROFILE.midTicks()) <= PROFILE.depthTicks());
+                    live.add(nextId);
+                    owners.put(nextId, command.userIndex());
+                    generator.onAdded(nextId++, command.userIndex());
+                }
+                case CANCEL -> {
+                    Assertions.assertTrue(live.remove(command.orderId()), "Cancel of an order that is not live");
+                    Assertions.assertEquals(owners.get(command.orderId()), command.userIndex());
+                }
+                case MODIFY -> {
+                    Assertions.assertTrue(live.contains(command.orderId()), "Modify of an order that is not live");
+                    Assertions.assertEquals(owners.get(command.orderId()), command.userIndex());
+                }
+                case MARKET -> Assertions.fail("Market orders are weighted out");
+            }
+            Assertions.assertEquals(live.size(), generator.liveOrders());
+        }
+        Assertions.assertTrue(kinds.get(OrderFlowGenerator.Kind.CANCEL) > 1_000);
+        Assertions.assertTrue(kinds.get(OrderFlowGenerator.Kind.MODIFY) > 1_000);
+
+        long missing = live.iterator().next();
+        generator.onMissing(missing);
+        Assertions.assertEquals(live.size() - 1, generator.liveOrders());
+    }
+
+    @Test
+    void prefilledBookSitsBehindTheTradingBand() {
+        OrderFlowGenerator generator = new OrderFlowGenerator(PROFILE, 1, 1L);
+        int band = PROFILE.depthTicks() + PROFILE.crossTicks();
+        for (int i = 0; i < 100_000; i += 97) {
+            Assertions.assertTrue(generator.prefillPrice(OrderSide.BUY, i, 100_000) < PROFILE.midTicks() - band);
+            Assertions.assertTrue(generator.prefillPrice(OrderSide.SELL, i, 100_000) > PROFILE.midTicks() + band);
+        }
+    }
+
+    @Test
+    void arrivalsAverageTheConfiguredRate() {
+        OrderFlowGenerator generator = new OrderFlowGenerator(PROFILE.withRate(10_000.0d), 1, 3L);
+        long total = 0L;
+        int arrivals = 20_000;
+        for (int i = 0; i < arrivals; i++) {
+            total += generator.nextIntervalNanos();
+        }
+        double meanMicros = total / (double) arrivals / 1e3d;
+        Assertions.assertEquals(100.0d, meanMicros, 5.0d);
+        Assertions.assertEquals(0L, new OrderFlowGenerator(PROFILE, 1, 3L).nextIntervalNanos());
+    }
+
+    private static List<String> flow(long seed, int commands) {
+        OrderFlowGenerator generator = new OrderFlowGenerator(OrderFlowGenerator.Profile.DEFAULT, 8, seed);
+        OrderFlowGenerator.Command command = new OrderFlowGenerator.Command();
+        List<String> flow = new ArrayList<>(commands);
+        long nextId = 1L;
+        for (int i = 0; i < commands; i++) {
+            generator.next(command);
+            flow.add(command.kind() + " " + command.userIndex() + " " + command.side() + " " + command.price()
+                    + " " + command.quantity() + " " + command.orderId());
+            if (command.kind() == OrderFlowGenerator.Kind.ADD) {
+                generator.onAdded(nextId++, command.userIndex());
+            }
+        }
+        return flow;
+    }
+}
@@ -0,0 +1,183 @@
+package tradeMatcher;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+final class PrivateCommandTests {
+
+    private static final String TICKER = "TEST";
+
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private MatchingEngine engine;
+    private PrivateFeedService privateFeed;
+    private OrderIdGenerator orderIdGenerator;
+    private Session session;
+
+    @BeforeEach
+    void setUp() {
+        AccountManager accounts = new AccountManager();
+        accounts.registerAccount("maker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        accounts.registerAccount("taker", 1_000_000d, Map.of(TICKER, 10_000L), false);
+        engine = new MatchingEngine(accounts);
+        privateFeed = new PrivateFeedService(null, new WebSocketSender(new DirectExecutor()));
+        engine.onFill(privateFeed::sendFill);
+        orderIdGenerator = new OrderIdGenerator(1_000L);
+        session = session(received);
+        privateFeed.register(session, "taker");
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void newOrderIsAcknowledgedBeforeItsFills() {
+        int price = PriceScaleProvider.getRegistry().getScale(TICKER).toBookPrice(101.000);
+        engine.processOrder(new Order("1", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                3, price, price, false, 3));
+        engine.processOrder(new Order("2", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                2, price, price, false, 2));
+
+        command("{\"action\":\"NEW\",\"clientOrderId\":\"c1\",\"ticker\":\"TEST\",\"orderType\":\"LIMIT\","
+                + "\"timeInForce\":\"GTC\",\"side\":\"BUY\",\"price\":101.0,\"quantity\":5}");
+
+        Assertions.assertEquals(List.of("ACK", "FILL", "FILL"), types());
+        Assertions.assertEquals("c1", message(0).get("clientOrderId").getAsString());
+        String orderId = message(0).get("orderId").getAsString();
+        Assertions.assertEquals(orderId, message(1).get("orderId").getAsString());
+    }
+
+    @Test
+    void modifyAndCancelReplyOnTheSubmittingSession() {
+        command("{\"action\":\"NEW\",\"clientOrderId\":\"c1\",\"ticker\":\"TEST\",\"orderType\":\"LIMIT\","
+                + "\"timeInForce\":\"GTC\",\"side\":\"BUY\",\"price\":99.0,\"quantity\":5}");
+        String orderId = message(0).get("orderId").getAsString();
+
+        command("{\"action\":\"MODIFY\",\"clientOrderId\":\"c2\",\"orderId\":\"" + orderId + "\","
+                + "\"ticker\":\"TEST\",\"side\":\"BUY\",\"price\":99.5,\"quantity\":4}");
+        command("{\"action\":\"CANCEL\",\"clientOrderId\":\"c3\",\"orderId\":\"" + orderId + "\"}");
+        command("{\"action\":\"CANCEL\",\"clientOrderId\":\"c4\",\"orderId\":\"" + orderId + "\"}");
+
+        Assertions.assertEquals(List.of("ACK", "MODIFIED", "CANCELED", "REJECT"), types());
+        Assertions.assertEquals("c2", message(1).get("clientOrderId").getAsString());
+        Assertions.assertEquals("c3", message(2).get("clientOrderId").getAsString());
+        Assertions.assertEquals("ORDER_NOT_FOUND", message(3).get("reason").getAsString());
+    }
+
+    @Test
+    void batchFillsAreHeldUntilEveryItemIsAcknowledged() {
+        int price = PriceScaleProvider.getRegistry().getScale(TICKER).toBookPrice(101.000);
+        engine.processOrder(new Order("1", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                5, price, price, false, 5));
+        List<Order> batch = List.of(
+                new Order("10", "taker", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                        3, price, price, false, 3),
+                new Order("11", "taker", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                        2, price, price, false, 2));
+
+        // The same sequence as the batch endpoint.
+        PrivateFeedService.HeldCommand held = privateFeed.beginBatch("taker", List.of("10", "11"));
+        for (MatchingEngine.BatchItemResult outcome : engine.processBatch(batch)) {
+            privateFeed.sendAcknowledgement("taker", outcome.order().getOrderId(), null);
+        }
+        Assertions.assertEquals(List.of("ACK", "ACK"), types());
+        privateFeed.endBatch("taker", held);
+
+        Assertions.assertEquals(List.of("ACK", "ACK", "FILL", "FILL"), types());
+        Assertions.assertEquals("10", message(2).get("orderId").getAsString());
+        Assertions.assertEquals("11", message(3).get("orderId").getAsString());
+    }
+
+    @Test
+    void malformedCommandsAreRejected() {
+        command("{not json");
+        command("{\"clientOrderId\":\"c1\"}");
+        command("{\"action\":\"MODIFY\",\"clientOrderId\":\"c2\",\"orderId\":\"abc\"}");
+
+        Assertions.assertEquals(List.of("REJECT", "REJECT", "REJECT"), types());
+        Assertions.assertEquals("INVALID_MESSAGE", message(0).get("reason").getAsString());
+        Assertions.assertEquals("ACTION_REQUIRED", message(1).get("reason").getAsString());
+        Assertions.assertEquals("c1", message(1).get("clientOrderId").getAsString());
+        Assertions.assertEquals("INVALID_ORDER_ID", message(2).get("reason").getAsString());
+    }
+
+    private void command(String json) {
+        Main.handlePrivateCommand(session, json, "taker", engine, privateFeed, orderIdGenerator, false);
+    }
+
+    private JsonObject message(int index) {
+        return JsonParser.parseString(received.get(index)).getAsJsonObject();
+    }
+
+    private List<String> types() {
+        return received.stream()
+                .map(json -> JsonParser.parseString(json).getAsJsonObject().get("type").getAsString())
+                .toList();
+    }
+
+    private static Session session(List<String> received) {
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[] {RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 1) {
+                        received.add((String) args[0]);
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] {Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    default -> null;
+                });
+    }
+
+    /**
+     * Drains on the calling thread, so frames are captured in the order they were queued.
+     */
+    private static final class DirectExecutor extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package tradeMatcher;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class PrivateFeedServiceTests {
+
+    private static final Duration GRACE = Duration.ofMillis(100);
+
+    private final List<String> canceled = new CopyOnWriteArrayList<>();
+
+    @Test
+    void cancelFiresOnceTheGracePeriodEnds() throws Exception {
+        PrivateFeedService feed = feed();
+        Session session = session();
+        feed.register(session, "alpha", true);
+
+        feed.unregister(session, "alpha");
+        Assertions.assertTrue(canceled.isEmpty(), "Cancel must wait for the grace period");
+
+        awaitCancels(1);
+        Assertions.assertEquals(List.of("alpha"), canceled);
+    }
+
+    @Test
+    void reconnectWithinGraceKeepsOrdersAndTheOptIn() throws Exception {
+        PrivateFeedService feed = feed();
+        Session first = session();
+        feed.register(first, "alpha", true);
+        feed.unregister(first, "alpha");
+
+        Session second = session();
+        feed.register(second, "alpha", false);
+        Thread.sleep(GRACE.toMillis() * 3);
+        Assertions.assertTrue(canceled.isEmpty());
+
+        // The opt-in carries over to the reconnected session.
+        feed.unregister(second, "alpha");
+        awaitCancels(1);
+        Assertions.assertEquals(List.of("alpha"), canceled);
+    }
+
+    @Test
+    void optInOnAnySessionCancelsWhicheverSessionClosesLast() throws Exception {
+        PrivateFeedService feed = feed();
+        Session optedIn = session();
+        Session plain = session();
+        feed.register(optedIn, "alpha", true);
+        feed.register(plain, "alpha", false);
+        feed.register(session(), "beta", false);
+
+        feed.unregister(optedIn, "alpha");
+        Thread.sleep(GRACE.toMillis() * 3);
+        Assertions.assertTrue(canceled.isEmpty(), "Another session of the user is still open");
+
+        feed.unregister(plain, "alpha");
+        awaitCancels(1);
+        Assertions.assertEquals(List.of("alpha"), canceled);
+    }
+
+    private PrivateFeedService feed() {
+        PrivateFeedService feed = new PrivateFeedService(GRACE);
+        feed.onCancelOnDisconnect(canceled::add);
+        return feed;
+    }
+
+    private void awaitCancels(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (canceled.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+
+    private static Session session() {
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] {Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "session@" + Integer.toHexString(System.identityHashCode(proxy));
+                    default -> method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                });
+    }
+}
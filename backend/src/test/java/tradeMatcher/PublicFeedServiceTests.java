@@ -0,0 +1,63 @@
+package tradeMatcher;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class PublicFeedServiceTests {
+
+    private static final String TICKER = "TEST";
+
+    @Test
+    void sessionsOnTheSameDepthRangeShareOneAggregationPerUpdate() {
+        PublicFeedService feed = new PublicFeedService();
+        PriceScale scale = PriceScaleProvider.getRegistry().getScale(TICKER);
+        long[] bidQuantity = {5L};
+        AtomicInteger aggregations = new AtomicInteger();
+        PublicFeedService.DepthSource source = (side, from, to, bucket, max) -> {
+            aggregations.incrementAndGet();
+            return new LevelLadder.Buckets(from, bucket, new long[] {side == OrderSide.BUY ? bidQuantity[0] : 0L});
+        };
+        List<String> first = new CopyOnWriteArrayList<>();
+        List<String> second = new CopyOnWriteArrayList<>();
+        List<String> other = new CopyOnWriteArrayList<>();
+        feed.subscribeDepthBuckets(session(first), TICKER, scale, source, 100_000, 100_999, 1_000, 10);
+        feed.subscribeDepthBuckets(session(second), TICKER, scale, source, 100_000, 100_999, 1_000, 10);
+        feed.subscribeDepthBuckets(session(other), TICKER, scale, source, 100_000, 100_999, 500, 10);
+        Assertions.assertEquals(4, aggregations.get(), "One aggregation per side per distinct range");
+
+        aggregations.set(0);
+        bidQuantity[0] = 8L;
+        feed.broadcastDepthBuckets(source);
+
+        Assertions.assertEquals(4, aggregations.get());
+        Assertions.assertEquals(2, first.size());
+        Assertions.assertTrue(first.get(1).contains("DEPTH_BUCKETS_UPDATE"));
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(2, other.size());
+    }
+
+    private static Session session(List<String> received) {
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[] {RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 1) {
+                        received.add((String) args[0]);
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] {Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    default -> null;
+                });
+    }
+}
@@ -0,0 +1,109 @@
+package tradeMatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class ReplayToolTests {
+
+    private static final String TICKER = "TEST";
+    private static final String HASH_PREFIX = "state hash:";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void scriptReplaysToTheSameStateHash() throws Exception {
+        // The demo script's R lines are not kept current, so replay it without them.
+        Path script = dir.resolve("demo.txt");
+        Files.writeString(script, resource("Demo_LongSequence.txt").replaceAll("(?m)^R .*$", ""));
+
+        List<String> first = replay(script.toString());
+        Assertions.assertEquals(hash(first), hash(replay(script.toString())));
+        // An expected hash that matches keeps the exit status at zero.
+        Assertions.assertEquals(hash(first), hash(replay(script.toString(), "--expect-hash=" + hash(first))));
+
+        Path changed = dir.resolve("changed.txt");
+        Files.writeString(changed, Files.readString(script).replaceFirst("A B GTC 101.250 50 1", "A B GTC 101.250 49 1"));
+        Assertions.assertNotEquals(hash(first), hash(replay(changed.toString())));
+    }
+
+    @Test
+    void scriptSummaryIsCheckedAgainstTheFinalBook() throws Exception {
+        Path script = dir.resolve("modify.txt");
+        Files.writeString(script, resource("Modify_Side.txt"));
+        Assertions.assertTrue(replay(script.toString()).contains("Script summary matches current orderbook state."));
+    }
+
+    @Test
+    void journalReplaysToTheSameStateHash() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        record(journalDir, 5L);
+        Path otherDir = dir.resolve("other");
+        record(otherDir, 4L);
+
+        String hash = hash(replay(journalDir.toString()));
+        Assertions.assertEquals(hash, hash(replay(journalDir.toString())));
+        Assertions.assertNotEquals(hash, hash(replay(otherDir.toString())));
+    }
+
+    /**
+     * Journals two accounts and a partially filled cross whose taker size is {@code takerQuantity}.
+     */
+    private static void record(Path journalDir, long takerQuantity) throws Exception {
+        AccountManager accounts = new AccountManager();
+        MatchingEngine engine = new MatchingEngine(accounts);
+        CommandJournal journal = new CommandJournal(journalDir);
+        try {
+            journal.appendAccount(accounts.registerAccountWithApiKey("maker", "maker-key", 1_000_000d,
+                    Map.of(TICKER, 10_000L), false));
+            journal.appendAccount(accounts.registerAccountWithApiKey("taker", "taker-key", 1_000_000d,
+                    Map.of(TICKER, 10_000L), false));
+            engine.setJournal(journal);
+            int price = PriceScaleProvider.getRegistry().getScale(TICKER).toBookPrice(101.000);
+            engine.processOrder(new Order("1", "maker", TICKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                    8, price, price, false, 8));
+            engine.processOrder(new Order("2", "maker", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                    3, price - 10, price - 10, false, 3));
+            engine.processOrder(new Order("3", "taker", TICKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                    takerQuantity, price, price, false, takerQuantity));
+            engine.cancelOrder("maker", 2L);
+        } finally {
+            engine.setJournal(null);
+            journal.close();
+            engine.close();
+        }
+    }
+
+    private static String resource(String name) throws Exception {
+        return Files.readString(Path.of(ReplayToolTests.class.getResource("/TestFiles/" + name).toURI()));
+    }
+
+    private static String hash(List<String> output) {
+        return output.stream()
+                .filter(line -> line.startsWith(HASH_PREFIX))
+                .map(line -> line.substring(HASH_PREFIX.length()).trim())
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No state hash in " + output));
+    }
+
+    private static List<String> replay(String... args) throws Exception {
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            ReplayTool.main(args);
+        } finally {
+            System.setOut(original);
+        }
+        return captured.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+}
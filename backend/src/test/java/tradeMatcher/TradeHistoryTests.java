@@ -0,0 +1,71 @@
+package tradeMatcher;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class TradeHistoryTests {
+
+    private static final long START = 1_700_000_040_000_000_000L;
+    private static final long STEP = 10_000_000_000L;
+    private static final int TRADES = 30;
+
+    @Test
+    void scansUserAndTickerRangesAcrossPartitionsAndAfterReopen(@TempDir Path directory) throws Exception {
+        try (TradeHistory history = new TradeHistory(directory, Duration.ofMinutes(1))) {
+            for (int i = 0; i < TRADES; i++) {
+                TradeInfo bid = new TradeInfo(100 + i, "u" + (i % 3), i % 2 == 0 ? "AAA" : "BBB", OrderSide.BUY,
+                        (100_000 + i) / 1_000d, 100_000 + i, 1 + i);
+                TradeInfo ask = new TradeInfo(200 + i, "seller", bid.getTicker(), OrderSide.SELL,
+                        100_000 / 1_000d, 100_000, 1 + i);
+                history.append(timestamp(i), bid, ask, 2L * i + 1, 2L * i + 2);
+            }
+            history.awaitSealed();
+            Assertions.assertEquals(TRADES, history.size());
+            Assertions.assertTrue(history.partitionCount() > 1);
+
+            // u0 buys trades 0, 3, 6, ...; page through them two at a time.
+            Assertions.assertEquals(List.of(0, 3, 6, 9, 12, 15, 18, 21, 24, 27), paged(history, "u0", null, 0, TRADES, 2));
+            Assertions.assertEquals(List.of(6, 12, 18), paged(history, "u0", "AAA", 5, 20, 10));
+            Assertions.assertEquals(List.of(1, 3, 5, 7), paged(history, null, "BBB", 0, 8, 3));
+            Assertions.assertEquals(List.of(10, 11, 12), paged(history, null, null, 10, 13, 100));
+            Assertions.assertTrue(paged(history, "nobody", null, 0, TRADES, 10).isEmpty());
+        }
+
+        try (TradeHistory reopened = new TradeHistory(directory, Duration.ofMinutes(1))) {
+            Assertions.assertEquals(TRADES, reopened.size());
+            Assertions.assertEquals(List.of(24, 27), paged(reopened, "u0", null, 22, TRADES, 10));
+            List<TradeHistory.Row> rows = new ArrayList<>();
+            reopened.scan("seller", "BBB", timestamp(29), Long.MAX_VALUE, 0L, 10, row -> {
+                Assertions.assertEquals(59L, row.fillId(OrderSide.BUY));
+                Assertions.assertEquals(60L, row.fillId(OrderSide.SELL));
+                Assertions.assertEquals(229L, row.orderId(OrderSide.SELL));
+                Assertions.assertEquals("u2", row.userId(OrderSide.BUY));
+                Assertions.assertEquals(100_029, row.priceTicks(OrderSide.BUY));
+                Assertions.assertEquals(100_000, row.priceTicks(OrderSide.SELL));
+                Assertions.assertEquals(30, row.quantity());
+                rows.add(row);
+            });
+            Assertions.assertEquals(1, rows.size());
+        }
+    }
+
+    private static List<Integer> paged(TradeHistory history, String userId, String ticker, int from, int to, int limit) {
+        List<Integer> seen = new ArrayList<>();
+        long after = 0L;
+        do {
+            after = history.scan(userId, ticker, timestamp(from), timestamp(to), after, limit,
+                    row -> seen.add((int) ((row.timestampNanos() - START) / STEP)));
+        } while (after != 0L);
+        return seen;
+    }
+
+    private static long timestamp(int trade) {
+        return START + trade * STEP;
+    }
+}
@@ -0,0 +1,94 @@
+package tradeMatcher;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class WebSocketSenderTests {
+
+    @Test
+    void sessionOverItsBacklogIsClosedAndItsFramesDropped() {
+        WebSocketSender sender = new WebSocketSender(new StalledExecutor(), 3);
+        List<String> calls = new ArrayList<>();
+        Session session = session(calls, Integer.MAX_VALUE);
+
+        for (int i = 0; i < 3; i++) {
+            sender.send(session, "frame" + i);
+        }
+        Assertions.assertEquals(3, sender.backlog(session));
+        Assertions.assertFalse(calls.contains("close"));
+
+        sender.send(session, "frame3");
+        Assertions.assertTrue(calls.contains("close"));
+        Assertions.assertEquals(0, sender.backlog(session));
+    }
+
+    @Test
+    void sendRacingWithCloseDoesNotLeaveAQueueBehind() {
+        WebSocketSender sender = new WebSocketSender(new StalledExecutor(), 3);
+        // The session closes and is released while a send is between its open check and its queue.
+        Session session = session(new ArrayList<>(), 1);
+        sender.release(session);
+
+        sender.send(session, "frame");
+
+        Assertions.assertEquals(0, sender.backlog(session));
+    }
+
+    /**
+     * A session whose {@code isOpen} answers true for the first {@code openChecks} calls.
+     */
+    private static Session session(List<String> calls, int openChecks) {
+        AtomicInteger checks = new AtomicInteger();
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] {Session.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    return switch (method.getName()) {
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "isOpen" -> checks.incrementAndGet() <= openChecks;
+                        default -> method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                    };
+                });
+    }
+
+    /**
+     * Accepts drain tasks without running them, like a sender thread stuck on a slow client.
+     */
+    private static final class StalledExecutor extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
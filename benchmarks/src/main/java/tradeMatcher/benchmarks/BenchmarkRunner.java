@@ -0,0 +1,46 @@
+package tradeMatcher.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the suites with the GC profiler attached and writes JSON results to
+ * {@code results/jmh-<timestamp>.json}, so runs can be diffed or loaded into a JMH visualizer.
+ * Any standard JMH command-line option (benchmark regex, {@code -p depth=100}, {@code -f}, ...)
+ * is passed through and overrides these defaults.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar [jmh options] [benchmark regex]
+ * </pre>
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, java.io.IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Path results = Path.of("results");
+        Files.createDirectories(results);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.resolve("jmh-" + stamp + ".json").toString());
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("tradeMatcher\\.benchmarks\\..*");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,50 @@
+package tradeMatcher.benchmarks;
+
+import tradeMatcher.Order;
+import tradeMatcher.OrderSide;
+import tradeMatcher.OrderType;
+import tradeMatcher.Orderbook;
+import tradeMatcher.TimeInForce;
+
+/**
+ * Builds a two-sided book around a fixed mid for the benchmarks. Prices are in book ticks; bids
+ * occupy {@code MID - 1 .. MID - depth} and asks {@code MID + 1 .. MID + depth}, leaving
+ * {@link #MID} itself free for liquidity that a benchmark adds and then consumes.
+ */
+public final class BookFixture {
+    static final String TICKER = "TEST";
+    static final String USER = "bench";
+    static final int MID = 100_000;
+    static final long QUANTITY = 10L;
+
+    /**
+     * How resting orders are spread across price levels.
+     */
+    public enum Distribution {
+        /** Every level holds {@code ordersPerLevel} orders. */
+        UNIFORM,
+        /** Queue length falls linearly from twice {@code ordersPerLevel} at the touch to one deep in the book. */
+        TOP_HEAVY
+    }
+
+    private long nextOrderId = 1L;
+
+    Orderbook build(int depth, int ordersPerLevel, Distribution distribution) {
+        Orderbook orderbook = new Orderbook();
+        for (int level = 0; level < depth; level++) {
+            int count = distribution == Distribution.UNIFORM
+                    ? ordersPerLevel
+                    : Math.max(1, 2 * ordersPerLevel * (depth - level) / depth);
+            for (int i = 0; i < count; i++) {
+                orderbook.AddOrder(limit(OrderSide.BUY, MID - 1 - level, QUANTITY, TimeInForce.GTC));
+                orderbook.AddOrder(limit(OrderSide.SELL, MID + 1 + level, QUANTITY, TimeInForce.GTC));
+            }
+        }
+        return orderbook;
+    }
+
+    Order limit(OrderSide side, int price, long quantity, TimeInForce timeInForce) {
+        return new Order(Long.toString(nextOrderId++), USER, TICKER, side, OrderType.LIMIT, timeInForce,
+                quantity, price, price, false, quantity);
+    }
+}
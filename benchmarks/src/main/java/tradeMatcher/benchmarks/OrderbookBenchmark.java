@@ -0,0 +1,191 @@
+package tradeMatcher.benchmarks;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tradeMatcher.Order;
+import tradeMatcher.OrderModify;
+import tradeMatcher.OrderSide;
+import tradeMatcher.Orderbook;
+import tradeMatcher.OrderbookLevelInfos;
+import tradeMatcher.TimeInForce;
+import tradeMatcher.Trade;
+
+/**
+ * Hot paths of {@link Orderbook}. Mutating benchmarks work on batches of {@value #BATCH} orders
+ * prepared outside the measurement, and every batch leaves the book as it found it, so each
+ * iteration sees the same depth and queue lengths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderbookBenchmark {
+    static final int BATCH = 1_000;
+
+    /**
+     * The resting book, built once per parameter combination.
+     */
+    @State(Scope.Thread)
+    public static class Book {
+        @Param({"10", "100", "1000"})
+        int depth;
+
+        @Param({"1", "10", "100"})
+        int ordersPerLevel;
+
+        @Param({"UNIFORM", "TOP_HEAVY"})
+        BookFixture.Distribution distribution;
+
+        final BookFixture fixture = new BookFixture();
+        final SplittableRandom random = new SplittableRandom(42L);
+        Orderbook orderbook;
+        Order fokMiss;
+
+        @Setup(Level.Trial)
+        public void build() {
+            orderbook = fixture.build(depth, ordersPerLevel, distribution);
+            // Buys more than the whole ask side at the deepest price, so the FOK check walks every level.
+            fokMiss = fixture.limit(OrderSide.BUY, BookFixture.MID + depth, Integer.MAX_VALUE, TimeInForce.FOK);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            orderbook.close();
+        }
+
+        int randomBidLevel() {
+            return BookFixture.MID - 1 - random.nextInt(depth);
+        }
+
+        Order passiveBid() {
+            return fixture.limit(OrderSide.BUY, randomBidLevel(), BookFixture.QUANTITY, TimeInForce.GTC);
+        }
+
+        void cancelAll(Order[] orders) {
+            for (Order order : orders) {
+                orderbook.CancelOrder(order.GetOrderId());
+            }
+        }
+    }
+
+    /**
+     * Passive bids at random existing levels, joining the back of the queue.
+     */
+    @State(Scope.Thread)
+    public static class PassiveBatch {
+        final Order[] orders = new Order[BATCH];
+
+        @Setup(Level.Invocation)
+        public void prepare(Book book) {
+            for (int i = 0; i < BATCH; i++) {
+                orders[i] = book.passiveBid();
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void cancel(Book book) {
+            book.cancelAll(orders);
+        }
+    }
+
+    /**
+     * Passive bids already resting in the book, to be canceled or modified by the measurement.
+     */
+    @State(Scope.Thread)
+    public static class RestingBatch {
+        final Order[] orders = new Order[BATCH];
+
+        @Setup(Level.Invocation)
+        public void rest(Book book) {
+            for (int i = 0; i < BATCH; i++) {
+                orders[i] = book.passiveBid();
+                book.orderbook.AddOrder(orders[i]);
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void cancel(Book book) {
+            // No-op for orders the benchmark already canceled.
+            book.cancelAll(orders);
+        }
+    }
+
+    /**
+     * Asks resting at the mid and the buys that will consume them one for one.
+     */
+    @State(Scope.Thread)
+    public static class CrossingBatch {
+        final Order[] orders = new Order[BATCH];
+
+        @Setup(Level.Invocation)
+        public void rest(Book book) {
+            for (int i = 0; i < BATCH; i++) {
+                book.orderbook.AddOrder(book.fixture.limit(OrderSide.SELL, BookFixture.MID, BookFixture.QUANTITY, TimeInForce.GTC));
+                orders[i] = book.fixture.limit(OrderSide.BUY, BookFixture.MID, BookFixture.QUANTITY, TimeInForce.GTC);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addResting(Book book, PassiveBatch batch, Blackhole blackhole) {
+        for (Order order : batch.orders) {
+            blackhole.consume(book.orderbook.AddOrder(order));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addCrossing(Book book, CrossingBatch batch, Blackhole blackhole) {
+        for (Order order : batch.orders) {
+            List<Trade> trades = book.orderbook.AddOrder(order);
+            blackhole.consume(trades);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void cancel(Book book, RestingBatch batch) {
+        book.cancelAll(batch.orders);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void modify(Book book, RestingBatch batch, Blackhole blackhole) {
+        for (Order order : batch.orders) {
+            OrderModify modify = new OrderModify(order.GetOrderId(), BookFixture.USER, BookFixture.TICKER,
+                    OrderSide.BUY, book.randomBidLevel(), (int) BookFixture.QUANTITY);
+            blackhole.consume(book.orderbook.ModifyOrder(modify));
+        }
+    }
+
+    @Benchmark
+    public OrderbookLevelInfos getOrderInfos(Book book) {
+        return book.orderbook.GetOrderInfos();
+    }
+
+    /**
+     * FOK pre-check that walks the whole opposite side and rejects; the book is not changed.
+     */
+    @Benchmark
+    public List<Trade> fokCanFullyFillMiss(Book book) {
+        return book.orderbook.AddOrder(book.fokMiss);
+    }
+}
@@ -0,0 +1,64 @@
+package tradeMatcher.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tradeMatcher.PriceScale;
+
+/**
+ * Decimal/tick conversions used on every order and every published level.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceScaleBenchmark {
+    private static final int PRICES = 1_024;
+
+    @Param({"2", "3", "6"})
+    int precision;
+
+    private PriceScale scale;
+    private final double[] decimals = new double[PRICES];
+    private final int[] ticks = new int[PRICES];
+
+    @Setup
+    public void prepare() {
+        scale = PriceScale.fromPrecision(precision);
+        SplittableRandom random = new SplittableRandom(7L);
+        for (int i = 0; i < PRICES; i++) {
+            ticks[i] = 1 + random.nextInt(Math.min(Integer.MAX_VALUE / 2, 1_000 * scale.scaleFactor()));
+            decimals[i] = scale.toDisplayPrice(ticks[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRICES)
+    public void toBookPrice(Blackhole blackhole) {
+        for (double decimal : decimals) {
+            blackhole.consume(scale.toBookPrice(decimal));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRICES)
+    public void toDisplayPrice(Blackhole blackhole) {
+        for (int tick : ticks) {
+            blackhole.consume(scale.toDisplayPrice(tick));
+        }
+    }
+}
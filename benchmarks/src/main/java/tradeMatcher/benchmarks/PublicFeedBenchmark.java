@@ -0,0 +1,101 @@
+package tradeMatcher.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tradeMatcher.LevelInfo;
+import tradeMatcher.OrderbookLevelInfos;
+import tradeMatcher.PublicFeedService;
+
+/**
+ * {@link PublicFeedService#broadcastDelta} alternating between two books that differ in
+ * {@code changedLevels} levels per side, so every call diffs the full depth and publishes a delta.
+ * Sessions are in-memory stand-ins whose writes go to a {@link Blackhole}, which keeps JSON
+ * encoding in the measurement without any network I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublicFeedBenchmark {
+    @Param({"10", "100", "1000"})
+    int depth;
+
+    @Param({"1", "10"})
+    int changedLevels;
+
+    @Param({"0", "1", "16"})
+    int sessions;
+
+    private PublicFeedService feed;
+    private OrderbookLevelInfos first;
+    private OrderbookLevelInfos second;
+    private boolean flip;
+
+    @Setup
+    public void prepare(Blackhole blackhole) {
+        feed = new PublicFeedService();
+        for (int i = 0; i < sessions; i++) {
+            feed.register(session(blackhole));
+        }
+        first = levels(0);
+        second = levels(1);
+        feed.broadcastSnapshot(BookFixture.TICKER, first);
+    }
+
+    @Benchmark
+    public void broadcastDelta() {
+        flip = !flip;
+        feed.broadcastDelta(BookFixture.TICKER, flip ? second : first);
+    }
+
+    private OrderbookLevelInfos levels(int bump) {
+        List<LevelInfo> bids = new ArrayList<>(depth);
+        List<LevelInfo> asks = new ArrayList<>(depth);
+        for (int level = 0; level < depth; level++) {
+            int quantity = 100 + (level < changedLevels ? bump : 0);
+            bids.add(new LevelInfo((BookFixture.MID - 1 - level) / 1_000d, quantity));
+            asks.add(new LevelInfo((BookFixture.MID + 1 + level) / 1_000d, quantity));
+        }
+        return new OrderbookLevelInfos(bids, asks);
+    }
+
+    private static Session session(Blackhole blackhole) {
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(
+                RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[] {RemoteEndpoint.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("sendString")) {
+                        blackhole.consume(args[0]);
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(
+                Session.class.getClassLoader(),
+                new Class<?>[] {Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+}